@@ -35,6 +35,19 @@ export const getUserById = (id) => {
   return api.get(`/users/${id}`)
 }
 
+/**
+ * Get several users by ID in one request
+ * 在一次请求中根据 ID 获取多个用户
+ * 
+ * @function getUsersByIds
+ * @param {Array<number>} ids - User IDs, at most 1000 / 用户 ID，最多 1000 个
+ * @returns {Promise} Axios response with one entry per id ({ id, found, user }) in request order
+ *                    按请求顺序每个 ID 一个条目（{ id, found, user }）的 Axios 响应
+ */
+export const getUsersByIds = (ids) => {
+  return api.post('/users/lookup', { ids })
+}
+
 /**
  * Create a new user
  * 创建新用户
@@ -0,0 +1,129 @@
+package com.example.demo.benchmark;
+
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.UserResponse;
+import com.example.demo.entity.Role;
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.util.StreamUtils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserListSerializationBenchmark - GET /api/users Response Serialization
+ * 用户列表序列化基准测试 - GET /api/users 响应序列化
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Serializes ApiResponse&lt;List&lt;UserResponse&gt;&gt; of 1k and 100k users to a null
+ * sink, with and without the Blackbird module, two ways:
+ * - perRequestWriter: what MappingJackson2HttpMessageConverter does for every response
+ *   (mapper.writer(), root serializer resolved at write time);
+ * - cachedWriter: one writerFor(type) ObjectWriter reused for every response.
+ * The mapper is built like Boot's (Jackson2ObjectMapperBuilder, ISO-8601 dates).
+ *
+ * Run: mvn -Pbenchmark test-compile exec:exec (ns/op, plus allocations from -prof gc:
+ * gc.alloc.rate.norm is bytes per operation).
+ *
+ * 将 1k 和 100k 个用户的 ApiResponse&lt;List&lt;UserResponse&gt;&gt; 序列化到空输出，
+ * 分别启用和不启用 Blackbird 模块，两种方式：
+ * - perRequestWriter：MappingJackson2HttpMessageConverter 对每个响应的做法
+ *   （mapper.writer()，在写入时解析根序列化器）；
+ * - cachedWriter：为每个响应复用一个 writerFor(type) ObjectWriter。
+ * 映射器按 Boot 的方式构建（Jackson2ObjectMapperBuilder，ISO-8601 日期）。
+ *
+ * 运行：mvn -Pbenchmark test-compile exec:exec（ns/op，以及 -prof gc 给出的分配：
+ * gc.alloc.rate.norm 为每次操作的字节数）。
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = "-Xmx2g")
+@State(Scope.Benchmark)
+public class UserListSerializationBenchmark {
+
+    @Param({"1000", "100000"})
+    public int users;
+
+    @Param({"true", "false"})
+    public boolean blackbird;
+
+    private ObjectMapper mapper;
+
+    private ObjectWriter cachedWriter;
+
+    private ApiResponse<List<UserResponse>> response;
+
+    private final OutputStream sink = StreamUtils.nonClosing(OutputStream.nullOutputStream());
+
+    /**
+     * Build the mapper and the response
+     * 构建映射器和响应
+     */
+    @Setup
+    public void setUp() {
+        Jackson2ObjectMapperBuilder builder = Jackson2ObjectMapperBuilder.json()
+            .featuresToDisable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
+        if (blackbird) {
+            builder.modulesToInstall(new BlackbirdModule());
+        }
+        mapper = builder.build();
+        JavaType type = mapper.getTypeFactory().constructParametricType(ApiResponse.class,
+            mapper.getTypeFactory().constructCollectionType(List.class, UserResponse.class));
+        cachedWriter = mapper.writerFor(type);
+
+        LocalDateTime base = LocalDateTime.of(2025, 11, 20, 8, 30, 15, 123_456_000);
+        List<UserResponse> items = new ArrayList<>(users);
+        for (int i = 1; i <= users; i++) {
+            items.add(new UserResponse((long) i, "User " + i, "user" + i + "@example.com", "+86 138" + (10_000_000 + i),
+                i % 100 == 0 ? Role.ADMIN : Role.USER, base.plusMinutes(i), base.plusMinutes(i).plusSeconds(42), (long) i % 7));
+        }
+        response = ApiResponse.list(items);
+    }
+
+    @Benchmark
+    public void perRequestWriter() throws IOException {
+        write(mapper.writer());
+    }
+
+    @Benchmark
+    public void cachedWriter() throws IOException {
+        write(cachedWriter);
+    }
+
+    /**
+     * Write like the message converter: UTF-8 generator over the non-closing response stream
+     * 按消息转换器的方式写入：基于不关闭的响应流的 UTF-8 生成器
+     */
+    private void write(ObjectWriter writer) throws IOException {
+        try (JsonGenerator generator = mapper.getFactory().createGenerator(sink, JsonEncoding.UTF8)) {
+            writer.writeValue(generator, response);
+        }
+    }
+}
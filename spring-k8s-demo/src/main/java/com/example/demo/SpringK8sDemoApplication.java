@@ -2,6 +2,7 @@ package com.example.demo;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 /**
  * SpringK8sDemoApplication - Main Spring Boot Application Class
@@ -17,8 +18,12 @@ import org.springframework.boot.autoconfigure.SpringBootApplication;
  * 
  * 这是 Spring Boot 应用程序的主入口点。
  * 它初始化 Spring 应用程序上下文并启动嵌入式服务器。
+ * 
+ * Scheduling is enabled for background maintenance jobs (e.g. statistics reconciliation).
+ * 启用调度以运行后台维护任务（例如统计对账）。
  */
 @SpringBootApplication
+@EnableScheduling
 public class SpringK8sDemoApplication {
 
     /**
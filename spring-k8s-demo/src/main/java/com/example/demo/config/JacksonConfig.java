@@ -0,0 +1,92 @@
+package com.example.demo.config;
+
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.fasterxml.jackson.dataformat.protobuf.ProtobufFactory;
+import com.fasterxml.jackson.module.blackbird.BlackbirdModule;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.util.List;
+
+/**
+ * JacksonConfig - Shared JSON Configuration
+ * Jackson 配置 - 共享 JSON 配置
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Keeps Spring Boot's auto-configured ObjectMapper (Java time support, ISO-8601 dates,
+ * spring.jackson.* properties) as the single application mapper and adds:
+ * - the Blackbird module, which replaces reflective getter/setter/constructor calls
+ *   with generated lambdas (picked up by Boot because it is a Module bean);
+ * - binary formats for internal clients: application/cbor and application/x-protobuf,
+ *   built with the same Jackson settings. They are registered after JSON, so clients
+ *   that accept anything (browsers, the Vue frontend) still get JSON.
+ * Redis serializers use copies of this mapper (see RedisConfig). JSON responses use
+ * Boot's converter as is: caching one writerFor(type) ObjectWriter per response type
+ * made no measurable difference (UserListSerializationBenchmark, -Pbenchmark).
+ *
+ * 保留 Spring Boot 自动配置的 ObjectMapper（Java 时间支持、ISO-8601 日期、spring.jackson.* 属性）
+ * 作为唯一的应用程序映射器，并添加：
+ * - Blackbird 模块，用生成的 lambda 替代反射调用 getter/setter/构造函数
+ *   （作为 Module Bean 被 Boot 自动注册）；
+ * - 面向内部客户端的二进制格式：application/cbor 和 application/x-protobuf，
+ *   使用相同的 Jackson 设置构建。它们注册在 JSON 之后，因此接受任意格式的客户端
+ *   （浏览器、Vue 前端）仍然获得 JSON。
+ * Redis 序列化器使用此映射器的副本（参见 RedisConfig）。JSON 响应直接使用 Boot 的转换器：
+ * 为每种响应类型缓存一个 writerFor(type) ObjectWriter 没有可测量的差异
+ * （UserListSerializationBenchmark，-Pbenchmark）。
+ */
+@Configuration
+public class JacksonConfig implements WebMvcConfigurer {
+
+    /**
+     * Boot's ObjectMapper builder (prototype: one per binary format)
+     * Boot 的 ObjectMapper 构建器（原型作用域：每种二进制格式一个）
+     */
+    @Autowired
+    private ObjectProvider<Jackson2ObjectMapperBuilder> objectMapperBuilder;
+
+    /**
+     * Blackbird accessor module
+     * Blackbird 访问器模块
+     *
+     * @return Blackbird module / Blackbird 模块
+     */
+    @Bean
+    public BlackbirdModule blackbirdModule() {
+        return new BlackbirdModule();
+    }
+
+    /**
+     * Configure CBOR and protobuf converters
+     * 配置 CBOR 和 protobuf 转换器
+     *
+     * @param converters Converters in negotiation order / 按协商顺序排列的转换器
+     * @description
+     * Replaces Spring's default CBOR converter (which does not see spring.jackson.*
+     * settings or the Blackbird module) in place, and appends the protobuf converter.
+     *
+     * 原地替换 Spring 默认的 CBOR 转换器（它看不到 spring.jackson.* 设置和 Blackbird 模块），
+     * 并追加 protobuf 转换器。
+     */
+    @Override
+    public void extendMessageConverters(List<HttpMessageConverter<?>> converters) {
+        MappingJackson2CborHttpMessageConverter cbor = new MappingJackson2CborHttpMessageConverter(
+            objectMapperBuilder.getObject().factory(new CBORFactory()).build());
+        converters.replaceAll(converter -> converter instanceof MappingJackson2CborHttpMessageConverter ? cbor : converter);
+        if (!converters.contains(cbor)) {
+            converters.add(cbor);
+        }
+        converters.add(new ProtobufJacksonHttpMessageConverter(
+            objectMapperBuilder.getObject().factory(new ProtobufFactory()).build()));
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.demo.config;
+
+import com.example.demo.util.DroppedLogEventCounter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * LoggingMetricsConfig - Logging Pipeline Metrics
+ * 日志指标配置 - 日志管道指标
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Exposes the number of log events dropped by the async ring-buffer appenders
+ * as the app.logging.dropped counter, tagged by appender name.
+ *
+ * 将异步环形缓冲区追加器丢弃的日志事件数量暴露为 app.logging.dropped 计数器，
+ * 按追加器名称打标签。
+ */
+@Configuration(proxyBeanMethods = false)
+public class LoggingMetricsConfig {
+
+    /**
+     * Bind dropped-event counters to the meter registry
+     * 将丢弃事件计数器绑定到指标注册表
+     *
+     * @return MeterBinder for async appender drops / 异步追加器丢弃的 MeterBinder
+     */
+    @Bean
+    public MeterBinder droppedLogEventMetrics() {
+        return registry -> DroppedLogEventCounter.counters().forEach((appender, count) ->
+            FunctionCounter.builder("app.logging.dropped", count, LongAdder::doubleValue)
+                .description("Log events dropped because the async ring buffer was full")
+                .tag("appender", appender)
+                .register(registry));
+    }
+}
@@ -0,0 +1,188 @@
+package com.example.demo.config;
+
+import com.example.demo.service.PeerCacheService;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.serializer.RedisSerializer;
+import org.springframework.data.redis.serializer.SerializationException;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * PeerCacheManager - Spring Cache Backed by the Peer Cache
+ * 对等缓存管理器 - 由对等缓存支持的 Spring Cache
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Replaces the Redis cache manager when peer-cache.enabled is set (see RedisConfig).
+ * Values are serialized with the same serializers as the Redis caches and stored at
+ * their owning pod through PeerCacheService.
+ *
+ * A miss that comes back with a lease is remembered for the current thread; the put
+ * that @Cacheable issues for the same key after running the method hands the lease
+ * back, so concurrent callers waiting at the owner receive that value instead of all
+ * querying the database. A put without a lease (@CachePut, a miss that waited for
+ * another load in vain, or an owner that could not be reached) is not stored: only a
+ * lease tells the owner that no eviction happened while the value was loaded.
+ *
+ * 设置 peer-cache.enabled 时替换 Redis 缓存管理器（参见 RedisConfig）。
+ * 值使用与 Redis 缓存相同的序列化器序列化，并通过 PeerCacheService 存储在其所有者 Pod 上。
+ *
+ * 带租约返回的未命中会为当前线程记住；@Cacheable 在执行方法后对同一键发出的 put 会交还租约，
+ * 因此在所有者处等待的并发调用方收到该值，而不是都去查询数据库。没有租约的 put
+ * （@CachePut、等待其他加载未果的未命中，或所有者不可达）不会被存储：
+ * 只有租约能告诉所有者加载值期间没有发生驱逐。
+ */
+public class PeerCacheManager implements CacheManager {
+
+    /**
+     * Lease granted to this thread by the last miss / 上一次未命中授予本线程的租约
+     */
+    private static final ThreadLocal<Lease> LEASE = new ThreadLocal<>();
+
+    private final PeerCacheService service;
+    private final Map<String, RedisSerializer<?>> serializers;
+    private final RedisSerializer<?> defaultSerializer;
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for PeerCacheManager
+     * PeerCacheManager 构造函数
+     *
+     * @param service Peer cache / 对等缓存
+     * @param serializers Value serializers by cache name / 按缓存名称的值序列化器
+     * @param defaultSerializer Serializer of the other caches / 其他缓存的序列化器
+     */
+    public PeerCacheManager(PeerCacheService service, Map<String, RedisSerializer<?>> serializers,
+                            RedisSerializer<?> defaultSerializer) {
+        this.service = service;
+        this.serializers = Map.copyOf(serializers);
+        this.defaultSerializer = defaultSerializer;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        return caches.computeIfAbsent(name,
+            n -> new PeerCache(n, serializers.getOrDefault(n, defaultSerializer)));
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return Set.copyOf(caches.keySet());
+    }
+
+    private record Lease(String cache, String key, String token) {
+    }
+
+    /**
+     * One named cache stored on the peers
+     * 存储在对等节点上的一个具名缓存
+     */
+    private final class PeerCache implements Cache {
+
+        private final String name;
+        private final RedisSerializer<Object> serializer;
+
+        @SuppressWarnings("unchecked")
+        PeerCache(String name, RedisSerializer<?> serializer) {
+            this.name = name;
+            this.serializer = (RedisSerializer<Object>) serializer;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return service;
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            String cacheKey = String.valueOf(key);
+            // A lease left by a miss whose result was not cached is dropped here
+            // 未缓存结果的未命中遗留的租约在此丢弃
+            LEASE.remove();
+            PeerCacheService.Lookup lookup = service.get(name, cacheKey);
+            if (lookup.value() == null) {
+                if (lookup.lease() != null) {
+                    LEASE.set(new Lease(name, cacheKey, lookup.lease()));
+                }
+                return null;
+            }
+            try {
+                return new SimpleValueWrapper(serializer.deserialize(lookup.value()));
+            } catch (SerializationException e) {
+                // Written by an incompatible version; load it again / 由不兼容的版本写入；重新加载
+                return null;
+            }
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public <T> T get(Object key, Class<T> type) {
+            ValueWrapper cached = get(key);
+            Object value = cached != null ? cached.get() : null;
+            if (value != null && type != null && !type.isInstance(value)) {
+                throw new IllegalStateException("Cached value is not of required type [" + type.getName() + "]: " + value);
+            }
+            return (T) value;
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            ValueWrapper cached = get(key);
+            if (cached != null) {
+                @SuppressWarnings("unchecked")
+                T value = (T) cached.get();
+                return value;
+            }
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                LEASE.remove();
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            put(key, value);
+            return value;
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            String cacheKey = String.valueOf(key);
+            Lease lease = LEASE.get();
+            String token = null;
+            if (lease != null) {
+                LEASE.remove();
+                if (lease.cache().equals(name) && lease.key().equals(cacheKey)) {
+                    token = lease.token();
+                }
+            }
+            if (value == null || token == null) {
+                return;
+            }
+            service.put(name, cacheKey, serializer.serialize(value), token);
+        }
+
+        @Override
+        public void evict(Object key) {
+            service.evict(name, String.valueOf(key));
+        }
+
+        @Override
+        public void clear() {
+            service.clear(name);
+        }
+    }
+}
@@ -0,0 +1,243 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * PeerCacheProperties - Peer-to-Peer Cache Configuration Properties
+ * 对等缓存配置属性
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Binds the "peer-cache.*" properties. Peers are either listed in peer-cache.peers
+ * (static, e.g. several instances on localhost) or resolved from the DNS name of a
+ * headless Kubernetes service (peer-cache.dns-name), whose A records are the ready
+ * pods. Either way peer-cache.self must be this instance's own address as the other
+ * peers see it.
+ *
+ * 绑定 "peer-cache.*" 属性。对等节点要么在 peer-cache.peers 中列出（静态，例如 localhost 上的多个实例），
+ * 要么从 Kubernetes 无头服务的 DNS 名称（peer-cache.dns-name）解析，其 A 记录即就绪的 Pod。
+ * 无论哪种方式，peer-cache.self 都必须是其他对等节点看到的本实例地址。
+ */
+@ConfigurationProperties(prefix = "peer-cache")
+public class PeerCacheProperties {
+
+    /**
+     * Use the peer cache instead of Redis for Spring Cache / 使用对等缓存代替 Redis 作为 Spring Cache
+     */
+    private boolean enabled;
+
+    /**
+     * This instance's base URL on the internal port, e.g. http://10.0.0.5:9090 / 本实例在内部端口上的基础 URL
+     */
+    private String self = "http://localhost:9090";
+
+    /**
+     * Static peer base URLs, this instance included / 静态对等节点基础 URL，包括本实例
+     */
+    private List<String> peers = new ArrayList<>();
+
+    /**
+     * Headless service resolved to peer addresses; overrides peers when set
+     * 解析为对等节点地址的无头服务；设置后覆盖 peers
+     */
+    private String dnsName;
+
+    /**
+     * Internal port serving only the peer cache endpoints, also used for the peers found
+     * through dnsName; must not be exposed by the public Service
+     * 只提供对等缓存端点的内部端口，也用于通过 dnsName 找到的对等节点；不得由公共 Service 暴露
+     */
+    private int port = 9090;
+
+    /**
+     * How often dnsName is resolved again / 重新解析 dnsName 的频率
+     */
+    private Duration refreshInterval = Duration.ofSeconds(10);
+
+    /**
+     * Points per peer on the hash ring / 每个对等节点在哈希环上的点数
+     */
+    private int virtualNodes = 160;
+
+    /**
+     * Memory for entries this instance owns / 本实例拥有的条目可用的内存
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Entry lifetime / 条目生存时间
+     */
+    private Duration ttl = Duration.ofMinutes(10);
+
+    /**
+     * Shared secret sent in X-Peer-Cache-Secret; the application does not start without it
+     * 在 X-Peer-Cache-Secret 中发送的共享密钥；未设置时应用不会启动
+     */
+    private String secret;
+
+    /**
+     * Peer call timeouts / 对等节点调用超时
+     */
+    private Duration connectTimeout = Duration.ofMillis(200);
+    private Duration requestTimeout = Duration.ofMillis(500);
+
+    /**
+     * A peer that failed is skipped (treated as a miss) for this long
+     * 失败的对等节点在此时长内被跳过（视为未命中）
+     */
+    private Duration retryAfter = Duration.ofSeconds(5);
+
+    /**
+     * How often peers that missed an eviction are asked to drop their entries
+     * 要求错过驱逐的对等节点删除其条目的频率
+     */
+    private Duration resetInterval = Duration.ofSeconds(1);
+
+    /**
+     * How long a caller holding a load lease may take before another caller gets it
+     * 持有加载租约的调用方在其他调用方获得租约之前可用的时长
+     */
+    private Duration leaseTimeout = Duration.ofSeconds(2);
+
+    /**
+     * How long a concurrent caller waits at the owner for the lease holder's value
+     * 并发调用方在所有者处等待租约持有者值的时长
+     */
+    private Duration leaseWait = Duration.ofMillis(300);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getSelf() {
+        return self;
+    }
+
+    public void setSelf(String self) {
+        this.self = self;
+    }
+
+    public List<String> getPeers() {
+        return peers;
+    }
+
+    public void setPeers(List<String> peers) {
+        this.peers = peers;
+    }
+
+    public String getDnsName() {
+        return dnsName;
+    }
+
+    public void setDnsName(String dnsName) {
+        this.dnsName = dnsName;
+    }
+
+    public int getPort() {
+        return port;
+    }
+
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public int getVirtualNodes() {
+        return virtualNodes;
+    }
+
+    public void setVirtualNodes(int virtualNodes) {
+        this.virtualNodes = virtualNodes;
+    }
+
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public Duration getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(Duration ttl) {
+        this.ttl = ttl;
+    }
+
+    public String getSecret() {
+        return secret;
+    }
+
+    public void setSecret(String secret) {
+        this.secret = secret;
+    }
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getRequestTimeout() {
+        return requestTimeout;
+    }
+
+    public void setRequestTimeout(Duration requestTimeout) {
+        this.requestTimeout = requestTimeout;
+    }
+
+    public Duration getRetryAfter() {
+        return retryAfter;
+    }
+
+    public void setRetryAfter(Duration retryAfter) {
+        this.retryAfter = retryAfter;
+    }
+
+    public Duration getResetInterval() {
+        return resetInterval;
+    }
+
+    public void setResetInterval(Duration resetInterval) {
+        this.resetInterval = resetInterval;
+    }
+
+    public Duration getLeaseTimeout() {
+        return leaseTimeout;
+    }
+
+    public void setLeaseTimeout(Duration leaseTimeout) {
+        this.leaseTimeout = leaseTimeout;
+    }
+
+    public Duration getLeaseWait() {
+        return leaseWait;
+    }
+
+    public void setLeaseWait(Duration leaseWait) {
+        this.leaseWait = leaseWait;
+    }
+}
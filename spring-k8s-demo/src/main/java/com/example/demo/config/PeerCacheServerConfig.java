@@ -0,0 +1,47 @@
+package com.example.demo.config;
+
+import org.apache.catalina.connector.Connector;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.embedded.tomcat.TomcatServletWebServerFactory;
+import org.springframework.boot.web.server.WebServerFactoryCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * PeerCacheServerConfig - Internal Port for the Peer Cache Endpoints
+ * 对等缓存服务器配置 - 对等缓存端点的内部端口
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * With peer-cache.enabled, adds a second Tomcat connector on peer-cache.port. The
+ * /internal/cache endpoints are only served on that port, and it serves nothing else
+ * (see SecurityConfig and PeerCacheController). The public Service and the ingress
+ * only route server.port; the headless peer Service exposes the internal port.
+ *
+ * 启用 peer-cache.enabled 时，在 peer-cache.port 上添加第二个 Tomcat 连接器。
+ * /internal/cache 端点只在该端口上提供，且该端口不提供其他任何内容（参见 SecurityConfig 和 PeerCacheController）。
+ * 公共 Service 和 Ingress 只路由 server.port；无头对等 Service 暴露内部端口。
+ */
+@Configuration
+@ConditionalOnProperty(name = "peer-cache.enabled", havingValue = "true")
+public class PeerCacheServerConfig {
+
+    /**
+     * Add the internal connector
+     * 添加内部连接器
+     *
+     * @param properties Peer cache properties / 对等缓存属性
+     * @return Customizer of the embedded Tomcat / 嵌入式 Tomcat 的定制器
+     */
+    @Bean
+    public WebServerFactoryCustomizer<TomcatServletWebServerFactory> peerCacheConnector(PeerCacheProperties properties) {
+        return factory -> {
+            Connector connector = new Connector(TomcatServletWebServerFactory.DEFAULT_PROTOCOL);
+            connector.setPort(properties.getPort());
+            factory.addAdditionalTomcatConnectors(connector);
+        };
+    }
+}
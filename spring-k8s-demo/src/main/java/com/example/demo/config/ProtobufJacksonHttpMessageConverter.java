@@ -0,0 +1,120 @@
+package com.example.demo.config;
+
+import com.fasterxml.jackson.databind.JavaType;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.protobuf.schema.ProtobufSchema;
+import com.fasterxml.jackson.dataformat.protobuf.schemagen.ProtobufSchemaGenerator;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.AbstractJackson2HttpMessageConverter;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ProtobufJacksonHttpMessageConverter - Protobuf Responses from Response DTOs
+ * Protobuf 消息转换器 - 基于响应 DTO 的 Protobuf 响应
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Writes application/x-protobuf responses with Jackson's protobuf backend. The
+ * protobuf schema is generated once per declared response type from the DTO itself
+ * (e.g. ApiResponse&lt;List&lt;UserResponse&gt;&gt;), so no .proto files or generated
+ * classes have to be maintained; fields are numbered in declaration order. Clients
+ * derive the same schema from the shared DTO classes (ProtobufMapper.generateSchemaFor);
+ * the root message name is sent in the X-Protobuf-Message header.
+ *
+ * Types that cannot be expressed in protobuf (e.g. Map&lt;String, Object&gt; payloads)
+ * are not offered in this format, so such endpoints answer 406 to protobuf-only
+ * clients. Request bodies are read as JSON only.
+ *
+ * 使用 Jackson 的 protobuf 后端写入 application/x-protobuf 响应。protobuf 模式根据
+ * DTO 本身为每个声明的响应类型生成一次（例如 ApiResponse&lt;List&lt;UserResponse&gt;&gt;），
+ * 因此无需维护 .proto 文件或生成的类；字段按声明顺序编号。客户端根据共享的 DTO 类
+ * 生成相同的模式（ProtobufMapper.generateSchemaFor）；根消息名称在 X-Protobuf-Message 头中发送。
+ *
+ * 无法用 protobuf 表达的类型（例如 Map&lt;String, Object&gt; 数据）不提供此格式，
+ * 因此这些端点对只接受 protobuf 的客户端返回 406。请求体仅以 JSON 读取。
+ */
+public class ProtobufJacksonHttpMessageConverter extends AbstractJackson2HttpMessageConverter {
+
+    private static final Logger log = LoggerFactory.getLogger(ProtobufJacksonHttpMessageConverter.class);
+
+    /**
+     * Protobuf media type / Protobuf 媒体类型
+     */
+    public static final MediaType PROTOBUF = new MediaType("application", "x-protobuf");
+
+    /**
+     * Generated schema per declared type (empty if the type has no protobuf form)
+     * 每个声明类型生成的模式（如果类型没有 protobuf 形式则为空）
+     */
+    private final Map<JavaType, Optional<ProtobufSchema>> schemas = new ConcurrentHashMap<>();
+
+    /**
+     * Constructor for ProtobufJacksonHttpMessageConverter
+     * ProtobufJacksonHttpMessageConverter 构造函数
+     *
+     * @param objectMapper ObjectMapper built on a ProtobufFactory / 基于 ProtobufFactory 构建的 ObjectMapper
+     */
+    public ProtobufJacksonHttpMessageConverter(ObjectMapper objectMapper) {
+        super(objectMapper, PROTOBUF);
+    }
+
+    @Override
+    public boolean canRead(Type type, Class<?> contextClass, MediaType mediaType) {
+        return false;
+    }
+
+    @Override
+    public boolean canWrite(Type type, Class<?> clazz, MediaType mediaType) {
+        if (!super.canWrite(type, clazz, mediaType)) {
+            return false;
+        }
+        return schemaFor(getJavaType(type != null ? type : clazz, null)).isPresent();
+    }
+
+    @Override
+    protected ObjectWriter customizeWriter(ObjectWriter writer, JavaType javaType, MediaType contentType) {
+        return javaType == null ? writer : schemaFor(javaType).map(writer::with).orElse(writer);
+    }
+
+    @Override
+    protected void addDefaultHeaders(HttpHeaders headers, Object value, MediaType contentType) throws IOException {
+        super.addDefaultHeaders(headers, value, contentType);
+        if (value != null) {
+            // Declared type is not available here; the runtime class is enough for a root message name
+            // 此处无法获得声明类型；运行时类足以给出根消息名称
+            headers.set("X-Protobuf-Message", value.getClass().getSimpleName());
+        }
+    }
+
+    /**
+     * Protobuf schema for a declared type
+     * 声明类型的 Protobuf 模式
+     *
+     * @param javaType Declared response type / 声明的响应类型
+     * @return Schema, or empty if the type cannot be written as protobuf / 模式，如果类型无法写为 protobuf 则为空
+     */
+    public Optional<ProtobufSchema> schemaFor(JavaType javaType) {
+        return schemas.computeIfAbsent(javaType, type -> {
+            try {
+                ProtobufSchemaGenerator generator = new ProtobufSchemaGenerator();
+                getObjectMapper().acceptJsonFormatVisitor(type, generator);
+                return Optional.of(generator.getGeneratedSchema());
+            } catch (IOException | RuntimeException e) {
+                log.debug("No protobuf schema for {}: {}", type, e.toString());
+                return Optional.empty();
+            }
+        });
+    }
+}
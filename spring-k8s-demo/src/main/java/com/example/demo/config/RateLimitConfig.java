@@ -56,12 +56,13 @@ public class RateLimitConfig {
      * @return Bucket instance with stricter rate limiting / 带有更严格速率限制的 Bucket 实例
      * @description
      * Rate limit: 5 requests per second, burst capacity: 10 requests
-     * Used for authentication endpoints like /api/auth/login, /api/auth/register
-     * Stricter limits to prevent brute force attacks
+     * Used for authentication endpoints like /api/auth/register
+     * Stricter limits to prevent brute force attacks; /api/auth/login is throttled
+     * per account and source IP by LoginThrottle instead
      * 
      * 速率限制：每秒 5 个请求，突发容量：10 个请求
-     * 用于认证端点，如 /api/auth/login、/api/auth/register
-     * 更严格的限制以防止暴力破解攻击
+     * 用于认证端点，如 /api/auth/register
+     * 更严格的限制以防止暴力破解攻击；/api/auth/login 改由 LoginThrottle 按账户和来源 IP 限流
      */
     @Bean(name = "authRateLimitBucket")
     public Bucket authRateLimitBucket() {
@@ -0,0 +1,117 @@
+package com.example.demo.config;
+
+import com.example.demo.repository.ReplicaContext;
+import com.example.demo.service.ReadYourWritesTracker;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ReadWriteRoutingDataSource - Primary/Replica Connection Routing
+ * 读写路由数据源 - 主库/副本连接路由
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Chooses the physical pool when a transaction acquires its connection:
+ * - read-write transactions and non-transactional access use the primary; when such a
+ *   transaction commits, the authenticated user is marked for read-your-writes;
+ * - read-only transactions use an eligible replica, unless the current user wrote
+ *   recently or the caller forced the primary (ReplicaContext), or no replica is within
+ *   the lag bound.
+ *
+ * Must be wrapped in a LazyConnectionDataSourceProxy: the read-only flag of a
+ * transaction is only known after the transaction has begun.
+ * Decisions are counted in app.db.routing{target, reason}.
+ *
+ * 在事务获取连接时选择物理连接池：
+ * - 读写事务和非事务访问使用主库；此类事务提交时，已认证用户被标记为读己之写；
+ * - 只读事务使用可用副本，除非当前用户最近写入过、调用方强制使用主库（ReplicaContext），
+ *   或者没有副本处于延迟上限之内。
+ *
+ * 必须包装在 LazyConnectionDataSourceProxy 中：事务的只读标志只有在事务开始后才可知。
+ * 路由决策计入 app.db.routing{target, reason}。
+ */
+public class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    private static final String PRIMARY = "primary";
+
+    private final ReplicaSelector replicaSelector;
+    private final ReadYourWritesTracker readYourWrites;
+    private final Counter writes;
+    private final Counter stickyReads;
+    private final Counter fallbackReads;
+    private final Counter replicaReads;
+
+    /**
+     * Constructor for ReadWriteRoutingDataSource
+     * ReadWriteRoutingDataSource 构造函数
+     *
+     * @param primary Primary datasource / 主库数据源
+     * @param replicaSelector Replica pools and lag state / 副本连接池和延迟状态
+     * @param readYourWrites Read-your-writes tracker / 读己之写跟踪器
+     * @param meterRegistry Meter registry / 指标注册表
+     */
+    public ReadWriteRoutingDataSource(DataSource primary, ReplicaSelector replicaSelector,
+                                      ReadYourWritesTracker readYourWrites, MeterRegistry meterRegistry) {
+        this.replicaSelector = replicaSelector;
+        this.readYourWrites = readYourWrites;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        List<DataSource> replicas = replicaSelector.getReplicas();
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+        afterPropertiesSet();
+        writes = routingCounter(meterRegistry, PRIMARY, "write");
+        stickyReads = routingCounter(meterRegistry, PRIMARY, "read-your-writes");
+        fallbackReads = routingCounter(meterRegistry, PRIMARY, "replica-unavailable");
+        replicaReads = routingCounter(meterRegistry, "replica", "read-only");
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            if (TransactionSynchronizationManager.isSynchronizationActive()) {
+                writes.increment();
+                TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                    @Override
+                    public void afterCommit() {
+                        readYourWrites.recordWriteByCurrentUser();
+                    }
+                });
+            }
+            return PRIMARY;
+        }
+        if (ReplicaContext.isPrimaryForced() || readYourWrites.isCurrentUserRecent()) {
+            stickyReads.increment();
+            return PRIMARY;
+        }
+        int replica = replicaSelector.pickReplica();
+        if (replica < 0) {
+            fallbackReads.increment();
+            return PRIMARY;
+        }
+        replicaReads.increment();
+        return replica;
+    }
+
+    private static Counter routingCounter(MeterRegistry registry, String target, String reason) {
+        return Counter.builder("app.db.routing")
+            .description("Connections routed to the primary or a replica")
+            .tag("target", target)
+            .tag("reason", reason)
+            .register(registry);
+    }
+}
@@ -1,7 +1,13 @@
 package com.example.demo.config;
 
+import com.example.demo.dto.UserResponse;
+import com.example.demo.service.HotUserCache;
+import com.example.demo.service.PeerCacheService;
+import com.example.demo.service.RedisGuard;
+import com.fasterxml.jackson.databind.JavaType;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.cache.CacheManager;
 import org.springframework.cache.annotation.EnableCaching;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -9,11 +15,16 @@ import org.springframework.data.redis.cache.RedisCacheConfiguration;
 import org.springframework.data.redis.cache.RedisCacheManager;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.data.redis.serializer.RedisSerializationContext;
 import org.springframework.data.redis.serializer.StringRedisSerializer;
 import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
+import org.springframework.data.redis.serializer.RedisSerializer;
 
 import java.time.Duration;
+import java.util.List;
+import java.util.Map;
 
 /**
  * RedisConfig - Redis Configuration Class
@@ -25,57 +36,48 @@ import java.time.Duration;
  * 
  * @description
  * This configuration class sets up Redis for caching and session management.
- * It configures ObjectMapper for Java 8 date/time support, RedisTemplate for
- * direct Redis operations, and RedisCacheManager for Spring Cache abstraction.
+ * It configures RedisTemplate for direct Redis operations and RedisCacheManager
+ * for Spring Cache abstraction, plus a listener container for pub/sub channels
+ * used to keep in-memory state in sync across pods. JSON serializers use copies of the application
+ * ObjectMapper (see JacksonConfig), so Redis settings never leak into HTTP responses.
  * 
  * 该配置类设置 Redis 用于缓存和会话管理。
- * 它配置 ObjectMapper 以支持 Java 8 日期/时间，配置 RedisTemplate 用于
- * 直接 Redis 操作，配置 RedisCacheManager 用于 Spring Cache 抽象。
+ * 它配置 RedisTemplate 用于直接 Redis 操作，配置 RedisCacheManager 用于 Spring Cache 抽象，
+ * 以及用于在 Pod 之间同步内存状态的发布/订阅频道监听容器。
+ * JSON 序列化器使用应用程序 ObjectMapper 的副本（参见 JacksonConfig），
+ * 因此 Redis 设置不会影响 HTTP 响应。
  */
 @Configuration
 @EnableCaching
+@EnableConfigurationProperties(PeerCacheProperties.class)
 public class RedisConfig {
     
     /**
-     * Configure ObjectMapper for Java 8 date/time serialization
-     * 配置 ObjectMapper 以支持 Java 8 日期/时间序列化
-     * 
-     * @return Configured ObjectMapper instance / 配置的 ObjectMapper 实例
-     * @description
-     * Creates an ObjectMapper with JavaTimeModule to support LocalDateTime
-     * and other Java 8 time types. Disables timestamp format for ISO-8601 strings.
-     * 
-     * 创建一个带有 JavaTimeModule 的 ObjectMapper 以支持 LocalDateTime
-     * 和其他 Java 8 时间类型。禁用时间戳格式以使用 ISO-8601 字符串。
+     * Time to live of cache entries / 缓存条目的存活时间
      */
-    @Bean
-    public ObjectMapper objectMapper() {
-        ObjectMapper mapper = new ObjectMapper();
-        // Register Java 8 time module for LocalDateTime support
-        // 注册 Java 8 时间模块以支持 LocalDateTime
-        mapper.registerModule(new JavaTimeModule());
-        // Use ISO-8601 format instead of timestamps
-        // 使用 ISO-8601 格式而不是时间戳
-        mapper.disable(com.fasterxml.jackson.databind.SerializationFeature.WRITE_DATES_AS_TIMESTAMPS);
-        return mapper;
-    }
+    public static final Duration CACHE_TTL = Duration.ofHours(1);
     
     /**
-     * Create JSON serializer with custom ObjectMapper
-     * 使用自定义 ObjectMapper 创建 JSON 序列化器
+     * Key prefix of the "user" cache (RedisCacheManager's "name::" prefix)
+     * "user" 缓存的键前缀（RedisCacheManager 的 "name::" 前缀）
+     */
+    public static final String USER_CACHE_PREFIX = "user::";
+    
+    /**
+     * Create JSON serializer from a copy of the application ObjectMapper
+     * 使用应用程序 ObjectMapper 的副本创建 JSON 序列化器
      * 
-     * @param objectMapper Configured ObjectMapper / 配置的 ObjectMapper
+     * @param objectMapper Application ObjectMapper / 应用程序 ObjectMapper
      * @return GenericJackson2JsonRedisSerializer instance / GenericJackson2JsonRedisSerializer 实例
      * @description
-     * Creates a JSON serializer that uses the configured ObjectMapper
-     * to properly serialize Java 8 date/time types.
+     * Creates a JSON serializer that shares the application's Java 8 date/time and
+     * Blackbird configuration.
      * 
-     * 创建一个使用配置的 ObjectMapper 的 JSON 序列化器
-     * 以正确序列化 Java 8 日期/时间类型。
+     * 创建一个共享应用程序 Java 8 日期/时间和 Blackbird 配置的 JSON 序列化器。
      */
     @Bean
     public GenericJackson2JsonRedisSerializer genericJackson2JsonRedisSerializer(ObjectMapper objectMapper) {
-        return new GenericJackson2JsonRedisSerializer(objectMapper);
+        return new GenericJackson2JsonRedisSerializer(objectMapper.copy());
     }
     
     /**
@@ -106,26 +108,62 @@ public class RedisConfig {
         return template;
     }
     
+    /**
+     * Serializer of "user" cache entries
+     * "user" 缓存条目的序列化器
+     * 
+     * @param objectMapper Application ObjectMapper / 应用程序 ObjectMapper
+     * @return Serializer bound to UserResponse / 绑定到 UserResponse 的序列化器
+     * @description
+     * Shared by the cache manager and the batched lookups in UserService, which read
+     * and write the same entries directly (MGET and pipelined SET).
+     * 由缓存管理器和 UserService 中的批量查找共享，后者直接读写相同的条目（MGET 和流水线 SET）。
+     */
+    @Bean
+    public Jackson2JsonRedisSerializer<UserResponse> userCacheSerializer(ObjectMapper objectMapper) {
+        return new Jackson2JsonRedisSerializer<>(objectMapper.copy(), UserResponse.class);
+    }
+    
     /**
      * Configure RedisCacheManager for Spring Cache
      * 配置 RedisCacheManager 用于 Spring Cache
      * 
      * @param connectionFactory Redis connection factory / Redis 连接工厂
      * @param jsonSerializer JSON serializer for cache values / 用于缓存值的 JSON 序列化器
-     * @return Configured RedisCacheManager / 配置的 RedisCacheManager
+     * @param userCacheSerializer Serializer of "user" cache entries / "user" 缓存条目的序列化器
+     * @param objectMapper Application ObjectMapper / 应用程序 ObjectMapper
+     * @param redisGuard Redis circuit breaker / Redis 熔断器
+     * @param hotUsers Hot-key tracker and local tier of the "user" cache / "user" 缓存的热点键跟踪器和本地层
+     * @param peerCache Peer-to-peer cache across the pods / 跨 Pod 的对等缓存
+     * @return Configured CacheManager / 配置的 CacheManager
      * @description
      * Configures RedisCacheManager with 1-hour TTL, JSON serialization,
-     * and null value caching disabled.
+     * and null value caching disabled. The "user" and "users" caches use serializers
+     * bound to their value type (UserResponse, List&lt;UserResponse&gt;), so entries are
+     * read back without type metadata in the payload, and password hashes never reach Redis. The manager is wrapped in
+     * ResilientCacheManager so that caches fall back to the database while Redis is
+     * unavailable, and the "user" cache gets the local hot tier of HotUserCache in front.
+     * With peer-cache.enabled the same caches and serializers are kept in the pods'
+     * memory instead (PeerCacheManager), still behind the hot tier.
      * 
      * 配置 RedisCacheManager，TTL 为 1 小时，使用 JSON 序列化，
-     * 并禁用 null 值缓存。
+     * 并禁用 null 值缓存。"user" 和 "users" 缓存使用绑定到其值类型（UserResponse、List&lt;UserResponse&gt;）
+     * 的序列化器，因此条目无需在数据中携带类型元数据即可读回，且密码哈希从不进入 Redis。
+     * 管理器被包装在 ResilientCacheManager 中，使 Redis 不可用时缓存降级到数据库，并在 "user" 缓存前放置
+     * HotUserCache 的本地热点层。
+     * 设置 peer-cache.enabled 时，相同的缓存和序列化器改为保存在 Pod 内存中（PeerCacheManager），仍位于热点层之后。
      */
     @Bean
-    public RedisCacheManager cacheManager(RedisConnectionFactory connectionFactory,
-                                          GenericJackson2JsonRedisSerializer jsonSerializer) {
+    public CacheManager cacheManager(RedisConnectionFactory connectionFactory,
+                                     GenericJackson2JsonRedisSerializer jsonSerializer,
+                                     Jackson2JsonRedisSerializer<UserResponse> userCacheSerializer,
+                                     ObjectMapper objectMapper,
+                                     RedisGuard redisGuard,
+                                     HotUserCache hotUsers,
+                                     PeerCacheService peerCache) {
         RedisCacheConfiguration config = RedisCacheConfiguration.defaultCacheConfig()
             // Set cache TTL to 1 hour / 设置缓存 TTL 为 1 小时
-            .entryTtl(Duration.ofHours(1))
+            .entryTtl(CACHE_TTL)
             // Use String serializer for keys / 对键使用字符串序列化器
             .serializeKeysWith(RedisSerializationContext.SerializationPair.fromSerializer(new StringRedisSerializer()))
             // Use JSON serializer for values / 对值使用 JSON 序列化器
@@ -133,8 +171,46 @@ public class RedisConfig {
             // Disable caching null values / 禁用缓存 null 值
             .disableCachingNullValues();
         
-        return RedisCacheManager.builder(connectionFactory)
-            .cacheDefaults(config)
-            .build();
+        ObjectMapper cacheMapper = objectMapper.copy();
+        JavaType userList = cacheMapper.getTypeFactory().constructCollectionType(List.class, UserResponse.class);
+        RedisSerializer<List<UserResponse>> userListSerializer = new Jackson2JsonRedisSerializer<>(cacheMapper, userList);
+        
+        CacheManager remote;
+        if (peerCache.isEnabled()) {
+            remote = new PeerCacheManager(peerCache,
+                Map.of("user", userCacheSerializer, "users", userListSerializer), jsonSerializer);
+        } else {
+            RedisCacheManager redisCacheManager = RedisCacheManager.builder(connectionFactory)
+                .cacheDefaults(config)
+                .withCacheConfiguration("user", config.serializeValuesWith(RedisSerializationContext.SerializationPair
+                    .fromSerializer(userCacheSerializer)))
+                .withCacheConfiguration("users", config.serializeValuesWith(RedisSerializationContext.SerializationPair
+                    .fromSerializer(userListSerializer)))
+                .build();
+            redisCacheManager.afterPropertiesSet();
+            remote = new ResilientCacheManager(redisCacheManager, redisGuard);
+        }
+        return new TieredCacheManager(remote, "user", hotUsers::tier);
+    }
+    
+    /**
+     * Create the pub/sub listener container
+     * 创建发布/订阅监听容器
+     * 
+     * @param connectionFactory Redis connection factory / Redis 连接工厂
+     * @return Listener container; components register their channels on it / 监听容器；组件在其上注册各自的频道
+     * @description
+     * Uses one dedicated subscriber connection and re-subscribes on its own after a
+     * connection loss. Messages published while a pod is disconnected are lost, so
+     * subscribers must be able to resynchronize (see RedisGuard.onRecovery).
+     * 
+     * 使用一个专用的订阅连接，连接断开后自动重新订阅。Pod 断开期间发布的消息会丢失，
+     * 因此订阅者必须能够重新同步（参见 RedisGuard.onRecovery）。
+     */
+    @Bean
+    public RedisMessageListenerContainer redisMessageListenerContainer(RedisConnectionFactory connectionFactory) {
+        RedisMessageListenerContainer container = new RedisMessageListenerContainer();
+        container.setConnectionFactory(connectionFactory);
+        return container;
     }
 }
@@ -0,0 +1,91 @@
+package com.example.demo.config;
+
+import com.example.demo.service.ReadYourWritesTracker;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+/**
+ * ReplicaConfig - Read Replica DataSource Configuration
+ * 副本配置 - 读副本数据源配置
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Active when replica.enabled=true and sharding is disabled. Builds the primary pool
+ * from spring.datasource.* (pool name "primary"), one pool per replica.replicas entry,
+ * and exposes a lazy read/write routing DataSource as the application DataSource.
+ * Read-only transactions (@Transactional(readOnly = true)) are served by replicas.
+ * All pools are exported as hikaricp_* metrics tagged by pool name.
+ *
+ * 当 replica.enabled=true 且未启用分片时生效。根据 spring.datasource.* 构建主库连接池
+ * （连接池名称 "primary"），为每个 replica.replicas 条目构建一个连接池，
+ * 并将延迟读写路由数据源作为应用数据源暴露。只读事务（@Transactional(readOnly = true)）
+ * 由副本提供服务。所有连接池都导出为按连接池名称打标签的 hikaricp_* 指标。
+ */
+@Configuration
+@ConditionalOnExpression("${replica.enabled:false} and !${sharding.enabled:false}")
+@EnableConfigurationProperties(ReplicaProperties.class)
+public class ReplicaConfig {
+
+    /**
+     * Primary pool built from spring.datasource.* and spring.datasource.hikari.*
+     * 根据 spring.datasource.* 和 spring.datasource.hikari.* 构建的主库连接池
+     *
+     * @param dataSourceProperties Spring datasource properties / Spring 数据源属性
+     * @return Primary Hikari pool / 主库 Hikari 连接池
+     */
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties dataSourceProperties) {
+        HikariDataSource primary = dataSourceProperties.initializeDataSourceBuilder()
+            .type(HikariDataSource.class)
+            .build();
+        primary.setPoolName("primary");
+        return primary;
+    }
+
+    /**
+     * Replica pools and lag monitoring
+     * 副本连接池和延迟监控
+     *
+     * @param primaryDataSource Primary pool / 主库连接池
+     * @param properties Replica properties / 副本属性
+     * @param meterRegistry Meter registry / 指标注册表
+     * @return ReplicaSelector / 副本选择器
+     */
+    @Bean
+    public ReplicaSelector replicaSelector(HikariDataSource primaryDataSource, ReplicaProperties properties,
+                                           MeterRegistry meterRegistry) {
+        return new ReplicaSelector(primaryDataSource, properties, meterRegistry);
+    }
+
+    /**
+     * Application DataSource: lazy proxy over the read/write router
+     * 应用数据源：读写路由器之上的延迟代理
+     *
+     * @param primaryDataSource Primary pool / 主库连接池
+     * @param replicaSelector Replica selector / 副本选择器
+     * @param readYourWrites Read-your-writes tracker / 读己之写跟踪器
+     * @param meterRegistry Meter registry / 指标注册表
+     * @return Routing DataSource / 路由数据源
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(HikariDataSource primaryDataSource, ReplicaSelector replicaSelector,
+                                 ReadYourWritesTracker readYourWrites, MeterRegistry meterRegistry) {
+        return new LazyConnectionDataSourceProxy(
+            new ReadWriteRoutingDataSource(primaryDataSource, replicaSelector, readYourWrites, meterRegistry));
+    }
+}
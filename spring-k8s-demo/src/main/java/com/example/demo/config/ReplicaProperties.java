@@ -0,0 +1,180 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ReplicaProperties - Read Replica Configuration Properties
+ * 读副本配置属性
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Binds the "replica.*" properties. The primary keeps using spring.datasource.*;
+ * each entry of replica.replicas adds one read-only pool.
+ *
+ * 绑定 "replica.*" 属性。主库继续使用 spring.datasource.*；replica.replicas 的每个条目
+ * 增加一个只读连接池。
+ */
+@ConfigurationProperties(prefix = "replica")
+public class ReplicaProperties {
+
+    /**
+     * Enable replica routing / 启用副本路由
+     */
+    private boolean enabled;
+
+    /**
+     * Replicas lagging more than this are skipped / 延迟超过此值的副本将被跳过
+     */
+    private Duration maxLag = Duration.ofSeconds(2);
+
+    /**
+     * How often replica lag is measured / 测量副本延迟的频率
+     */
+    private Duration lagCheckInterval = Duration.ofSeconds(1);
+
+    /**
+     * How replica lag is measured / 测量副本延迟的方式
+     */
+    private LagSource lagSource = LagSource.HEARTBEAT;
+
+    /**
+     * Replica datasources / 副本数据源
+     */
+    private List<Replica> replicas = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getMaxLag() {
+        return maxLag;
+    }
+
+    public void setMaxLag(Duration maxLag) {
+        this.maxLag = maxLag;
+    }
+
+    public Duration getLagCheckInterval() {
+        return lagCheckInterval;
+    }
+
+    public void setLagCheckInterval(Duration lagCheckInterval) {
+        this.lagCheckInterval = lagCheckInterval;
+    }
+
+    public LagSource getLagSource() {
+        return lagSource;
+    }
+
+    public void setLagSource(LagSource lagSource) {
+        this.lagSource = lagSource;
+    }
+
+    public List<Replica> getReplicas() {
+        return replicas;
+    }
+
+    public void setReplicas(List<Replica> replicas) {
+        this.replicas = replicas;
+    }
+
+    /**
+     * Replica lag measurement strategy
+     * 副本延迟测量策略
+     */
+    public enum LagSource {
+        /**
+         * The primary writes a timestamp to replication_heartbeat; lag is its age on the replica
+         * 主库向 replication_heartbeat 写入时间戳；延迟为该时间戳在副本上的时长
+         */
+        HEARTBEAT,
+        /**
+         * Only check that the replica answers (for replicas that are not replicated, e.g. local tests)
+         * 仅检查副本是否响应（用于未实际复制的副本，例如本地测试）
+         */
+        NONE
+    }
+
+    /**
+     * Connection settings for one replica
+     * 单个副本的连接设置
+     */
+    public static class Replica {
+
+        /**
+         * JDBC URL / JDBC URL
+         */
+        private String url;
+
+        /**
+         * Database user / 数据库用户
+         */
+        private String username;
+
+        /**
+         * Database password / 数据库密码
+         */
+        private String password;
+
+        /**
+         * Maximum pool size / 最大连接池大小
+         */
+        private int maximumPoolSize = 10;
+
+        /**
+         * Minimum idle connections / 最小空闲连接数
+         */
+        private int minimumIdle = 2;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+
+        public int getMinimumIdle() {
+            return minimumIdle;
+        }
+
+        public void setMinimumIdle(int minimumIdle) {
+            this.minimumIdle = minimumIdle;
+        }
+    }
+}
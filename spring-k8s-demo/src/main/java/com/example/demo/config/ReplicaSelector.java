@@ -0,0 +1,221 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ReplicaSelector - Replica Pools with Lag-Aware Selection
+ * 副本选择器 - 带延迟感知选择的副本连接池
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Owns one Hikari pool per replica (pool name "replica-N") and measures each replica's
+ * lag every replica.lag-check-interval. With the HEARTBEAT source the primary stamps
+ * replication_heartbeat and the lag is the age of that stamp as seen on the replica,
+ * which works for any replication technology without extra privileges. Replicas that
+ * lag more than replica.max-lag or cannot be queried are skipped; when none is
+ * eligible, reads fall back to the primary.
+ *
+ * Metrics: app.db.replica.lag (seconds, NaN when unreachable) and
+ * app.db.replica.eligible (1/0), tagged by replica.
+ *
+ * 为每个副本维护一个 Hikari 连接池（连接池名称 "replica-N"），并每隔
+ * replica.lag-check-interval 测量每个副本的延迟。使用 HEARTBEAT 方式时，主库在
+ * replication_heartbeat 中写入时间戳，延迟即该时间戳在副本上的时长，
+ * 适用于任何复制技术且无需额外权限。延迟超过 replica.max-lag 或无法查询的副本将被跳过；
+ * 没有可用副本时，读取回退到主库。
+ *
+ * 指标：app.db.replica.lag（秒，不可达时为 NaN）和 app.db.replica.eligible（1/0），按副本打标签。
+ */
+public class ReplicaSelector implements InitializingBean, DisposableBean {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaSelector.class);
+
+    /**
+     * Lag value of a replica that could not be measured / 无法测量的副本的延迟值
+     */
+    private static final long UNREACHABLE = -1;
+
+    private final JdbcTemplate primary;
+    private final ReplicaProperties properties;
+    private final List<HikariDataSource> replicas = new ArrayList<>();
+    private final List<JdbcTemplate> replicaTemplates = new ArrayList<>();
+    private final AtomicLongArray lagMillis;
+    private final AtomicInteger roundRobin = new AtomicInteger();
+    private ScheduledExecutorService scheduler;
+
+    /**
+     * Constructor for ReplicaSelector
+     * ReplicaSelector 构造函数
+     *
+     * @param primary Primary datasource (heartbeat writes) / 主库数据源（心跳写入）
+     * @param properties Replica properties / 副本属性
+     * @param meterRegistry Meter registry / 指标注册表
+     */
+    public ReplicaSelector(DataSource primary, ReplicaProperties properties, MeterRegistry meterRegistry) {
+        this.primary = new JdbcTemplate(primary);
+        this.properties = properties;
+        for (int i = 0; i < properties.getReplicas().size(); i++) {
+            HikariDataSource replica = createPool(i, properties.getReplicas().get(i), meterRegistry);
+            replicas.add(replica);
+            replicaTemplates.add(new JdbcTemplate(replica));
+        }
+        lagMillis = new AtomicLongArray(replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            lagMillis.set(i, UNREACHABLE);
+            final int index = i;
+            Gauge.builder("app.db.replica.lag", lagMillis, lags -> lags.get(index) == UNREACHABLE
+                    ? Double.NaN : lags.get(index) / 1000.0)
+                .description("Measured replication lag in seconds")
+                .tag("replica", "replica-" + i)
+                .register(meterRegistry);
+            Gauge.builder("app.db.replica.eligible", this, selector -> selector.isEligible(index) ? 1 : 0)
+                .description("Whether the replica currently serves reads")
+                .tag("replica", "replica-" + i)
+                .register(meterRegistry);
+        }
+    }
+
+    /**
+     * Prepare the heartbeat table and start measuring lag
+     * 准备心跳表并开始测量延迟
+     */
+    @Override
+    public void afterPropertiesSet() {
+        if (properties.getLagSource() == ReplicaProperties.LagSource.HEARTBEAT) {
+            primary.execute("CREATE TABLE IF NOT EXISTS replication_heartbeat ("
+                + "id INT NOT NULL PRIMARY KEY, beat_at BIGINT NOT NULL)");
+            try {
+                primary.update("INSERT INTO replication_heartbeat (id, beat_at) VALUES (1, ?)", System.currentTimeMillis());
+            } catch (DuplicateKeyException e) {
+                // Row already created by another pod / 该行已由其他 Pod 创建
+            }
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "replica-lag-check");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long interval = properties.getLagCheckInterval().toMillis();
+        scheduler.scheduleWithFixedDelay(this::check, 0, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Stop measuring and close the replica pools
+     * 停止测量并关闭副本连接池
+     */
+    @Override
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+        replicas.forEach(HikariDataSource::close);
+    }
+
+    /**
+     * Physical replica datasources
+     * 物理副本数据源
+     *
+     * @return Replica datasources, in index order / 副本数据源，按索引顺序
+     */
+    public List<DataSource> getReplicas() {
+        return List.copyOf(replicas);
+    }
+
+    /**
+     * Pick the next eligible replica (round-robin)
+     * 选择下一个可用副本（轮询）
+     *
+     * @return Replica index, or -1 if reads must go to the primary / 副本索引，如果读取必须路由到主库则返回 -1
+     */
+    public int pickReplica() {
+        int count = replicas.size();
+        int start = Math.floorMod(roundRobin.getAndIncrement(), Math.max(count, 1));
+        for (int i = 0; i < count; i++) {
+            int candidate = (start + i) % count;
+            if (isEligible(candidate)) {
+                return candidate;
+            }
+        }
+        return -1;
+    }
+
+    private boolean isEligible(int replica) {
+        return isAcceptable(lagMillis.get(replica));
+    }
+
+    private boolean isAcceptable(long lag) {
+        return lag != UNREACHABLE && lag <= properties.getMaxLag().toMillis();
+    }
+
+    /**
+     * Stamp the heartbeat on the primary and measure every replica
+     * 在主库上写入心跳并测量每个副本
+     */
+    private void check() {
+        boolean heartbeat = properties.getLagSource() == ReplicaProperties.LagSource.HEARTBEAT;
+        if (heartbeat) {
+            try {
+                primary.update("UPDATE replication_heartbeat SET beat_at = ? WHERE id = 1", System.currentTimeMillis());
+            } catch (RuntimeException e) {
+                log.warn("Replication heartbeat write failed: {}", e.toString());
+            }
+        }
+        for (int i = 0; i < replicaTemplates.size(); i++) {
+            long lag = measure(replicaTemplates.get(i), heartbeat);
+            long previous = lagMillis.getAndSet(i, lag);
+            if (isAcceptable(previous) != isAcceptable(lag)) {
+                log.info("Replica replica-{} {} (lag {} ms)", i, isAcceptable(lag) ? "serving reads" : "skipped", lag);
+            }
+        }
+    }
+
+    private long measure(JdbcTemplate replica, boolean heartbeat) {
+        try {
+            if (!heartbeat) {
+                replica.queryForObject("SELECT 1", Integer.class);
+                return 0;
+            }
+            Long beatAt = replica.queryForObject("SELECT beat_at FROM replication_heartbeat WHERE id = 1", Long.class);
+            return beatAt == null ? UNREACHABLE : Math.max(0, System.currentTimeMillis() - beatAt);
+        } catch (RuntimeException e) {
+            return UNREACHABLE;
+        }
+    }
+
+    private HikariDataSource createPool(int index, ReplicaProperties.Replica replica, MeterRegistry meterRegistry) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("replica-" + index);
+        config.setJdbcUrl(replica.getUrl());
+        config.setUsername(replica.getUsername());
+        config.setPassword(replica.getPassword());
+        config.setMaximumPoolSize(replica.getMaximumPoolSize());
+        config.setMinimumIdle(replica.getMinimumIdle());
+        config.setReadOnly(true);
+        // A missing replica must not prevent startup; reads use the primary until it answers
+        // 缺失的副本不能阻止启动；在其响应之前读取使用主库
+        config.setInitializationFailTimeout(-1);
+        config.setMetricRegistry(meterRegistry);
+        return new HikariDataSource(config);
+    }
+}
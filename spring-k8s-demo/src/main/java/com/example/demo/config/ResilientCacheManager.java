@@ -0,0 +1,153 @@
+package com.example.demo.config;
+
+import com.example.demo.service.RedisGuard;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * ResilientCacheManager - Circuit-Breaking Cache Decorator
+ * 弹性缓存管理器 - 带熔断的缓存装饰器
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Decorates the Redis cache manager so that every cache operation goes through
+ * RedisGuard. While Redis is unavailable, reads behave as cache misses (the annotated
+ * method runs against the database) and writes are skipped. Evictions skipped during an
+ * outage mark the cache as dirty, and dirty caches are cleared as soon as the circuit
+ * closes so no stale entry survives the outage.
+ *
+ * 装饰 Redis 缓存管理器，使每个缓存操作都经过 RedisGuard。Redis 不可用时，
+ * 读取表现为缓存未命中（被注解的方法直接查询数据库），写入被跳过。
+ * 故障期间跳过的驱逐会将缓存标记为脏，熔断器关闭后立即清空脏缓存，
+ * 确保故障期间不会残留过期条目。
+ */
+public class ResilientCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final RedisGuard redisGuard;
+    private final Map<String, Cache> caches = new ConcurrentHashMap<>();
+    private final Set<String> dirtyCaches = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Constructor for ResilientCacheManager
+     * ResilientCacheManager 构造函数
+     *
+     * @param delegate Redis-backed cache manager / 基于 Redis 的缓存管理器
+     * @param redisGuard Redis circuit breaker / Redis 熔断器
+     */
+    public ResilientCacheManager(CacheManager delegate, RedisGuard redisGuard) {
+        this.delegate = delegate;
+        this.redisGuard = redisGuard;
+        redisGuard.onRecovery(this::clearDirtyCaches);
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        Cache cache = caches.get(name);
+        if (cache == null) {
+            Cache target = delegate.getCache(name);
+            if (target == null) {
+                return null;
+            }
+            cache = caches.computeIfAbsent(name, n -> new ResilientCache(target));
+        }
+        return cache;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+
+    /**
+     * Clear caches whose evictions were skipped during the outage
+     * 清空故障期间跳过驱逐的缓存
+     */
+    private void clearDirtyCaches() {
+        for (String name : dirtyCaches) {
+            Cache target = delegate.getCache(name);
+            if (target != null && redisGuard.run(target::clear)) {
+                dirtyCaches.remove(name);
+            }
+        }
+    }
+
+    /**
+     * Cache wrapper routing all calls through the circuit breaker
+     * 将所有调用路由到熔断器的缓存包装器
+     */
+    private final class ResilientCache implements Cache {
+
+        private final Cache target;
+
+        ResilientCache(Cache target) {
+            this.target = target;
+        }
+
+        @Override
+        public String getName() {
+            return target.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return target.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            return redisGuard.call(() -> target.get(key), () -> null);
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            return redisGuard.call(() -> target.get(key, type), () -> null);
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            ValueWrapper cached = get(key);
+            if (cached != null) {
+                @SuppressWarnings("unchecked")
+                T value = (T) cached.get();
+                return value;
+            }
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            put(key, value);
+            return value;
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            redisGuard.run(() -> target.put(key, value));
+        }
+
+        @Override
+        public void evict(Object key) {
+            if (!redisGuard.run(() -> target.evict(key))) {
+                dirtyCaches.add(target.getName());
+            }
+        }
+
+        @Override
+        public void clear() {
+            if (!redisGuard.run(target::clear)) {
+                dirtyCaches.add(target.getName());
+            }
+        }
+    }
+}
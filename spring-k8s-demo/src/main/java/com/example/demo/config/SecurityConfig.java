@@ -2,10 +2,12 @@ package com.example.demo.config;
 
 import com.example.demo.filter.JwtAuthenticationFilter;
 import com.example.demo.filter.RateLimitFilter;
+import com.example.demo.service.PeerCacheService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.http.HttpMethod;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.config.annotation.authentication.configuration.AuthenticationConfiguration;
 import org.springframework.security.config.annotation.method.configuration.EnableMethodSecurity;
@@ -18,6 +20,7 @@ import org.springframework.web.cors.CorsConfiguration;
 import org.springframework.web.cors.CorsConfigurationSource;
 import org.springframework.web.cors.UrlBasedCorsConfigurationSource;
 
+import jakarta.servlet.DispatcherType;
 import jakarta.servlet.http.HttpServletResponse;
 import java.util.Arrays;
 import java.util.List;
@@ -57,6 +60,13 @@ public class SecurityConfig {
     @Autowired
     private RateLimitFilter rateLimitFilter;
     
+    /**
+     * Peer Cache Service - Identifies the internal peer cache port
+     * 对等缓存服务 - 识别内部对等缓存端口
+     */
+    @Autowired
+    private PeerCacheService peerCache;
+    
     /**
      * Configure AuthenticationManager bean
      * 配置 AuthenticationManager Bean
@@ -83,7 +93,9 @@ public class SecurityConfig {
      * - CORS enabled
      * - Stateless session management
      * - Public endpoints: /api/auth/**, /actuator/**, /error
+     * - Admin endpoints: /api/users/stats, /api/admin/**, POST /api/auth/forward/batch
      * - Protected endpoints: all other /api/** endpoints
+     * - Peer cache port (peer-cache.port): only /internal/cache/**, secret checked by the controller
      * - Custom exception handlers for authentication and authorization
      * - Filter order: RateLimitFilter -> JwtAuthenticationFilter
      * 
@@ -92,7 +104,9 @@ public class SecurityConfig {
      * - 启用 CORS
      * - 无状态会话管理
      * - 公共端点：/api/auth/**, /actuator/**, /error
+     * - 管理员端点：/api/users/stats, /api/admin/**, POST /api/auth/forward/batch
      * - 受保护端点：所有其他 /api/** 端点
+     * - 对等缓存端口（peer-cache.port）：只有 /internal/cache/**，密钥由控制器校验
      * - 自定义异常处理器用于认证和授权
      * - 过滤器顺序：RateLimitFilter -> JwtAuthenticationFilter
      */
@@ -102,12 +116,28 @@ public class SecurityConfig {
             .cors(cors -> cors.configurationSource(corsConfigurationSource()))
             .sessionManagement(session -> session.sessionCreationPolicy(SessionCreationPolicy.STATELESS))
             .authorizeHttpRequests(auth -> auth
+                // Peer cache calls between pods on the internal port, checked by
+                // PeerCacheController's shared secret; the internal port serves nothing else
+                // Pod 之间在内部端口上的对等缓存调用，由 PeerCacheController 的共享密钥校验；内部端口不提供其他内容
+                .requestMatchers(request -> peerCache.isPeerPort(request.getLocalPort())
+                    && request.getRequestURI().startsWith("/internal/cache/")).permitAll()
+                .requestMatchers(request -> peerCache.isPeerPort(request.getLocalPort())).denyAll()
+                // Batch token validation is for internal services only: it verifies up to
+                // 500 tokens per call and would otherwise be an open token validity oracle
+                // 批量令牌验证仅供内部服务使用：每次调用最多验证 500 个令牌，否则就是公开的令牌有效性探测器
+                .requestMatchers(HttpMethod.POST, "/api/auth/forward/batch").hasRole("ADMIN")
                 // Public endpoints - No authentication required
                 // 公共端点 - 不需要认证
                 .requestMatchers("/api/auth/**").permitAll()
                 .requestMatchers("/api/hello", "/api/info", "/api/health").permitAll()
                 .requestMatchers("/actuator/**").permitAll()
                 .requestMatchers("/error").permitAll()
+                // Async dispatches (e.g. SSE timeouts) continue a request that was already
+                // authorized; the stateless JWT filter does not run on them
+                // 异步分派（例如 SSE 超时）延续已授权的请求；无状态 JWT 过滤器不在其上运行
+                .dispatcherTypeMatchers(DispatcherType.ASYNC).permitAll()
+                // Admin endpoints / 管理员端点
+                .requestMatchers("/api/users/stats", "/api/admin/**").hasRole("ADMIN")
                 // Protected endpoints - Require authentication
                 // 受保护端点 - 需要认证
                 .anyRequest().authenticated()
@@ -118,8 +148,9 @@ public class SecurityConfig {
                 .authenticationEntryPoint((request, response, authException) -> {
                     String path = request.getRequestURI();
                     // For /api/auth/** paths, should not trigger authentication failure
-                    // 对于 /api/auth/** 路径，不应该触发认证失败
-                    if (path.startsWith("/api/auth/")) {
+                    // (except the batch validation endpoint, which requires a token)
+                    // 对于 /api/auth/** 路径，不应该触发认证失败（需要令牌的批量验证端点除外）
+                    if (path.startsWith("/api/auth/") && !path.equals("/api/auth/forward/batch")) {
                         // Allow processing to continue, should not intercept here
                         // 允许继续处理，不应该在这里拦截
                         response.setStatus(HttpServletResponse.SC_OK);
@@ -169,7 +200,7 @@ public class SecurityConfig {
             "http://flashswap09.online"    // Production HTTP / 生产环境 HTTP
         ));
         // Allowed HTTP methods / 允许的 HTTP 方法
-        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "DELETE", "OPTIONS"));
+        configuration.setAllowedMethods(Arrays.asList("GET", "POST", "PUT", "PATCH", "DELETE", "OPTIONS"));
         // Allowed headers / 允许的头
         configuration.setAllowedHeaders(Arrays.asList("*"));
         // Allow credentials (cookies, authorization headers) / 允许凭据（cookie、授权头）
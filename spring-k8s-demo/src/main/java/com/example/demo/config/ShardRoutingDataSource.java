@@ -0,0 +1,79 @@
+package com.example.demo.config;
+
+import com.example.demo.repository.ShardContext;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+import javax.sql.DataSource;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * ShardRoutingDataSource - DataSource Routing by Bound Shard
+ * 分片路由数据源 - 按绑定分片路由的数据源
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Routes each connection request to the shard bound in ShardContext. Unbound access
+ * (schema checks, health checks, plain JPQL) goes to shard 0. It must be wrapped in a
+ * LazyConnectionDataSourceProxy so that the physical connection is only requested after
+ * the repository has bound the transaction.
+ *
+ * 将每个连接请求路由到 ShardContext 中绑定的分片。未绑定的访问（架构检查、健康检查、
+ * 普通 JPQL）路由到分片 0。必须包装在 LazyConnectionDataSourceProxy 中，
+ * 以确保在仓库绑定事务之后才请求物理连接。
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+
+    private final List<DataSource> shards;
+
+    /**
+     * Constructor for ShardRoutingDataSource
+     * ShardRoutingDataSource 构造函数
+     *
+     * @param shards Shard datasources, in shard index order / 分片数据源，按分片索引顺序
+     */
+    public ShardRoutingDataSource(List<DataSource> shards) {
+        this.shards = List.copyOf(shards);
+        Map<Object, Object> targets = new HashMap<>();
+        for (int i = 0; i < shards.size(); i++) {
+            targets.put(i, shards.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(shards.get(0));
+        setLenientFallback(false);
+        afterPropertiesSet();
+    }
+
+    /**
+     * Get the physical shard datasources
+     * 获取物理分片数据源
+     *
+     * @return Shard datasources, in shard index order / 分片数据源，按分片索引顺序
+     */
+    public List<DataSource> getShards() {
+        return shards;
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardContext.current();
+    }
+
+    /**
+     * Close the shard pools on shutdown
+     * 关闭时关闭分片连接池
+     */
+    @Override
+    public void destroy() throws Exception {
+        for (DataSource shard : shards) {
+            if (shard instanceof AutoCloseable closeable) {
+                closeable.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,107 @@
+package com.example.demo.config;
+
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.DatabasePopulatorUtils;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ShardingConfig - Sharded DataSource Configuration
+ * 分片配置 - 分片数据源配置
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Active only when sharding.enabled=true. Creates one Hikari pool per configured shard
+ * (pool name "shard-N", exported as hikaricp_* metrics), applies the shard schema to
+ * every shard and the email directory schema to shard 0, and replaces the auto-configured
+ * DataSource with a lazy proxy over the shard routing DataSource. Users are placed on
+ * shard hash(id) % N; see ShardRouter.
+ *
+ * 仅在 sharding.enabled=true 时生效。为每个配置的分片创建一个 Hikari 连接池
+ * （连接池名称 "shard-N"，导出为 hikaricp_* 指标），对每个分片应用分片架构，
+ * 对分片 0 应用邮箱目录架构，并用分片路由数据源之上的延迟代理替换自动配置的数据源。
+ * 用户存放在分片 hash(id) % N 上；参见 ShardRouter。
+ */
+@Configuration
+@ConditionalOnProperty(name = "sharding.enabled", havingValue = "true")
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    /**
+     * Schema applied to every shard / 应用于每个分片的架构
+     */
+    static final String SHARD_SCHEMA = "db/sharding/shard-schema.sql";
+
+    /**
+     * Schema applied to shard 0 only (global directory) / 仅应用于分片 0 的架构（全局目录）
+     */
+    static final String DIRECTORY_SCHEMA = "db/sharding/directory-schema.sql";
+
+    /**
+     * Shard routing DataSource over one Hikari pool per shard
+     * 每个分片一个 Hikari 连接池之上的分片路由数据源
+     *
+     * @param properties Sharding properties / 分片属性
+     * @param meterRegistry Meter registry for pool metrics / 连接池指标的指标注册表
+     * @return Configured ShardRoutingDataSource / 配置好的 ShardRoutingDataSource
+     */
+    @Bean
+    public ShardRoutingDataSource shardRoutingDataSource(ShardingProperties properties,
+                                                         MeterRegistry meterRegistry) {
+        if (properties.getShards().isEmpty()) {
+            throw new IllegalStateException("sharding.enabled=true but no sharding.shards are configured");
+        }
+        List<DataSource> shards = new ArrayList<>();
+        for (int i = 0; i < properties.getShards().size(); i++) {
+            HikariDataSource shard = createPool(i, properties.getShards().get(i), meterRegistry);
+            ResourceDatabasePopulator populator = new ResourceDatabasePopulator(new ClassPathResource(SHARD_SCHEMA));
+            if (i == 0) {
+                populator.addScript(new ClassPathResource(DIRECTORY_SCHEMA));
+            }
+            DatabasePopulatorUtils.execute(populator, shard);
+            shards.add(shard);
+        }
+        return new ShardRoutingDataSource(shards);
+    }
+
+    /**
+     * Primary DataSource used by JPA - connections are fetched lazily so that the
+     * repository can bind the shard first
+     * JPA 使用的主数据源 - 延迟获取连接，以便仓库先绑定分片
+     *
+     * @param routing Shard routing DataSource / 分片路由数据源
+     * @return Lazy connection proxy / 延迟连接代理
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(ShardRoutingDataSource routing) {
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+
+    private HikariDataSource createPool(int index, ShardingProperties.Shard shard, MeterRegistry meterRegistry) {
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("shard-" + index);
+        config.setJdbcUrl(shard.getUrl());
+        config.setUsername(shard.getUsername());
+        config.setPassword(shard.getPassword());
+        config.setMaximumPoolSize(shard.getMaximumPoolSize());
+        config.setMinimumIdle(shard.getMinimumIdle());
+        config.setMetricRegistry(meterRegistry);
+        return new HikariDataSource(config);
+    }
+}
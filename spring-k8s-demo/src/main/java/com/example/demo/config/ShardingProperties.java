@@ -0,0 +1,122 @@
+package com.example.demo.config;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * ShardingProperties - Sharding Configuration Properties
+ * 分片配置属性
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Binds the "sharding.*" properties: one entry per shard datasource. Shard 0 also
+ * holds the global email directory and the id sequence.
+ *
+ * 绑定 "sharding.*" 属性：每个分片数据源一个条目。分片 0 同时保存全局邮箱目录和 ID 序列。
+ */
+@ConfigurationProperties(prefix = "sharding")
+public class ShardingProperties {
+
+    /**
+     * Enable sharding / 启用分片
+     */
+    private boolean enabled;
+
+    /**
+     * Shard datasources, in shard index order / 分片数据源，按分片索引顺序
+     */
+    private List<Shard> shards = new ArrayList<>();
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public List<Shard> getShards() {
+        return shards;
+    }
+
+    public void setShards(List<Shard> shards) {
+        this.shards = shards;
+    }
+
+    /**
+     * Connection settings for one shard
+     * 单个分片的连接设置
+     */
+    public static class Shard {
+
+        /**
+         * JDBC URL / JDBC URL
+         */
+        private String url;
+
+        /**
+         * Database user / 数据库用户
+         */
+        private String username;
+
+        /**
+         * Database password / 数据库密码
+         */
+        private String password;
+
+        /**
+         * Maximum pool size / 最大连接池大小
+         */
+        private int maximumPoolSize = 10;
+
+        /**
+         * Minimum idle connections / 最小空闲连接数
+         */
+        private int minimumIdle = 2;
+
+        public String getUrl() {
+            return url;
+        }
+
+        public void setUrl(String url) {
+            this.url = url;
+        }
+
+        public String getUsername() {
+            return username;
+        }
+
+        public void setUsername(String username) {
+            this.username = username;
+        }
+
+        public String getPassword() {
+            return password;
+        }
+
+        public void setPassword(String password) {
+            this.password = password;
+        }
+
+        public int getMaximumPoolSize() {
+            return maximumPoolSize;
+        }
+
+        public void setMaximumPoolSize(int maximumPoolSize) {
+            this.maximumPoolSize = maximumPoolSize;
+        }
+
+        public int getMinimumIdle() {
+            return minimumIdle;
+        }
+
+        public void setMinimumIdle(int minimumIdle) {
+            this.minimumIdle = minimumIdle;
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.demo.config;
+
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+
+import java.util.Collection;
+import java.util.function.UnaryOperator;
+
+/**
+ * TieredCacheManager - Local Tier in Front of One Cache
+ * 分层缓存管理器 - 在单个缓存前放置本地层
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Wraps one named cache of the delegate (see HotUserCache.tier for the "user" cache)
+ * and passes every other cache through unchanged. The wrapper sits outside
+ * ResilientCacheManager, so locally held entries are still served while Redis is
+ * unavailable.
+ *
+ * 包装委托管理器中的一个具名缓存（"user" 缓存参见 HotUserCache.tier），其他缓存原样传递。
+ * 包装器位于 ResilientCacheManager 之外，因此 Redis 不可用时仍可提供本地保存的条目。
+ */
+public class TieredCacheManager implements CacheManager {
+
+    private final CacheManager delegate;
+    private final String name;
+    private final UnaryOperator<Cache> tier;
+    private volatile Cache tiered;
+
+    /**
+     * Constructor for TieredCacheManager
+     * TieredCacheManager 构造函数
+     *
+     * @param delegate Cache manager holding the remote caches / 持有远程缓存的缓存管理器
+     * @param name Name of the cache to wrap / 要包装的缓存名称
+     * @param tier Wraps the remote cache / 包装远程缓存
+     */
+    public TieredCacheManager(CacheManager delegate, String name, UnaryOperator<Cache> tier) {
+        this.delegate = delegate;
+        this.name = name;
+        this.tier = tier;
+    }
+
+    @Override
+    public Cache getCache(String name) {
+        if (!this.name.equals(name)) {
+            return delegate.getCache(name);
+        }
+        Cache cache = tiered;
+        if (cache == null) {
+            synchronized (this) {
+                cache = tiered;
+                if (cache == null) {
+                    Cache remote = delegate.getCache(name);
+                    if (remote == null) {
+                        return null;
+                    }
+                    cache = tier.apply(remote);
+                    tiered = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    @Override
+    public Collection<String> getCacheNames() {
+        return delegate.getCacheNames();
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.demo.controller;
+
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.service.ActiveUserTracker;
+import com.example.demo.service.UsageMeter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.Map;
+
+/**
+ * AdminController - Administrative REST API Controller
+ * 管理控制器 - 管理 REST API 控制器
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Operational endpoints for administrators. Every /api/admin/** endpoint requires
+ * the ADMIN role (see SecurityConfig).
+ *
+ * 面向管理员的运维端点。所有 /api/admin/** 端点都需要 ADMIN 角色（参见 SecurityConfig）。
+ */
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    /**
+     * ActiveUserTracker - HyperLogLog active-user counts
+     * 活跃用户跟踪器 - HyperLogLog 活跃用户计数
+     */
+    @Autowired
+    private ActiveUserTracker activeUserTracker;
+
+    /**
+     * UsageMeter - Per-user request counts by route
+     * 用量计量器 - 按路由的每用户请求数
+     */
+    @Autowired
+    private UsageMeter usageMeter;
+
+    /**
+     * Get active-user estimates
+     * 获取活跃用户估计值
+     *
+     * @GET /api/admin/active-users?days=7&hours=24
+     * @param days Number of recent days / 最近天数
+     * @param hours Number of recent hours / 最近小时数
+     * @return ResponseEntity containing DAU, WAU, MAU and per-window estimates / 包含 DAU、WAU、MAU 和各窗口估计值的响应实体
+     * @description
+     * Distinct authenticated users estimated from Redis HyperLogLogs (about 0.81% error).
+     * Returns 503 while Redis is unavailable.
+     * 根据 Redis HyperLogLog 估计的不同已认证用户数（误差约 0.81%）。Redis 不可用时返回 503。
+     */
+    @GetMapping("/active-users")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getActiveUsers(@RequestParam(defaultValue = "7") int days,
+                                                                         @RequestParam(defaultValue = "24") int hours) {
+        Map<String, Object> data = activeUserTracker.getActiveUsers(Math.min(Math.max(days, 1), 35),
+            Math.min(Math.max(hours, 1), 48));
+        if (data == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ApiResponse.error("Active-user counts are temporarily unavailable"));
+        }
+        return ResponseEntity.ok(ApiResponse.ok(data));
+    }
+
+    /**
+     * Get a user's API usage
+     * 获取用户的 API 用量
+     *
+     * @GET /api/admin/usage?user=alice@example.com&days=7&hours=24
+     * @param user User email / 用户邮箱
+     * @param days Number of recent days / 最近天数
+     * @param hours Number of recent hours / 最近小时数
+     * @return ResponseEntity containing requests per route for each day and hour / 包含每天和每小时按路由请求数的响应实体
+     * @description
+     * Counts are written every few seconds, so the current hour may lag slightly.
+     * Returns 503 while Redis is unavailable.
+     * 计数每隔几秒写入一次，因此当前小时可能略有滞后。Redis 不可用时返回 503。
+     */
+    @GetMapping("/usage")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getUsage(@RequestParam String user,
+                                                                   @RequestParam(defaultValue = "7") int days,
+                                                                   @RequestParam(defaultValue = "24") int hours) {
+        Map<String, Object> data = usageMeter.getUsage(user, Math.min(Math.max(days, 1), 35),
+            Math.min(Math.max(hours, 1), 48));
+        if (data == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ApiResponse.error("Usage counts are temporarily unavailable"));
+        }
+        return ResponseEntity.ok(ApiResponse.ok(data));
+    }
+}
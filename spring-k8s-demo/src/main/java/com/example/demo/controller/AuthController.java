@@ -1,16 +1,26 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.EmailAvailabilityResponse;
 import com.example.demo.dto.JwtResponse;
 import com.example.demo.dto.LoginRequest;
 import com.example.demo.dto.RegisterRequest;
+import com.example.demo.dto.SessionInfo;
+import com.example.demo.dto.TokenBatchRequest;
+import com.example.demo.dto.TokenIdentity;
+import com.example.demo.dto.TokenValidationResponse;
 import com.example.demo.service.AuthService;
+import com.example.demo.service.LoginThrottle;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.HashMap;
-import java.util.Map;
+import java.util.List;
 
 /**
  * AuthController - Authentication REST API Controller
@@ -53,47 +63,66 @@ public class AuthController {
      * 注册新用户并返回 JWT 令牌以立即进行认证。
      */
     @PostMapping("/register")
-    public ResponseEntity<Map<String, Object>> register(@Valid @RequestBody RegisterRequest request) {
+    public ResponseEntity<ApiResponse<JwtResponse>> register(@Valid @RequestBody RegisterRequest request) {
         try {
             JwtResponse response = authService.register(request);
-            Map<String, Object> result = new HashMap<>();
-            result.put("success", true);
-            result.put("message", "User registered successfully");
-            result.put("data", response);
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(ApiResponse.ok("User registered successfully", response));
+        } catch (DataIntegrityViolationException e) {
+            // Lost a race with a concurrent registration; the unique index decided
+            // 与并发注册竞争失败；由唯一索引裁决
+            return ResponseEntity.badRequest().body(ApiResponse.error("Email already exists: " + request.getEmail()));
         } catch (RuntimeException e) {
-            Map<String, Object> result = new HashMap<>();
-            result.put("success", false);
-            result.put("message", e.getMessage());
-            return ResponseEntity.badRequest().body(result);
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
     
+    /**
+     * Email availability endpoint
+     * 邮箱可用性端点
+     * 
+     * @GET /api/auth/email-available?email=user@example.com
+     * @param email Email to check / 要检查的邮箱
+     * @return ResponseEntity containing whether the email is still free / 包含邮箱是否仍可用的响应实体
+     * @description
+     * Meant for sign-up forms that check as the user types. Most unused emails are
+     * answered from memory without a database query. Rate limited per client IP
+     * (rate-limit.email-available.*), not by the shared auth bucket.
+     * 用于在用户输入时进行检查的注册表单。大多数未使用的邮箱直接在内存中回答，无需数据库查询。
+     * 按客户端 IP 限流（rate-limit.email-available.*），而不是使用共享的认证桶。
+     */
+    @GetMapping("/email-available")
+    public ResponseEntity<ApiResponse<EmailAvailabilityResponse>> emailAvailable(@RequestParam String email) {
+        if (email.isBlank()) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("Email must not be blank"));
+        }
+        return ResponseEntity.ok(ApiResponse.ok(new EmailAvailabilityResponse(email, authService.isEmailAvailable(email))));
+    }
+    
     /**
      * User login endpoint
      * 用户登录端点
      * 
      * @POST /api/auth/login
      * @param request Login request with email and password / 包含邮箱和密码的登录请求
+     * @param httpRequest HTTP request (client IP) / HTTP 请求（客户端 IP）
      * @return ResponseEntity containing JWT token and user info / 包含 JWT 令牌和用户信息的响应实体
      * @description
-     * Authenticates user credentials and returns a JWT token.
-     * 验证用户凭据并返回 JWT 令牌。
+     * Authenticates user credentials and returns a JWT token. Answers 429 with
+     * Retry-After while the account or the client IP is blocked after repeated failures.
+     * 验证用户凭据并返回 JWT 令牌。账户或客户端 IP 因多次失败被封禁期间返回 429 和 Retry-After。
      */
     @PostMapping("/login")
-    public ResponseEntity<Map<String, Object>> login(@Valid @RequestBody LoginRequest request) {
+    public ResponseEntity<ApiResponse<JwtResponse>> login(@Valid @RequestBody LoginRequest request,
+                                                          HttpServletRequest httpRequest) {
         try {
-            JwtResponse response = authService.login(request);
-            Map<String, Object> result = new HashMap<>();
-            result.put("success", true);
-            result.put("message", "Login successful");
-            result.put("data", response);
-            return ResponseEntity.ok(result);
+            JwtResponse response = authService.login(request, httpRequest.getRemoteAddr());
+            return ResponseEntity.ok(ApiResponse.ok("Login successful", response));
+        } catch (LoginThrottle.ThrottledException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, Long.toString(Math.max(1, e.getRetryAfter().toSeconds())))
+                .body(ApiResponse.error(e.getMessage()));
         } catch (RuntimeException e) {
-            Map<String, Object> result = new HashMap<>();
-            result.put("success", false);
-            result.put("message", e.getMessage());
-            return ResponseEntity.badRequest().body(result);
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
         }
     }
     
@@ -109,21 +138,64 @@ public class AuthController {
      * 通过使 JWT 令牌无效来退出用户登录。
      */
     @PostMapping("/logout")
-    public ResponseEntity<Map<String, Object>> logout(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<ApiResponse<Void>> logout(@RequestHeader("Authorization") String authHeader) {
         try {
             // Remove "Bearer " prefix from token / 从令牌中移除 "Bearer " 前缀
             String token = authHeader.substring(7);
             authService.logout(token);
-            Map<String, Object> result = new HashMap<>();
-            result.put("success", true);
-            result.put("message", "Logout successful");
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(ApiResponse.message("Logout successful"));
         } catch (Exception e) {
-            Map<String, Object> result = new HashMap<>();
-            result.put("success", false);
-            result.put("message", "Logout failed");
-            return ResponseEntity.badRequest().body(result);
+            return ResponseEntity.badRequest().body(ApiResponse.error("Logout failed"));
+        }
+    }
+    
+    /**
+     * Log out everywhere endpoint
+     * 在所有设备上退出登录端点
+     * 
+     * @POST /api/auth/logout-all
+     * @param authHeader Authorization header containing Bearer token / 包含 Bearer 令牌的授权头
+     * @return ResponseEntity containing logout status, 401 if the token is invalid / 包含退出登录状态的响应实体，令牌无效时返回 401
+     * @description
+     * Invalidates every session of the token's user, on all devices.
+     * 使令牌所属用户在所有设备上的所有会话无效。
+     */
+    @PostMapping("/logout-all")
+    public ResponseEntity<ApiResponse<Void>> logoutAll(@RequestHeader("Authorization") String authHeader) {
+        try {
+            authService.logoutAll(authHeader.substring(7));
+            return ResponseEntity.ok(ApiResponse.message("Logged out of all sessions"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * Active sessions endpoint
+     * 活动会话端点
+     * 
+     * @GET /api/auth/sessions
+     * @param authHeader Authorization header containing Bearer token / 包含 Bearer 令牌的授权头
+     * @return ResponseEntity containing the user's active sessions, 401 if the token is invalid,
+     *         503 if the session store is unavailable
+     *         包含用户活动会话的响应实体，令牌无效时返回 401，会话存储不可用时返回 503
+     * @description
+     * Lists the sessions of the token's user; the calling session is flagged current.
+     * 列出令牌所属用户的会话；调用方会话标记为 current。
+     */
+    @GetMapping("/sessions")
+    public ResponseEntity<ApiResponse<List<SessionInfo>>> sessions(@RequestHeader("Authorization") String authHeader) {
+        List<SessionInfo> sessions;
+        try {
+            sessions = authService.listSessions(authHeader.substring(7));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(ApiResponse.error(e.getMessage()));
+        }
+        if (sessions == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .body(ApiResponse.error("Session store unavailable"));
         }
+        return ResponseEntity.ok(ApiResponse.list(sessions));
     }
     
     /**
@@ -138,21 +210,70 @@ public class AuthController {
      * 验证 JWT 令牌是否仍然有效且未过期。
      */
     @GetMapping("/validate")
-    public ResponseEntity<Map<String, Object>> validateToken(@RequestHeader("Authorization") String authHeader) {
+    public ResponseEntity<TokenValidationResponse> validateToken(@RequestHeader("Authorization") String authHeader) {
         try {
             // Remove "Bearer " prefix from token / 从令牌中移除 "Bearer " 前缀
             String token = authHeader.substring(7);
             Boolean isValid = authService.validateToken(token);
-            Map<String, Object> result = new HashMap<>();
-            result.put("success", true);
-            result.put("valid", isValid);
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(new TokenValidationResponse(true, Boolean.TRUE.equals(isValid)));
         } catch (Exception e) {
-            Map<String, Object> result = new HashMap<>();
-            result.put("success", false);
-            result.put("valid", false);
-            return ResponseEntity.ok(result);
+            return ResponseEntity.ok(new TokenValidationResponse(false, false));
+        }
+    }
+    
+    /**
+     * Traefik ForwardAuth endpoint
+     * Traefik ForwardAuth 端点
+     * 
+     * @GET /api/auth/forward
+     * @param authHeader Authorization header forwarded by Traefik / Traefik 转发的授权头
+     * @return 200 with X-User-Email and X-User-Role headers if the token is valid, 401 otherwise
+     *         如果令牌有效则返回 200 并带 X-User-Email 和 X-User-Role 头，否则返回 401
+     * @description
+     * Called by the Traefik ForwardAuth middleware for every protected request, so it
+     * returns no body and validates with the same logic as /validate (one JWT parse,
+     * one Redis GET). Traefik copies the identity headers to the upstream request
+     * (authResponseHeaders).
+     * 
+     * 由 Traefik ForwardAuth 中间件为每个受保护请求调用，因此不返回响应体，
+     * 并使用与 /validate 相同的逻辑验证（一次 JWT 解析，一次 Redis GET）。
+     * Traefik 会将身份头复制到上游请求（authResponseHeaders）。
+     */
+    @GetMapping("/forward")
+    public ResponseEntity<Void> forwardAuth(@RequestHeader(value = "Authorization", required = false) String authHeader) {
+        if (authHeader == null || !authHeader.startsWith("Bearer ")) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
         }
+        TokenIdentity identity = authService.resolveIdentity(authHeader.substring(7));
+        if (!identity.isValid()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        return ResponseEntity.ok()
+            .header("X-User-Email", identity.getEmail())
+            .header("X-User-Role", identity.getRole())
+            .build();
+    }
+    
+    /**
+     * Batch token validation endpoint
+     * 批量令牌验证端点
+     * 
+     * @POST /api/auth/forward/batch
+     * @param request Tokens to validate / 要验证的令牌
+     * @return ResponseEntity containing one identity per token, in request order
+     *         包含每个令牌一个身份（按请求顺序）的响应实体
+     * @description
+     * For sidecars and internal services that validate many tokens at once.
+     * Redis session lookups are done with a single MGET. The caller must send its own
+     * ADMIN (service account) token, and each call is charged to the auth rate limit.
+     * 
+     * 供一次验证多个令牌的边车和内部服务使用。Redis 会话查找通过一次 MGET 完成。
+     * 调用方必须携带自身的 ADMIN（服务账号）令牌，且每次调用都计入认证速率限制。
+     */
+    @PostMapping("/forward/batch")
+    public ResponseEntity<ApiResponse<List<TokenIdentity>>> forwardAuthBatch(@Valid @RequestBody TokenBatchRequest request) {
+        List<TokenIdentity> identities = authService.resolveIdentities(request.getTokens());
+        return ResponseEntity.ok(ApiResponse.ok(identities));
     }
 }
 
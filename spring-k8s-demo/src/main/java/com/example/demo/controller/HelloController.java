@@ -1,12 +1,14 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.HealthResponse;
+import com.example.demo.dto.HelloResponse;
+import com.example.demo.dto.InfoResponse;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
 
 import java.time.LocalDateTime;
-import java.util.HashMap;
 import java.util.Map;
 
 /**
@@ -40,20 +42,15 @@ public class HelloController {
      * Hello 端点 - 基本问候消息
      * 
      * @GET /api/hello
-     * @return Map containing greeting message and application info / 包含问候消息和应用程序信息的 Map
+     * @return Greeting message and application info / 问候消息和应用程序信息
      * @description
      * Returns a greeting message with application information.
      * 返回包含应用程序信息的问候消息。
      */
     @GetMapping("/hello")
-    public Map<String, Object> hello() {
-        Map<String, Object> response = new HashMap<>();
-        response.put("message", "Hello from Spring Boot on Kubernetes!");
-        response.put("timestamp", LocalDateTime.now());
-        response.put("application", appName);
-        response.put("version", "1.0.0");
-        response.put("description", "Complete CRUD API example with MySQL database");
-        return response;
+    public HelloResponse hello() {
+        return new HelloResponse("Hello from Spring Boot on Kubernetes!", LocalDateTime.now(), appName, "1.0.0",
+            "Complete CRUD API example with MySQL database");
     }
 
     /**
@@ -61,17 +58,14 @@ public class HelloController {
      * 健康检查端点
      * 
      * @GET /api/health
-     * @return Map containing health status / 包含健康状态的 Map
+     * @return Health status / 健康状态
      * @description
      * Simple health check endpoint. Returns UP status if service is running.
      * 简单的健康检查端点。如果服务正在运行，返回 UP 状态。
      */
     @GetMapping("/health")
-    public Map<String, String> health() {
-        Map<String, String> response = new HashMap<>();
-        response.put("status", "UP");
-        response.put("service", appName);
-        return response;
+    public HealthResponse health() {
+        return new HealthResponse("UP", appName);
     }
     
     /**
@@ -79,24 +73,19 @@ public class HelloController {
      * 应用程序信息端点
      * 
      * @GET /api/info
-     * @return Map containing application information and available endpoints / 包含应用程序信息和可用端点的 Map
+     * @return Application information and available endpoints / 应用程序信息和可用端点
      * @description
      * Returns application metadata and list of available API endpoints.
      * 返回应用程序元数据和可用 API 端点列表。
      */
     @GetMapping("/info")
-    public Map<String, Object> info() {
-        Map<String, Object> response = new HashMap<>();
-        response.put("application", appName);
-        response.put("version", "1.0.0");
-        response.put("description", "Spring Boot 3.3.5 with MySQL on Kubernetes");
-        response.put("endpoints", Map.of(
+    public InfoResponse info() {
+        return new InfoResponse(appName, "1.0.0", "Spring Boot 3.3.5 with MySQL on Kubernetes", Map.of(
             "users", "/api/users",
             "hello", "/api/hello",
             "health", "/api/health",
             "actuator", "/actuator/health"
         ));
-        return response;
     }
 }
 
@@ -0,0 +1,234 @@
+package com.example.demo.controller;
+
+import com.example.demo.service.PeerCacheService;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.DeleteMapping;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.PutMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * PeerCacheController - Internal Endpoints of the Peer Cache
+ * 对等缓存控制器 - 对等缓存的内部端点
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Called by the other pods' PeerCacheService for keys this pod owns. Bodies are the
+ * serialized cache values (application/octet-stream); the batch endpoints use the
+ * length-prefixed encoding of PeerCacheService. The endpoints carry no JWT and are not
+ * rate limited; callers must send peer-cache.secret in X-Peer-Cache-Secret. They are
+ * only served on the internal port (peer-cache.port, see PeerCacheServerConfig), which
+ * the public Service does not expose, and answer 404 on any other port or while the
+ * peer cache is disabled.
+ *
+ * 由其他 Pod 的 PeerCacheService 针对本 Pod 拥有的键调用。请求体是序列化的缓存值
+ * （application/octet-stream）；批量端点使用 PeerCacheService 的长度前缀编码。
+ * 这些端点不携带 JWT，也不限流；调用方必须在 X-Peer-Cache-Secret 中发送 peer-cache.secret。
+ * 它们只在内部端口（peer-cache.port，参见 PeerCacheServerConfig）上提供，公共 Service 不暴露该端口；
+ * 在其他端口上或对等缓存禁用时返回 404。
+ */
+@RestController
+@RequestMapping("/internal/cache")
+public class PeerCacheController {
+
+    /**
+     * PeerCacheService - Owner side of the peer cache
+     * 对等缓存服务 - 对等缓存的所有者端
+     */
+    @Autowired
+    private PeerCacheService peerCache;
+
+    /**
+     * Get one value
+     * 获取单个值
+     *
+     * @GET /internal/cache/user?key=42&lease=true
+     * @param cache Cache name / 缓存名称
+     * @param key Key / 键
+     * @param lease Whether a miss may grant a load lease / 未命中时是否可以授予加载租约
+     * @param secret Shared secret / 共享密钥
+     * @param request Current request / 当前请求
+     * @return 200 with the value; 404 on a miss, with X-Cache-Lease if a lease was granted
+     *         200 及值；未命中时 404，授予租约时带 X-Cache-Lease
+     */
+    @GetMapping(value = "/{cache}", produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> get(@PathVariable String cache,
+                                      @RequestParam String key,
+                                      @RequestParam(defaultValue = "false") boolean lease,
+                                      @RequestHeader(value = PeerCacheService.SECRET_HEADER, required = false) String secret,
+                                      HttpServletRequest request) {
+        ResponseEntity<byte[]> denied = check(request, secret);
+        if (denied != null) {
+            return denied;
+        }
+        PeerCacheService.Lookup lookup = peerCache.ownerGet(cache, key, lease);
+        if (lookup.value() != null) {
+            return ResponseEntity.ok(lookup.value());
+        }
+        ResponseEntity.BodyBuilder miss = ResponseEntity.status(HttpStatus.NOT_FOUND);
+        if (lookup.lease() != null) {
+            miss.header(PeerCacheService.LEASE_HEADER, lookup.lease());
+        }
+        return miss.build();
+    }
+
+    /**
+     * Store one value
+     * 存储单个值
+     *
+     * @PUT /internal/cache/user?key=42&lease=...
+     * @param cache Cache name / 缓存名称
+     * @param key Key / 键
+     * @param lease Lease token from the miss; without a live one nothing is stored / 未命中返回的租约令牌；没有有效租约时不存储
+     * @param value Serialized value / 序列化的值
+     * @param secret Shared secret / 共享密钥
+     * @param request Current request / 当前请求
+     * @return 204 / 204
+     */
+    @PutMapping(value = "/{cache}", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> put(@PathVariable String cache,
+                                      @RequestParam String key,
+                                      @RequestParam(required = false) String lease,
+                                      @RequestBody byte[] value,
+                                      @RequestHeader(value = PeerCacheService.SECRET_HEADER, required = false) String secret,
+                                      HttpServletRequest request) {
+        ResponseEntity<byte[]> denied = check(request, secret);
+        if (denied != null) {
+            return denied;
+        }
+        peerCache.ownerPut(cache, key, value, lease);
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Remove one value, or the whole cache without a key
+     * 删除单个值，不带键时删除整个缓存
+     *
+     * @DELETE /internal/cache/user?key=42
+     * @param cache Cache name / 缓存名称
+     * @param key Key, absent to clear / 键，缺省时清空
+     * @param secret Shared secret / 共享密钥
+     * @param request Current request / 当前请求
+     * @return 204 / 204
+     */
+    @DeleteMapping("/{cache}")
+    public ResponseEntity<byte[]> evict(@PathVariable String cache,
+                                        @RequestParam(required = false) String key,
+                                        @RequestHeader(value = PeerCacheService.SECRET_HEADER, required = false) String secret,
+                                        HttpServletRequest request) {
+        ResponseEntity<byte[]> denied = check(request, secret);
+        if (denied != null) {
+            return denied;
+        }
+        if (key == null) {
+            peerCache.clearLocal(cache);
+        } else {
+            peerCache.evictLocal(cache, key);
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Get several values
+     * 获取多个值
+     *
+     * @POST /internal/cache/user/mget?lease=true
+     * @param cache Cache name / 缓存名称
+     * @param lease Whether misses may grant load leases / 未命中时是否可以授予加载租约
+     * @param body Encoded key list / 编码的键列表
+     * @param secret Shared secret / 共享密钥
+     * @param request Current request / 当前请求
+     * @return Encoded values and leases in key order; 400 if the body is malformed
+     *         按键顺序编码的值和租约；请求体格式错误时返回 400
+     */
+    @PostMapping(value = "/{cache}/mget", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE,
+                 produces = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> getAll(@PathVariable String cache,
+                                         @RequestParam(defaultValue = "false") boolean lease,
+                                         @RequestBody byte[] body,
+                                         @RequestHeader(value = PeerCacheService.SECRET_HEADER, required = false) String secret,
+                                         HttpServletRequest request) {
+        ResponseEntity<byte[]> denied = check(request, secret);
+        if (denied != null) {
+            return denied;
+        }
+        try {
+            return ResponseEntity.ok(PeerCacheService.encodeLookups(
+                peerCache.ownerGetAll(cache, PeerCacheService.decodeKeys(body), lease)));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+
+    /**
+     * Store several values
+     * 存储多个值
+     *
+     * @POST /internal/cache/user/mput
+     * @param cache Cache name / 缓存名称
+     * @param body Encoded entries with their leases; entries without a live lease are dropped
+     *             编码的条目及其租约；没有有效租约的条目被丢弃
+     * @param secret Shared secret / 共享密钥
+     * @param request Current request / 当前请求
+     * @return 204; 400 if the body is malformed / 204；请求体格式错误时返回 400
+     */
+    @PostMapping(value = "/{cache}/mput", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<byte[]> putAll(@PathVariable String cache,
+                                         @RequestBody byte[] body,
+                                         @RequestHeader(value = PeerCacheService.SECRET_HEADER, required = false) String secret,
+                                         HttpServletRequest request) {
+        ResponseEntity<byte[]> denied = check(request, secret);
+        if (denied != null) {
+            return denied;
+        }
+        try {
+            peerCache.ownerPutAll(cache, PeerCacheService.decodeEntries(body));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.noContent().build();
+    }
+
+    /**
+     * Drop every entry this pod holds, sent by a peer that could not deliver an eviction
+     * 删除本 Pod 持有的所有条目，由无法送达驱逐的对等节点发送
+     *
+     * @POST /internal/cache/_reset
+     * @param secret Shared secret / 共享密钥
+     * @param request Current request / 当前请求
+     * @return 204 / 204
+     */
+    @PostMapping("/_reset")
+    public ResponseEntity<byte[]> reset(@RequestHeader(value = PeerCacheService.SECRET_HEADER, required = false) String secret,
+                                        HttpServletRequest request) {
+        ResponseEntity<byte[]> denied = check(request, secret);
+        if (denied != null) {
+            return denied;
+        }
+        peerCache.resetLocal();
+        return ResponseEntity.noContent().build();
+    }
+
+    private ResponseEntity<byte[]> check(HttpServletRequest request, String secret) {
+        if (!peerCache.isPeerPort(request.getLocalPort())) {
+            return ResponseEntity.notFound().build();
+        }
+        if (!peerCache.authorized(secret)) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        return null;
+    }
+}
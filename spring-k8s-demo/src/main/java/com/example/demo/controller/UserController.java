@@ -1,19 +1,31 @@
 package com.example.demo.controller;
 
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.UserBatchRequest;
+import com.example.demo.dto.UserChanges;
+import com.example.demo.dto.UserLookup;
+import com.example.demo.dto.UserPatchRequest;
+import com.example.demo.dto.UserResponse;
 import com.example.demo.entity.User;
+import com.example.demo.repository.UserField;
+import com.example.demo.service.UserChangeFeed;
 import com.example.demo.service.UserService;
+import com.example.demo.service.UserStatsService;
+import com.example.demo.service.UserSyncService;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.cache.annotation.CacheEvict;
-import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.Set;
 
 /**
  * UserController - User Management REST API Controller
@@ -27,10 +39,17 @@ import java.util.Optional;
  * This controller provides RESTful endpoints for user management operations,
  * including CRUD (Create, Read, Update, Delete) operations.
  * All endpoints require JWT authentication (except public endpoints).
+ * Users are returned as UserResponse (never the entity or its password hash);
+ * caching is done by UserService. The read endpoints accept fields=name,email,...
+ * to return only those fields, read from only those columns. PATCH applies a partial
+ * update at the version the client read and answers 409 if the user changed since.
  * 
  * 该控制器提供用于用户管理操作的 RESTful 端点，
  * 包括 CRUD（创建、读取、更新、删除）操作。
  * 所有端点都需要 JWT 认证（公共端点除外）。
+ * 用户以 UserResponse 形式返回（从不返回实体或其密码哈希）；缓存由 UserService 负责。
+ * 读取端点接受 fields=name,email,...，只返回这些字段，并且只读取对应的列。
+ * PATCH 按客户端读取到的版本应用部分更新，如果用户此后发生变化则返回 409。
  */
 @RestController
 @RequestMapping("/api/users")
@@ -43,6 +62,27 @@ public class UserController {
     @Autowired
     private UserService userService;
     
+    /**
+     * UserStatsService - Materialized user statistics
+     * 用户统计服务 - 物化的用户统计
+     */
+    @Autowired
+    private UserStatsService userStatsService;
+    
+    /**
+     * UserChangeFeed - Server-Sent Events feed of user changes
+     * 用户变更推送 - 用户变更的服务器发送事件推送
+     */
+    @Autowired
+    private UserChangeFeed userChangeFeed;
+    
+    /**
+     * UserSyncService - Incremental sync of the user directory
+     * 用户同步服务 - 用户目录的增量同步
+     */
+    @Autowired
+    private UserSyncService userSyncService;
+    
     /**
      * Get all users
      * 获取所有用户
@@ -53,14 +93,141 @@ public class UserController {
      * Retrieves all users from the database. Results are cached in Redis.
      * 从数据库检索所有用户。结果缓存在 Redis 中。
      */
-    @GetMapping
-    public ResponseEntity<Map<String, Object>> getAllUsers() {
-        List<User> users = userService.getAllUsers();
-        Map<String, Object> response = new HashMap<>();
-        response.put("success", true);
-        response.put("data", users);
-        response.put("count", users.size());
-        return ResponseEntity.ok(response);
+    @GetMapping(params = {"!fields", "!ids"})
+    public ResponseEntity<ApiResponse<List<UserResponse>>> getAllUsers() {
+        return ResponseEntity.ok(ApiResponse.list(userService.getAllUsers()));
+    }
+    
+    /**
+     * Get all users with selected fields
+     * 获取所有用户的选定字段
+     * 
+     * @GET /api/users?fields=id,name,email
+     * @param fields Comma-separated field names / 逗号分隔的字段名称
+     * @return ResponseEntity containing the requested fields of every user, or 400 for unknown fields / 包含每个用户请求字段的响应实体，字段未知时返回 400
+     * @description
+     * Only the requested columns are read from the database; the result is not cached.
+     * 只从数据库读取请求的列；结果不缓存。
+     */
+    @GetMapping(params = {"fields", "!ids"})
+    public ResponseEntity<ApiResponse<List<Map<String, Object>>>> getAllUsers(@RequestParam String fields) {
+        Set<UserField> selected;
+        try {
+            selected = UserField.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
+        }
+        return ResponseEntity.ok(ApiResponse.list(userService.getAllUsers(selected).stream()
+            .map(user -> UserField.pick(user, selected))
+            .toList()));
+    }
+    
+    /**
+     * Get several users by ID
+     * 根据 ID 获取多个用户
+     * 
+     * @GET /api/users?ids=1,2,3
+     * @param ids Comma-separated user IDs, at most 1000 / 逗号分隔的用户 ID，最多 1000 个
+     * @return ResponseEntity containing one entry per id in request order, found=false for unknown ids
+     *         包含按请求顺序每个 ID 一个条目的响应实体，未知 ID 的 found 为 false
+     * @description
+     * Replaces one GET /api/users/{id} per user: cached users are read in one Redis
+     * round-trip and the rest in one database query.
+     * 替代每个用户一次 GET /api/users/{id}：缓存的用户在一次 Redis 往返中读取，其余用户在一次数据库查询中读取。
+     */
+    @GetMapping(params = {"ids", "!fields"})
+    public ResponseEntity<ApiResponse<List<UserLookup>>> getUsersByIds(@RequestParam List<Long> ids) {
+        if (ids.isEmpty() || ids.size() > UserBatchRequest.MAX_IDS || ids.contains(null)) {
+            return ResponseEntity.badRequest()
+                .body(ApiResponse.error("Between 1 and " + UserBatchRequest.MAX_IDS + " ids are required"));
+        }
+        return ResponseEntity.ok(ApiResponse.list(userService.getUsersByIds(ids)));
+    }
+    
+    /**
+     * Get several users by ID, ids in the body
+     * 根据 ID 获取多个用户，ID 位于请求体中
+     * 
+     * @POST /api/users/lookup
+     * @param request User IDs, at most 1000 / 用户 ID，最多 1000 个
+     * @return ResponseEntity containing one entry per id in request order / 包含按请求顺序每个 ID 一个条目的响应实体
+     * @description
+     * Same as GET /api/users?ids=... for id sets too long for a URL.
+     * 与 GET /api/users?ids=... 相同，用于 URL 容纳不下的 ID 集合。
+     */
+    @PostMapping("/lookup")
+    public ResponseEntity<ApiResponse<List<UserLookup>>> lookupUsers(@Valid @RequestBody UserBatchRequest request) {
+        return ResponseEntity.ok(ApiResponse.list(userService.getUsersByIds(request.getIds())));
+    }
+    
+    /**
+     * Follow user changes
+     * 跟踪用户变更
+     * 
+     * @GET /api/users/stream
+     * @param lastEventId Id of the last event received, sent by EventSource when reconnecting / 收到的最后一个事件 ID，EventSource 重新连接时发送
+     * @return Server-Sent Events stream of created/updated/deleted events, or 503 if this pod has no room
+     *         created/updated/deleted 事件的服务器发送事件流，本 Pod 已满时返回 503
+     * @description
+     * Replaces polling GET /api/users. A "reset" event means changes may have been
+     * missed and the list should be reloaded.
+     * 替代轮询 GET /api/users。"reset" 事件表示可能错过了变更，应重新加载列表。
+     */
+    @GetMapping(path = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(
+            @RequestHeader(value = "Last-Event-ID", required = false) String lastEventId) {
+        SseEmitter emitter = userChangeFeed.subscribe(lastEventId);
+        if (emitter == null) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "5").build();
+        }
+        return ResponseEntity.ok(emitter);
+    }
+    
+    /**
+     * Get user changes since a watermark
+     * 获取水位之后的用户变更
+     * 
+     * @GET /api/users/changes?since=...&limit=500
+     * @param since Watermark returned by the previous call, omitted for a full sync / 上一次调用返回的水位，完整同步时省略
+     * @param limit Maximum users and deletions in this page / 本页最多的用户数和删除数
+     * @return ResponseEntity containing changed users, deleted ids and the next watermark,
+     *         400 if the watermark is malformed, 410 if it has expired
+     *         包含变更用户、已删除 ID 和下一个水位的响应实体，水位格式错误时返回 400，过期时返回 410
+     * @description
+     * Call again with the returned watermark while hasMore is true, then periodically.
+     * On 410 drop the local copy and sync again without since.
+     * hasMore 为 true 时使用返回的水位再次调用，之后定期调用。收到 410 时丢弃本地副本并不带 since 重新同步。
+     */
+    @GetMapping("/changes")
+    public ResponseEntity<ApiResponse<UserChanges>> getChanges(@RequestParam(required = false) String since,
+                                                               @RequestParam(defaultValue = "500") int limit) {
+        try {
+            return ResponseEntity.ok(ApiResponse.ok(userSyncService.getChanges(since, limit)));
+        } catch (UserSyncService.WatermarkExpiredException e) {
+            return ResponseEntity.status(HttpStatus.GONE).body(ApiResponse.error(e.getMessage()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * Get user statistics (admin only)
+     * 获取用户统计（仅管理员）
+     * 
+     * @GET /api/users/stats?days=30&hours=24
+     * @param days Number of recent days of signups / 最近注册天数
+     * @param hours Number of recent hours of signups / 最近注册小时数
+     * @return ResponseEntity containing total, per-role and per-period counts / 包含总数、按角色和按时段计数的响应实体
+     * @description
+     * Served from counters maintained in Redis, so the cost does not depend on the
+     * number of users.
+     * 由 Redis 中维护的计数器提供，成本与用户数量无关。
+     */
+    @GetMapping("/stats")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getUserStats(@RequestParam(defaultValue = "30") int days,
+                                                                         @RequestParam(defaultValue = "24") int hours) {
+        return ResponseEntity.ok(ApiResponse.ok(
+            userStatsService.getStats(Math.min(Math.max(days, 1), 366), Math.min(Math.max(hours, 1), 168))));
     }
     
     /**
@@ -74,21 +241,36 @@ public class UserController {
      * Retrieves a specific user by ID. Result is cached in Redis.
      * 根据 ID 检索特定用户。结果缓存在 Redis 中。
      */
-    @GetMapping("/{id}")
-    @Cacheable(value = "user", key = "#id")
-    public ResponseEntity<Map<String, Object>> getUserById(@PathVariable Long id) {
-        Optional<User> user = userService.getUserById(id);
-        Map<String, Object> response = new HashMap<>();
-        
-        if (user.isPresent()) {
-            response.put("success", true);
-            response.put("data", user.get());
-            return ResponseEntity.ok(response);
-        } else {
-            response.put("success", false);
-            response.put("message", "User not found with id: " + id);
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+    @GetMapping(path = "/{id}", params = "!fields")
+    public ResponseEntity<ApiResponse<UserResponse>> getUserById(@PathVariable Long id) {
+        return userService.getUserById(id)
+            .map(user -> ResponseEntity.ok(ApiResponse.ok(user)))
+            .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(ApiResponse.error("User not found with id: " + id)));
+    }
+    
+    /**
+     * Get selected fields of a user by ID
+     * 根据 ID 获取用户的选定字段
+     * 
+     * @GET /api/users/{id}?fields=name,email
+     * @param id User ID / 用户 ID
+     * @param fields Comma-separated field names / 逗号分隔的字段名称
+     * @return ResponseEntity containing the requested fields, 400 for unknown fields or 404 / 包含请求字段的响应实体，字段未知时返回 400，未找到时返回 404
+     */
+    @GetMapping(path = "/{id}", params = "fields")
+    public ResponseEntity<ApiResponse<Map<String, Object>>> getUserById(@PathVariable Long id,
+                                                                       @RequestParam String fields) {
+        Set<UserField> selected;
+        try {
+            selected = UserField.parse(fields);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
         }
+        return userService.getUserById(id, selected)
+            .map(user -> ResponseEntity.ok(ApiResponse.ok(UserField.pick(user, selected))))
+            .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                .body(ApiResponse.error("User not found with id: " + id)));
     }
     
     /**
@@ -106,20 +288,18 @@ public class UserController {
      * 创建后清除用户缓存。
      */
     @PostMapping
-    @CacheEvict(value = "users", key = "'all'")
-    public ResponseEntity<Map<String, Object>> createUser(@Valid @RequestBody User user) {
+    public ResponseEntity<ApiResponse<UserResponse>> createUser(@Valid @RequestBody User user) {
         try {
             User createdUser = userService.createUser(user);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "User created successfully");
-            response.put("data", createdUser);
-            return ResponseEntity.status(HttpStatus.CREATED).body(response);
+            return ResponseEntity.status(HttpStatus.CREATED)
+                .body(ApiResponse.ok("User created successfully", UserResponse.from(createdUser)));
+        } catch (DataIntegrityViolationException e) {
+            // Lost a race with a concurrent write; the unique index decided
+            // 与并发写入竞争失败；由唯一索引裁决
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error("User with email " + user.getEmail() + " already exists"));
         } catch (RuntimeException e) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(response);
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ApiResponse.error(e.getMessage()));
         }
     }
     
@@ -133,23 +313,60 @@ public class UserController {
      * @return ResponseEntity containing updated user data or error message / 包含更新的用户数据或错误消息的响应实体
      * @description
      * Updates an existing user by ID. Validates input and checks for duplicate email.
-     * 根据 ID 更新现有用户。验证输入并检查重复邮箱。
+     * Answers 409 if another write to the user committed in between.
+     * 根据 ID 更新现有用户。验证输入并检查重复邮箱。如果期间有其他对该用户的写入已提交，则返回 409。
      */
     @PutMapping("/{id}")
-    public ResponseEntity<Map<String, Object>> updateUser(@PathVariable Long id, 
-                                                          @Valid @RequestBody User userDetails) {
+    public ResponseEntity<ApiResponse<UserResponse>> updateUser(@PathVariable Long id, 
+                                                                @Valid @RequestBody User userDetails) {
         try {
             User updatedUser = userService.updateUser(id, userDetails);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "User updated successfully");
-            response.put("data", updatedUser);
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ApiResponse.ok("User updated successfully", UserResponse.from(updatedUser)));
+        } catch (OptimisticLockingFailureException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT)
+                .body(ApiResponse.error("User " + id + " was modified concurrently, retry"));
+        } catch (DataIntegrityViolationException e) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error("User with email " + userDetails.getEmail() + " already exists"));
+        } catch (RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
+        }
+    }
+    
+    /**
+     * Partially update a user
+     * 部分更新用户
+     * 
+     * @PATCH /api/users/{id}
+     * @param id User ID to update / 要更新的用户 ID
+     * @param patch Changed fields and the version they apply to / 修改的字段及其适用的版本
+     * @return ResponseEntity containing updated user data or error message / 包含更新的用户数据或错误消息的响应实体
+     * @description
+     * Changes only the fields present, in one conditional UPDATE. Answers 409 if the
+     * user is no longer at the given version (read it again and reapply), and 400 if
+     * the email belongs to another user.
+     * 
+     * 只修改出现的字段，使用一条条件 UPDATE。如果用户已不再处于给定版本则返回 409
+     * （重新读取后再次应用），如果邮箱属于其他用户则返回 400。
+     */
+    @PatchMapping("/{id}")
+    public ResponseEntity<ApiResponse<UserResponse>> patchUser(@PathVariable Long id,
+                                                               @Valid @RequestBody UserPatchRequest patch) {
+        Map<UserField, Object> changes = patch.toChanges();
+        if (changes.isEmpty()) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("No changes requested"));
+        }
+        try {
+            User patchedUser = userService.patchUser(id, patch.getVersion(), changes);
+            return ResponseEntity.ok(ApiResponse.ok("User updated successfully", UserResponse.from(patchedUser)));
+        } catch (UserService.VersionConflictException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(ApiResponse.error(e.getMessage()));
+        } catch (DataIntegrityViolationException e) {
+            // The unique index decided / 由唯一索引裁决
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST)
+                .body(ApiResponse.error("User with email " + patch.getEmail() + " already exists"));
         } catch (RuntimeException e) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
         }
     }
     
@@ -165,19 +382,12 @@ public class UserController {
      * 根据 ID 删除用户。删除后清除所有与用户相关的缓存。
      */
     @DeleteMapping("/{id}")
-    @CacheEvict(value = {"users", "user"}, allEntries = true)
-    public ResponseEntity<Map<String, Object>> deleteUser(@PathVariable Long id) {
+    public ResponseEntity<ApiResponse<Void>> deleteUser(@PathVariable Long id) {
         try {
             userService.deleteUser(id);
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("message", "User deleted successfully");
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok(ApiResponse.message("User deleted successfully"));
         } catch (RuntimeException e) {
-            Map<String, Object> response = new HashMap<>();
-            response.put("success", false);
-            response.put("message", e.getMessage());
-            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+            return ResponseEntity.status(HttpStatus.NOT_FOUND).body(ApiResponse.error(e.getMessage()));
         }
     }
 }
@@ -0,0 +1,97 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+import java.util.List;
+
+/**
+ * ApiResponse - Standard REST Response Envelope
+ * API 响应 - 标准 REST 响应封装
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Typed envelope for the success/message/data responses of the REST API. Null
+ * components are omitted, so the JSON is the same as the maps it replaces.
+ * Being a final record with a resolved data type, Jackson serializes it with a
+ * writer prepared once per response type.
+ * Component order also fixes the protobuf field numbers (application/x-protobuf):
+ * add new components at the end.
+ *
+ * REST API 的 success/message/data 响应的类型化封装。null 组件会被省略，
+ * 因此 JSON 与其替代的 Map 相同。由于它是数据类型已解析的 final 记录，
+ * Jackson 使用每种响应类型只准备一次的写入器进行序列化。
+ * 组件顺序同时决定 protobuf 字段编号（application/x-protobuf）：新组件请添加在末尾。
+ *
+ * @param <T> Data type / 数据类型
+ * @param success Whether the request succeeded / 请求是否成功
+ * @param message Human-readable message / 可读消息
+ * @param data Response payload / 响应数据
+ * @param count Number of items in a list payload / 列表数据的条目数
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record ApiResponse<T>(boolean success, String message, T data, Integer count) {
+
+    /**
+     * Successful response with data
+     * 带数据的成功响应
+     *
+     * @param <T> Data type / 数据类型
+     * @param data Response payload / 响应数据
+     * @return Response / 响应
+     */
+    public static <T> ApiResponse<T> ok(T data) {
+        return new ApiResponse<>(true, null, data, null);
+    }
+
+    /**
+     * Successful response with message and data
+     * 带消息和数据的成功响应
+     *
+     * @param <T> Data type / 数据类型
+     * @param message Message / 消息
+     * @param data Response payload / 响应数据
+     * @return Response / 响应
+     */
+    public static <T> ApiResponse<T> ok(String message, T data) {
+        return new ApiResponse<>(true, message, data, null);
+    }
+
+    /**
+     * Successful response with a list and its size
+     * 带列表及其大小的成功响应
+     *
+     * @param <E> Element type / 元素类型
+     * @param items Items / 条目
+     * @return Response / 响应
+     */
+    public static <E> ApiResponse<List<E>> list(List<E> items) {
+        return new ApiResponse<>(true, null, items, items.size());
+    }
+
+    /**
+     * Successful response with a message only
+     * 仅带消息的成功响应
+     *
+     * @param <T> Data type / 数据类型
+     * @param message Message / 消息
+     * @return Response / 响应
+     */
+    public static <T> ApiResponse<T> message(String message) {
+        return new ApiResponse<>(true, message, null, null);
+    }
+
+    /**
+     * Failed response
+     * 失败响应
+     *
+     * @param <T> Data type / 数据类型
+     * @param message Error message / 错误消息
+     * @return Response / 响应
+     */
+    public static <T> ApiResponse<T> error(String message) {
+        return new ApiResponse<>(false, message, null, null);
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+/**
+ * EmailAvailabilityResponse - Email Availability Result DTO
+ * 邮箱可用性结果 DTO
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @param email Checked email / 检查的邮箱
+ * @param available Whether no user has this email / 是否没有用户使用此邮箱
+ */
+public record EmailAvailabilityResponse(String email, boolean available) {
+}
@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+/**
+ * HealthResponse - Simple Health Check Response DTO
+ * 健康检查响应 DTO
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @param status Service status (UP) / 服务状态（UP）
+ * @param service Application name / 应用程序名称
+ */
+public record HealthResponse(String status, String service) {
+}
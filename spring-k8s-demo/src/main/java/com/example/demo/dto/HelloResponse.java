@@ -0,0 +1,21 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * HelloResponse - Greeting Response DTO
+ * 问候响应 DTO
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @param message Greeting message / 问候消息
+ * @param timestamp Server time / 服务器时间
+ * @param application Application name / 应用程序名称
+ * @param version Application version / 应用程序版本
+ * @param description Application description / 应用程序描述
+ */
+public record HelloResponse(String message, LocalDateTime timestamp, String application, String version,
+                            String description) {
+}
@@ -0,0 +1,19 @@
+package com.example.demo.dto;
+
+import java.util.Map;
+
+/**
+ * InfoResponse - Application Info Response DTO
+ * 应用程序信息响应 DTO
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @param application Application name / 应用程序名称
+ * @param version Application version / 应用程序版本
+ * @param description Application description / 应用程序描述
+ * @param endpoints Main endpoints by name / 按名称列出的主要端点
+ */
+public record InfoResponse(String application, String version, String description, Map<String, String> endpoints) {
+}
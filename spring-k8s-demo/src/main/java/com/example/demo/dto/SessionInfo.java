@@ -0,0 +1,18 @@
+package com.example.demo.dto;
+
+import java.time.LocalDateTime;
+
+/**
+ * SessionInfo - Active Login Session DTO
+ * 活动登录会话 DTO
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @param id Session id (token jti) / 会话 ID（令牌 jti）
+ * @param expiresAt Session expiry / 会话过期时间
+ * @param current Whether this is the session making the request / 是否为发起请求的会话
+ */
+public record SessionInfo(String id, LocalDateTime expiresAt, boolean current) {
+}
@@ -0,0 +1,42 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * TokenBatchRequest - Batch Token Validation Request DTO
+ * 批量令牌验证请求 DTO - 批量令牌验证请求数据传输对象
+ * 
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ * 
+ * @description
+ * Data Transfer Object for validating many JWT tokens in one call.
+ * Used by sidecars and internal services.
+ * 
+ * 用于在一次调用中验证多个 JWT 令牌的数据传输对象。
+ * 供边车和内部服务使用。
+ */
+public class TokenBatchRequest {
+    
+    /**
+     * Raw JWT tokens (without "Bearer " prefix) - Required, at most 500
+     * 原始 JWT 令牌（不含 "Bearer " 前缀）- 必填，最多 500 个
+     */
+    @NotEmpty(message = "Tokens are required")
+    @Size(max = 500, message = "At most 500 tokens per request")
+    private List<String> tokens;
+    
+    // Getters and Setters / Getter 和 Setter 方法
+    
+    public List<String> getTokens() {
+        return tokens;
+    }
+    
+    public void setTokens(List<String> tokens) {
+        this.tokens = tokens;
+    }
+}
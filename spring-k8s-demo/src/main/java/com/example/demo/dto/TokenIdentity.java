@@ -0,0 +1,81 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * TokenIdentity - Verified Token Identity DTO
+ * 令牌身份 DTO - 已验证令牌的身份数据传输对象
+ * 
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ * 
+ * @description
+ * Identity carried by a token that passed signature, expiry and Redis session checks.
+ * Returned by the ForwardAuth endpoints; invalid tokens are reported with valid=false
+ * and no identity fields.
+ * 
+ * 通过签名、过期和 Redis 会话检查的令牌所携带的身份。
+ * 由 ForwardAuth 端点返回；无效令牌以 valid=false 且不带身份字段的形式报告。
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public class TokenIdentity {
+    
+    /**
+     * Shared instance for invalid tokens / 无效令牌的共享实例
+     */
+    public static final TokenIdentity INVALID = new TokenIdentity(false, null, null);
+    
+    /**
+     * Whether the token is valid / 令牌是否有效
+     */
+    private final boolean valid;
+    
+    /**
+     * User email (token subject) / 用户邮箱（令牌主题）
+     */
+    private final String email;
+    
+    /**
+     * User role (USER or ADMIN) / 用户角色（USER 或 ADMIN）
+     */
+    private final String role;
+    
+    /**
+     * Constructor for TokenIdentity
+     * TokenIdentity 构造函数
+     * 
+     * @param valid Whether the token is valid / 令牌是否有效
+     * @param email User email / 用户邮箱
+     * @param role User role / 用户角色
+     */
+    private TokenIdentity(boolean valid, String email, String role) {
+        this.valid = valid;
+        this.email = email;
+        this.role = role;
+    }
+    
+    /**
+     * Create an identity for a valid token
+     * 为有效令牌创建身份
+     * 
+     * @param email User email / 用户邮箱
+     * @param role User role / 用户角色
+     * @return Valid identity / 有效身份
+     */
+    public static TokenIdentity of(String email, String role) {
+        return new TokenIdentity(true, email, role);
+    }
+    
+    public boolean isValid() {
+        return valid;
+    }
+    
+    public String getEmail() {
+        return email;
+    }
+    
+    public String getRole() {
+        return role;
+    }
+}
@@ -0,0 +1,15 @@
+package com.example.demo.dto;
+
+/**
+ * TokenValidationResponse - Token Validation Result DTO
+ * 令牌验证结果 DTO
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @param success Whether the check could be performed / 是否能够执行检查
+ * @param valid Whether the token is valid / 令牌是否有效
+ */
+public record TokenValidationResponse(boolean success, boolean valid) {
+}
@@ -0,0 +1,47 @@
+package com.example.demo.dto;
+
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+/**
+ * UserBatchRequest - Batched User Lookup Request DTO
+ * 批量用户查找请求 DTO - 批量用户查找请求数据传输对象
+ * 
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ * 
+ * @description
+ * Data Transfer Object for looking up many users in one call, for id sets too large
+ * for a query string.
+ * 
+ * 用于在一次调用中查找多个用户的数据传输对象，适用于查询字符串容纳不下的 ID 集合。
+ */
+public class UserBatchRequest {
+    
+    /**
+     * Maximum ids per lookup / 每次查找的最大 ID 数
+     */
+    public static final int MAX_IDS = 1000;
+    
+    /**
+     * User IDs - Required, at most 1000
+     * 用户 ID - 必填，最多 1000 个
+     */
+    @NotEmpty(message = "Ids are required")
+    @Size(max = MAX_IDS, message = "At most 1000 ids per request")
+    private List<@NotNull Long> ids;
+    
+    // Getters and Setters / Getter 和 Setter 方法
+    
+    public List<Long> getIds() {
+        return ids;
+    }
+    
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+}
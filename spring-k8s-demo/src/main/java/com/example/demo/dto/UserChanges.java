@@ -0,0 +1,27 @@
+package com.example.demo.dto;
+
+import java.util.List;
+
+/**
+ * UserChanges - Delta Sync Page DTO
+ * 用户变更 - 增量同步页 DTO
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * One page of GET /api/users/changes. Clients upsert users, then remove deleted ids
+ * (ids are never reused), store the watermark and call again with it; while hasMore
+ * is true the next page is already available.
+ *
+ * GET /api/users/changes 的一页。客户端先写入 users，再删除 deleted 中的 ID（ID 从不重用），
+ * 保存 watermark 并用它再次调用；hasMore 为 true 时下一页已可获取。
+ *
+ * @param users Users created or updated since the previous watermark / 自上一水位以来创建或更新的用户
+ * @param deleted Ids of users deleted since the previous watermark / 自上一水位以来删除的用户 ID
+ * @param watermark Opaque position to pass as since next time / 下次作为 since 传入的不透明位置
+ * @param hasMore Whether more changes are waiting / 是否还有更多变更等待获取
+ */
+public record UserChanges(List<UserResponse> users, List<Long> deleted, String watermark, boolean hasMore) {
+}
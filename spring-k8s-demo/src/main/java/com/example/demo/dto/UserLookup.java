@@ -0,0 +1,36 @@
+package com.example.demo.dto;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+/**
+ * UserLookup - Result of One Id in a Batched User Lookup
+ * 用户查找结果 - 批量用户查找中单个 ID 的结果
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Batched lookups return one entry per requested id, in request order; unknown ids
+ * are reported with found=false and no user.
+ * 批量查找按请求顺序为每个请求的 ID 返回一个条目；未知 ID 以 found=false 且不带用户的形式报告。
+ *
+ * @param id Requested user ID / 请求的用户 ID
+ * @param found Whether the user exists / 用户是否存在
+ * @param user User, null if not found / 用户，未找到时为 null
+ */
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record UserLookup(Long id, boolean found, UserResponse user) {
+
+    /**
+     * Create the entry for an id
+     * 为 ID 创建条目
+     *
+     * @param id Requested user ID / 请求的用户 ID
+     * @param user User, or null if not found / 用户，未找到时为 null
+     * @return Lookup entry / 查找条目
+     */
+    public static UserLookup of(Long id, UserResponse user) {
+        return new UserLookup(id, user != null, user);
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.demo.dto;
+
+import com.example.demo.repository.UserField;
+import jakarta.validation.constraints.Email;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Pattern;
+import jakarta.validation.constraints.PositiveOrZero;
+import jakarta.validation.constraints.Size;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * UserPatchRequest - Partial User Update Request DTO
+ * 用户部分更新请求 DTO - 部分用户更新请求数据传输对象
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Body of PATCH /api/users/{id}. Only the fields present are changed; an explicit
+ * "phone": null clears the phone. The version is the one returned by the last read
+ * or write of the user, and the update is rejected if the user has changed since.
+ *
+ * PATCH /api/users/{id} 的请求体。只修改出现的字段；显式的 "phone": null 会清空电话。
+ * version 是最近一次读取或写入该用户时返回的版本，如果用户此后发生了变化，更新将被拒绝。
+ */
+public class UserPatchRequest {
+
+    /**
+     * Expected version - Required
+     * 预期版本 - 必填
+     */
+    @NotNull(message = "Version is required")
+    @PositiveOrZero(message = "Version must not be negative")
+    private Long version;
+
+    /**
+     * New name - Optional, 2-50 characters
+     * 新姓名 - 可选，2-50 个字符
+     */
+    @Size(min = 2, max = 50, message = "Name must be between 2 and 50 characters")
+    @Pattern(regexp = "(?s).*\\S.*", message = "Name must not be blank")
+    private String name;
+
+    /**
+     * New email - Optional, validated format
+     * 新邮箱 - 可选，已验证格式
+     */
+    @Email(message = "Email should be valid")
+    @Size(max = 100, message = "Email must not exceed 100 characters")
+    @Pattern(regexp = "(?s).*\\S.*", message = "Email must not be blank")
+    private String email;
+
+    /**
+     * New phone - Optional, max 20 characters, null to clear
+     * 新电话 - 可选，最多 20 个字符，null 表示清空
+     */
+    @Size(max = 20, message = "Phone must not exceed 20 characters")
+    private String phone;
+
+    private boolean phonePresent;
+
+    /**
+     * Requested changes, in UserField order
+     * 请求的变更，按 UserField 顺序
+     *
+     * @return New values by field, empty if nothing is changed / 按字段排列的新值，未修改任何内容时为空
+     */
+    public Map<UserField, Object> toChanges() {
+        Map<UserField, Object> changes = new EnumMap<>(UserField.class);
+        if (name != null) {
+            changes.put(UserField.NAME, name);
+        }
+        if (email != null) {
+            changes.put(UserField.EMAIL, email);
+        }
+        if (phonePresent) {
+            changes.put(UserField.PHONE, phone);
+        }
+        return changes;
+    }
+
+    // Getters and Setters / Getter 和 Setter 方法
+
+    public Long getVersion() {
+        return version;
+    }
+
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public void setName(String name) {
+        this.name = name;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public void setEmail(String email) {
+        this.email = email;
+    }
+
+    public String getPhone() {
+        return phone;
+    }
+
+    public void setPhone(String phone) {
+        this.phone = phone;
+        this.phonePresent = true;
+    }
+}
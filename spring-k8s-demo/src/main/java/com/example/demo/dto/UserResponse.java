@@ -0,0 +1,48 @@
+package com.example.demo.dto;
+
+import com.example.demo.entity.Role;
+import com.example.demo.entity.User;
+
+import java.time.LocalDateTime;
+
+/**
+ * UserResponse - User Representation Returned by the API
+ * 用户响应 - API 返回的用户表示
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Public view of a User. Decouples the JSON contract from the JPA entity and never
+ * exposes the password hash.
+ * Component order also fixes the protobuf field numbers (application/x-protobuf):
+ * add new components at the end.
+ *
+ * User 的公开视图。将 JSON 契约与 JPA 实体解耦，并且从不暴露密码哈希。
+ * 组件顺序同时决定 protobuf 字段编号（application/x-protobuf）：新组件请添加在末尾。
+ *
+ * @param id User ID / 用户 ID
+ * @param name User name / 用户姓名
+ * @param email User email / 用户邮箱
+ * @param phone User phone / 用户电话
+ * @param role User role / 用户角色
+ * @param createdAt Creation time / 创建时间
+ * @param updatedAt Last update time / 最后更新时间
+ * @param version Optimistic lock version, sent back with PATCH / 乐观锁版本，随 PATCH 回传
+ */
+public record UserResponse(Long id, String name, String email, String phone, Role role,
+                           LocalDateTime createdAt, LocalDateTime updatedAt, Long version) {
+
+    /**
+     * Create the response for a user
+     * 为用户创建响应
+     *
+     * @param user User entity / 用户实体
+     * @return User response / 用户响应
+     */
+    public static UserResponse from(User user) {
+        return new UserResponse(user.getId(), user.getName(), user.getEmail(), user.getPhone(), user.getRole(),
+            user.getCreatedAt(), user.getUpdatedAt(), user.getVersion());
+    }
+}
@@ -1,9 +1,12 @@
 package com.example.demo.entity;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
+import org.hibernate.annotations.ColumnDefault;
+import org.springframework.data.domain.Persistable;
 import java.time.LocalDateTime;
 
 /**
@@ -20,20 +23,26 @@ import java.time.LocalDateTime;
  * 
  * 该实体表示系统中的用户。它包括用户信息、
  * 认证凭据、角色和审计时间戳。
+ * 
+ * Ids are assigned by UserIdAllocator before the insert (the id selects the shard),
+ * so the entity implements Persistable: it is new until it has been persisted once.
+ * 
+ * ID 在插入前由 UserIdAllocator 分配（ID 决定分片），因此实体实现了 Persistable：
+ * 在首次持久化之前它都是新实体。
  */
 @Entity
 @Table(name = "users", indexes = {
     @Index(name = "idx_email", columnList = "email"),        // Index for email lookup / 邮箱查找索引
-    @Index(name = "idx_created_at", columnList = "created_at") // Index for date queries / 日期查询索引
+    @Index(name = "idx_created_at", columnList = "created_at"), // Index for date queries / 日期查询索引
+    @Index(name = "idx_updated_at_id", columnList = "updated_at, id") // Keyset for delta sync / 增量同步的键集
 })
-public class User {
+public class User implements Persistable<Long> {
     
     /**
-     * User ID - Primary key, auto-generated
-     * 用户 ID - 主键，自动生成
+     * User ID - Primary key, assigned by UserIdAllocator
+     * 用户 ID - 主键，由 UserIdAllocator 分配
      */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
     private Long id;
     
     /**
@@ -91,6 +100,25 @@ public class User {
     @Column(name = "updated_at")
     private LocalDateTime updatedAt;
     
+    /**
+     * Last login and last authenticated request - Written only by UserActivityTracker
+     * 最后登录时间和最后一次已认证请求时间 - 仅由 UserActivityTracker 写入
+     */
+    @Column(name = "last_login_at", insertable = false, updatable = false)
+    private LocalDateTime lastLoginAt;
+    
+    @Column(name = "last_seen_at", insertable = false, updatable = false)
+    private LocalDateTime lastSeenAt;
+    
+    /**
+     * Optimistic lock version - Incremented by every update, checked by PATCH and PUT
+     * 乐观锁版本 - 每次更新时递增，由 PATCH 和 PUT 检查
+     */
+    @Version
+    @ColumnDefault("0")
+    @Column(nullable = false)
+    private Long version;
+    
     /**
      * Pre-persist callback - Set timestamps before saving
      * 持久化前回调 - 保存前设置时间戳
@@ -110,7 +138,20 @@ public class User {
         updatedAt = LocalDateTime.now();
     }
     
+    /**
+     * Whether the user has not been inserted yet (creation timestamp is set on persist)
+     * 用户是否尚未插入（创建时间戳在持久化时设置）
+     * 
+     * @return true if the user must be inserted / 如果用户需要插入则返回 true
+     */
+    @Override
+    @JsonIgnore
+    public boolean isNew() {
+        return id == null || createdAt == null;
+    }
+    
     // Getters and Setters
+    @Override
     public Long getId() {
         return id;
     }
@@ -159,6 +200,30 @@ public class User {
         this.updatedAt = updatedAt;
     }
     
+    public Long getVersion() {
+        return version;
+    }
+    
+    public void setVersion(Long version) {
+        this.version = version;
+    }
+    
+    public LocalDateTime getLastLoginAt() {
+        return lastLoginAt;
+    }
+    
+    public void setLastLoginAt(LocalDateTime lastLoginAt) {
+        this.lastLoginAt = lastLoginAt;
+    }
+    
+    public LocalDateTime getLastSeenAt() {
+        return lastSeenAt;
+    }
+    
+    public void setLastSeenAt(LocalDateTime lastSeenAt) {
+        this.lastSeenAt = lastSeenAt;
+    }
+    
     public String getPassword() {
         return password;
     }
@@ -0,0 +1,51 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+/**
+ * UserIdSequence Entity - Id Block Counter
+ * 用户 ID 序列实体 - ID 块计数器
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Mapping of the user_id_sequence table, so that the schema is managed together with
+ * the users table when sharding is disabled. The table is only read and written by
+ * UserIdAllocator over JDBC. With sharding it comes from db/sharding/directory-schema.sql.
+ *
+ * user_id_sequence 表的映射，使未启用分片时该表与 users 表一起由架构管理创建。
+ * 该表只由 UserIdAllocator 通过 JDBC 读写。启用分片时它来自 db/sharding/directory-schema.sql。
+ */
+@Entity
+@Table(name = "user_id_sequence")
+public class UserIdSequence {
+
+    /**
+     * Sequence name / 序列名称
+     */
+    @Id
+    @Column(length = 64)
+    private String name;
+
+    /**
+     * Lowest id not yet reserved by any pod / 尚未被任何 Pod 预留的最小 ID
+     */
+    @Column(name = "next_val", nullable = false)
+    private Long nextVal;
+
+    protected UserIdSequence() {
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Long getNextVal() {
+        return nextVal;
+    }
+}
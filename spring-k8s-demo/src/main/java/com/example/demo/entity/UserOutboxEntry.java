@@ -0,0 +1,107 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.EnumType;
+import jakarta.persistence.Enumerated;
+import jakarta.persistence.GeneratedValue;
+import jakarta.persistence.GenerationType;
+import jakarta.persistence.Id;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * UserOutboxEntry Entity - User Change Waiting to Be Published
+ * 用户发件箱条目实体 - 等待发布的用户变更
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Written in the same transaction (and on the same shard) as the user change it
+ * describes, so a change is published if and only if it committed. UserOutboxPublisher
+ * copies entries to Redis and deletes them; the table only holds the backlog.
+ *
+ * 与其描述的用户变更在同一事务中（并在同一分片上）写入，因此变更当且仅当已提交时才会被发布。
+ * UserOutboxPublisher 将条目复制到 Redis 并删除它们；该表只保存积压部分。
+ */
+@Entity
+@Table(name = "user_outbox")
+public class UserOutboxEntry {
+
+    /**
+     * Publication order within a shard / 分片内的发布顺序
+     */
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    /**
+     * Kind of change (UserChangeEvent.Type) / 变更类型（UserChangeEvent.Type）
+     */
+    @Column(name = "event_type", nullable = false, length = 20)
+    private String eventType;
+
+    @Column(name = "user_id", nullable = false)
+    private Long userId;
+
+    @Column(length = 100)
+    private String email;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 20)
+    private Role role;
+
+    /**
+     * Time of the change / 变更时间
+     */
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    protected UserOutboxEntry() {
+    }
+
+    /**
+     * Constructor for UserOutboxEntry
+     * UserOutboxEntry 构造函数
+     *
+     * @param eventType Kind of change / 变更类型
+     * @param userId User ID / 用户 ID
+     * @param email User email / 用户邮箱
+     * @param role User role / 用户角色
+     * @param createdAt Time of the change / 变更时间
+     */
+    public UserOutboxEntry(String eventType, Long userId, String email, Role role, LocalDateTime createdAt) {
+        this.eventType = eventType;
+        this.userId = userId;
+        this.email = email;
+        this.role = role;
+        this.createdAt = createdAt;
+    }
+
+    public Long getId() {
+        return id;
+    }
+
+    public String getEventType() {
+        return eventType;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
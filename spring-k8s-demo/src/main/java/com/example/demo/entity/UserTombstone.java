@@ -0,0 +1,68 @@
+package com.example.demo.entity;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Entity;
+import jakarta.persistence.Id;
+import jakarta.persistence.Index;
+import jakarta.persistence.Table;
+
+import java.time.LocalDateTime;
+
+/**
+ * UserTombstone Entity - Record of a Deleted User
+ * 用户墓碑实体 - 已删除用户的记录
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Written in the same transaction (and on the same shard) as the user delete, so that
+ * delta sync clients learn about deletions. Tombstones are purged after
+ * user-sync.tombstone-retention; older watermarks must resync from scratch.
+ *
+ * 与用户删除在同一事务中（并在同一分片上）写入，使增量同步客户端得知删除。
+ * 墓碑在 user-sync.tombstone-retention 之后被清除；更早的水位必须从头重新同步。
+ */
+@Entity
+@Table(name = "user_tombstones", indexes = {
+    @Index(name = "idx_deleted_at_user_id", columnList = "deleted_at, user_id") // Keyset for delta sync / 增量同步的键集
+})
+public class UserTombstone {
+
+    /**
+     * Id of the deleted user (ids are never reused) / 已删除用户的 ID（ID 从不重用）
+     */
+    @Id
+    @Column(name = "user_id")
+    private Long userId;
+
+    /**
+     * Deletion time / 删除时间
+     */
+    @Column(name = "deleted_at", nullable = false)
+    private LocalDateTime deletedAt;
+
+    protected UserTombstone() {
+    }
+
+    /**
+     * Constructor for UserTombstone
+     * UserTombstone 构造函数
+     *
+     * @param userId Id of the deleted user / 已删除用户的 ID
+     * @param deletedAt Deletion time / 删除时间
+     */
+    public UserTombstone(Long userId, LocalDateTime deletedAt) {
+        this.userId = userId;
+        this.deletedAt = deletedAt;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public LocalDateTime getDeletedAt() {
+        return deletedAt;
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.demo.event;
+
+import com.example.demo.entity.Role;
+
+import java.time.LocalDateTime;
+
+/**
+ * UserChangeEvent - User Lifecycle Application Event
+ * 用户变更事件 - 用户生命周期应用事件
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Published by UserService and AuthService when a user is created, updated or deleted,
+ * inside the transaction that makes the change. An update that changes the email is
+ * published as EMAIL_CHANGED with the new address, any other update as UPDATED. Listeners that keep derived data (statistics,
+ * caches, filters) use @TransactionalEventListener so that they only see committed
+ * changes.
+ *
+ * 由 UserService 和 AuthService 在创建、更新或删除用户时、在执行变更的事务内发布。
+ * 变更邮箱的更新以 EMAIL_CHANGED 发布（邮箱为新地址），其他更新以 UPDATED 发布。
+ * 维护派生数据（统计、缓存、过滤器）的监听器使用 @TransactionalEventListener，
+ * 以确保只看到已提交的变更。
+ */
+public class UserChangeEvent {
+
+    /**
+     * Kind of change / 变更类型
+     */
+    public enum Type {
+        CREATED,
+        DELETED,
+        EMAIL_CHANGED,
+        UPDATED
+    }
+
+    private final Type type;
+    private final Long userId;
+    private final String email;
+    private final Role role;
+    private final LocalDateTime createdAt;
+
+    /**
+     * Constructor for UserChangeEvent
+     * UserChangeEvent 构造函数
+     *
+     * @param type Kind of change / 变更类型
+     * @param userId User ID / 用户 ID
+     * @param email User email / 用户邮箱
+     * @param role User role / 用户角色
+     * @param createdAt User creation time / 用户创建时间
+     */
+    public UserChangeEvent(Type type, Long userId, String email, Role role, LocalDateTime createdAt) {
+        this.type = type;
+        this.userId = userId;
+        this.email = email;
+        this.role = role;
+        this.createdAt = createdAt;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Long getUserId() {
+        return userId;
+    }
+
+    public String getEmail() {
+        return email;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public LocalDateTime getCreatedAt() {
+        return createdAt;
+    }
+}
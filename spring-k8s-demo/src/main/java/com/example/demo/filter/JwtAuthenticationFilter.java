@@ -1,7 +1,12 @@
 package com.example.demo.filter;
 
+import com.example.demo.service.ActiveUserTracker;
 import com.example.demo.service.AuthService;
+import com.example.demo.service.UsageMeter;
+import com.example.demo.service.UserActivityTracker;
 import com.example.demo.util.JwtUtil;
+import com.example.demo.util.LogSampler;
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -14,6 +19,7 @@ import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.web.authentication.WebAuthenticationDetailsSource;
 import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
 
 import java.io.IOException;
 import java.util.Collections;
@@ -29,9 +35,11 @@ import java.util.Collections;
  * @description
  * This filter intercepts HTTP requests to validate JWT tokens and set up
  * Spring Security authentication context. It runs after RateLimitFilter (Order 1).
+ * Authenticated subjects are recorded for active-user (DAU/MAU) counting.
  * 
  * 该过滤器拦截 HTTP 请求以验证 JWT 令牌并设置
  * Spring Security 认证上下文。它在 RateLimitFilter（Order 1）之后运行。
+ * 已认证的主体会被记录用于活跃用户（DAU/MAU）统计。
  */
 @Component
 @Order(2) // Execute after RateLimitFilter / 在 RateLimitFilter 之后执行
@@ -51,6 +59,34 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
     @Autowired
     private AuthService authService;
     
+    /**
+     * LogSampler - Rate limits repetitive token errors
+     * 日志采样器 - 限制重复令牌错误的日志速率
+     */
+    @Autowired
+    private LogSampler logSampler;
+    
+    /**
+     * ActiveUserTracker - Counts distinct authenticated users (DAU/MAU)
+     * 活跃用户跟踪器 - 统计不同的已认证用户（DAU/MAU）
+     */
+    @Autowired
+    private ActiveUserTracker activeUserTracker;
+    
+    /**
+     * UserActivityTracker - Last-seen timestamps (tokens issued before the uid claim are skipped)
+     * 用户活动跟踪器 - 最后访问时间（跳过 uid 声明之前签发的令牌）
+     */
+    @Autowired
+    private UserActivityTracker activityTracker;
+    
+    /**
+     * UsageMeter - Per-user request counts by route (quotas, billing)
+     * 用量计量器 - 按路由的每用户请求数（配额、计费）
+     */
+    @Autowired
+    private UsageMeter usageMeter;
+    
     /**
      * Filter internal method - Process JWT authentication
      * 过滤器内部方法 - 处理 JWT 认证
@@ -63,19 +99,20 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
      * @description
      * Extracts JWT token from Authorization header, validates it, and sets up
      * Spring Security authentication context if valid. Skips authentication for
-     * /api/auth/** endpoints.
+     * /api/auth/** endpoints other than /api/auth/forward/batch.
      * 
      * 从 Authorization 头提取 JWT 令牌，验证它，如果有效则设置
-     * Spring Security 认证上下文。跳过 /api/auth/** 端点的认证。
+     * Spring Security 认证上下文。跳过除 /api/auth/forward/batch 以外的 /api/auth/** 端点的认证。
      */
     @Override
     protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
             throws ServletException, IOException {
         
-        // Skip authentication endpoints - These endpoints don't require JWT token
-        // 跳过认证端点 - 这些端点不需要 JWT 令牌
+        // Skip authentication endpoints - These endpoints don't require JWT token, except
+        // the batch validation endpoint, which is for authenticated internal callers
+        // 跳过认证端点 - 这些端点不需要 JWT 令牌，批量验证端点除外，它供已认证的内部调用方使用
         String path = request.getRequestURI();
-        if (path.startsWith("/api/auth/")) {
+        if (path.startsWith("/api/auth/") && !path.equals("/api/auth/forward/batch")) {
             chain.doFilter(request, response);
             return;
         }
@@ -86,6 +123,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         
         String email = null;
         String jwt = null;
+        boolean metered = false;
         
         // Parse Bearer token / 解析 Bearer 令牌
         if (authHeader != null && authHeader.startsWith("Bearer ")) {
@@ -93,7 +131,10 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
             try {
                 email = jwtUtil.extractUsername(jwt);
             } catch (Exception e) {
-                logger.error("JWT token extraction failed", e);
+                // Malformed or expired tokens are client errors: log a sampled one-line
+                // warning, stack trace only at debug level
+                // 格式错误或过期的令牌属于客户端错误：记录采样的单行警告，仅在 debug 级别输出堆栈
+                logSampled("jwt.extract", "JWT token extraction failed", e);
             }
         }
         
@@ -102,8 +143,9 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         if (email != null && SecurityContextHolder.getContext().getAuthentication() == null) {
             if (authService.validateToken(jwt)) {
                 try {
-                    // Extract role from token / 从令牌提取角色
-                    String role = jwtUtil.extractClaim(jwt, claims -> claims.get("role", String.class));
+                    // Extract role and user id from token / 从令牌提取角色和用户 ID
+                    Claims claims = jwtUtil.parseClaims(jwt);
+                    String role = claims.get("role", String.class);
                     
                     // Create authentication token / 创建认证令牌
                     UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
@@ -115,14 +157,56 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
                     // Set authentication details / 设置认证详情
                     authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
                     SecurityContextHolder.getContext().setAuthentication(authToken);
+                    metered = true;
+                    
+                    // Buffered in memory, flushed to Redis HyperLogLogs in the background
+                    // 在内存中缓冲，后台刷新到 Redis HyperLogLog
+                    activeUserTracker.record(email);
+                    
+                    // Coalesced in memory, written to users.last_seen_at in batches
+                    // 在内存中合并，批量写入 users.last_seen_at
+                    Long userId = claims.get(JwtUtil.USER_ID_CLAIM, Long.class);
+                    if (userId != null) {
+                        activityTracker.recordSeen(userId);
+                    }
                 } catch (Exception e) {
-                    logger.error("Cannot set user authentication", e);
+                    logSampled("jwt.authenticate", "Cannot set user authentication", e);
                 }
             }
         }
         
         // Continue filter chain / 继续过滤器链
-        chain.doFilter(request, response);
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            if (metered) {
+                // The route template is only known once the request has been dispatched
+                // 路由模板只有在请求被分派之后才可知
+                Object route = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+                usageMeter.record(email, request.getMethod() + " " + (route != null ? route : "(unmatched)"));
+            }
+        }
+    }
+    
+    /**
+     * Log a sampled warning for a repetitive error
+     * 为重复错误记录采样警告
+     * 
+     * @param key Sampling key / 采样键
+     * @param message Log message / 日志消息
+     * @param e Cause / 原因
+     */
+    private void logSampled(String key, String message, Exception e) {
+        long suppressed = logSampler.tryAcquire(key);
+        if (suppressed < 0) {
+            return;
+        }
+        if (logger.isDebugEnabled()) {
+            logger.debug(message, e);
+        } else {
+            logger.warn(message + ": " + e.getMessage()
+                + (suppressed > 0 ? " (" + suppressed + " similar messages suppressed)" : ""));
+        }
     }
 }
 
@@ -1,6 +1,8 @@
 package com.example.demo.filter;
 
 import com.example.demo.config.RateLimitConfig;
+import com.example.demo.service.PeerCacheService;
+import io.github.bucket4j.Bandwidth;
 import io.github.bucket4j.Bucket;
 import jakarta.servlet.Filter;
 import jakarta.servlet.FilterChain;
@@ -9,11 +11,16 @@ import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.core.annotation.Order;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 
 import java.io.IOException;
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
 
 /**
  * RateLimitFilter - API Rate Limiting Filter
@@ -26,15 +33,26 @@ import java.io.IOException;
  * @description
  * This filter implements API rate limiting using Bucket4j. It applies different
  * rate limits for authentication endpoints (stricter) and general API endpoints.
- * It runs before JwtAuthenticationFilter (Order 1).
+ * It runs before JwtAuthenticationFilter (Order 1). The email availability check has
+ * its own bucket per client IP, so a sign-up form cannot starve the shared auth
+ * bucket and a single client cannot use it to enumerate registered emails quickly.
  * 
  * 该过滤器使用 Bucket4j 实现 API 速率限制。它对认证端点（更严格）
  * 和通用 API 端点应用不同的速率限制。它在 JwtAuthenticationFilter（Order 1）之前运行。
+ * 邮箱可用性检查按客户端 IP 使用独立的桶，因此注册表单不会耗尽共享的认证桶，
+ * 单个客户端也无法借此快速枚举已注册邮箱。
  */
 @Component
 @Order(1) // Execute before JWT authentication filter / 在 JWT 认证过滤器之前执行
 public class RateLimitFilter implements Filter {
     
+    /**
+     * Set once a request has been charged; the filter is registered both as a servlet
+     * filter and in the security chain
+     * 请求计费后设置；该过滤器同时注册为 Servlet 过滤器和安全过滤器链中的过滤器
+     */
+    private static final String CHARGED = RateLimitFilter.class.getName() + ".CHARGED";
+    
     /**
      * API Rate Limit Bucket - For general API endpoints
      * API 速率限制桶 - 用于通用 API 端点
@@ -54,6 +72,32 @@ public class RateLimitFilter implements Filter {
     @Qualifier("authRateLimitBucket")
     private Bucket authRateLimitBucket;
     
+    /**
+     * Peer Cache Service - Identifies the internal peer cache port
+     * 对等缓存服务 - 识别内部对等缓存端口
+     */
+    @Autowired
+    private PeerCacheService peerCache;
+    
+    /**
+     * Email availability checks per client: burst and checks per minute
+     * 每个客户端的邮箱可用性检查：突发容量和每分钟检查次数
+     */
+    @Value("${rate-limit.email-available.capacity:10}")
+    private int emailCheckCapacity;
+    
+    @Value("${rate-limit.email-available.per-minute:30}")
+    private int emailChecksPerMinute;
+    
+    /**
+     * Clients tracked for email availability checks, least recently used dropped first
+     * 跟踪邮箱可用性检查的客户端数，最近最少使用的先被丢弃
+     */
+    @Value("${rate-limit.email-available.max-clients:10000}")
+    private int emailCheckMaxClients;
+    
+    private final Map<String, Bucket> emailCheckBuckets = new LinkedHashMap<>(256, 0.75f, true);
+    
     /**
      * Filter method - Apply rate limiting
      * 过滤器方法 - 应用速率限制
@@ -80,9 +124,43 @@ public class RateLimitFilter implements Filter {
         String path = httpRequest.getRequestURI();
         Bucket bucket;
         
+        if (request.getAttribute(CHARGED) != null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        request.setAttribute(CHARGED, Boolean.TRUE);
+        
+        // ForwardAuth is called by Traefik once per edge request; throttling it here
+        // would throttle the whole site, so it is left to Traefik's own rate limits.
+        // /api/auth/forward/batch is not exempt and is charged to the auth bucket
+        // ForwardAuth 由 Traefik 在每个边缘请求时调用一次；在此限流会限制整个站点，
+        // 因此交由 Traefik 自身的速率限制处理。/api/auth/forward/batch 不在此列，按认证桶计费
+        if (path.equals("/api/auth/forward")) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        // Peer cache calls from the other pods carry cache traffic, not client requests;
+        // they only arrive on the internal port
+        // 来自其他 Pod 的对等缓存调用承载的是缓存流量，而非客户端请求；它们只到达内部端口
+        if (peerCache.isPeerPort(httpRequest.getLocalPort())) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
+        // Login is throttled per account and source IP by LoginThrottle; the shared
+        // bucket would lock every user out during an attack
+        // 登录由 LoginThrottle 按账户和来源 IP 限流；共享桶会在攻击期间把所有用户拒之门外
+        if (path.equals("/api/auth/login")) {
+            chain.doFilter(request, response);
+            return;
+        }
+        
         // Use stricter rate limiting for authentication endpoints
         // 对认证端点使用更严格的速率限制
-        if (path.startsWith("/api/auth/")) {
+        if (path.equals("/api/auth/email-available")) {
+            bucket = emailCheckBucket(httpRequest.getRemoteAddr());
+        } else if (path.startsWith("/api/auth/")) {
             bucket = authRateLimitBucket;
         } else {
             bucket = apiRateLimitBucket;
@@ -105,5 +183,29 @@ public class RateLimitFilter implements Filter {
         // 允许请求 - 继续过滤器链
         chain.doFilter(request, response);
     }
+    
+    /**
+     * Bucket of one client for email availability checks
+     * 某个客户端的邮箱可用性检查桶
+     */
+    private Bucket emailCheckBucket(String clientIp) {
+        synchronized (emailCheckBuckets) {
+            Bucket bucket = emailCheckBuckets.get(clientIp);
+            if (bucket == null) {
+                bucket = Bucket.builder()
+                    .addLimit(Bandwidth.builder()
+                        .capacity(emailCheckCapacity)
+                        .refillGreedy(emailChecksPerMinute, Duration.ofMinutes(1))
+                        .build())
+                    .build();
+                emailCheckBuckets.put(clientIp, bucket);
+                Iterator<String> eldest = emailCheckBuckets.keySet().iterator();
+                while (emailCheckBuckets.size() > emailCheckMaxClients && eldest.hasNext()) {
+                    eldest.next();
+                    eldest.remove();
+                }
+            }
+            return bucket;
+        }
+    }
 }
-
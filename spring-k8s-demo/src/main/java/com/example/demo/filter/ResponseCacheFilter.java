@@ -0,0 +1,229 @@
+package com.example.demo.filter;
+
+import com.example.demo.repository.ReplicaContext;
+import com.example.demo.service.ResponseCache;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * ResponseCacheFilter - Cached Responses and ETags for the User Read Endpoints
+ * 响应缓存过滤器 - 用户读取端点的缓存响应和 ETag
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Serves GET /api/users (with any query) and GET /api/users/{id} from ResponseCache.
+ * It runs after Spring Security, so only authorized requests reach it; the cache key
+ * is the path, the query, the caller's role and the Accept header, since protobuf and
+ * JSON are different encodings of the same resource.
+ *
+ * Every cached response carries a strong ETag, a digest of the encoded body, so it only
+ * changes when the data shown does. A miss is rendered on the primary (ReplicaContext),
+ * since the entry outlives the request and a lagging replica would store rows that a
+ * change has already invalidated. If-None-Match is answered 304 without running the
+ * controller. Clients that accept gzip get the pre-compressed copy, with its own ETag.
+ *
+ * 通过 ResponseCache 提供 GET /api/users（任意查询参数）和 GET /api/users/{id}。
+ * 它在 Spring Security 之后运行，因此只有已授权的请求才能到达；缓存键为路径、查询、调用方角色和 Accept 头，
+ * 因为 protobuf 和 JSON 是同一资源的不同编码。
+ *
+ * 每个缓存的响应都带有强 ETag，即编码后响应体的摘要，因此只有展示的数据变化时才会改变。
+ * 未命中时在主库上生成响应（ReplicaContext），因为条目的存活时间长于请求，延迟的副本会存储已被变更失效的行。
+ * If-None-Match 无需运行控制器即以 304 应答。接受 gzip 的客户端获得预压缩的副本，它有自己的 ETag。
+ */
+@Component
+public class ResponseCacheFilter extends OncePerRequestFilter {
+
+    private static final String LIST_PATH = "/api/users";
+    private static final Pattern USER_PATH = Pattern.compile("/api/users/(\\d{1,18})");
+
+    /**
+     * Handler headers kept with a cached response / 随缓存响应保存的处理器响应头
+     */
+    private static final String[] KEPT_HEADERS = {"X-Protobuf-Message"};
+
+    /**
+     * Clients may store the response but must revalidate it / 客户端可以存储响应，但必须重新验证
+     */
+    private static final String CACHE_CONTROL = "private, no-cache";
+
+    /**
+     * ResponseCache - Cached encoded responses
+     * 响应缓存 - 缓存的已编码响应
+     */
+    @Autowired
+    private ResponseCache responseCache;
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        if (!responseCache.isEnabled() || !"GET".equals(request.getMethod())) {
+            return true;
+        }
+        String path = request.getRequestURI();
+        return !path.equals(LIST_PATH) && !USER_PATH.matcher(path).matches();
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || authentication instanceof AnonymousAuthenticationToken) {
+            chain.doFilter(request, response);
+            return;
+        }
+        String path = request.getRequestURI();
+        Matcher user = USER_PATH.matcher(path);
+        Long userId = user.matches() ? Long.valueOf(user.group(1)) : null;
+        String route = userId != null ? LIST_PATH + "/{id}" : LIST_PATH;
+        String key = path + "?" + nullToEmpty(request.getQueryString())
+            + "|" + authentication.getAuthorities().stream().map(GrantedAuthority::getAuthority).sorted()
+                .collect(Collectors.joining(","))
+            + "|" + nullToEmpty(request.getHeader(HttpHeaders.ACCEPT));
+
+        ResponseCache.Entry cached = responseCache.get(key);
+        if (cached != null) {
+            // Usage metering reads the route the dispatcher would have matched
+            // 用量计量读取分派器本应匹配的路由
+            request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, route);
+            responseCache.count(write(cached, request, response) ? "not_modified" : "hit");
+            return;
+        }
+
+        long stamp = responseCache.stamp();
+        ContentCachingResponseWrapper wrapper = new ContentCachingResponseWrapper(response);
+        renderOnPrimary(chain, request, wrapper);
+        byte[] body = wrapper.getContentAsByteArray();
+        if (wrapper.getStatus() != HttpServletResponse.SC_OK || request.isAsyncStarted()
+                || wrapper.getContentType() == null || response.isCommitted()) {
+            wrapper.copyBodyToResponse();
+            return;
+        }
+        String etag = userId != null
+            ? "\"u" + userId + "-" + ResponseCache.digest(body) + "\""
+            : "\"c" + ResponseCache.digest(body) + "\"";
+        Map<String, String> headers = new TreeMap<>();
+        for (String name : KEPT_HEADERS) {
+            String value = wrapper.getHeader(name);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        }
+        ResponseCache.Entry entry = responseCache.put(key, userId, route, etag, wrapper.getContentType(),
+            headers, body, stamp);
+        responseCache.count("miss");
+        write(entry, request, response);
+    }
+
+    /**
+     * Run the handler with its reads routed to the primary
+     * 运行处理器，并将其读取路由到主库
+     */
+    private static void renderOnPrimary(FilterChain chain, HttpServletRequest request,
+                                        HttpServletResponse response) throws ServletException, IOException {
+        Exception[] failure = new Exception[1];
+        ReplicaContext.onPrimary(() -> {
+            try {
+                chain.doFilter(request, response);
+            } catch (IOException | ServletException e) {
+                failure[0] = e;
+            }
+            return null;
+        });
+        if (failure[0] instanceof IOException e) {
+            throw e;
+        }
+        if (failure[0] instanceof ServletException e) {
+            throw e;
+        }
+    }
+
+    /**
+     * Write a cached response, or 304 if the client holds it already
+     * 写入缓存的响应，如果客户端已持有则返回 304
+     *
+     * @return true if answered 304 / 如果以 304 应答则返回 true
+     */
+    private boolean write(ResponseCache.Entry entry, HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        boolean gzip = entry.gzipped() != null && acceptsGzip(request);
+        response.setHeader(HttpHeaders.ETAG, gzip ? entry.gzipEtag() : entry.etag());
+        response.setHeader(HttpHeaders.CACHE_CONTROL, CACHE_CONTROL);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        String ifNoneMatch = request.getHeader(HttpHeaders.IF_NONE_MATCH);
+        if (matches(ifNoneMatch, entry.etag()) || (entry.gzipped() != null && matches(ifNoneMatch, entry.gzipEtag()))) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return true;
+        }
+        byte[] body = gzip ? entry.gzipped() : entry.body();
+        response.setStatus(HttpServletResponse.SC_OK);
+        response.setContentType(entry.contentType());
+        entry.headers().forEach(response::setHeader);
+        if (gzip) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+        }
+        response.setContentLength(body.length);
+        response.getOutputStream().write(body);
+        return false;
+    }
+
+    /**
+     * Weak comparison of If-None-Match against an ETag, as RFC 9110 requires for GET
+     * 按 RFC 9110 对 GET 的要求，以弱比较方式将 If-None-Match 与 ETag 比较
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            String tag = candidate.trim();
+            if (tag.startsWith("W/")) {
+                tag = tag.substring(2);
+            }
+            if (tag.equals("*") || tag.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        Enumeration<String> values = request.getHeaders(HttpHeaders.ACCEPT_ENCODING);
+        while (values.hasMoreElements()) {
+            for (String coding : values.nextElement().split(",")) {
+                String[] parts = coding.trim().split(";");
+                if (parts[0].trim().equalsIgnoreCase("gzip")
+                        && !(parts.length > 1 && parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?"))) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.demo.repository;
+
+import java.util.function.Supplier;
+
+/**
+ * ReplicaContext - Per-Thread Primary Override for Read-Only Transactions
+ * 副本上下文 - 只读事务的线程级主库覆盖
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Read-only transactions are normally served by a replica. Code that must see its own
+ * recent writes (e.g. a login right after registration) runs the read inside onPrimary;
+ * the read/write routing DataSource then hands out a primary connection. Because the
+ * connection is acquired lazily, the override works even when the surrounding
+ * transaction has already started.
+ *
+ * 只读事务通常由副本提供服务。必须看到自身最近写入的代码（例如注册后立即登录）
+ * 在 onPrimary 中执行读取；读写路由数据源随后提供主库连接。由于连接是延迟获取的，
+ * 即使外围事务已经开始，该覆盖仍然有效。
+ */
+public final class ReplicaContext {
+
+    private static final ThreadLocal<Boolean> PRIMARY_FORCED = new ThreadLocal<>();
+
+    private ReplicaContext() {
+    }
+
+    /**
+     * Check whether reads on this thread must go to the primary
+     * 检查此线程上的读取是否必须路由到主库
+     *
+     * @return true inside onPrimary / 在 onPrimary 内部时返回 true
+     */
+    public static boolean isPrimaryForced() {
+        return Boolean.TRUE.equals(PRIMARY_FORCED.get());
+    }
+
+    /**
+     * Run a read against the primary
+     * 在主库上执行读取
+     *
+     * @param <T> Result type / 结果类型
+     * @param read Read operation / 读取操作
+     * @return Read result / 读取结果
+     */
+    public static <T> T onPrimary(Supplier<T> read) {
+        if (isPrimaryForced()) {
+            return read.get();
+        }
+        PRIMARY_FORCED.set(Boolean.TRUE);
+        try {
+            return read.get();
+        } finally {
+            PRIMARY_FORCED.remove();
+        }
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.demo.repository;
+
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * ShardContext - Per-Transaction Shard Binding
+ * 分片上下文 - 按事务绑定分片
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Holds the shard that the current transaction is bound to. The routing DataSource reads
+ * it when the transaction's first statement needs a physical connection (the connection
+ * is acquired lazily), so a transaction must be bound before it touches the database and
+ * can never span two shards. The binding is released when the transaction completes and
+ * is suspended/resumed together with the transaction (REQUIRES_NEW).
+ *
+ * 保存当前事务所绑定的分片。路由数据源在事务的第一条语句需要物理连接时读取它
+ * （连接是延迟获取的），因此事务必须在访问数据库之前绑定，并且永远不能跨越两个分片。
+ * 绑定在事务完成时释放，并随事务一起挂起/恢复（REQUIRES_NEW）。
+ */
+public final class ShardContext {
+
+    private static final ThreadLocal<Integer> CURRENT = new ThreadLocal<>();
+
+    private ShardContext() {
+    }
+
+    /**
+     * Get the shard bound to the current transaction
+     * 获取当前事务绑定的分片
+     *
+     * @return Shard index, or null if unbound / 分片索引，未绑定则返回 null
+     */
+    public static Integer current() {
+        return CURRENT.get();
+    }
+
+    /**
+     * Bind the current transaction to a shard
+     * 将当前事务绑定到分片
+     *
+     * @param shard Shard index / 分片索引
+     * @throws IllegalStateException if no transaction is active or it is bound to another shard
+     *         如果没有活动事务或事务已绑定到其他分片
+     */
+    public static void bind(int shard) {
+        Integer bound = CURRENT.get();
+        if (bound != null) {
+            if (bound != shard) {
+                throw new IllegalStateException(
+                    "Transaction is bound to shard " + bound + " and cannot access shard " + shard);
+            }
+            return;
+        }
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Sharded access requires an active transaction");
+        }
+        CURRENT.set(shard);
+        TransactionSynchronizationManager.registerSynchronization(new Binding(shard));
+    }
+
+    /**
+     * Synchronization that tracks the binding through suspend/resume and completion
+     * 通过挂起/恢复和完成跟踪绑定的同步器
+     */
+    private static final class Binding implements TransactionSynchronization {
+
+        private final int shard;
+
+        Binding(int shard) {
+            this.shard = shard;
+        }
+
+        @Override
+        public void suspend() {
+            CURRENT.remove();
+        }
+
+        @Override
+        public void resume() {
+            CURRENT.set(shard);
+        }
+
+        @Override
+        public void afterCompletion(int status) {
+            CURRENT.remove();
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package com.example.demo.repository;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * UserEmailDirectory - Global Email to User ID Lookup
+ * 用户邮箱目录 - 全局邮箱到用户 ID 的查找
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Used only when sharding is enabled. Users are placed by id, so a lookup by email first
+ * resolves the id here (one primary-key read on shard 0) and then reads a single shard.
+ * The directory primary key also keeps emails unique across shards.
+ *
+ * Directory statements run outside the shard transaction (a transaction cannot span two
+ * datasources). Claims are made before the shard insert and compensated if the shard
+ * transaction rolls back; releases happen only after the shard transaction commits.
+ *
+ * 仅在启用分片时使用。用户按 ID 放置，因此按邮箱查找时先在此解析 ID（分片 0 上的一次主键读取），
+ * 然后只读取一个分片。目录主键还保证邮箱在所有分片中唯一。
+ *
+ * 目录语句在分片事务之外运行（一个事务不能跨两个数据源）。认领在分片插入之前进行，
+ * 如果分片事务回滚则进行补偿；释放只在分片事务提交之后进行。
+ */
+@Component
+public class UserEmailDirectory {
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    private JdbcTemplate jdbc;
+
+    /**
+     * Create the JdbcTemplate on the directory datasource
+     * 在目录数据源上创建 JdbcTemplate
+     */
+    @PostConstruct
+    public void init() {
+        jdbc = new JdbcTemplate(shardRouter.directoryDataSource());
+    }
+
+    /**
+     * Resolve the user id registered for an email
+     * 解析某邮箱注册的用户 ID
+     *
+     * @param email User email / 用户邮箱
+     * @return User id if registered / 如果已注册则返回用户 ID
+     */
+    public Optional<Long> findUserId(String email) {
+        List<Long> ids = jdbc.queryForList(
+            "SELECT user_id FROM user_email_directory WHERE email = ?", Long.class, email);
+        return ids.isEmpty() ? Optional.empty() : Optional.of(ids.get(0));
+    }
+
+    /**
+     * Resolve the email currently registered for a user id
+     * 解析某用户 ID 当前注册的邮箱
+     *
+     * @param userId User ID / 用户 ID
+     * @return Email if registered / 如果已注册则返回邮箱
+     */
+    public Optional<String> findEmail(long userId) {
+        List<String> emails = jdbc.queryForList(
+            "SELECT email FROM user_email_directory WHERE user_id = ?", String.class, userId);
+        return emails.isEmpty() ? Optional.empty() : Optional.of(emails.get(0));
+    }
+
+    /**
+     * Claim an email for a user, undone if the current transaction rolls back
+     * 为用户认领邮箱，如果当前事务回滚则撤销
+     *
+     * @param email Email to claim / 要认领的邮箱
+     * @param userId Owning user id / 所属用户 ID
+     * @throws DuplicateKeyException if the email belongs to another user / 如果邮箱属于其他用户
+     */
+    public void claim(String email, long userId) {
+        try {
+            jdbc.update("INSERT INTO user_email_directory (email, user_id) VALUES (?, ?)", email, userId);
+        } catch (DuplicateKeyException e) {
+            throw new DuplicateKeyException("User with email " + email + " already exists", e);
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCompletion(int status) {
+                if (status != STATUS_COMMITTED) {
+                    remove(email, userId);
+                }
+            }
+        });
+    }
+
+    /**
+     * Release an email once the current transaction commits
+     * 在当前事务提交后释放邮箱
+     *
+     * @param email Email to release / 要释放的邮箱
+     * @param userId User id that owned it / 拥有它的用户 ID
+     */
+    public void releaseAfterCommit(String email, long userId) {
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                remove(email, userId);
+            }
+        });
+    }
+
+    private void remove(String email, long userId) {
+        jdbc.update("DELETE FROM user_email_directory WHERE email = ? AND user_id = ?", email, userId);
+    }
+}
@@ -0,0 +1,122 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.UserResponse;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * UserField - Selectable User Columns
+ * 用户字段 - 可选择的用户列
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Whitelist of the user attributes a client may request with fields=..., mapped to
+ * their JPA attribute and SQL column. Projection queries are built only from these
+ * constants, never from client input, and the password column is not among them.
+ *
+ * 客户端可以通过 fields=... 请求的用户属性白名单，映射到 JPA 属性和 SQL 列。
+ * 投影查询只根据这些常量构建，从不直接使用客户端输入，并且其中不包含密码列。
+ */
+public enum UserField {
+
+    ID("id", "id"),
+    NAME("name", "name"),
+    EMAIL("email", "email"),
+    PHONE("phone", "phone"),
+    ROLE("role", "role"),
+    CREATED_AT("createdAt", "created_at"),
+    UPDATED_AT("updatedAt", "updated_at"),
+    VERSION("version", "version");
+
+    /**
+     * Default projection: every public field / 默认投影：所有公开字段
+     */
+    public static final Set<UserField> ALL = Collections.unmodifiableSet(EnumSet.allOf(UserField.class));
+
+    private final String attribute;
+    private final String column;
+
+    UserField(String attribute, String column) {
+        this.attribute = attribute;
+        this.column = column;
+    }
+
+    /**
+     * JSON property and JPA attribute name / JSON 属性和 JPA 属性名称
+     *
+     * @return Attribute name / 属性名称
+     */
+    public String getAttribute() {
+        return attribute;
+    }
+
+    /**
+     * SQL column name / SQL 列名
+     *
+     * @return Column name / 列名
+     */
+    public String getColumn() {
+        return column;
+    }
+
+    /**
+     * Parse a fields=... parameter
+     * 解析 fields=... 参数
+     *
+     * @param fields Comma-separated attribute names / 逗号分隔的属性名称
+     * @return Requested fields, in declaration order / 请求的字段，按声明顺序
+     * @throws IllegalArgumentException if a name is unknown or nothing is requested / 如果名称未知或未请求任何字段
+     */
+    public static Set<UserField> parse(String fields) {
+        Set<UserField> selected = EnumSet.noneOf(UserField.class);
+        for (String name : fields.split(",")) {
+            String trimmed = name.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            selected.add(Arrays.stream(values())
+                .filter(field -> field.attribute.equals(trimmed))
+                .findFirst()
+                .orElseThrow(() -> new IllegalArgumentException("Unknown field: " + trimmed + ". Allowed fields: "
+                    + Arrays.stream(values()).map(UserField::getAttribute).collect(Collectors.joining(", ")))));
+        }
+        if (selected.isEmpty()) {
+            throw new IllegalArgumentException("No fields requested");
+        }
+        return selected;
+    }
+
+    /**
+     * Keep only the selected fields of a projected user
+     * 只保留投影用户中选定的字段
+     *
+     * @param user Projected user / 投影用户
+     * @param fields Selected fields / 选定的字段
+     * @return Field values by attribute name, nulls included / 按属性名称排列的字段值，包括 null
+     */
+    public static Map<String, Object> pick(UserResponse user, Set<UserField> fields) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        for (UserField field : fields) {
+            values.put(field.attribute, switch (field) {
+                case ID -> user.id();
+                case NAME -> user.name();
+                case EMAIL -> user.email();
+                case PHONE -> user.phone();
+                case ROLE -> user.role();
+                case CREATED_AT -> user.createdAt();
+                case UPDATED_AT -> user.updatedAt();
+                case VERSION -> user.version();
+            });
+        }
+        return values;
+    }
+}
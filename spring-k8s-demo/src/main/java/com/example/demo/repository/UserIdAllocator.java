@@ -0,0 +1,246 @@
+package com.example.demo.repository;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * UserIdAllocator - Hi/Lo User ID Allocator
+ * 用户 ID 分配器 - Hi/Lo 用户 ID 分配器
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Replaces IDENTITY columns: a user's id must be known before the insert so that the
+ * repository can pick the shard, and an auto-increment per shard would not be unique
+ * across shards. Each pod reserves a block of ids from the user_id_sequence row on the
+ * directory datasource and hands them out from memory. Ids are unique and increasing
+ * per pod; gaps appear when a pod restarts with part of a block unused. Assigned ids
+ * also let Hibernate batch inserts, which IDENTITY generation disables.
+ *
+ * Blocks are reserved on the "user-id-reserver" thread, in its own autocommit
+ * statement, never on the caller's connection or transaction. The next block is
+ * prefetched once half of the current one is used, so callers normally never wait;
+ * the monitor only guards the in-memory counters and is not held while waiting.
+ *
+ * The table ships with the schema (the UserIdSequence mapping, or
+ * db/sharding/directory-schema.sql). The row is created and advanced by one upsert,
+ * next_val = GREATEST(next_val, floor) + block, where the floor is the highest
+ * existing id + 1 as read by this pod once. Racing pods can only move the sequence
+ * forward, so a table previously filled by IDENTITY can be taken over, provided that
+ * IDENTITY writers are stopped first.
+ *
+ * 替代 IDENTITY 列：用户 ID 必须在插入之前已知，以便仓库选择分片，而每个分片的自增列
+ * 在分片之间不唯一。每个 Pod 从目录数据源上的 user_id_sequence 行预留一个 ID 块，
+ * 然后从内存中分配。ID 在每个 Pod 内唯一且递增；当 Pod 重启时未使用的部分块会产生空洞。
+ * 分配的 ID 还允许 Hibernate 批量插入，而 IDENTITY 生成会禁用批量插入。
+ *
+ * ID 块在 "user-id-reserver" 线程上以独立的自动提交语句预留，从不使用调用方的连接或事务。
+ * 当前块用掉一半时预取下一块，因此调用方通常无需等待；监视器只保护内存计数器，等待时不持有。
+ *
+ * 该表随架构一起提供（UserIdSequence 映射或 db/sharding/directory-schema.sql）。
+ * 该行由一条 upsert 创建并推进：next_val = GREATEST(next_val, floor) + block，其中 floor
+ * 是本 Pod 读取一次的现有最大 ID + 1。并发的 Pod 只能使序列前进，因此可以接管之前由
+ * IDENTITY 填充的表，前提是先停止 IDENTITY 写入方。
+ */
+@Component
+public class UserIdAllocator {
+
+    private static final Logger log = LoggerFactory.getLogger(UserIdAllocator.class);
+
+    private static final String SEQUENCE_NAME = "users";
+
+    /**
+     * Ids reserved per round-trip / 每次往返预留的 ID 数量
+     */
+    @Value("${sharding.id-block-size:100}")
+    private int blockSize;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    private ExecutorService reserver;
+
+    /**
+     * Highest existing id + 1, read once before the first reservation (reserver thread only)
+     * 现有最大 ID + 1，在首次预留前读取一次（仅限预留线程）
+     */
+    private long floor = -1;
+
+    private long next;
+    private long limit;
+
+    /**
+     * Block being reserved, as its exclusive upper bound / 正在预留的块（以其上界表示，不含）
+     */
+    private CompletableFuture<Long> pending;
+
+    /**
+     * Start the reservation thread
+     * 启动预留线程
+     */
+    @PostConstruct
+    public void init() {
+        reserver = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-id-reserver");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Stop the reservation thread
+     * 停止预留线程
+     */
+    @PreDestroy
+    public void shutdown() {
+        reserver.shutdownNow();
+    }
+
+    /**
+     * Allocate the next user id
+     * 分配下一个用户 ID
+     *
+     * @return New unique user id / 新的唯一用户 ID
+     */
+    public long nextId() {
+        while (true) {
+            CompletableFuture<Long> block;
+            synchronized (this) {
+                if (next < limit) {
+                    long id = next++;
+                    if (pending == null && limit - next <= blockSize / 2) {
+                        pending = reserveAsync();
+                    }
+                    return id;
+                }
+                if (pending == null) {
+                    pending = reserveAsync();
+                }
+                block = pending;
+            }
+            long reservedUpTo;
+            try {
+                reservedUpTo = block.join();
+            } catch (CompletionException e) {
+                synchronized (this) {
+                    if (pending == block) {
+                        pending = null;
+                    }
+                }
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+            synchronized (this) {
+                // The first waiter installs the block / 第一个等待者安装该块
+                if (pending == block) {
+                    pending = null;
+                    next = reservedUpTo - blockSize;
+                    limit = reservedUpTo;
+                }
+            }
+        }
+    }
+
+    /**
+     * Read the upper bound of the ids handed out by any pod
+     * 读取任意 Pod 已分配 ID 的上界
+     *
+     * @return Ids at or above this value have never been allocated, or Long.MAX_VALUE
+     *         while the sequence has not been seeded / 大于等于该值的 ID 从未被分配；序列尚未初始化时返回 Long.MAX_VALUE
+     * @description
+     * Every allocated id lies below next_val, including the unused rest of blocks reserved
+     * by other pods. A single SELECT on the primary, even inside a read-only transaction,
+     * since a lagging replica would report a ceiling below recently created users.
+     * 每个已分配的 ID 都小于 next_val，包括其他 Pod 预留块中未使用的部分。即使在只读事务中也在主库上
+     * 执行单条 SELECT，因为延迟的副本报告的上界会低于最近创建的用户。
+     */
+    public long allocatedCeiling() {
+        return ReplicaContext.onPrimary(this::readCeiling);
+    }
+
+    private long readCeiling() {
+        try (Connection connection = shardRouter.directoryDataSource().getConnection();
+             PreparedStatement select = connection.prepareStatement(
+                 "SELECT next_val FROM user_id_sequence WHERE name = ?")) {
+            select.setString(1, SEQUENCE_NAME);
+            try (ResultSet rs = select.executeQuery()) {
+                return rs.next() ? rs.getLong(1) : Long.MAX_VALUE;
+            }
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Failed to read the user id sequence", e);
+        }
+    }
+
+    private CompletableFuture<Long> reserveAsync() {
+        return CompletableFuture.supplyAsync(this::reserveBlock, reserver);
+    }
+
+    private long reserveBlock() {
+        if (floor < 0) {
+            floor = readFloor();
+        }
+        try (Connection connection = shardRouter.directoryDataSource().getConnection()) {
+            boolean autoCommit = connection.getAutoCommit();
+            connection.setAutoCommit(false);
+            try (PreparedStatement upsert = connection.prepareStatement(
+                     "INSERT INTO user_id_sequence (name, next_val) VALUES (?, ?) "
+                         + "ON DUPLICATE KEY UPDATE next_val = GREATEST(next_val, ?) + ?");
+                 PreparedStatement select = connection.prepareStatement(
+                     "SELECT next_val FROM user_id_sequence WHERE name = ?")) {
+                upsert.setString(1, SEQUENCE_NAME);
+                upsert.setLong(2, floor + blockSize);
+                upsert.setLong(3, floor);
+                upsert.setLong(4, blockSize);
+                upsert.executeUpdate();
+                select.setString(1, SEQUENCE_NAME);
+                long reservedUpTo;
+                try (ResultSet rs = select.executeQuery()) {
+                    rs.next();
+                    reservedUpTo = rs.getLong(1);
+                }
+                connection.commit();
+                return reservedUpTo;
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                connection.setAutoCommit(autoCommit);
+            }
+        } catch (SQLException e) {
+            throw new DataAccessResourceFailureException("Failed to reserve a user id block", e);
+        }
+    }
+
+    /**
+     * Highest existing id + 1 over all shards
+     * 所有分片上的现有最大 ID + 1
+     */
+    private long readFloor() {
+        long maxId = 0;
+        for (Long shardMax : shardRouter.scatter(jdbc ->
+                jdbc.queryForList("SELECT COALESCE(MAX(id), 0) FROM users", Long.class))) {
+            maxId = Math.max(maxId, shardMax);
+        }
+        log.info("User id sequence floor is {}", maxId + 1);
+        return maxId + 1;
+    }
+}
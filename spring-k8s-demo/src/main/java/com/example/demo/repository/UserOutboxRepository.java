@@ -0,0 +1,56 @@
+package com.example.demo.repository;
+
+import com.example.demo.entity.UserOutboxEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * UserOutboxRepository - User Change Outbox Repository
+ * 用户发件箱仓库 - 用户变更发件箱仓库
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Entries are saved inside the transaction of the user change, so they land on the
+ * shard that transaction is bound to. Claims and deletes run on whatever shard the
+ * caller bound (see UserOutboxPublisher).
+ *
+ * 条目在用户变更的事务内保存，因此会写入该事务绑定的分片。认领和删除在调用方绑定的分片上执行
+ * （参见 UserOutboxPublisher）。
+ */
+@Repository
+public interface UserOutboxRepository extends JpaRepository<UserOutboxEntry, Long> {
+
+    /**
+     * Lock the oldest entries that no other transaction holds
+     * 锁定没有被其他事务持有的最早条目
+     *
+     * @param limit Maximum entries / 最大条目数
+     * @return Claimed entries in id order, locked until the transaction ends / 按 ID 排序的已认领条目，锁定至事务结束
+     * @description
+     * SKIP LOCKED lets several pods drain the outbox at once without waiting on each
+     * other's batches.
+     * SKIP LOCKED 使多个 Pod 可以同时排空发件箱，而无需等待彼此的批次。
+     */
+    @Query(value = "SELECT * FROM user_outbox ORDER BY id LIMIT :limit FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<UserOutboxEntry> claimBatch(@Param("limit") int limit);
+
+    /**
+     * Delete published entries
+     * 删除已发布的条目
+     *
+     * @param ids Entry ids / 条目 ID
+     * @return Number of entries deleted / 删除的条目数
+     */
+    @Modifying
+    @Query("delete from UserOutboxEntry e where e.id in :ids")
+    int deleteByIds(@Param("ids") Collection<Long> ids);
+}
@@ -4,6 +4,7 @@ import com.example.demo.entity.User;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
 import java.util.Optional;
 
 /**
@@ -16,30 +17,35 @@ import java.util.Optional;
  * 
  * @description
  * Spring Data JPA repository interface for User entity.
- * Provides CRUD operations and custom query methods.
+ * Provides CRUD operations and custom query methods. Save, id/email lookups,
+ * listing and delete are implemented by UserRepositoryCustomImpl so that they
+ * can be routed to the owning shard when sharding is enabled.
  * 
  * 用于 User 实体的 Spring Data JPA 仓库接口。
- * 提供 CRUD 操作和自定义查询方法。
+ * 提供 CRUD 操作和自定义查询方法。保存、ID/邮箱查找、列表和删除由
+ * UserRepositoryCustomImpl 实现，以便在启用分片时路由到所属分片。
  */
 @Repository
-public interface UserRepository extends JpaRepository<User, Long> {
+public interface UserRepository extends JpaRepository<User, Long>, UserRepositoryCustom {
     
-    /**
-     * Find user by email address
-     * 根据邮箱地址查找用户
-     * 
-     * @param email User email address / 用户邮箱地址
-     * @return Optional containing user if found / 如果找到则包含用户的 Optional
-     */
-    Optional<User> findByEmail(String email);
+    // Redeclared so that calls resolve unambiguously; implemented by UserRepositoryCustomImpl
+    // 重新声明以使调用解析无歧义；由 UserRepositoryCustomImpl 实现
     
-    /**
-     * Check if user exists by email address
-     * 检查邮箱地址是否存在用户
-     * 
-     * @param email User email address / 用户邮箱地址
-     * @return true if user exists, false otherwise / 如果用户存在则返回 true，否则返回 false
-     */
-    boolean existsByEmail(String email);
+    @Override
+    <S extends User> S save(S user);
+    
+    @Override
+    <S extends User> List<S> saveAll(Iterable<S> users);
+    
+    @Override
+    Optional<User> findById(Long id);
+    
+    @Override
+    List<User> findAll();
+    
+    @Override
+    long count();
+    
+    @Override
+    void delete(User user);
 }
-
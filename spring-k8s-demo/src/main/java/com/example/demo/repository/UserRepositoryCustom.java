@@ -0,0 +1,217 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.UserResponse;
+import com.example.demo.entity.User;
+import com.example.demo.entity.UserTombstone;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * UserRepositoryCustom - Shard-Aware User Repository Operations
+ * 用户仓库自定义接口 - 分片感知的用户仓库操作
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Repository fragment overriding the user operations that must be routed by shard:
+ * id-based access goes to the owning shard, email lookups go through the email
+ * directory, and listing/export scatter to every shard. Implemented by
+ * UserRepositoryCustomImpl; with sharding disabled the same methods run against the
+ * single datasource.
+ *
+ * 仓库片段，覆盖必须按分片路由的用户操作：基于 ID 的访问路由到所属分片，
+ * 邮箱查找经过邮箱目录，列表/导出分散到所有分片。由 UserRepositoryCustomImpl 实现；
+ * 未启用分片时相同的方法在单一数据源上运行。
+ */
+public interface UserRepositoryCustom {
+
+    /**
+     * Insert or update a user on its shard
+     * 在用户所属分片上插入或更新用户
+     *
+     * @param <S> User type / 用户类型
+     * @param user User to save / 要保存的用户
+     * @return Saved user / 保存后的用户
+     */
+    <S extends User> S save(S user);
+
+    /**
+     * Save several users in one transaction
+     * 在一个事务中保存多个用户
+     *
+     * @param <S> User type / 用户类型
+     * @param users Users to save / 要保存的用户
+     * @return Saved users / 保存后的用户
+     * @description
+     * With sharding enabled all users must live on the same shard, since a transaction
+     * cannot span shards.
+     *
+     * 启用分片时所有用户必须位于同一分片，因为一个事务不能跨分片。
+     */
+    <S extends User> List<S> saveAll(Iterable<S> users);
+
+    /**
+     * Apply a partial update if the user is still at the expected version
+     * 如果用户仍处于预期版本，则应用部分更新
+     *
+     * @param id User ID / 用户 ID
+     * @param version Version the client read / 客户端读取到的版本
+     * @param changes New values of name, email and/or phone (null clears phone) / name、email 和/或 phone 的新值（null 清空 phone）
+     * @return 1 if updated, 0 if the user does not exist or is at another version / 更新则返回 1，用户不存在或版本不同则返回 0
+     * @throws org.springframework.dao.DataIntegrityViolationException if the email belongs to another user / 如果邮箱属于其他用户
+     * @description
+     * A single UPDATE ... WHERE id = ? AND version = ? that also increments the version
+     * and sets updatedAt, instead of loading, checking and merging the entity. Email
+     * uniqueness is left to the unique index (the email directory when sharded).
+     *
+     * 单条 UPDATE ... WHERE id = ? AND version = ?，同时递增版本并设置 updatedAt，
+     * 而不是加载、检查再合并实体。邮箱唯一性交由唯一索引（分片时为邮箱目录）保证。
+     */
+    int updateIfVersion(long id, long version, Map<UserField, Object> changes);
+
+    /**
+     * Find a user by id on its shard
+     * 在所属分片上根据 ID 查找用户
+     *
+     * @param id User ID / 用户 ID
+     * @return Optional containing user if found / 如果找到则包含用户的 Optional
+     */
+    Optional<User> findById(Long id);
+
+    /**
+     * Find user by email address
+     * 根据邮箱地址查找用户
+     *
+     * @param email User email address / 用户邮箱地址
+     * @return Optional containing user if found / 如果找到则包含用户的 Optional
+     */
+    Optional<User> findByEmail(String email);
+
+    /**
+     * Check if user exists by email address
+     * 检查邮箱地址是否存在用户
+     *
+     * @param email User email address / 用户邮箱地址
+     * @return true if user exists, false otherwise / 如果用户存在则返回 true，否则返回 false
+     */
+    boolean existsByEmail(String email);
+
+    /**
+     * List all users of all shards, ordered by id
+     * 列出所有分片的所有用户，按 ID 排序
+     *
+     * @return All users / 所有用户
+     */
+    List<User> findAll();
+
+    /**
+     * List all users of all shards, ordered by id, reading only the given columns
+     * 列出所有分片的所有用户，按 ID 排序，只读取给定的列
+     *
+     * @param fields Columns to read (the id is always read) / 要读取的列（始终读取 ID）
+     * @return Projected users; unselected components are null / 投影用户；未选择的组件为 null
+     * @description
+     * Selects the columns directly instead of loading entities, so no entity is
+     * instantiated or tracked and the password column is never read.
+     *
+     * 直接选择列而不是加载实体，因此不会实例化或跟踪实体，也从不读取密码列。
+     */
+    List<UserResponse> findAllProjected(Set<UserField> fields);
+
+    /**
+     * Find a user by id on its shard, reading only the given columns
+     * 在所属分片上根据 ID 查找用户，只读取给定的列
+     *
+     * @param id User ID / 用户 ID
+     * @param fields Columns to read (the id is always read) / 要读取的列（始终读取 ID）
+     * @return Projected user if found; unselected components are null / 如果找到则为投影用户；未选择的组件为 null
+     */
+    Optional<UserResponse> findProjectedById(Long id, Set<UserField> fields);
+
+    /**
+     * Find several users by id, reading only the given columns
+     * 根据 ID 查找多个用户，只读取给定的列
+     *
+     * @param ids User IDs / 用户 ID
+     * @param fields Columns to read (the id is always read) / 要读取的列（始终读取 ID）
+     * @return Projected users found, in no particular order / 找到的投影用户，无特定顺序
+     * @description
+     * One IN query, or one per shard owning some of the ids when sharded.
+     * 一次 IN 查询；分片时对拥有这些 ID 的每个分片各一次查询。
+     */
+    List<UserResponse> findProjectedByIds(Collection<Long> ids, Set<UserField> fields);
+
+    /**
+     * Users changed after a keyset position, in (updatedAt, id) order
+     * 键集位置之后变更的用户，按 (updatedAt, id) 排序
+     *
+     * @param updatedAt Update time of the last user already seen / 已见最后一个用户的更新时间
+     * @param id Id of the last user already seen / 已见最后一个用户的 ID
+     * @param until Latest update time to include / 包含的最晚更新时间
+     * @param limit Maximum number of users / 最大用户数
+     * @return Changed users / 变更的用户
+     * @description
+     * Served by the (updated_at, id) index, one range scan per shard.
+     * 由 (updated_at, id) 索引提供，每个分片一次范围扫描。
+     */
+    List<UserResponse> findChangedSince(LocalDateTime updatedAt, long id, LocalDateTime until, int limit);
+
+    /**
+     * Tombstones after a keyset position, in (deletedAt, userId) order
+     * 键集位置之后的墓碑，按 (deletedAt, userId) 排序
+     *
+     * @param deletedAt Deletion time of the last tombstone already seen / 已见最后一个墓碑的删除时间
+     * @param userId User id of the last tombstone already seen / 已见最后一个墓碑的用户 ID
+     * @param until Latest deletion time to include / 包含的最晚删除时间
+     * @param limit Maximum number of tombstones / 最大墓碑数
+     * @return Tombstones / 墓碑
+     */
+    List<UserTombstone> findDeletedSince(LocalDateTime deletedAt, long userId, LocalDateTime until, int limit);
+
+    /**
+     * Delete tombstones older than a given time on every shard
+     * 在所有分片上删除早于给定时间的墓碑
+     *
+     * @param before Cutoff time / 截止时间
+     * @return Number of tombstones deleted / 删除的墓碑数
+     */
+    long purgeTombstones(LocalDateTime before);
+
+    /**
+     * Count users over all shards
+     * 统计所有分片的用户数
+     *
+     * @return Number of users / 用户数量
+     */
+    long count();
+
+    /**
+     * Delete a user from its shard, leaving a tombstone
+     * 从所属分片删除用户，并留下墓碑
+     *
+     * @param user User to delete / 要删除的用户
+     */
+    void delete(User user);
+
+    /**
+     * Stream every user to a consumer, shard by shard in id-ordered pages
+     * 将每个用户流式传递给消费者，逐分片按 ID 顺序分页
+     *
+     * @param pageSize Rows per query / 每次查询的行数
+     * @param consumer Receives each user (detached) / 接收每个用户（游离状态）
+     * @description
+     * Export path for large tables: memory use is bounded by pageSize and no query
+     * holds a long-running cursor.
+     *
+     * 大表的导出路径：内存使用以 pageSize 为上限，且没有查询持有长时间运行的游标。
+     */
+    void forEachUser(int pageSize, Consumer<User> consumer);
+}
@@ -0,0 +1,419 @@
+package com.example.demo.repository;
+
+import com.example.demo.dto.UserResponse;
+import com.example.demo.entity.Role;
+import com.example.demo.entity.User;
+import com.example.demo.entity.UserTombstone;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.Query;
+import jakarta.persistence.Tuple;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BeanPropertyRowMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+
+/**
+ * UserRepositoryCustomImpl - Shard-Aware User Repository Implementation
+ * 用户仓库自定义实现 - 分片感知的用户仓库实现
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Every id-based operation binds the transaction to the owning shard (ShardContext)
+ * before JPA touches the database; the lazy routing DataSource then hands Hibernate a
+ * connection to that shard. A transaction stays on one shard: touching users of two
+ * different shards in one transaction fails with IllegalStateException instead of
+ * silently reading the wrong database. Email lookups resolve the id through
+ * UserEmailDirectory, and listing, counting and export read every shard with plain
+ * JDBC (results are detached entities). Projected reads select only the requested
+ * columns (JPQL tuples, or JDBC per shard) and return UserResponse records.
+ *
+ * With sharding disabled, binding is a no-op and queries run through the
+ * EntityManager as before; only id allocation changes (see UserIdAllocator).
+ *
+ * 每个基于 ID 的操作都会在 JPA 访问数据库之前将事务绑定到所属分片（ShardContext）；
+ * 然后延迟路由数据源为 Hibernate 提供该分片的连接。一个事务始终在一个分片上：
+ * 在一个事务中访问两个不同分片的用户会抛出 IllegalStateException，而不是静默读取错误的数据库。
+ * 邮箱查找通过 UserEmailDirectory 解析 ID，列表、计数和导出使用普通 JDBC 读取所有分片
+ * （结果为游离实体）。投影读取只选择请求的列（JPQL 元组，或按分片 JDBC），并返回 UserResponse 记录。
+ *
+ * 未启用分片时，绑定为空操作，查询仍通过 EntityManager 执行；只有 ID 分配发生变化
+ * （参见 UserIdAllocator）。
+ */
+public class UserRepositoryCustomImpl implements UserRepositoryCustom {
+
+    private static final RowMapper<User> USER_ROW_MAPPER = new BeanPropertyRowMapper<>(User.class);
+
+    /**
+     * Fields a partial update may change / 部分更新可以修改的字段
+     */
+    private static final Set<UserField> PATCHABLE = EnumSet.of(UserField.NAME, UserField.EMAIL, UserField.PHONE);
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private UserIdAllocator idAllocator;
+
+    @Autowired
+    private UserEmailDirectory emailDirectory;
+
+    @Override
+    @Transactional
+    public <S extends User> S save(S user) {
+        if (user.isNew()) {
+            if (user.getId() == null) {
+                user.setId(idAllocator.nextId());
+            }
+            bind(user.getId());
+            if (shardRouter.isSharded()) {
+                emailDirectory.claim(user.getEmail(), user.getId());
+            }
+            entityManager.persist(user);
+            return user;
+        }
+        bind(user.getId());
+        if (shardRouter.isSharded()) {
+            Optional<String> registered = emailDirectory.findEmail(user.getId());
+            if (!registered.map(email -> email.equals(user.getEmail())).orElse(false)) {
+                emailDirectory.claim(user.getEmail(), user.getId());
+                registered.ifPresent(email -> emailDirectory.releaseAfterCommit(email, user.getId()));
+            }
+        }
+        return entityManager.merge(user);
+    }
+
+    @Override
+    @Transactional
+    public <S extends User> List<S> saveAll(Iterable<S> users) {
+        List<S> saved = new ArrayList<>();
+        for (S user : users) {
+            saved.add(save(user));
+        }
+        return saved;
+    }
+
+    @Override
+    @Transactional
+    public int updateIfVersion(long id, long version, Map<UserField, Object> changes) {
+        if (!PATCHABLE.containsAll(changes.keySet())) {
+            throw new IllegalArgumentException("Only name, email and phone can be updated");
+        }
+        bind(id);
+        String email = (String) changes.get(UserField.EMAIL);
+        if (email != null && shardRouter.isSharded()) {
+            // The directory's unique key stands in for the index; undone on rollback
+            // 目录的唯一键代替唯一索引；回滚时撤销
+            Optional<String> registered = emailDirectory.findEmail(id);
+            if (registered.isPresent() && !registered.get().equals(email)) {
+                emailDirectory.claim(email, id);
+                emailDirectory.releaseAfterCommit(registered.get(), id);
+            }
+        }
+        StringBuilder jpql = new StringBuilder("update User u set u.version = u.version + 1, u.updatedAt = :updatedAt");
+        for (UserField field : changes.keySet()) {
+            jpql.append(", u.").append(field.getAttribute()).append(" = :").append(field.getAttribute());
+        }
+        jpql.append(" where u.id = :id and u.version = :version");
+        Query update = entityManager.createQuery(jpql.toString())
+            .setParameter("updatedAt", LocalDateTime.now())
+            .setParameter("id", id)
+            .setParameter("version", version);
+        changes.forEach((field, value) -> update.setParameter(field.getAttribute(), value));
+        return update.executeUpdate();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findById(Long id) {
+        Objects.requireNonNull(id, "id must not be null");
+        bind(id);
+        return Optional.ofNullable(entityManager.find(User.class, id));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<User> findByEmail(String email) {
+        if (shardRouter.isSharded()) {
+            return emailDirectory.findUserId(email).flatMap(this::findById);
+        }
+        return entityManager.createQuery("select u from User u where u.email = :email", User.class)
+            .setParameter("email", email)
+            .getResultStream()
+            .findFirst();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public boolean existsByEmail(String email) {
+        if (shardRouter.isSharded()) {
+            return emailDirectory.findUserId(email).isPresent();
+        }
+        return !entityManager.createQuery("select u.id from User u where u.email = :email", Long.class)
+            .setParameter("email", email)
+            .setMaxResults(1)
+            .getResultList()
+            .isEmpty();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<User> findAll() {
+        if (!shardRouter.isSharded()) {
+            return entityManager.createQuery("select u from User u order by u.id", User.class).getResultList();
+        }
+        List<User> users = shardRouter.scatter(jdbc -> jdbc.query("SELECT * FROM users", USER_ROW_MAPPER));
+        users.sort(Comparator.comparing(User::getId));
+        return users;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserResponse> findAllProjected(Set<UserField> fields) {
+        Set<UserField> columns = withId(fields);
+        if (!shardRouter.isSharded()) {
+            return entityManager.createQuery(jpqlSelect(columns) + " from User u order by u.id", Tuple.class)
+                .getResultStream()
+                .map(tuple -> project(columns, tuple))
+                .toList();
+        }
+        List<UserResponse> users = shardRouter.scatter(jdbc -> jdbc.query(sqlSelect(columns) + " FROM users",
+            (rs, rowNum) -> project(columns, rs)));
+        users.sort(Comparator.comparing(UserResponse::id));
+        return users;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<UserResponse> findProjectedById(Long id, Set<UserField> fields) {
+        Objects.requireNonNull(id, "id must not be null");
+        Set<UserField> columns = withId(fields);
+        if (!shardRouter.isSharded()) {
+            return entityManager.createQuery(jpqlSelect(columns) + " from User u where u.id = :id", Tuple.class)
+                .setParameter("id", id)
+                .getResultStream()
+                .findFirst()
+                .map(tuple -> project(columns, tuple));
+        }
+        return shardRouter.jdbc(shardRouter.shardFor(id))
+            .query(sqlSelect(columns) + " FROM users WHERE id = ?", (rs, rowNum) -> project(columns, rs), id)
+            .stream()
+            .findFirst();
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserResponse> findProjectedByIds(Collection<Long> ids, Set<UserField> fields) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        Set<UserField> columns = withId(fields);
+        if (!shardRouter.isSharded()) {
+            return entityManager.createQuery(jpqlSelect(columns) + " from User u where u.id in :ids", Tuple.class)
+                .setParameter("ids", ids)
+                .getResultStream()
+                .map(tuple -> project(columns, tuple))
+                .toList();
+        }
+        Map<Integer, List<Long>> idsByShard = ids.stream().collect(Collectors.groupingBy(shardRouter::shardFor));
+        List<UserResponse> users = new ArrayList<>();
+        idsByShard.forEach((shard, shardIds) -> users.addAll(shardRouter.jdbc(shard).query(
+            sqlSelect(columns) + " FROM users WHERE id IN ("
+                + String.join(", ", Collections.nCopies(shardIds.size(), "?")) + ")",
+            (rs, rowNum) -> project(columns, rs), shardIds.toArray())));
+        return users;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserResponse> findChangedSince(LocalDateTime updatedAt, long id, LocalDateTime until, int limit) {
+        Set<UserField> columns = UserField.ALL;
+        if (!shardRouter.isSharded()) {
+            return entityManager.createQuery(jpqlSelect(columns) + " from User u"
+                    + " where (u.updatedAt > :updatedAt or (u.updatedAt = :updatedAt and u.id > :id))"
+                    + " and u.updatedAt <= :until order by u.updatedAt, u.id", Tuple.class)
+                .setParameter("updatedAt", updatedAt)
+                .setParameter("id", id)
+                .setParameter("until", until)
+                .setMaxResults(limit)
+                .getResultStream()
+                .map(tuple -> project(columns, tuple))
+                .toList();
+        }
+        List<UserResponse> users = shardRouter.scatter(jdbc -> jdbc.query(sqlSelect(columns) + " FROM users"
+                + " WHERE (updated_at > ? OR (updated_at = ? AND id > ?)) AND updated_at <= ?"
+                + " ORDER BY updated_at, id LIMIT ?",
+            (rs, rowNum) -> project(columns, rs), updatedAt, updatedAt, id, until, limit));
+        users.sort(Comparator.comparing(UserResponse::updatedAt).thenComparing(UserResponse::id));
+        return users.size() > limit ? users.subList(0, limit) : users;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<UserTombstone> findDeletedSince(LocalDateTime deletedAt, long userId, LocalDateTime until, int limit) {
+        if (!shardRouter.isSharded()) {
+            return entityManager.createQuery("select t from UserTombstone t"
+                    + " where (t.deletedAt > :deletedAt or (t.deletedAt = :deletedAt and t.userId > :userId))"
+                    + " and t.deletedAt <= :until order by t.deletedAt, t.userId", UserTombstone.class)
+                .setParameter("deletedAt", deletedAt)
+                .setParameter("userId", userId)
+                .setParameter("until", until)
+                .setMaxResults(limit)
+                .getResultList();
+        }
+        List<UserTombstone> tombstones = shardRouter.scatter(jdbc -> jdbc.query("SELECT user_id, deleted_at"
+                + " FROM user_tombstones"
+                + " WHERE (deleted_at > ? OR (deleted_at = ? AND user_id > ?)) AND deleted_at <= ?"
+                + " ORDER BY deleted_at, user_id LIMIT ?",
+            (rs, rowNum) -> new UserTombstone(rs.getLong("user_id"), rs.getObject("deleted_at", LocalDateTime.class)),
+            deletedAt, deletedAt, userId, until, limit));
+        tombstones.sort(Comparator.comparing(UserTombstone::getDeletedAt).thenComparing(UserTombstone::getUserId));
+        return tombstones.size() > limit ? tombstones.subList(0, limit) : tombstones;
+    }
+
+    @Override
+    @Transactional
+    public long purgeTombstones(LocalDateTime before) {
+        if (!shardRouter.isSharded()) {
+            return entityManager.createQuery("delete from UserTombstone t where t.deletedAt < :before")
+                .setParameter("before", before)
+                .executeUpdate();
+        }
+        long purged = 0;
+        for (Integer shardPurged : shardRouter.scatter(jdbc ->
+                List.of(jdbc.update("DELETE FROM user_tombstones WHERE deleted_at < ?", before)))) {
+            purged += shardPurged;
+        }
+        return purged;
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public long count() {
+        if (!shardRouter.isSharded()) {
+            return entityManager.createQuery("select count(u) from User u", Long.class).getSingleResult();
+        }
+        long total = 0;
+        for (Long shardCount : shardRouter.scatter(jdbc -> jdbc.queryForList("SELECT COUNT(*) FROM users", Long.class))) {
+            total += shardCount;
+        }
+        return total;
+    }
+
+    @Override
+    @Transactional
+    public void delete(User user) {
+        bind(user.getId());
+        User managed = entityManager.contains(user) ? user : entityManager.find(User.class, user.getId());
+        if (managed == null) {
+            return;
+        }
+        if (shardRouter.isSharded()) {
+            emailDirectory.releaseAfterCommit(managed.getEmail(), managed.getId());
+        }
+        entityManager.remove(managed);
+        entityManager.persist(new UserTombstone(managed.getId(), LocalDateTime.now()));
+    }
+
+    @Override
+    public void forEachUser(int pageSize, Consumer<User> consumer) {
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            JdbcTemplate jdbc = shardRouter.jdbc(shard);
+            long lastId = Long.MIN_VALUE;
+            List<User> page;
+            do {
+                page = jdbc.query("SELECT * FROM users WHERE id > ? ORDER BY id LIMIT ?",
+                    USER_ROW_MAPPER, lastId, pageSize);
+                for (User user : page) {
+                    consumer.accept(user);
+                }
+                if (!page.isEmpty()) {
+                    lastId = page.get(page.size() - 1).getId();
+                }
+            } while (page.size() == pageSize);
+        }
+    }
+
+    /**
+     * Requested columns plus the id (needed for ordering and merging shards)
+     * 请求的列加上 ID（排序和合并分片所需）
+     */
+    private static Set<UserField> withId(Set<UserField> fields) {
+        Set<UserField> columns = EnumSet.of(UserField.ID);
+        columns.addAll(fields);
+        return columns;
+    }
+
+    private static String jpqlSelect(Set<UserField> columns) {
+        return columns.stream()
+            .map(field -> "u." + field.getAttribute() + " as " + field.getAttribute())
+            .collect(Collectors.joining(", ", "select ", ""));
+    }
+
+    private static String sqlSelect(Set<UserField> columns) {
+        return columns.stream().map(UserField::getColumn).collect(Collectors.joining(", ", "SELECT ", ""));
+    }
+
+    /**
+     * Map a projection tuple; unselected components stay null
+     * 映射投影元组；未选择的组件保持为 null
+     */
+    private static UserResponse project(Set<UserField> columns, Tuple tuple) {
+        return new UserResponse(tuple.get("id", Long.class),
+            columns.contains(UserField.NAME) ? tuple.get("name", String.class) : null,
+            columns.contains(UserField.EMAIL) ? tuple.get("email", String.class) : null,
+            columns.contains(UserField.PHONE) ? tuple.get("phone", String.class) : null,
+            columns.contains(UserField.ROLE) ? tuple.get("role", Role.class) : null,
+            columns.contains(UserField.CREATED_AT) ? tuple.get("createdAt", LocalDateTime.class) : null,
+            columns.contains(UserField.UPDATED_AT) ? tuple.get("updatedAt", LocalDateTime.class) : null,
+            columns.contains(UserField.VERSION) ? tuple.get("version", Long.class) : null);
+    }
+
+    /**
+     * Map a projection row; unselected components stay null
+     * 映射投影行；未选择的组件保持为 null
+     */
+    private static UserResponse project(Set<UserField> columns, ResultSet rs) throws SQLException {
+        return new UserResponse(rs.getLong("id"),
+            columns.contains(UserField.NAME) ? rs.getString("name") : null,
+            columns.contains(UserField.EMAIL) ? rs.getString("email") : null,
+            columns.contains(UserField.PHONE) ? rs.getString("phone") : null,
+            columns.contains(UserField.ROLE) ? Role.valueOf(rs.getString("role")) : null,
+            columns.contains(UserField.CREATED_AT) ? rs.getObject("created_at", LocalDateTime.class) : null,
+            columns.contains(UserField.UPDATED_AT) ? rs.getObject("updated_at", LocalDateTime.class) : null,
+            columns.contains(UserField.VERSION) ? rs.getLong("version") : null);
+    }
+
+    /**
+     * Bind the current transaction to the shard owning a user id
+     * 将当前事务绑定到拥有该用户 ID 的分片
+     */
+    private void bind(long id) {
+        if (shardRouter.isSharded()) {
+            ShardContext.bind(shardRouter.shardFor(id));
+        }
+    }
+}
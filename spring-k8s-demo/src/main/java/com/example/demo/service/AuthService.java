@@ -3,17 +3,34 @@ package com.example.demo.service;
 import com.example.demo.dto.JwtResponse;
 import com.example.demo.dto.LoginRequest;
 import com.example.demo.dto.RegisterRequest;
+import com.example.demo.dto.SessionInfo;
+import com.example.demo.dto.TokenIdentity;
 import com.example.demo.entity.Role;
 import com.example.demo.entity.User;
+import com.example.demo.event.UserChangeEvent;
 import com.example.demo.repository.UserRepository;
 import com.example.demo.util.JwtUtil;
+import com.example.demo.util.LogSampler;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.data.redis.core.RedisTemplate;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * AuthService - Authentication Business Logic Service
@@ -28,13 +45,20 @@ import java.util.concurrent.TimeUnit;
  * login, logout, and token validation. It integrates with Redis for token storage
  * and uses JWT for stateless authentication.
  * 
+ * All Redis calls go through RedisGuard; while its circuit is open, token checks fall
+ * back to signature and expiry validation plus the local recent-logout set.
+ * 
  * 该服务处理用户认证操作，包括注册、登录、退出登录和令牌验证。
  * 它与 Redis 集成用于令牌存储，并使用 JWT 进行无状态认证。
+ * 所有 Redis 调用都通过 RedisGuard；熔断器打开时，令牌检查降级为签名和过期验证
+ * 以及本地最近退出登录集合。
  */
 @Service
 @Transactional
 public class AuthService {
     
+    private static final Logger log = LoggerFactory.getLogger(AuthService.class);
+    
     /**
      * UserRepository - Data access layer for User entity
      * 用户仓库 - 用户实体的数据访问层
@@ -64,16 +88,101 @@ public class AuthService {
     private RedisTemplate<String, String> redisTemplate;
     
     /**
-     * Redis key prefix for JWT tokens
-     * Redis 键前缀用于 JWT 令牌
+     * RedisGuard - Circuit breaker around Redis calls
+     * Redis 保护器 - Redis 调用的熔断器
+     */
+    @Autowired
+    private RedisGuard redisGuard;
+    
+    /**
+     * RecentLogoutRegistry - Tokens revoked on this pod, used while Redis is down
+     * 最近退出登录注册表 - 本 Pod 上撤销的令牌，在 Redis 宕机时使用
+     */
+    @Autowired
+    private RecentLogoutRegistry recentLogouts;
+    
+    /**
+     * ReadYourWritesTracker - Keeps a newly registered user's login on the primary
+     * 读己之写跟踪器 - 使新注册用户的登录保持在主库上
+     */
+    @Autowired
+    private ReadYourWritesTracker readYourWrites;
+    
+    /**
+     * ApplicationEventPublisher - Publishes user change events
+     * 应用事件发布器 - 发布用户变更事件
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    /**
+     * RegisteredEmailFilter - Skips email existence queries for unknown emails
+     * 已注册邮箱过滤器 - 对未知邮箱跳过存在性查询
+     */
+    @Autowired
+    private RegisteredEmailFilter registeredEmails;
+    
+    /**
+     * LoginThrottle - Rejects logins from blocked accounts and sources before bcrypt
+     * 登录限流 - 在 bcrypt 之前拒绝来自被封禁账户和来源的登录
+     */
+    @Autowired
+    private LoginThrottle loginThrottle;
+    
+    /**
+     * SessionRegistry - Per-user session index in Redis
+     * 会话注册表 - Redis 中的按用户会话索引
+     */
+    @Autowired
+    private SessionRegistry sessionRegistry;
+    
+    /**
+     * UserActivityTracker - Coalesced last-login/last-seen timestamps
+     * 用户活动跟踪器 - 合并的最后登录/最后访问时间
+     */
+    @Autowired
+    private UserActivityTracker activityTracker;
+    
+    /**
+     * Maximum number of Redis writes kept for replay after an outage
+     * 故障后保留用于重放的 Redis 写入最大数量
+     */
+    @Value("${auth.deferred-writes.max-size:10000}")
+    private int maxDeferredWrites;
+    
+    /**
+     * Redis writes deferred while the circuit was open / 熔断器打开期间延迟的 Redis 写入
+     */
+    private final Queue<Runnable> deferredWrites = new ConcurrentLinkedQueue<>();
+    
+    /**
+     * Size of deferredWrites (ConcurrentLinkedQueue.size() walks the whole queue)
+     * deferredWrites 的大小（ConcurrentLinkedQueue.size() 会遍历整个队列）
+     */
+    private final AtomicInteger deferredCount = new AtomicInteger();
+    
+    /**
+     * LogSampler - Rate limits repetitive validation errors
+     * 日志采样器 - 限制重复验证错误的日志速率
+     */
+    @Autowired
+    private LogSampler logSampler;
+    
+    /**
+     * Redis key prefix for sessions of tokens issued without a jti (before the session
+     * index); only read and deleted, can go once those tokens have expired
+     * 无 jti 的令牌（会话索引之前签发）的会话 Redis 键前缀；只读取和删除，这些令牌过期后即可移除
      */
     private static final String REDIS_TOKEN_PREFIX = "jwt:token:";
     
     /**
-     * Redis key prefix for user information
-     * Redis 键前缀用于用户信息
+     * Replay deferred session writes when Redis recovers (on RedisGuard's recovery thread)
+     * Redis 恢复时重放延迟的会话写入（在 RedisGuard 的恢复线程上）
      */
-    private static final String REDIS_USER_PREFIX = "jwt:user:";
+    @PostConstruct
+    public void init() {
+        redisGuard.onRecovery(this::replayDeferredWrites);
+    }
     
     /**
      * Register a new user
@@ -84,14 +193,15 @@ public class AuthService {
      * @throws RuntimeException if email already exists / 如果邮箱已存在则抛出运行时异常
      * @description
      * Creates a new user account, hashes the password, generates a JWT token,
-     * and stores the token in Redis for session management.
+     * and stores the token in Redis for session management. Clears the users list cache.
      * 
      * 创建新用户账户，哈希密码，生成 JWT 令牌，
-     * 并将令牌存储在 Redis 中用于会话管理。
+     * 并将令牌存储在 Redis 中用于会话管理。清除用户列表缓存。
      */
+    @CacheEvict(value = "users", key = "'all'")
     public JwtResponse register(RegisterRequest request) {
         // Check if email already exists / 检查邮箱是否已存在
-        if (userRepository.existsByEmail(request.getEmail())) {
+        if (registeredEmails.isRegistered(request.getEmail())) {
             throw new RuntimeException("Email already exists: " + request.getEmail());
         }
         
@@ -104,55 +214,88 @@ public class AuthService {
         user.setRole(Role.USER);
         
         user = userRepository.save(user);
+        readYourWrites.recordWrite(user.getEmail());
+        eventPublisher.publishEvent(new UserChangeEvent(UserChangeEvent.Type.CREATED,
+            user.getId(), user.getEmail(), user.getRole(), user.getCreatedAt()));
         
         // Generate JWT token / 生成 JWT 令牌
-        String token = jwtUtil.generateToken(user.getEmail(), user.getRole().name());
+        String token = jwtUtil.generateToken(user.getEmail(), user.getRole().name(), user.getId());
         
-        // Store token in Redis with 24-hour expiration
-        // 将令牌存储在 Redis 中，24 小时过期
-        String redisKey = REDIS_TOKEN_PREFIX + token;
-        redisTemplate.opsForValue().set(redisKey, user.getEmail(), 24, TimeUnit.HOURS);
-        
-        // Store user info in Redis for quick lookup
-        // 将用户信息存储在 Redis 中以便快速查找
-        String userKey = REDIS_USER_PREFIX + user.getEmail();
-        redisTemplate.opsForValue().set(userKey, user.getId().toString(), 24, TimeUnit.HOURS);
+        // Store token and user info in Redis with 24-hour expiration
+        // 将令牌和用户信息存储在 Redis 中，24 小时过期
+        storeSession(token, user);
         
         return new JwtResponse(token, user.getId(), user.getEmail(), user.getName(), user.getRole().name());
     }
     
+    /**
+     * Check whether an email can still be registered
+     * 检查邮箱是否仍可注册
+     * 
+     * @param email Email address / 邮箱地址
+     * @return true if no user has this email / 如果没有用户使用此邮箱则返回 true
+     * @description
+     * Answered from the registered-email Bloom filter when it rules the email out;
+     * otherwise from the database. The answer is advisory: registration re-checks.
+     * 
+     * 当注册邮箱布隆过滤器能排除该邮箱时直接由其回答；否则查询数据库。
+     * 该结果仅供参考：注册时会重新检查。
+     */
+    @Transactional(readOnly = true)
+    public boolean isEmailAvailable(String email) {
+        return !registeredEmails.isRegistered(email);
+    }
+    
     /**
      * Authenticate user and generate JWT token
      * 认证用户并生成 JWT 令牌
      * 
      * @param request Login request with email and password / 包含邮箱和密码的登录请求
+     * @param clientIp Client IP address / 客户端 IP 地址
      * @return JwtResponse containing JWT token and user information / 包含 JWT 令牌和用户信息的响应
+     * @throws LoginThrottle.ThrottledException if the account or source is blocked / 如果账户或来源被封禁
      * @throws RuntimeException if credentials are invalid / 如果凭据无效则抛出运行时异常
      * @description
      * Validates user credentials, generates a JWT token, and stores it in Redis.
+     * Attempts from blocked accounts or IPs are rejected first (see LoginThrottle). No
+     * transaction is opened here, so a rejected attempt never takes a database
+     * connection; the user lookup runs in the repository's own read-only transaction
+     * and may be served by a replica.
      * 验证用户凭据，生成 JWT 令牌，并将其存储在 Redis 中。
+     * 首先拒绝来自被封禁账户或 IP 的尝试（参见 LoginThrottle）。此处不开启事务，
+     * 因此被拒绝的尝试不会占用数据库连接；用户查找在仓库自身的只读事务中运行，可能由副本提供服务。
      */
-    public JwtResponse login(LoginRequest request) {
-        // Find user by email / 根据邮箱查找用户
-        User user = userRepository.findByEmail(request.getEmail())
-            .orElseThrow(() -> new RuntimeException("Invalid email or password"));
+    @Transactional(propagation = Propagation.SUPPORTS)
+    public JwtResponse login(LoginRequest request, String clientIp) {
+        loginThrottle.check(request.getEmail(), clientIp);
+        
+        // Find user by email (on the primary right after registration)
+        // 根据邮箱查找用户（注册后立即登录时在主库上查找）
+        User user = readYourWrites.readAfterWrite(request.getEmail(),
+                () -> userRepository.findByEmail(request.getEmail()))
+            .orElse(null);
+        if (user == null) {
+            loginThrottle.recordFailure(request.getEmail(), clientIp);
+            throw new RuntimeException("Invalid email or password");
+        }
         
         // Verify password / 验证密码
-        if (!passwordEncoder.matches(request.getPassword(), user.getPassword())) {
+        long start = System.nanoTime();
+        boolean matches = passwordEncoder.matches(request.getPassword(), user.getPassword());
+        loginThrottle.recordPasswordCheck(System.nanoTime() - start);
+        if (!matches) {
+            loginThrottle.recordFailure(request.getEmail(), clientIp);
             throw new RuntimeException("Invalid email or password");
         }
+        loginThrottle.recordSuccess(request.getEmail());
+        activityTracker.recordLogin(user.getId());
         
         // Generate JWT token / 生成 JWT 令牌
-        String token = jwtUtil.generateToken(user.getEmail(), user.getRole().name());
+        String token = jwtUtil.generateToken(user.getEmail(), user.getRole().name(), user.getId());
         
-        // Store token in Redis with 24-hour expiration
-        // 将令牌存储在 Redis 中，24 小时过期
-        String redisKey = REDIS_TOKEN_PREFIX + token;
-        redisTemplate.opsForValue().set(redisKey, user.getEmail(), 24, TimeUnit.HOURS);
-        
-        // Store user info in Redis / 将用户信息存储在 Redis 中
-        String userKey = REDIS_USER_PREFIX + user.getEmail();
-        redisTemplate.opsForValue().set(userKey, user.getId().toString(), 24, TimeUnit.HOURS);
+        // Store token and user info in Redis with 24-hour expiration
+        // 将令牌和用户信息存储在 Redis 中，24 小时过期
+        storeSession(token, user);
         
         return new JwtResponse(token, user.getId(), user.getEmail(), user.getName(), user.getRole().name());
     }
@@ -163,23 +306,140 @@ public class AuthService {
      * 
      * @param token JWT token to invalidate / 要使其无效的 JWT 令牌
      * @description
-     * Removes the token and user info from Redis to invalidate the session.
-     * 从 Redis 中移除令牌和用户信息以使会话无效。
+     * Removes this token's session from Redis; the user's other sessions stay active.
+     * The token is also remembered locally until it expires, so the logout holds
+     * on this pod while Redis is unavailable; the Redis delete is replayed on recovery.
+     * 
+     * 从 Redis 中移除此令牌的会话；用户的其他会话保持有效。
+     * 令牌还会在本地记住直到过期，使 Redis 不可用时退出登录在本 Pod 上仍然有效；
+     * Redis 删除操作会在恢复后重放。
      */
     public void logout(String token) {
-        // Remove token from Redis / 从 Redis 中移除令牌
-        String redisKey = REDIS_TOKEN_PREFIX + token;
-        redisTemplate.delete(redisKey);
-        
-        // Get user email from token and remove user info
-        // 从令牌获取用户邮箱并移除用户信息
+        Claims claims;
         try {
-            String email = jwtUtil.extractUsername(token);
-            String userKey = REDIS_USER_PREFIX + email;
-            redisTemplate.delete(userKey);
+            claims = jwtUtil.parseClaims(token);
+            recentLogouts.add(token, claims.getExpiration().getTime());
         } catch (Exception e) {
-            // Token might be invalid, ignore error
-            // 令牌可能无效，忽略错误
+            // Invalid or expired token: there is no session left to remove
+            // 无效或已过期的令牌：没有需要移除的会话
+            return;
+        }
+        String email = claims.getSubject();
+        String sessionId = claims.getId();
+        writeOrDefer(() -> {
+            if (sessionId != null) {
+                sessionRegistry.revoke(email, sessionId);
+            } else {
+                redisTemplate.delete(REDIS_TOKEN_PREFIX + token);
+            }
+        });
+    }
+    
+    /**
+     * Log out every session of the token's user
+     * 退出令牌所属用户的所有会话
+     * 
+     * @param token JWT token of one of the user's sessions / 用户某个会话的 JWT 令牌
+     * @throws RuntimeException if the token is not a valid session / 如果令牌不是有效会话
+     * @description
+     * One Redis round-trip whatever the number of sessions (see SessionRegistry).
+     * While Redis is unavailable only the calling token is revoked on this pod; the
+     * rest is replayed on recovery.
+     * 
+     * 无论会话数量多少都只需一次 Redis 往返（参见 SessionRegistry）。
+     * Redis 不可用期间只在本 Pod 上撤销调用令牌；其余操作在恢复后重放。
+     */
+    public void logoutAll(String token) {
+        String email = requireSession(token);
+        logout(token);
+        writeOrDefer(() -> sessionRegistry.revokeAll(email));
+    }
+    
+    /**
+     * List the active sessions of the token's user
+     * 列出令牌所属用户的活动会话
+     * 
+     * @param token JWT token of one of the user's sessions / 用户某个会话的 JWT 令牌
+     * @return Active sessions, or null if Redis is unavailable / 活动会话，Redis 不可用时返回 null
+     * @throws RuntimeException if the token is not a valid session / 如果令牌不是有效会话
+     */
+    public List<SessionInfo> listSessions(String token) {
+        String email = requireSession(token);
+        String sessionId = jwtUtil.parseClaims(token).getId();
+        return redisGuard.call(() -> sessionRegistry.list(email, sessionId), () -> null);
+    }
+    
+    /**
+     * Resolve the user of a valid session token
+     * 解析有效会话令牌的用户
+     */
+    private String requireSession(String token) {
+        TokenIdentity identity = resolveIdentity(token);
+        if (!identity.isValid()) {
+            throw new RuntimeException("Invalid or expired token");
+        }
+        return identity.getEmail();
+    }
+    
+    /**
+     * Store a new session in Redis
+     * 在 Redis 中存储新会话
+     * 
+     * @param token Issued JWT token / 已签发的 JWT 令牌
+     * @param user Authenticated user / 已认证用户
+     * @description
+     * Registers the session under the token's jti in the user's session index; beyond
+     * auth.max-sessions the oldest sessions are logged out.
+     * 以令牌的 jti 在用户会话索引中注册会话；超过 auth.max-sessions 时最早的会话被退出登录。
+     */
+    private void storeSession(String token, User user) {
+        Claims claims = jwtUtil.parseClaims(token);
+        String email = user.getEmail();
+        String sessionId = claims.getId();
+        long expiresAt = claims.getExpiration().getTime();
+        writeOrDefer(() -> {
+            long evicted = sessionRegistry.create(email, sessionId, expiresAt);
+            if (evicted > 0) {
+                log.info("Session limit reached, logged out {} older session(s)", evicted);
+            }
+        });
+    }
+    
+    /**
+     * Execute a Redis write through the circuit breaker, deferring it if Redis is unavailable
+     * 通过熔断器执行 Redis 写入，Redis 不可用时延迟执行
+     * 
+     * @param write Redis write / Redis 写入
+     * @description
+     * Sessions issued and revoked during an outage are replayed in order once the
+     * circuit closes. The queue is bounded; the oldest writes are dropped when full.
+     * 
+     * 故障期间签发和撤销的会话会在熔断器关闭后按顺序重放。
+     * 队列有界；队列满时丢弃最早的写入。
+     */
+    private void writeOrDefer(Runnable write) {
+        if (!redisGuard.run(write)) {
+            while (deferredCount.get() >= maxDeferredWrites && deferredWrites.poll() != null) {
+                deferredCount.decrementAndGet();
+            }
+            deferredWrites.offer(write);
+            deferredCount.incrementAndGet();
+        }
+    }
+    
+    /**
+     * Replay writes deferred during a Redis outage
+     * 重放 Redis 故障期间延迟的写入
+     */
+    private void replayDeferredWrites() {
+        Runnable write;
+        while ((write = deferredWrites.peek()) != null) {
+            if (!redisGuard.run(write)) {
+                return;
+            }
+            if (deferredWrites.remove(write)) {
+                deferredCount.decrementAndGet();
+            }
         }
     }
     
@@ -192,27 +452,148 @@ public class AuthService {
      *         如果令牌有效且存在于 Redis 中则返回 true，否则返回 false
      * @description
      * Validates token by checking:
-     * 1. Token exists in Redis
-     * 2. Token email matches stored email
-     * 3. Token is not expired (via JwtUtil)
+     * 1. Token signature is valid and token is not expired (single parse via JwtUtil)
+     * 2. Token exists in Redis
+     * 3. Token email matches stored email
      * 
      * 通过检查以下内容来验证令牌：
-     * 1. 令牌存在于 Redis 中
-     * 2. 令牌邮箱与存储的邮箱匹配
-     * 3. 令牌未过期（通过 JwtUtil）
+     * 1. 令牌签名有效且未过期（通过 JwtUtil 单次解析）
+     * 2. 令牌存在于 Redis 中
+     * 3. 令牌邮箱与存储的邮箱匹配
      */
     public Boolean validateToken(String token) {
+        return resolveIdentity(token).isValid();
+    }
+    
+    /**
+     * Validate JWT token and return the identity it carries
+     * 验证 JWT 令牌并返回其携带的身份
+     * 
+     * @param token JWT token to validate / 要验证的 JWT 令牌
+     * @return Identity of a valid token, or TokenIdentity.INVALID / 有效令牌的身份，或 TokenIdentity.INVALID
+     * @description
+     * Same checks as validateToken, with the token parsed only once and one Redis GET.
+     * 与 validateToken 相同的检查，令牌仅解析一次并执行一次 Redis GET。
+     */
+    public TokenIdentity resolveIdentity(String token) {
         try {
-            String email = jwtUtil.extractUsername(token);
-            String redisKey = REDIS_TOKEN_PREFIX + token;
-            String storedEmail = redisTemplate.opsForValue().get(redisKey);
-            
-            // Check if token exists in Redis and matches email, and is not expired
-            // 检查令牌是否存在于 Redis 中、是否匹配邮箱，以及是否未过期
-            return storedEmail != null && storedEmail.equals(email) && jwtUtil.validateToken(token, email);
+            Claims claims = jwtUtil.parseClaims(token);
+            String email = claims.getSubject();
+            String storedEmail = redisGuard.call(
+                () -> redisTemplate.opsForValue().get(sessionKey(claims, token)),
+                () -> degradedLookup(token, email));
+            return identityOf(claims, email, storedEmail);
+        } catch (JwtException | IllegalArgumentException e) {
+            // Invalid token - Expected, not logged / 无效令牌 - 预期情况，不记录
+            return TokenIdentity.INVALID;
         } catch (Exception e) {
-            return false;
+            // Infrastructure failure (e.g. Redis) - Sampled to avoid log storms
+            // 基础设施故障（例如 Redis）- 采样以避免日志风暴
+            logValidationFailure(e);
+            return TokenIdentity.INVALID;
+        }
+    }
+    
+    /**
+     * Validate many JWT tokens with a single Redis round-trip
+     * 通过一次 Redis 往返验证多个 JWT 令牌
+     * 
+     * @param tokens JWT tokens to validate / 要验证的 JWT 令牌
+     * @return Identities in request order, TokenIdentity.INVALID for rejected tokens
+     *         按请求顺序排列的身份，被拒绝的令牌为 TokenIdentity.INVALID
+     * @description
+     * Signatures and expiry are verified locally first; only tokens that pass are looked
+     * up in Redis, all at once with MGET.
+     * 
+     * 先在本地验证签名和过期时间；只有通过的令牌才会在 Redis 中查找，并通过 MGET 一次性完成。
+     */
+    public List<TokenIdentity> resolveIdentities(List<String> tokens) {
+        int size = tokens.size();
+        Claims[] parsed = new Claims[size];
+        List<String> keys = new ArrayList<>(size);
+        int[] keyIndex = new int[size];
+        for (int i = 0; i < size; i++) {
+            keyIndex[i] = -1;
+            String token = tokens.get(i);
+            if (token == null) {
+                continue;
+            }
+            try {
+                parsed[i] = jwtUtil.parseClaims(token);
+                keyIndex[i] = keys.size();
+                keys.add(sessionKey(parsed[i], token));
+            } catch (JwtException | IllegalArgumentException e) {
+                // Invalid token - Leave as INVALID / 无效令牌 - 保持为 INVALID
+            }
+        }
+        
+        List<String> storedEmails = null;
+        if (!keys.isEmpty()) {
+            storedEmails = redisGuard.call(
+                () -> redisTemplate.opsForValue().multiGet(keys),
+                () -> {
+                    List<String> degraded = new ArrayList<>(keys.size());
+                    for (int i = 0; i < size; i++) {
+                        if (keyIndex[i] >= 0) {
+                            degraded.add(degradedLookup(tokens.get(i), parsed[i].getSubject()));
+                        }
+                    }
+                    return degraded;
+                });
+        }
+        
+        List<TokenIdentity> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            if (keyIndex[i] < 0 || storedEmails == null) {
+                result.add(TokenIdentity.INVALID);
+            } else {
+                result.add(identityOf(parsed[i], parsed[i].getSubject(), storedEmails.get(keyIndex[i])));
+            }
+        }
+        return result;
+    }
+    
+    /**
+     * Redis key of the session behind a verified token
+     * 已验证令牌对应会话的 Redis 键
+     */
+    private String sessionKey(Claims claims, String token) {
+        return claims.getId() != null
+            ? sessionRegistry.sessionKey(claims.getSubject(), claims.getId())
+            : REDIS_TOKEN_PREFIX + token;
+    }
+    
+    /**
+     * Degraded session lookup used while Redis is unavailable
+     * Redis 不可用时使用的降级会话查找
+     * 
+     * @param token JWT token (signature and expiry already verified) / JWT 令牌（签名和过期已验证）
+     * @param email Token subject / 令牌主题
+     * @return The subject unless the token was logged out on this pod / 除非令牌已在本 Pod 上退出登录，否则返回主题
+     */
+    private String degradedLookup(String token, String email) {
+        return recentLogouts.contains(token) ? null : email;
+    }
+    
+    /**
+     * Build the identity for verified claims if the Redis session matches
+     * 如果 Redis 会话匹配，则为已验证的声明构建身份
+     */
+    private TokenIdentity identityOf(Claims claims, String email, String storedEmail) {
+        if (storedEmail == null || !storedEmail.equals(email)) {
+            return TokenIdentity.INVALID;
+        }
+        return TokenIdentity.of(email, claims.get("role", String.class));
+    }
+    
+    /**
+     * Log an infrastructure failure during validation, sampled
+     * 采样记录验证期间的基础设施故障
+     */
+    private void logValidationFailure(Exception e) {
+        long suppressed = logSampler.tryAcquire("auth.validate");
+        if (suppressed >= 0) {
+            log.warn("Token validation failed: {} ({} similar messages suppressed)", e.toString(), suppressed);
         }
     }
 }
-
@@ -0,0 +1,475 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.UserResponse;
+import com.example.demo.event.UserChangeEvent;
+import com.example.demo.util.CountMinSketch;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
+import org.springframework.cache.support.SimpleValueWrapper;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * HotUserCache - Hot-Key Detection and Local Tier for the "user" Cache
+ * 热点用户缓存 - 热点键检测和 "user" 缓存的本地层
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Finds the most read user ids and keeps them in process, so that they are served
+ * without a Redis round-trip, survive Redis evictions and restarts, and are loaded
+ * before a new pod takes traffic:
+ * - every lookup through the "user" cache or UserService.getUsersByIds is counted in a
+ *   count-min sketch (fixed memory whatever the number of ids); ids whose estimate
+ *   reaches the current admission threshold become heavy-hitter candidates;
+ * - every hot-users.rotate-interval the top hot-users.top-k candidates become the hot
+ *   set, the sketch is halved so that popularity ages, and the hot set is merged into
+ *   the Redis sorted set users:hot (older scores decayed, hot-users.snapshot-size ids
+ *   kept), which all pods share;
+ * - hot ids read from Redis are promoted to a local tier, kept for hot-users.local-ttl
+ *   or until they leave the hot set;
+ * - WarmupService loads the top hot-users.preload-size ids of users:hot before the pod
+ *   reports ready.
+ *
+ * Local entries are dropped when the user is updated or deleted (after commit, and on
+ * the other pods through the Redis channel hot-users:evicted), and all of them when
+ * Redis recovers, since messages may have been lost meanwhile. A read that raced with
+ * such a change does not promote its possibly stale value.
+ *
+ * Metrics: app.hot_users.local_hits, app.hot_users.hot_set and app.hot_users.local.
+ *
+ * 找出读取最多的用户 ID 并保存在进程内，使其无需 Redis 往返即可提供、不受 Redis 驱逐和重启影响，
+ * 并在新 Pod 接收流量之前加载：
+ * - 通过 "user" 缓存或 UserService.getUsersByIds 的每次查找都计入 count-min 草图（无论 ID 数量多少，
+ *   内存固定）；估计值达到当前准入阈值的 ID 成为重度访问候选；
+ * - 每隔 hot-users.rotate-interval，排名前 hot-users.top-k 的候选成为热点集合，草图减半使热度随时间衰减，
+ *   热点集合合并到所有 Pod 共享的 Redis 有序集合 users:hot（旧分数衰减，保留 hot-users.snapshot-size 个 ID）；
+ * - 从 Redis 读取的热点 ID 被提升到本地层，保留 hot-users.local-ttl 或直到离开热点集合；
+ * - WarmupService 在 Pod 报告就绪之前加载 users:hot 中排名前 hot-users.preload-size 的 ID。
+ *
+ * 用户被更新或删除时（提交后，并通过 Redis 频道 hot-users:evicted 通知其他 Pod）删除本地条目，
+ * Redis 恢复时删除全部本地条目，因为期间可能丢失了消息。与此类变更并发的读取不会提升其可能过期的值。
+ *
+ * 指标：app.hot_users.local_hits、app.hot_users.hot_set 和 app.hot_users.local。
+ */
+@Service
+public class HotUserCache {
+
+    public static final String SNAPSHOT_KEY = "users:hot";
+
+    /**
+     * Redis channel carrying ids of changed users
+     * 传递已变更用户 ID 的 Redis 频道
+     */
+    private static final String CHANNEL = "hot-users:evicted";
+
+    /**
+     * Decay the shared hot set, add this pod's counts, keep the top entries
+     * 衰减共享热点集合，加入本 Pod 的计数，保留排名靠前的条目
+     */
+    private static final RedisScript<Long> MERGE_SNAPSHOT = new DefaultRedisScript<>(
+        "redis.call('ZUNIONSTORE', KEYS[1], 1, KEYS[1], 'WEIGHTS', ARGV[1]) "
+            + "for i = 4, #ARGV, 2 do redis.call('ZINCRBY', KEYS[1], ARGV[i], ARGV[i + 1]) end "
+            + "redis.call('ZREMRANGEBYRANK', KEYS[1], 0, -tonumber(ARGV[2]) - 1) "
+            + "redis.call('EXPIRE', KEYS[1], ARGV[3]) "
+            + "return redis.call('ZCARD', KEYS[1])",
+        Long.class);
+
+    /**
+     * Whether hot keys are tracked and served locally / 是否跟踪热点键并在本地提供
+     */
+    @Value("${hot-users.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Size of the hot set / 热点集合大小
+     */
+    @Value("${hot-users.top-k:1000}")
+    private int topK;
+
+    /**
+     * Count-min sketch rows and counters per row / Count-min 草图的行数和每行计数器数
+     */
+    @Value("${hot-users.sketch-depth:4}")
+    private int sketchDepth;
+
+    @Value("${hot-users.sketch-width:65536}")
+    private int sketchWidth;
+
+    /**
+     * How long a promoted user is served locally / 提升的用户在本地提供的时长
+     */
+    @Value("${hot-users.local-ttl:10m}")
+    private Duration localTtl;
+
+    /**
+     * Ids kept in users:hot, and how long the key outlives its last update
+     * users:hot 中保留的 ID 数，以及该键在最后一次更新后的保留时长
+     */
+    @Value("${hot-users.snapshot-size:5000}")
+    private int snapshotSize;
+
+    @Value("${hot-users.snapshot-ttl:7d}")
+    private Duration snapshotTtl;
+
+    /**
+     * Weight of the previous users:hot scores at each merge / 每次合并时 users:hot 旧分数的权重
+     */
+    @Value("${hot-users.snapshot-decay:0.5}")
+    private double snapshotDecay;
+
+    /**
+     * Ids loaded before readiness / 就绪之前加载的 ID 数
+     */
+    @Value("${hot-users.preload-size:1000}")
+    private int preloadSize;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private CountMinSketch sketch;
+
+    /**
+     * Heavy-hitter candidates with their estimated count / 重度访问候选及其估计次数
+     */
+    private final Map<Long, Long> candidates = new ConcurrentHashMap<>();
+
+    /**
+     * Estimate a new candidate needs / 新候选所需的估计次数
+     */
+    private volatile long admission = 1;
+
+    private volatile Set<Long> hot = Set.of();
+
+    /**
+     * Promoted users / 已提升的用户
+     */
+    private final Map<Long, Local> local = new ConcurrentHashMap<>();
+
+    /**
+     * Incremented by every invalidation, local or remote / 每次失效（本地或远程）递增一次
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    private Counter localHits;
+
+    /**
+     * Create the sketch, subscribe to other pods' changes and register metrics
+     * 创建草图，订阅其他 Pod 的变更并注册指标
+     */
+    @PostConstruct
+    public void init() {
+        sketch = new CountMinSketch(sketchDepth, sketchWidth);
+        listenerContainer.addMessageListener(
+            (message, pattern) -> invalidate(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8))),
+            new ChannelTopic(CHANNEL));
+        redisGuard.onRecovery(this::invalidateAll);
+        localHits = Counter.builder("app.hot_users.local_hits")
+            .description("User lookups served from the local hot tier")
+            .register(meterRegistry);
+        Gauge.builder("app.hot_users.hot_set", this, self -> self.hot.size())
+            .description("User ids in the current hot set")
+            .register(meterRegistry);
+        Gauge.builder("app.hot_users.local", local, Map::size)
+            .description("Users held in the local hot tier")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Count a lookup of a user id
+     * 统计一次用户 ID 查找
+     *
+     * @param id User ID / 用户 ID
+     */
+    public void record(Long id) {
+        if (!enabled || id == null) {
+            return;
+        }
+        long estimate = sketch.add(id);
+        if (estimate >= admission && (candidates.size() < topK * 4 || candidates.containsKey(id))) {
+            candidates.merge(id, estimate, Math::max);
+        }
+    }
+
+    /**
+     * Get a user from the local tier
+     * 从本地层获取用户
+     *
+     * @param id User ID / 用户 ID
+     * @return User, or null if not held locally / 用户，本地未保存时返回 null
+     */
+    public UserResponse getLocal(Long id) {
+        Local entry = local.get(id);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.expiresAt - System.nanoTime() <= 0) {
+            local.remove(id, entry);
+            return null;
+        }
+        localHits.increment();
+        return entry.user;
+    }
+
+    /**
+     * Take a stamp before reading users from Redis or the database
+     * 在从 Redis 或数据库读取用户之前获取一个戳
+     *
+     * @return Stamp to pass to offer / 传给 offer 的戳
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Promote a user to the local tier if it is hot
+     * 如果用户是热点则将其提升到本地层
+     *
+     * @param user User read after the stamp was taken / 获取戳之后读取的用户
+     * @param stamp Stamp taken before the read / 读取之前获取的戳
+     */
+    public void offer(UserResponse user, long stamp) {
+        if (!enabled || user == null || !hot.contains(user.id()) || invalidations.get() != stamp) {
+            return;
+        }
+        Local entry = new Local(user, System.nanoTime() + localTtl.toNanos());
+        local.put(user.id(), entry);
+        if (invalidations.get() != stamp) {
+            local.remove(user.id(), entry);
+        }
+    }
+
+    /**
+     * Add ids to the hot set and the candidates
+     * 将 ID 加入热点集合和候选
+     *
+     * @param ids User IDs / 用户 ID
+     * @description
+     * Used for ids preloaded from users:hot; they stay hot while this pod has not seen
+     * enough traffic to rank other ids above them.
+     * 用于从 users:hot 预加载的 ID；在本 Pod 的流量足以使其他 ID 排在它们之前之前，它们保持为热点。
+     */
+    public void promote(Collection<Long> ids) {
+        if (!enabled) {
+            return;
+        }
+        Set<Long> promoted = new HashSet<>(hot);
+        promoted.addAll(ids);
+        hot = Set.copyOf(promoted);
+        ids.forEach(id -> candidates.merge(id, admission, Math::max));
+    }
+
+    /**
+     * Read the shared hot set, hottest first
+     * 读取共享热点集合，最热的在前
+     *
+     * @return Up to hot-users.preload-size user ids, empty if Redis is unavailable
+     *         最多 hot-users.preload-size 个用户 ID，Redis 不可用时为空
+     */
+    public List<Long> snapshot() {
+        if (!enabled) {
+            return List.of();
+        }
+        return redisGuard.call(() -> {
+            Set<String> ids = redisTemplate.opsForZSet().reverseRange(SNAPSHOT_KEY, 0, preloadSize - 1);
+            return ids == null ? List.<Long>of() : ids.stream().map(Long::valueOf).toList();
+        }, List::of);
+    }
+
+    /**
+     * Drop a changed user on every pod
+     * 在每个 Pod 上删除已变更的用户
+     *
+     * @param event User change event / 用户变更事件
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onUserChange(UserChangeEvent event) {
+        if (event.getType() == UserChangeEvent.Type.CREATED) {
+            return;
+        }
+        invalidate(event.getUserId());
+        String id = event.getUserId().toString();
+        redisGuard.run(() -> redisTemplate.convertAndSend(CHANNEL, id));
+    }
+
+    /**
+     * Pick the new hot set, age the counts and merge the hot set into users:hot
+     * 选出新的热点集合，衰减计数，并将热点集合合并到 users:hot
+     */
+    @Scheduled(fixedDelayString = "${hot-users.rotate-interval:PT1M}",
+        initialDelayString = "${hot-users.rotate-interval:PT1M}")
+    public void rotate() {
+        if (!enabled) {
+            return;
+        }
+        List<Map.Entry<Long, Long>> ranked = new ArrayList<>(candidates.entrySet());
+        ranked.sort(Map.Entry.<Long, Long>comparingByValue().reversed());
+        List<Map.Entry<Long, Long>> top = ranked.subList(0, Math.min(topK, ranked.size()));
+        hot = Set.copyOf(top.stream().map(Map.Entry::getKey).toList());
+        local.keySet().retainAll(hot);
+        List<String> args = new ArrayList<>(3 + top.size() * 2);
+        args.add(Double.toString(snapshotDecay));
+        args.add(Integer.toString(snapshotSize));
+        args.add(Long.toString(snapshotTtl.toSeconds()));
+        for (Map.Entry<Long, Long> entry : top) {
+            args.add(entry.getValue().toString());
+            args.add(entry.getKey().toString());
+        }
+        if (!top.isEmpty()) {
+            redisGuard.run(() -> redisTemplate.execute(MERGE_SNAPSHOT, List.of(SNAPSHOT_KEY), args.toArray()));
+        }
+
+        // Age everything; the weakest hot id sets the bar for new candidates
+        // 衰减所有计数；最弱的热点 ID 决定新候选的门槛
+        sketch.halve();
+        candidates.keySet().retainAll(hot);
+        candidates.replaceAll((id, count) -> count / 2);
+        admission = top.size() < topK ? 1 : Math.max(1, top.get(top.size() - 1).getValue() / 2);
+    }
+
+    /**
+     * Put a local tier in front of a cache keyed by user id
+     * 在以用户 ID 为键的缓存前放置本地层
+     *
+     * @param remote Redis-backed "user" cache / 基于 Redis 的 "user" 缓存
+     * @return Cache counting lookups and serving hot users locally / 统计查找并在本地提供热点用户的缓存
+     */
+    public Cache tier(Cache remote) {
+        return new Tier(remote);
+    }
+
+    private void invalidate(Long id) {
+        invalidations.incrementAndGet();
+        local.remove(id);
+    }
+
+    private void invalidateAll() {
+        invalidations.incrementAndGet();
+        local.clear();
+    }
+
+    /**
+     * Promoted user and the System.nanoTime() it expires at / 已提升的用户及其过期时的 System.nanoTime()
+     */
+    private record Local(UserResponse user, long expiresAt) {
+    }
+
+    /**
+     * "user" cache decorator: counts lookups, serves promoted users, promotes hot Redis hits
+     * "user" 缓存装饰器：统计查找、提供已提升的用户、提升命中 Redis 的热点用户
+     */
+    private final class Tier implements Cache {
+
+        private final Cache remote;
+
+        Tier(Cache remote) {
+            this.remote = remote;
+        }
+
+        @Override
+        public String getName() {
+            return remote.getName();
+        }
+
+        @Override
+        public Object getNativeCache() {
+            return remote.getNativeCache();
+        }
+
+        @Override
+        public ValueWrapper get(Object key) {
+            if (!(key instanceof Long id)) {
+                return remote.get(key);
+            }
+            record(id);
+            UserResponse user = getLocal(id);
+            if (user != null) {
+                return new SimpleValueWrapper(user);
+            }
+            long stamp = stamp();
+            ValueWrapper cached = remote.get(key);
+            if (cached != null && cached.get() instanceof UserResponse found) {
+                offer(found, stamp);
+            }
+            return cached;
+        }
+
+        @Override
+        public <T> T get(Object key, Class<T> type) {
+            ValueWrapper cached = get(key);
+            return cached == null ? null : type.cast(cached.get());
+        }
+
+        @Override
+        public <T> T get(Object key, Callable<T> valueLoader) {
+            ValueWrapper cached = get(key);
+            if (cached != null) {
+                @SuppressWarnings("unchecked")
+                T value = (T) cached.get();
+                return value;
+            }
+            T value;
+            try {
+                value = valueLoader.call();
+            } catch (Exception e) {
+                throw new ValueRetrievalException(key, valueLoader, e);
+            }
+            put(key, value);
+            return value;
+        }
+
+        @Override
+        public void put(Object key, Object value) {
+            remote.put(key, value);
+        }
+
+        @Override
+        public void evict(Object key) {
+            if (key instanceof Long id) {
+                HotUserCache.this.invalidate(id);
+            }
+            remote.evict(key);
+        }
+
+        @Override
+        public void clear() {
+            invalidateAll();
+            remote.clear();
+        }
+    }
+}
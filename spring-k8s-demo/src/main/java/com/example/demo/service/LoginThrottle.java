@@ -0,0 +1,575 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.DoubleAdder;
+
+/**
+ * LoginThrottle - Failed-Login Backoff per Account and Source IP
+ * 登录限流 - 按账户和来源 IP 的登录失败退避
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Counts failed logins per email and per client IP in a sliding window
+ * (login-throttle.window, approximated from the current and previous fixed windows).
+ * Once a key reaches its threshold it is blocked with exponential backoff: the
+ * threshold-th failure blocks for login-throttle.base-backoff and every further
+ * failure doubles it, up to login-throttle.max-backoff. Blocked attempts are rejected
+ * by check() before any database lookup or bcrypt work, so a credential-stuffing
+ * burst costs a map lookup per request, and only the attacked account or source is
+ * affected.
+ *
+ * Counting is local; every login-throttle.sync-interval one pipeline pushes the new
+ * failures to Redis (INCRBY login:fail:{key}:{window}), reads back the totals of all
+ * pods, and exchanges blocks through the hash login:blocked, so attempts spread over
+ * pods add up and a block applies on every pod within one sync interval. While Redis
+ * is unavailable, counting and blocking continue per pod.
+ *
+ * Every failure also counts against a global budget (login-throttle.global-threshold
+ * per window, summed over pods like any other key). The budget never blocks anyone by
+ * itself: while it is exceeded, the email and IP thresholds are halved, so keys that
+ * already have failures are blocked sooner and keys without failures are unaffected.
+ * At most login-throttle.max-tracked-keys windows are kept; when a new key does not
+ * fit, the least recently failing tenth of the windows that are not blocked is
+ * evicted, so a spray over many accounts never throttles accounts it did not touch.
+ *
+ * Metrics: app.login.throttled{key=email|ip}, app.login.throttled.cpu_saved (seconds
+ * of password hashing not spent, estimated from the average hashing time) and
+ * app.login.blocked_keys.
+ *
+ * 在滑动窗口（login-throttle.window，由当前和上一个固定窗口近似）中按邮箱和客户端 IP
+ * 统计登录失败次数。某个键达到阈值后以指数退避方式封禁：第 threshold 次失败封禁
+ * login-throttle.base-backoff，之后每次失败翻倍，最多 login-throttle.max-backoff。
+ * 被封禁的尝试由 check() 在任何数据库查询或 bcrypt 计算之前拒绝，因此撞库突发流量每个请求
+ * 只需一次 Map 查找，并且只影响被攻击的账户或来源。
+ *
+ * 计数在本地进行；每隔 login-throttle.sync-interval 通过一个管道将新的失败推送到 Redis
+ * （INCRBY login:fail:{key}:{window}），读回所有 Pod 的总数，并通过哈希 login:blocked 交换封禁，
+ * 因此分散在多个 Pod 上的尝试会累加，封禁在一个同步间隔内对所有 Pod 生效。
+ * Redis 不可用期间，计数和封禁在每个 Pod 上继续进行。
+ *
+ * 每次失败还计入全局预算（每个窗口 login-throttle.global-threshold 次，像其他键一样跨 Pod 累加）。
+ * 该预算本身从不封禁任何人：超出期间，邮箱和 IP 阈值减半，因此已有失败的键更早被封禁，
+ * 没有失败的键不受影响。最多保留 login-throttle.max-tracked-keys 个窗口；新键放不下时，
+ * 淘汰未被封禁的窗口中最久未失败的十分之一，因此针对大量账户的撞库不会限流它未触及的账户。
+ *
+ * 指标：app.login.throttled{key=email|ip}、app.login.throttled.cpu_saved
+ * （根据平均哈希时间估算的未花费的密码哈希秒数）和 app.login.blocked_keys。
+ */
+@Service
+public class LoginThrottle {
+
+    private static final String FAILURE_KEY_PREFIX = "login:fail:";
+    private static final String BLOCKED_KEY = "login:blocked";
+
+    private static final String EMAIL = "email:";
+    private static final String IP = "ip:";
+
+    /**
+     * Failures of all accounts and sources / 所有账户和来源的失败
+     */
+    private static final String GLOBAL = "global";
+
+    /**
+     * Enable or disable throttling / 启用或禁用限流
+     */
+    @Value("${login-throttle.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Sliding window length / 滑动窗口长度
+     */
+    @Value("${login-throttle.window:15m}")
+    private Duration window;
+
+    /**
+     * Failures per window before an account is blocked / 账户被封禁前每个窗口允许的失败次数
+     */
+    @Value("${login-throttle.email-threshold:5}")
+    private int emailThreshold;
+
+    /**
+     * Failures per window before a source IP is blocked (higher: NAT, offices)
+     * 来源 IP 被封禁前每个窗口允许的失败次数（较高：NAT、办公网络）
+     */
+    @Value("${login-throttle.ip-threshold:50}")
+    private int ipThreshold;
+
+    /**
+     * Failures per window of all accounts and sources together before thresholds are halved
+     * 所有账户和来源合计每个窗口的失败次数，超过后阈值减半
+     */
+    @Value("${login-throttle.global-threshold:10000}")
+    private int globalThreshold;
+
+    /**
+     * First block duration / 首次封禁时长
+     */
+    @Value("${login-throttle.base-backoff:1s}")
+    private Duration baseBackoff;
+
+    /**
+     * Longest block duration / 最长封禁时长
+     */
+    @Value("${login-throttle.max-backoff:15m}")
+    private Duration maxBackoff;
+
+    /**
+     * Keys tracked locally; beyond this the least recently failing keys are evicted
+     * 本地跟踪的键数；超过后淘汰最久未失败的键
+     */
+    @Value("${login-throttle.max-tracked-keys:100000}")
+    private int maxTrackedKeys;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * One thread evicts at a time / 同一时间只有一个线程执行淘汰
+     */
+    private final AtomicBoolean evicting = new AtomicBoolean();
+
+    /**
+     * Key -> blocked until (epoch ms), from this pod and others / 键 -> 封禁截止时间（纪元毫秒），来自本 Pod 和其他 Pod
+     */
+    private final Map<String, Long> blockedUntil = new ConcurrentHashMap<>();
+
+    /**
+     * Blocks not yet written to Redis / 尚未写入 Redis 的封禁
+     */
+    private final Map<String, Long> pendingBlocks = new ConcurrentHashMap<>();
+
+    /**
+     * Keys reset by a successful login, to clear in Redis / 因登录成功而重置、需在 Redis 中清除的键
+     */
+    private final Map<String, Long> pendingResets = new ConcurrentHashMap<>();
+
+    /**
+     * Moving average of one password check in nanoseconds / 单次密码校验的移动平均耗时（纳秒）
+     */
+    private volatile double averageCheckNanos;
+
+    private final DoubleAdder savedSeconds = new DoubleAdder();
+
+    private Counter throttledByEmail;
+    private Counter throttledByIp;
+
+    /**
+     * Register metrics
+     * 注册指标
+     */
+    @PostConstruct
+    public void init() {
+        throttledByEmail = throttled("email");
+        throttledByIp = throttled("ip");
+        FunctionCounter.builder("app.login.throttled.cpu_saved", savedSeconds, DoubleAdder::sum)
+            .description("Estimated password hashing time avoided by rejecting throttled logins")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        Gauge.builder("app.login.blocked_keys", blockedUntil, Map::size)
+            .description("Accounts and source IPs currently blocked from logging in")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Reject a login attempt from a blocked account or source
+     * 拒绝来自被封禁账户或来源的登录尝试
+     *
+     * @param email Login email / 登录邮箱
+     * @param clientIp Client IP address / 客户端 IP 地址
+     * @throws ThrottledException if the email or the IP is blocked / 如果邮箱或 IP 被封禁
+     */
+    public void check(String email, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        String emailKey = EMAIL + normalize(email);
+        String ipKey = IP + clientIp;
+        long emailUntil = blockedUntil.getOrDefault(emailKey, 0L);
+        long ipUntil = blockedUntil.getOrDefault(ipKey, 0L);
+        if (emailUntil <= now && ipUntil <= now) {
+            return;
+        }
+        (ipUntil > now ? throttledByIp : throttledByEmail).increment();
+        savedSeconds.add(averageCheckNanos / 1e9);
+        throw new ThrottledException(Duration.ofMillis(Math.max(emailUntil, ipUntil) - now));
+    }
+
+    /**
+     * Count a failed login (unknown email or wrong password)
+     * 记录一次失败的登录（未知邮箱或密码错误）
+     *
+     * @param email Login email / 登录邮箱
+     * @param clientIp Client IP address / 客户端 IP 地址
+     */
+    public void recordFailure(String email, String clientIp) {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        fail(EMAIL + normalize(email), now);
+        fail(IP + clientIp, now);
+        fail(GLOBAL, now);
+    }
+
+    /**
+     * Reset the account's counter after a successful login (the IP counter is kept)
+     * 登录成功后重置账户计数器（保留 IP 计数器）
+     *
+     * @param email Login email / 登录邮箱
+     */
+    public void recordSuccess(String email) {
+        if (!enabled) {
+            return;
+        }
+        String key = EMAIL + normalize(email);
+        if (windows.remove(key) != null) {
+            pendingBlocks.remove(key);
+            pendingResets.put(key, windowIndex(System.currentTimeMillis()));
+        }
+    }
+
+    /**
+     * Record the duration of one password check, for the CPU-saved estimate
+     * 记录一次密码校验的耗时，用于估算节省的 CPU
+     *
+     * @param nanos Duration in nanoseconds / 耗时（纳秒）
+     */
+    public void recordPasswordCheck(long nanos) {
+        double average = averageCheckNanos;
+        averageCheckNanos = average == 0 ? nanos : average * 0.9 + nanos * 0.1;
+    }
+
+    /**
+     * Exchange failure counts and blocks with the other pods
+     * 与其他 Pod 交换失败计数和封禁
+     */
+    @Scheduled(fixedDelayString = "${login-throttle.sync-interval:PT2S}")
+    public void sync() {
+        if (!enabled) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        long index = windowIndex(now);
+        List<Map.Entry<String, Window>> pushed = new ArrayList<>();
+        List<Long> deltas = new ArrayList<>();
+        windows.forEach((key, counter) -> {
+            long delta = counter.takePending();
+            if (delta > 0) {
+                pushed.add(Map.entry(key, counter));
+                deltas.add(delta);
+            }
+        });
+        Map<String, Long> blocks = drain(pendingBlocks);
+        Map<String, Long> resets = drain(pendingResets);
+        long ttl = window.toMillis() * 2;
+
+        List<Object> results = redisGuard.call(() -> redisTemplate.executePipelined(new SessionCallback<Object>() {
+            @Override
+            @SuppressWarnings({"unchecked", "rawtypes"})
+            public Object execute(RedisOperations operations) {
+                for (int i = 0; i < pushed.size(); i++) {
+                    String key = pushed.get(i).getKey();
+                    operations.opsForValue().increment(FAILURE_KEY_PREFIX + key + ":" + index, deltas.get(i));
+                    operations.opsForValue().get(FAILURE_KEY_PREFIX + key + ":" + (index - 1));
+                    operations.expire(FAILURE_KEY_PREFIX + key + ":" + index, ttl, TimeUnit.MILLISECONDS);
+                }
+                resets.forEach((key, resetIndex) -> {
+                    operations.delete(List.of(FAILURE_KEY_PREFIX + key + ":" + resetIndex,
+                        FAILURE_KEY_PREFIX + key + ":" + (resetIndex - 1)));
+                    operations.opsForHash().delete(BLOCKED_KEY, key);
+                });
+                blocks.forEach((key, until) -> operations.opsForHash().put(BLOCKED_KEY, key, Long.toString(until)));
+                if (!blocks.isEmpty()) {
+                    operations.expire(BLOCKED_KEY, maxBackoff.toMillis(), TimeUnit.MILLISECONDS);
+                }
+                operations.opsForHash().entries(BLOCKED_KEY);
+                return null;
+            }
+        }), () -> null);
+
+        if (results == null) {
+            // Keep the changes for the next sync; local blocking goes on meanwhile
+            // 保留变更到下一次同步；在此期间本地封禁继续生效
+            for (int i = 0; i < pushed.size(); i++) {
+                pushed.get(i).getValue().addPending(deltas.get(i));
+            }
+            blocks.forEach((key, until) -> pendingBlocks.merge(key, until, Math::max));
+            resets.forEach(pendingResets::putIfAbsent);
+        } else {
+            applyTotals(pushed, results, index, now);
+            applyBlocks(results.get(results.size() - 1), now);
+        }
+        evict(index, now);
+    }
+
+    /**
+     * Adopt the cluster-wide counts; keys that other pods pushed over their threshold are blocked
+     * 采用集群范围的计数；其他 Pod 推动超过阈值的键会被封禁
+     */
+    private void applyTotals(List<Map.Entry<String, Window>> pushed, List<Object> results, long index, long now) {
+        for (int i = 0; i < pushed.size(); i++) {
+            String key = pushed.get(i).getKey();
+            Window counter = pushed.get(i).getValue();
+            long current = ((Number) results.get(i * 3)).longValue();
+            Object previous = results.get(i * 3 + 1);
+            if (counter.adopt(index, previous != null ? Long.parseLong(previous.toString()) : 0, current)) {
+                block(key, counter.estimate(now, window.toMillis()), now);
+            }
+        }
+    }
+
+    /**
+     * Merge blocks published by all pods; drop expired entries from the shared hash
+     * 合并所有 Pod 发布的封禁；从共享哈希中删除过期条目
+     */
+    private void applyBlocks(Object entries, long now) {
+        if (!(entries instanceof Map<?, ?> shared)) {
+            return;
+        }
+        List<Object> expired = new ArrayList<>();
+        shared.forEach((key, value) -> {
+            long until = Long.parseLong(value.toString());
+            if (until > now) {
+                blockedUntil.merge(key.toString(), until, Math::max);
+            } else {
+                expired.add(key);
+            }
+        });
+        if (!expired.isEmpty()) {
+            redisGuard.run(() -> redisTemplate.opsForHash().delete(BLOCKED_KEY, expired.toArray()));
+        }
+    }
+
+    private void fail(String key, long now) {
+        Window counter = windows.get(key);
+        if (counter == null) {
+            if (windows.size() >= maxTrackedKeys) {
+                evictLeastRecent(now);
+            }
+            counter = windows.computeIfAbsent(key, k -> new Window());
+        }
+        block(key, counter.fail(now, window.toMillis()), now);
+    }
+
+    /**
+     * Block a key with exponential backoff once its failures reach the threshold
+     * 当键的失败次数达到阈值时以指数退避方式封禁
+     *
+     * @description
+     * The global key is only counted. While it is over its threshold, the other
+     * thresholds are halved (but stay at least 2, so one failure never blocks).
+     * 全局键只计数。它超过阈值期间，其他阈值减半（但至少为 2，因此一次失败永远不会导致封禁）。
+     */
+    private void block(String key, double failures, long now) {
+        if (key.equals(GLOBAL)) {
+            return;
+        }
+        int threshold = key.startsWith(EMAIL) ? emailThreshold : ipThreshold;
+        if (underAttack(now)) {
+            threshold = Math.max(2, threshold / 2);
+        }
+        if (failures < threshold) {
+            return;
+        }
+        int doublings = (int) Math.min(30, Math.floor(failures) - threshold);
+        long backoff = Math.min(maxBackoff.toMillis(), baseBackoff.toMillis() << doublings);
+        long until = now + backoff;
+        if (blockedUntil.merge(key, until, Math::max) == until) {
+            pendingBlocks.merge(key, until, Math::max);
+        }
+    }
+
+    private boolean underAttack(long now) {
+        Window global = windows.get(GLOBAL);
+        return global != null && global.estimate(now, window.toMillis()) >= globalThreshold;
+    }
+
+    /**
+     * Make room for new keys: evict the least recently failing tenth of the unblocked windows
+     * 为新键腾出空间：淘汰未封禁窗口中最久未失败的十分之一
+     *
+     * @description
+     * Blocked keys keep their windows, so their backoff keeps growing. Last-failure times
+     * are copied before sorting, since failures keep updating them meanwhile.
+     * 被封禁的键保留其窗口，因此其退避会继续增长。排序前先复制最后失败时间，因为失败期间它们会持续更新。
+     */
+    private void evictLeastRecent(long now) {
+        if (!evicting.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            List<Map.Entry<String, Long>> candidates = new ArrayList<>();
+            windows.forEach((key, counter) -> {
+                if (!key.equals(GLOBAL) && blockedUntil.getOrDefault(key, 0L) <= now) {
+                    candidates.add(Map.entry(key, counter.lastFailure()));
+                }
+            });
+            candidates.sort(Map.Entry.comparingByValue());
+            int excess = windows.size() - maxTrackedKeys + Math.max(1, maxTrackedKeys / 10);
+            candidates.stream().limit(Math.max(0, excess)).forEach(candidate -> windows.remove(candidate.getKey()));
+        } finally {
+            evicting.set(false);
+        }
+    }
+
+    /**
+     * Forget windows and blocks that no longer matter
+     * 清除不再有意义的窗口和封禁
+     */
+    private void evict(long index, long now) {
+        windows.values().removeIf(counter -> counter.isIdle(index));
+        blockedUntil.values().removeIf(until -> until <= now);
+    }
+
+    private long windowIndex(long now) {
+        return now / window.toMillis();
+    }
+
+    private Counter throttled(String key) {
+        return Counter.builder("app.login.throttled")
+            .description("Login attempts rejected before password verification")
+            .tag("key", key)
+            .register(meterRegistry);
+    }
+
+    private static Map<String, Long> drain(Map<String, Long> pending) {
+        Map<String, Long> drained = new ConcurrentHashMap<>();
+        for (String key : pending.keySet()) {
+            Long value = pending.remove(key);
+            if (value != null) {
+                drained.put(key, value);
+            }
+        }
+        return drained;
+    }
+
+    private static String normalize(String email) {
+        return email == null ? "" : email.trim().toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Failure counts of one key in the current and previous fixed windows
+     * 一个键在当前和上一个固定窗口中的失败计数
+     */
+    private static final class Window {
+
+        private long index;
+        private long previous;
+        private long current;
+        private long pending;
+        private long lastFailure;
+
+        synchronized double fail(long now, long windowMillis) {
+            roll(now / windowMillis);
+            current++;
+            pending++;
+            lastFailure = now;
+            return estimate(now, windowMillis);
+        }
+
+        synchronized long lastFailure() {
+            return lastFailure;
+        }
+
+        synchronized double estimate(long now, long windowMillis) {
+            roll(now / windowMillis);
+            double previousWeight = 1.0 - (double) (now % windowMillis) / windowMillis;
+            return previous * previousWeight + current;
+        }
+
+        synchronized long takePending() {
+            long taken = pending;
+            pending = 0;
+            return taken;
+        }
+
+        synchronized void addPending(long delta) {
+            pending += delta;
+        }
+
+        /**
+         * Replace local counts with the totals of all pods (plus failures since the push)
+         * 用所有 Pod 的总数（加上推送后的失败）替换本地计数
+         *
+         * @return true if other pods added failures / 如果其他 Pod 增加了失败次数则返回 true
+         */
+        synchronized boolean adopt(long totalsIndex, long totalPrevious, long totalCurrent) {
+            if (totalsIndex != index) {
+                return false;
+            }
+            boolean increased = totalPrevious > previous || totalCurrent + pending > current;
+            previous = Math.max(previous, totalPrevious);
+            current = Math.max(current, totalCurrent + pending);
+            return increased;
+        }
+
+        synchronized boolean isIdle(long currentIndex) {
+            return pending == 0 && index < currentIndex - 1;
+        }
+
+        private void roll(long nowIndex) {
+            if (nowIndex == index) {
+                return;
+            }
+            previous = nowIndex == index + 1 ? current : 0;
+            current = 0;
+            index = nowIndex;
+        }
+    }
+
+    /**
+     * Thrown when a login attempt is rejected by the throttle
+     * 登录尝试被限流拒绝时抛出
+     */
+    public static class ThrottledException extends RuntimeException {
+
+        private final Duration retryAfter;
+
+        /**
+         * Constructor for ThrottledException
+         * ThrottledException 构造函数
+         *
+         * @param retryAfter Time until the block ends / 封禁结束前的时间
+         */
+        public ThrottledException(Duration retryAfter) {
+            super("Too many failed login attempts. Try again in " + Math.max(1, retryAfter.toSeconds()) + " seconds");
+            this.retryAfter = retryAfter;
+        }
+
+        public Duration getRetryAfter() {
+            return retryAfter;
+        }
+    }
+}
@@ -0,0 +1,290 @@
+package com.example.demo.service;
+
+import com.example.demo.event.UserChangeEvent;
+import com.example.demo.repository.UserIdAllocator;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * MissingUserCache - Negative Cache for Nonexistent User IDs
+ * 缺失用户缓存 - 不存在用户 ID 的负缓存
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * The "user" cache only holds users that exist, so a scan over random or sequential
+ * ids reaches the database on every request. This cache answers "no such user"
+ * without a query, in two ways:
+ * - id ceiling: UserIdAllocator hands out every id below user_id_sequence.next_val, so
+ *   an id at or above it has never existed. The ceiling is read at most once per
+ *   missing-user-cache.ceiling-refresh, and only when a lookup is above it; a scan past
+ *   the end of the id space costs one small query per interval instead of one per id.
+ * - absent markers: an id below the ceiling that was looked up and not found (a
+ *   deleted user or a gap in an allocated block) is remembered for
+ *   missing-user-cache.ttl, at most missing-user-cache.max-entries ids per pod.
+ *
+ * When a user is created the pod that created it raises its ceiling and drops the
+ * marker after commit, and tells the other pods through the Redis channel
+ * missing-users:created. A pod that misses the message answers 404 for the new id for
+ * at most ceiling-refresh (above the ceiling) or ttl (marker). A lookup that raced with
+ * a create does not leave a marker behind: markers are only recorded when no create was
+ * seen while the lookup ran. Markers are dropped when Redis recovers, since messages may
+ * have been lost meanwhile.
+ *
+ * 缓存 "user" 只保存存在的用户，因此扫描随机或连续的 ID 时每个请求都会访问数据库。
+ * 本缓存以两种方式在不查询的情况下回答"没有该用户"：
+ * - ID 上界：UserIdAllocator 分配的每个 ID 都小于 user_id_sequence.next_val，因此大于等于
+ *   该值的 ID 从未存在过。上界每个 missing-user-cache.ceiling-refresh 最多读取一次，并且只在
+ *   查找超出上界时读取；扫描 ID 空间末尾之后的 ID 每个间隔只需一次小查询，而不是每个 ID 一次。
+ * - 缺失标记：低于上界、被查找但未找到的 ID（已删除的用户或已分配块中的空洞）会被记住
+ *   missing-user-cache.ttl，每个 Pod 最多 missing-user-cache.max-entries 个 ID。
+ *
+ * 创建用户时，创建它的 Pod 在提交后提高其上界并删除标记，并通过 Redis 频道
+ * missing-users:created 通知其他 Pod。错过该消息的 Pod 对新 ID 返回 404 的时间最多为
+ * ceiling-refresh（超出上界时）或 ttl（标记）。与创建并发的查找不会留下标记：只有在查找期间
+ * 没有看到任何创建时才记录标记。Redis 恢复时会清除标记，因为期间可能丢失了消息。
+ */
+@Service
+public class MissingUserCache {
+
+    private static final Logger log = LoggerFactory.getLogger(MissingUserCache.class);
+
+    /**
+     * Redis channel carrying ids of created users
+     * 传递已创建用户 ID 的 Redis 频道
+     */
+    private static final String CHANNEL = "missing-users:created";
+
+    /**
+     * Whether lookups are answered from this cache / 是否由本缓存回答查找
+     */
+    @Value("${missing-user-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * How long an absent marker is trusted / 缺失标记的可信时长
+     */
+    @Value("${missing-user-cache.ttl:30s}")
+    private Duration ttl;
+
+    /**
+     * Maximum absent markers per pod / 每个 Pod 的最大缺失标记数
+     */
+    @Value("${missing-user-cache.max-entries:100000}")
+    private int maxEntries;
+
+    /**
+     * How long a read of the id ceiling is trusted / ID 上界读取结果的可信时长
+     */
+    @Value("${missing-user-cache.ceiling-refresh:1s}")
+    private Duration ceilingRefresh;
+
+    @Autowired
+    private UserIdAllocator idAllocator;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Absent user id to the System.nanoTime() its marker expires at
+     * 缺失的用户 ID 到其标记过期时的 System.nanoTime()
+     */
+    private final Map<Long, Long> markers = new ConcurrentHashMap<>();
+
+    /**
+     * Ids at or above this value do not exist, once ceilingKnown / ceilingKnown 为 true 时，大于等于该值的 ID 不存在
+     */
+    private final AtomicLong ceiling = new AtomicLong();
+
+    private volatile boolean ceilingKnown;
+
+    private final AtomicBoolean ceilingLoading = new AtomicBoolean();
+
+    private volatile long ceilingExpiresAt = System.nanoTime();
+
+    /**
+     * Incremented by every create seen, local or remote / 每看到一次创建（本地或远程）递增一次
+     */
+    private final AtomicLong creates = new AtomicLong();
+
+    private Counter ceilingHits;
+    private Counter markerHits;
+
+    /**
+     * Subscribe to other pods' creates and register metrics
+     * 订阅其他 Pod 的创建并注册指标
+     */
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(
+            (message, pattern) -> created(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8))),
+            new ChannelTopic(CHANNEL));
+        redisGuard.onRecovery(markers::clear);
+        ceilingHits = hits("ceiling");
+        markerHits = hits("marker");
+        Gauge.builder("app.missing_users.markers", markers, Map::size)
+            .description("User ids remembered as absent")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Check whether a user id is known not to exist
+     * 检查用户 ID 是否已知不存在
+     *
+     * @param id User ID / 用户 ID
+     * @return true if the id can be answered as not found without a query / 如果无需查询即可回答未找到则返回 true
+     */
+    public boolean isKnownMissing(Long id) {
+        if (!enabled) {
+            return false;
+        }
+        if (id == null || id < 1) {
+            ceilingHits.increment();
+            return true;
+        }
+        if (aboveCeiling(id)) {
+            ceilingHits.increment();
+            return true;
+        }
+        Long expiresAt = markers.get(id);
+        if (expiresAt == null) {
+            return false;
+        }
+        if (expiresAt - System.nanoTime() > 0) {
+            markerHits.increment();
+            return true;
+        }
+        markers.remove(id, expiresAt);
+        return false;
+    }
+
+    /**
+     * Take a stamp before looking a user up
+     * 在查找用户之前获取一个戳
+     *
+     * @return Stamp to pass to recordMissing / 传给 recordMissing 的戳
+     */
+    public long stamp() {
+        return creates.get();
+    }
+
+    /**
+     * Remember that a lookup found no user
+     * 记住一次查找未找到用户
+     *
+     * @param id User ID / 用户 ID
+     * @param stamp Stamp taken before the lookup / 查找之前获取的戳
+     * @description
+     * Nothing is recorded if a user was created since the stamp was taken, since the
+     * lookup may have missed it. A create that lands between the put and the second
+     * check removes the marker itself or is caught by that check.
+     * 如果获取戳之后有用户被创建，则不记录任何内容，因为查找可能错过了它。在放入与第二次检查之间
+     * 发生的创建要么自己删除标记，要么被第二次检查发现。
+     */
+    public void recordMissing(Long id, long stamp) {
+        if (!enabled || id == null || creates.get() != stamp || markers.size() >= maxEntries) {
+            return;
+        }
+        Long expiresAt = System.nanoTime() + ttl.toNanos();
+        markers.put(id, expiresAt);
+        if (creates.get() != stamp) {
+            markers.remove(id, expiresAt);
+        }
+    }
+
+    /**
+     * Forget a created user's marker on every pod
+     * 在每个 Pod 上忘记已创建用户的标记
+     *
+     * @param event User change event / 用户变更事件
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onUserChange(UserChangeEvent event) {
+        if (event.getType() != UserChangeEvent.Type.CREATED) {
+            return;
+        }
+        created(event.getUserId());
+        String id = event.getUserId().toString();
+        redisGuard.run(() -> redisTemplate.convertAndSend(CHANNEL, id));
+    }
+
+    /**
+     * Drop expired markers
+     * 删除过期的标记
+     */
+    @Scheduled(fixedDelayString = "${missing-user-cache.cleanup-interval:PT1M}")
+    public void evictExpired() {
+        long now = System.nanoTime();
+        markers.entrySet().removeIf(marker -> marker.getValue() - now <= 0);
+    }
+
+    private void created(long id) {
+        creates.incrementAndGet();
+        markers.remove(id);
+        ceiling.accumulateAndGet(id + 1, Math::max);
+    }
+
+    private boolean aboveCeiling(long id) {
+        if (id < ceiling.get()) {
+            return false;
+        }
+        if (ceilingExpiresAt - System.nanoTime() <= 0) {
+            // One thread reads, the others do not wait and query the user instead
+            // 一个线程读取，其他线程不等待而是直接查询用户
+            if (!ceilingLoading.compareAndSet(false, true)) {
+                return false;
+            }
+            try {
+                long allocated = idAllocator.allocatedCeiling();
+                ceilingKnown = allocated != Long.MAX_VALUE;
+                ceiling.set(ceilingKnown ? allocated : 0);
+            } catch (RuntimeException e) {
+                log.debug("Reading the user id ceiling failed: {}", e.toString());
+                ceilingKnown = false;
+                ceiling.set(0);
+            } finally {
+                ceilingExpiresAt = System.nanoTime() + ceilingRefresh.toNanos();
+                ceilingLoading.set(false);
+            }
+        }
+        return ceilingKnown && id >= ceiling.get();
+    }
+
+    private Counter hits(String source) {
+        return Counter.builder("app.missing_users.hits")
+            .description("User lookups answered as not found without a query")
+            .tag("source", source)
+            .register(meterRegistry);
+    }
+}
@@ -0,0 +1,1006 @@
+package com.example.demo.service;
+
+import com.example.demo.config.PeerCacheProperties;
+import com.example.demo.util.ConsistentHashRing;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.Inet6Address;
+import java.net.InetAddress;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.UnknownHostException;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * PeerCacheService - Consistent-Hash Cache Spread over the Application Pods
+ * 对等缓存服务 - 分布在应用 Pod 上的一致性哈希缓存
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Optional Spring Cache backend (peer-cache.enabled, see PeerCacheManager): instead of
+ * one Redis instance, the memory of all pods holds the cache. Every key has one owner
+ * on a consistent-hash ring of the peers; only the owner stores it, so N pods hold N
+ * times peer-cache.max-size of distinct entries and no single process serves every
+ * read. Other pods reach the owner through the internal endpoints of
+ * PeerCacheController (plain HTTP/1.1 with keep-alive, serialized values as bytes,
+ * batched per owner for getUsersByIds).
+ *
+ * Concurrent misses of the same key are deduplicated at the owner with leases: the
+ * first caller that misses gets a lease and loads the value; the others wait up to
+ * peer-cache.lease-wait at the owner for the value the lease holder puts. An eviction
+ * revokes the lease, so a value loaded before the change is not stored afterwards.
+ * Evictions are sent to every peer, not only the owner, so no pod keeps a copy of an
+ * entry it owned before the ring changed; on a ring change each pod also drops the
+ * entries it no longer owns.
+ *
+ * Values are only stored under a lease: getAll grants one per missing key as well, and
+ * a put without a live lease (revoked by an eviction, expired, or never granted) is
+ * dropped, so no value loaded before a change is stored after it.
+ *
+ * A peer that fails is skipped for peer-cache.retry-after: its keys are misses (the
+ * caller loads from the database) and puts to it are dropped. An eviction that cannot
+ * be delivered to a peer, and a peer joining the ring, mark it for reset: it stays
+ * skipped until it has dropped every entry it holds (see resetPeers), so no other pod
+ * reads a value whose eviction it missed; the peer's own callers may, for at most
+ * about peer-cache.reset-interval after it is reachable again.
+ *
+ * 可选的 Spring Cache 后端（peer-cache.enabled，参见 PeerCacheManager）：由所有 Pod 的内存而不是
+ * 单个 Redis 实例保存缓存。每个键在对等节点的一致性哈希环上有一个所有者；只有所有者存储它，
+ * 因此 N 个 Pod 可容纳 N 倍 peer-cache.max-size 的不同条目，且没有单个进程承担所有读取。
+ * 其他 Pod 通过 PeerCacheController 的内部端点访问所有者（保持连接的普通 HTTP/1.1，
+ * 值以序列化字节传输，getUsersByIds 按所有者批量请求）。
+ *
+ * 同一键的并发未命中在所有者处通过租约去重：第一个未命中的调用方获得租约并加载值；
+ * 其他调用方在所有者处最多等待 peer-cache.lease-wait，以获取租约持有者放入的值。
+ * 驱逐会撤销租约，因此变更前加载的值不会在变更后被存储。驱逐发送到每个对等节点而不仅是所有者，
+ * 因此没有 Pod 会保留环变化前它拥有的条目副本；环变化时每个 Pod 也会删除它不再拥有的条目。
+ *
+ * 值只在租约下存储：getAll 也为每个未命中的键授予租约，没有有效租约（被驱逐撤销、已过期或从未授予）的
+ * 写入被丢弃，因此变更前加载的值不会在变更后被存储。
+ *
+ * 失败的对等节点在 peer-cache.retry-after 内被跳过：其键视为未命中（调用方从数据库加载），
+ * 发往它的写入被丢弃。无法送达驱逐的对等节点以及加入环的对等节点被标记为需要重置：
+ * 在它删除所持有的全部条目之前一直被跳过（参见 resetPeers），因此其他 Pod 不会读取到它错过了驱逐的值；
+ * 该对等节点自己的调用方在其恢复可达后最多约 peer-cache.reset-interval 内仍可能读到。
+ */
+@Service
+public class PeerCacheService {
+
+    private static final Logger log = LoggerFactory.getLogger(PeerCacheService.class);
+
+    public static final String SECRET_HEADER = "X-Peer-Cache-Secret";
+    public static final String LEASE_HEADER = "X-Cache-Lease";
+
+    private static final String PATH = "/internal/cache/";
+
+    /**
+     * Leases granted to this thread by the last getAll, by store key
+     * 上一次 getAll 授予本线程的租约，按存储键
+     */
+    private static final ThreadLocal<Map<String, String>> BATCH_LEASES = new ThreadLocal<>();
+
+    /**
+     * Result of a lookup: the value, or a lease to load it, or neither (plain miss)
+     * 查找结果：值、加载它的租约，或两者都没有（普通未命中）
+     *
+     * @param value Serialized value, null on a miss / 序列化的值，未命中时为 null
+     * @param lease Lease token if the caller should load and put the value / 调用方应加载并放入值时的租约令牌
+     *
+     * Also carries a value with its lease in batch puts / 在批量写入中也用于携带值及其租约
+     */
+    public record Lookup(byte[] value, String lease) {
+
+        static final Lookup MISS = new Lookup(null, null);
+    }
+
+    @Autowired
+    private PeerCacheProperties properties;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${server.port:8080}")
+    private int serverPort;
+
+    private HttpClient http;
+
+    private Store store;
+
+    private volatile ConsistentHashRing ring;
+
+    /**
+     * Peers skipped until the given System.nanoTime() / 在给定的 System.nanoTime() 之前被跳过的对等节点
+     */
+    private final Map<String, Long> downUntil = new ConcurrentHashMap<>();
+
+    /**
+     * Peers that may hold entries whose eviction they missed; skipped until reset
+     * 可能持有错过驱逐的条目的对等节点；重置之前一直被跳过
+     */
+    private final Set<String> needsReset = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Loads in flight at this owner, by store key / 本所有者处进行中的加载，按存储键
+     */
+    private final Map<String, Pending> leases = new ConcurrentHashMap<>();
+
+    /**
+     * Build the HTTP client and the first ring, and register metrics
+     * 构建 HTTP 客户端和第一个环，并注册指标
+     */
+    @PostConstruct
+    public void init() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        if (properties.getSecret() == null || properties.getSecret().isBlank()) {
+            // Values stored here are served to every client; never accept anonymous writes
+            // 这里存储的值会提供给所有客户端；绝不接受匿名写入
+            throw new IllegalStateException("peer-cache.secret must be set when peer-cache.enabled=true");
+        }
+        if (properties.getPort() == serverPort) {
+            throw new IllegalStateException("peer-cache.port must differ from server.port (" + serverPort + ")");
+        }
+        http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(properties.getConnectTimeout())
+            .build();
+        store = new Store(properties.getMaxSize().toBytes());
+        refreshPeers();
+        Gauge.builder("app.peer_cache.size", store, Store::bytes)
+            .description("Bytes of cache entries owned by this instance")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("app.peer_cache.entries", store, Store::size)
+            .description("Cache entries owned by this instance")
+            .register(meterRegistry);
+        Gauge.builder("app.peer_cache.peers", this, self -> self.ring.members().size())
+            .description("Peers on the cache hash ring")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Whether the peer cache backs Spring Cache
+     * 对等缓存是否作为 Spring Cache 的后端
+     *
+     * @return true if peer-cache.enabled / 如果 peer-cache.enabled 则返回 true
+     */
+    public boolean isEnabled() {
+        return properties.isEnabled();
+    }
+
+    /**
+     * Resolve the peers again and rebuild the ring if they changed
+     * 重新解析对等节点，如有变化则重建环
+     */
+    @Scheduled(fixedDelayString = "${peer-cache.refresh-interval:PT10S}")
+    public void refreshPeers() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        Set<String> members = new TreeSet<>();
+        if (properties.getDnsName() != null && !properties.getDnsName().isBlank()) {
+            try {
+                for (InetAddress address : InetAddress.getAllByName(properties.getDnsName())) {
+                    String host = address instanceof Inet6Address
+                        ? "[" + address.getHostAddress() + "]" : address.getHostAddress();
+                    members.add("http://" + host + ":" + properties.getPort());
+                }
+            } catch (UnknownHostException e) {
+                log.warn("Resolving peers from {} failed, keeping the current ring: {}",
+                    properties.getDnsName(), e.toString());
+                if (ring != null) {
+                    return;
+                }
+            }
+        } else {
+            members.addAll(properties.getPeers());
+        }
+        members.add(properties.getSelf());
+        ConsistentHashRing current = ring;
+        if (current != null && current.members().equals(members)) {
+            return;
+        }
+        ConsistentHashRing next = new ConsistentHashRing(members, properties.getVirtualNodes());
+        if (current != null) {
+            // A joining peer may be back from an absence during which it got no evictions
+            // 加入的对等节点可能是在缺席后返回，缺席期间它没有收到驱逐
+            members.stream()
+                .filter(member -> !current.members().contains(member) && !member.equals(properties.getSelf()))
+                .forEach(needsReset::add);
+        }
+        ring = next;
+        if (current != null) {
+            store.removeIf(key -> !properties.getSelf().equals(next.ownerOf(key)));
+        }
+        log.info("Peer cache ring: {}", members);
+    }
+
+    /**
+     * Tell the peers marked for reset to drop every entry, and use them again once they did
+     * 通知被标记为需要重置的对等节点删除所有条目，完成后重新使用它们
+     */
+    @Scheduled(fixedDelayString = "${peer-cache.reset-interval:PT1S}")
+    public void resetPeers() {
+        if (!properties.isEnabled()) {
+            return;
+        }
+        for (String peer : needsReset) {
+            if (!ring.members().contains(peer)) {
+                // Marked again if it rejoins / 如果重新加入会再次被标记
+                needsReset.remove(peer);
+                continue;
+            }
+            // Not held back by retry-after: until the reset arrives, the peer itself may
+            // still serve its own stale entries
+            // 不受 retry-after 限制：在重置到达之前，该对等节点自己仍可能提供其陈旧条目
+            try {
+                HttpResponse<byte[]> response = http.send(
+                    baseRequest(URI.create(peer + PATH + "_reset")).POST(HttpRequest.BodyPublishers.noBody()).build(),
+                    HttpResponse.BodyHandlers.ofByteArray());
+                if (response.statusCode() >= 300) {
+                    throw new IOException("HTTP " + response.statusCode());
+                }
+                needsReset.remove(peer);
+                downUntil.remove(peer);
+                log.info("Peer cache {} reset", peer);
+            } catch (IOException e) {
+                failed(peer, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Look a key up at its owner, asking for a lease on a miss
+     * 在所有者处查找键，未命中时请求租约
+     *
+     * @param cache Cache name / 缓存名称
+     * @param key Key / 键
+     * @return Value, lease or miss; a miss if the owner cannot be reached / 值、租约或未命中；所有者不可达时为未命中
+     */
+    public Lookup get(String cache, String key) {
+        String owner = ring.ownerOf(storeKey(cache, key));
+        if (properties.getSelf().equals(owner)) {
+            Lookup lookup = ownerGet(cache, key, true);
+            count("local", lookup);
+            return lookup;
+        }
+        if (isDown(owner)) {
+            count("remote", "skipped");
+            return Lookup.MISS;
+        }
+        try {
+            HttpResponse<byte[]> response = http.send(
+                request(owner, cache, key, "&lease=true").GET().build(), HttpResponse.BodyHandlers.ofByteArray());
+            Lookup lookup = switch (response.statusCode()) {
+                case 200 -> new Lookup(response.body(), null);
+                case 404 -> new Lookup(null, response.headers().firstValue(LEASE_HEADER).orElse(null));
+                default -> throw new IOException("HTTP " + response.statusCode());
+            };
+            count("remote", lookup);
+            return lookup;
+        } catch (IOException e) {
+            failed(owner, e);
+            return Lookup.MISS;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Lookup.MISS;
+        }
+    }
+
+    /**
+     * Store a value at its owner
+     * 在所有者处存储值
+     *
+     * @param cache Cache name / 缓存名称
+     * @param key Key / 键
+     * @param value Serialized value / 序列化的值
+     * @param lease Lease from the lookup that missed; without one nothing is stored / 未命中查找返回的租约；没有租约时不存储
+     */
+    public void put(String cache, String key, byte[] value, String lease) {
+        if (lease == null) {
+            return;
+        }
+        String owner = ring.ownerOf(storeKey(cache, key));
+        if (properties.getSelf().equals(owner)) {
+            ownerPut(cache, key, value, lease);
+            return;
+        }
+        if (isDown(owner)) {
+            return;
+        }
+        send(owner, request(owner, cache, key, "&lease=" + encode(lease))
+            .PUT(HttpRequest.BodyPublishers.ofByteArray(value)).build());
+    }
+
+    /**
+     * Remove a key on every peer
+     * 在每个对等节点上删除键
+     *
+     * @param cache Cache name / 缓存名称
+     * @param key Key / 键
+     */
+    public void evict(String cache, String key) {
+        evictLocal(cache, key);
+        broadcast(peer -> request(peer, cache, key, "").DELETE().build());
+    }
+
+    /**
+     * Remove every key of a cache on every peer
+     * 在每个对等节点上删除缓存的所有键
+     *
+     * @param cache Cache name / 缓存名称
+     */
+    public void clear(String cache) {
+        clearLocal(cache);
+        broadcast(peer -> baseRequest(URI.create(peer + PATH + encode(cache))).DELETE().build());
+    }
+
+    /**
+     * Look several keys up with one request per owner
+     * 每个所有者一次请求，查找多个键
+     *
+     * @param cache Cache name / 缓存名称
+     * @param keys Keys / 键
+     * @return Values in key order, null for misses and unreachable owners / 按键顺序的值，未命中和所有者不可达时为 null
+     * @description
+     * Misses come with leases where no other load is in flight; they are remembered for
+     * the current thread and handed back by the next putAll.
+     * 在没有其他加载进行时，未命中附带租约；租约为当前线程记住，并由下一次 putAll 交还。
+     */
+    public List<byte[]> getAll(String cache, List<String> keys) {
+        Map<String, String> granted = new ConcurrentHashMap<>();
+        BATCH_LEASES.set(granted);
+        byte[][] values = new byte[keys.size()][];
+        Map<String, List<Integer>> byOwner = new TreeMap<>();
+        for (int i = 0; i < keys.size(); i++) {
+            byOwner.computeIfAbsent(ring.ownerOf(storeKey(cache, keys.get(i))), owner -> new ArrayList<>()).add(i);
+        }
+        Map<String, CompletableFuture<HttpResponse<byte[]>>> calls = new LinkedHashMap<>();
+        byOwner.forEach((owner, indexes) -> {
+            List<String> ownerKeys = indexes.stream().map(keys::get).toList();
+            if (properties.getSelf().equals(owner)) {
+                List<Lookup> found = ownerGetAll(cache, ownerKeys, true);
+                for (int i = 0; i < indexes.size(); i++) {
+                    collect(cache, keys.get(indexes.get(i)), found.get(i), values, indexes.get(i), granted);
+                }
+            } else if (!isDown(owner)) {
+                calls.put(owner, http.sendAsync(
+                    baseRequest(URI.create(owner + PATH + encode(cache) + "/mget?lease=true"))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(encodeKeys(ownerKeys))).build(),
+                    HttpResponse.BodyHandlers.ofByteArray()));
+            }
+        });
+        calls.forEach((owner, call) -> {
+            try {
+                HttpResponse<byte[]> response = await(call);
+                if (response.statusCode() != 200) {
+                    throw new IOException("HTTP " + response.statusCode());
+                }
+                List<Lookup> found = decodeLookups(response.body());
+                List<Integer> indexes = byOwner.get(owner);
+                for (int i = 0; i < indexes.size(); i++) {
+                    collect(cache, keys.get(indexes.get(i)), found.get(i), values, indexes.get(i), granted);
+                }
+            } catch (IOException | IllegalArgumentException e) {
+                failed(owner, e);
+            }
+        });
+        return Arrays.asList(values);
+    }
+
+    private static void collect(String cache, String key, Lookup lookup, byte[][] values, int index,
+                                Map<String, String> granted) {
+        values[index] = lookup.value();
+        if (lookup.lease() != null) {
+            granted.put(storeKey(cache, key), lookup.lease());
+        }
+    }
+
+    /**
+     * Store several values with one request per owner
+     * 每个所有者一次请求，存储多个值
+     *
+     * @param cache Cache name / 缓存名称
+     * @param entries Serialized values by key / 按键的序列化值
+     * @description
+     * Only keys for which the preceding getAll on this thread got a lease are stored.
+     * 只存储本线程上一次 getAll 获得租约的键。
+     */
+    public void putAll(String cache, Map<String, byte[]> entries) {
+        Map<String, String> granted = BATCH_LEASES.get();
+        BATCH_LEASES.remove();
+        if (granted == null) {
+            return;
+        }
+        Map<String, Map<String, Lookup>> byOwner = new TreeMap<>();
+        entries.forEach((key, value) -> {
+            String storeKey = storeKey(cache, key);
+            String lease = granted.get(storeKey);
+            if (lease != null) {
+                byOwner.computeIfAbsent(ring.ownerOf(storeKey), owner -> new LinkedHashMap<>())
+                    .put(key, new Lookup(value, lease));
+            }
+        });
+        List<CompletableFuture<HttpResponse<byte[]>>> calls = new ArrayList<>();
+        byOwner.forEach((owner, ownerEntries) -> {
+            if (properties.getSelf().equals(owner)) {
+                ownerPutAll(cache, ownerEntries);
+            } else if (!isDown(owner)) {
+                calls.add(http.sendAsync(
+                    baseRequest(URI.create(owner + PATH + encode(cache) + "/mput"))
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(encodeEntries(ownerEntries))).build(),
+                    HttpResponse.BodyHandlers.ofByteArray()));
+            }
+        });
+        for (CompletableFuture<HttpResponse<byte[]>> call : calls) {
+            try {
+                await(call);
+            } catch (IOException e) {
+                log.debug("Peer cache batch put failed: {}", e.toString());
+            }
+        }
+    }
+
+    /**
+     * Check the shared secret of an internal request
+     * 检查内部请求的共享密钥
+     *
+     * @param secret X-Peer-Cache-Secret header, may be null / X-Peer-Cache-Secret 请求头，可能为 null
+     * @return true if it matches the configured secret / 与配置的密钥匹配时返回 true
+     */
+    public boolean authorized(String secret) {
+        String expected = properties.getSecret();
+        if (expected == null || expected.isBlank()) {
+            return false;
+        }
+        return secret != null && MessageDigest.isEqual(
+            expected.getBytes(StandardCharsets.UTF_8), secret.getBytes(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Whether a request arrived on the internal peer cache port
+     * 请求是否到达内部对等缓存端口
+     *
+     * @param localPort Port the request was received on / 接收请求的端口
+     * @return true if the peer cache is enabled and this is its port / 如果对等缓存已启用且这是其端口则返回 true
+     */
+    public boolean isPeerPort(int localPort) {
+        return properties.isEnabled() && localPort == properties.getPort();
+    }
+
+    /**
+     * Owner side of get: value, lease for the first caller, or the lease holder's value
+     * get 的所有者端：值、给第一个调用方的租约，或租约持有者的值
+     *
+     * @param cache Cache name / 缓存名称
+     * @param key Key / 键
+     * @param wantLease Whether a miss may grant a lease / 未命中时是否可以授予租约
+     * @return Lookup result / 查找结果
+     */
+    public Lookup ownerGet(String cache, String key, boolean wantLease) {
+        String storeKey = storeKey(cache, key);
+        byte[] value = store.get(storeKey);
+        if (value != null || !wantLease) {
+            return new Lookup(value, null);
+        }
+        while (true) {
+            Pending pending = leases.get(storeKey);
+            if (pending == null || pending.expiresAt - System.nanoTime() <= 0) {
+                String token = grant(storeKey, pending);
+                if (token == null) {
+                    continue;
+                }
+                return new Lookup(null, token);
+            }
+            try {
+                return new Lookup(pending.value.get(properties.getLeaseWait().toMillis(), TimeUnit.MILLISECONDS), null);
+            } catch (TimeoutException | ExecutionException e) {
+                return Lookup.MISS;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return Lookup.MISS;
+            }
+        }
+    }
+
+    /**
+     * Replace an absent or expired lease with a new one
+     * 用新租约替换不存在或已过期的租约
+     *
+     * @return New lease token, or null if another caller replaced it first / 新租约令牌，如果其他调用方先替换则为 null
+     */
+    private String grant(String storeKey, Pending expired) {
+        Pending mine = new Pending(UUID.randomUUID().toString(),
+            System.nanoTime() + properties.getLeaseTimeout().toNanos());
+        boolean granted = expired == null
+            ? leases.putIfAbsent(storeKey, mine) == null
+            : leases.replace(storeKey, expired, mine);
+        if (!granted) {
+            return null;
+        }
+        if (expired != null) {
+            expired.value.complete(null);
+        }
+        return mine.token;
+    }
+
+    /**
+     * Owner side of put; a value without a lease, or under a revoked or foreign one, is dropped
+     * put 的所有者端；没有租约、或在已撤销或不匹配租约下的值被丢弃
+     *
+     * @param cache Cache name / 缓存名称
+     * @param key Key / 键
+     * @param value Serialized value / 序列化的值
+     * @param lease Lease token, or null / 租约令牌，或 null
+     */
+    public void ownerPut(String cache, String key, byte[] value, String lease) {
+        String storeKey = storeKey(cache, key);
+        if (lease == null) {
+            return;
+        }
+        Pending pending = leases.get(storeKey);
+        if (pending == null || !pending.token.equals(lease)) {
+            return;
+        }
+        store.put(storeKey, value, expiresAt());
+        leases.remove(storeKey, pending);
+        pending.value.complete(value);
+    }
+
+    /**
+     * Remove a key held by this instance and revoke its lease
+     * 删除本实例持有的键并撤销其租约
+     *
+     * @param cache Cache name / 缓存名称
+     * @param key Key / 键
+     */
+    public void evictLocal(String cache, String key) {
+        String storeKey = storeKey(cache, key);
+        store.remove(storeKey);
+        Pending pending = leases.remove(storeKey);
+        if (pending != null) {
+            pending.value.complete(null);
+        }
+    }
+
+    /**
+     * Remove every key of a cache held by this instance
+     * 删除本实例持有的缓存的所有键
+     *
+     * @param cache Cache name / 缓存名称
+     */
+    public void clearLocal(String cache) {
+        String prefix = storeKey(cache, "");
+        store.removeIf(key -> key.startsWith(prefix));
+        for (Iterator<Map.Entry<String, Pending>> it = leases.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<String, Pending> lease = it.next();
+            if (lease.getKey().startsWith(prefix)) {
+                it.remove();
+                lease.getValue().value.complete(null);
+            }
+        }
+    }
+
+    /**
+     * Drop every entry and lease held by this instance
+     * 删除本实例持有的所有条目和租约
+     */
+    public void resetLocal() {
+        store.removeIf(key -> true);
+        for (Iterator<Map.Entry<String, Pending>> it = leases.entrySet().iterator(); it.hasNext(); ) {
+            Pending pending = it.next().getValue();
+            it.remove();
+            pending.value.complete(null);
+        }
+    }
+
+    /**
+     * Owner side of getAll; misses get a lease unless another load is in flight, without waiting for it
+     * getAll 的所有者端；未命中时获得租约（除非有其他加载进行中），且不等待该加载
+     *
+     * @param cache Cache name / 缓存名称
+     * @param keys Keys / 键
+     * @param wantLease Whether misses may grant leases / 未命中时是否可以授予租约
+     * @return Lookups in key order / 按键顺序的查找结果
+     */
+    public List<Lookup> ownerGetAll(String cache, List<String> keys, boolean wantLease) {
+        List<Lookup> lookups = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            String storeKey = storeKey(cache, key);
+            byte[] value = store.get(storeKey);
+            if (value != null || !wantLease) {
+                lookups.add(new Lookup(value, null));
+                continue;
+            }
+            Pending pending = leases.get(storeKey);
+            boolean inFlight = pending != null && pending.expiresAt - System.nanoTime() > 0;
+            lookups.add(new Lookup(null, inFlight ? null : grant(storeKey, pending)));
+        }
+        return lookups;
+    }
+
+    /**
+     * Owner side of putAll; each value is checked against its lease like ownerPut
+     * putAll 的所有者端；每个值都像 ownerPut 一样根据其租约检查
+     *
+     * @param cache Cache name / 缓存名称
+     * @param entries Serialized values with their leases, by key / 按键的序列化值及其租约
+     */
+    public void ownerPutAll(String cache, Map<String, Lookup> entries) {
+        entries.forEach((key, entry) -> ownerPut(cache, key, entry.value(), entry.lease()));
+    }
+
+    public static byte[] encodeKeys(List<String> keys) {
+        return write(out -> {
+            out.writeInt(keys.size());
+            for (String key : keys) {
+                out.writeUTF(key);
+            }
+        });
+    }
+
+    public static List<String> decodeKeys(byte[] body) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            int count = readCount(in, 2);
+            List<String> keys = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                keys.add(in.readUTF());
+            }
+            return keys;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed key list", e);
+        }
+    }
+
+    public static byte[] encodeLookups(List<Lookup> lookups) {
+        return write(out -> {
+            out.writeInt(lookups.size());
+            for (Lookup lookup : lookups) {
+                writeLookup(out, lookup);
+            }
+        });
+    }
+
+    public static List<Lookup> decodeLookups(byte[] body) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            int count = readCount(in, 8);
+            List<Lookup> lookups = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                lookups.add(readLookup(in));
+            }
+            return lookups;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed lookup list", e);
+        }
+    }
+
+    public static byte[] encodeEntries(Map<String, Lookup> entries) {
+        return write(out -> {
+            out.writeInt(entries.size());
+            for (Map.Entry<String, Lookup> entry : entries.entrySet()) {
+                out.writeUTF(entry.getKey());
+                writeLookup(out, entry.getValue());
+            }
+        });
+    }
+
+    public static Map<String, Lookup> decodeEntries(byte[] body) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(body))) {
+            int count = readCount(in, 10);
+            Map<String, Lookup> entries = new LinkedHashMap<>();
+            for (int i = 0; i < count; i++) {
+                entries.put(in.readUTF(), readLookup(in));
+            }
+            return entries;
+        } catch (IOException e) {
+            throw new IllegalArgumentException("Malformed entry list", e);
+        }
+    }
+
+    /**
+     * Send an eviction to every other peer; a peer it does not reach is marked for reset
+     * 向其他每个对等节点发送驱逐；未送达的对等节点被标记为需要重置
+     */
+    private void broadcast(Function<String, HttpRequest> request) {
+        List<CompletableFuture<HttpResponse<byte[]>>> calls = new ArrayList<>();
+        for (String peer : ring.members()) {
+            if (peer.equals(properties.getSelf())) {
+                continue;
+            }
+            if (isDown(peer)) {
+                needsReset.add(peer);
+                continue;
+            }
+            calls.add(http.sendAsync(request.apply(peer), HttpResponse.BodyHandlers.ofByteArray())
+                .whenComplete((response, error) -> {
+                    if (error != null || response.statusCode() >= 300) {
+                        needsReset.add(peer);
+                        failed(peer, error != null ? error : new IOException("HTTP " + response.statusCode()));
+                    }
+                }));
+        }
+        for (CompletableFuture<HttpResponse<byte[]>> call : calls) {
+            try {
+                await(call);
+            } catch (IOException e) {
+                // Already recorded by whenComplete / 已由 whenComplete 记录
+            }
+        }
+    }
+
+    private void send(String peer, HttpRequest request) {
+        try {
+            HttpResponse<byte[]> response = http.send(request, HttpResponse.BodyHandlers.ofByteArray());
+            if (response.statusCode() >= 300) {
+                throw new IOException("HTTP " + response.statusCode());
+            }
+        } catch (IOException e) {
+            failed(peer, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private HttpResponse<byte[]> await(CompletableFuture<HttpResponse<byte[]>> call) throws IOException {
+        try {
+            return call.get(properties.getRequestTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            throw new IOException(e.getCause());
+        } catch (TimeoutException e) {
+            call.cancel(true);
+            throw new IOException("Peer did not answer within " + properties.getRequestTimeout());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        }
+    }
+
+    private HttpRequest.Builder request(String peer, String cache, String key, String query) {
+        return baseRequest(URI.create(peer + PATH + encode(cache) + "?key=" + encode(key) + query));
+    }
+
+    private HttpRequest.Builder baseRequest(URI uri) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri)
+            .timeout(properties.getRequestTimeout())
+            .header("Content-Type", "application/octet-stream");
+        if (properties.getSecret() != null && !properties.getSecret().isBlank()) {
+            builder.header(SECRET_HEADER, properties.getSecret());
+        }
+        return builder;
+    }
+
+    private boolean isDown(String peer) {
+        if (needsReset.contains(peer)) {
+            return true;
+        }
+        Long until = downUntil.get(peer);
+        if (until == null) {
+            return false;
+        }
+        if (until - System.nanoTime() > 0) {
+            return true;
+        }
+        downUntil.remove(peer, until);
+        return false;
+    }
+
+    private void failed(String peer, Throwable error) {
+        count("remote", "error");
+        if (downUntil.put(peer, System.nanoTime() + properties.getRetryAfter().toNanos()) == null) {
+            log.warn("Peer cache {} failed, skipping it for {}: {}", peer, properties.getRetryAfter(), error.toString());
+        }
+    }
+
+    private void count(String owner, Lookup lookup) {
+        count(owner, lookup.value != null ? "hit" : lookup.lease != null ? "lease" : "miss");
+    }
+
+    private void count(String owner, String result) {
+        meterRegistry.counter("app.peer_cache.requests", "owner", owner, "result", result).increment();
+    }
+
+    private long expiresAt() {
+        return System.nanoTime() + properties.getTtl().toNanos();
+    }
+
+    private static String storeKey(String cache, String key) {
+        return cache + "::" + key;
+    }
+
+    private static String encode(String value) {
+        return URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static void writeBytes(DataOutputStream out, byte[] value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            out.writeInt(value.length);
+            out.write(value);
+        }
+    }
+
+    /**
+     * Read an element count, rejecting counts the remaining body cannot hold
+     * 读取元素数量，拒绝剩余请求体无法容纳的数量
+     */
+    private static int readCount(DataInputStream in, int minElementSize) throws IOException {
+        int count = in.readInt();
+        if (count < 0 || count > in.available() / minElementSize) {
+            throw new IOException("Count " + count + " exceeds the body");
+        }
+        return count;
+    }
+
+    private static void writeLookup(DataOutputStream out, Lookup lookup) throws IOException {
+        writeBytes(out, lookup.value());
+        writeBytes(out, lookup.lease() != null ? lookup.lease().getBytes(StandardCharsets.UTF_8) : null);
+    }
+
+    private static Lookup readLookup(DataInputStream in) throws IOException {
+        byte[] value = readBytes(in);
+        byte[] lease = readBytes(in);
+        return new Lookup(value, lease != null ? new String(lease, StandardCharsets.UTF_8) : null);
+    }
+
+    private static byte[] readBytes(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0) {
+            return null;
+        }
+        if (length > in.available()) {
+            throw new IOException("Length " + length + " exceeds the body");
+        }
+        byte[] value = new byte[length];
+        in.readFully(value);
+        return value;
+    }
+
+    private static byte[] write(Encoder encoder) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            encoder.write(out);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+
+    @FunctionalInterface
+    private interface Encoder {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    /**
+     * Load in flight: lease token, deadline and the value waiters receive
+     * 进行中的加载：租约令牌、截止时间以及等待者收到的值
+     */
+    private static final class Pending {
+
+        private final String token;
+        private final long expiresAt;
+        private final CompletableFuture<byte[]> value = new CompletableFuture<>();
+
+        Pending(String token, long expiresAt) {
+            this.token = token;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * Entries owned by this instance, least recently used dropped beyond maxBytes
+     * 本实例拥有的条目，超过 maxBytes 时删除最近最少使用的
+     */
+    private static final class Store {
+
+        /**
+         * Rough per-entry overhead of the map, key and entry objects / 映射、键和条目对象的大致单条开销
+         */
+        private static final int ENTRY_OVERHEAD = 96;
+
+        private final long maxBytes;
+        private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(1024, 0.75f, true);
+        private long bytes;
+
+        Store(long maxBytes) {
+            this.maxBytes = maxBytes;
+        }
+
+        synchronized byte[] get(String key) {
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                return null;
+            }
+            if (entry.expiresAt - System.nanoTime() <= 0) {
+                remove(key);
+                return null;
+            }
+            return entry.value;
+        }
+
+        synchronized void put(String key, byte[] value, long expiresAt) {
+            Entry previous = entries.put(key, new Entry(value, expiresAt));
+            bytes += weight(key, value) - (previous != null ? weight(key, previous.value) : 0);
+            for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+                 bytes > maxBytes && it.hasNext(); ) {
+                Map.Entry<String, Entry> eldest = it.next();
+                bytes -= weight(eldest.getKey(), eldest.getValue().value);
+                it.remove();
+            }
+        }
+
+        synchronized void remove(String key) {
+            Entry previous = entries.remove(key);
+            if (previous != null) {
+                bytes -= weight(key, previous.value);
+            }
+        }
+
+        synchronized void removeIf(Predicate<String> key) {
+            for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<String, Entry> entry = it.next();
+                if (key.test(entry.getKey())) {
+                    bytes -= weight(entry.getKey(), entry.getValue().value);
+                    it.remove();
+                }
+            }
+        }
+
+        synchronized long bytes() {
+            return bytes;
+        }
+
+        synchronized int size() {
+            return entries.size();
+        }
+
+        private static long weight(String key, byte[] value) {
+            return ENTRY_OVERHEAD + key.length() * 2L + value.length;
+        }
+
+        private record Entry(byte[] value, long expiresAt) {
+        }
+    }
+}
@@ -0,0 +1,145 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.ReplicaContext;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * ReadYourWritesTracker - Primary Stickiness After a User's Own Writes
+ * 读己之写跟踪器 - 用户自身写入后的主库粘滞
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Remembers which subjects (authenticated user emails) wrote to the database recently.
+ * For replica.read-your-writes after a write, that subject's read-only transactions are
+ * routed to the primary, so a user never sees a replica that has not yet caught up with
+ * their own update. Writes made by an authenticated user are recorded automatically when
+ * the transaction commits; flows without an authenticated user (registration) record the
+ * subject explicitly.
+ *
+ * Stickiness is local to the pod. Requests of the same user served by another pod rely
+ * on the replica lag bound (replica.max-lag) instead.
+ *
+ * 记住最近写入数据库的主体（已认证用户的邮箱）。写入后的 replica.read-your-writes 时间内，
+ * 该主体的只读事务路由到主库，因此用户永远不会看到尚未追上其自身更新的副本。
+ * 已认证用户的写入在事务提交时自动记录；没有已认证用户的流程（注册）显式记录主体。
+ *
+ * 粘滞仅在本 Pod 内有效。由其他 Pod 处理的同一用户请求依赖副本延迟上限（replica.max-lag）。
+ */
+@Component
+public class ReadYourWritesTracker {
+
+    /**
+     * How long reads stay on the primary after a write / 写入后读取保持在主库的时长
+     */
+    @Value("${replica.read-your-writes:5s}")
+    private Duration window;
+
+    /**
+     * Maximum number of tracked subjects / 跟踪的最大主体数量
+     */
+    @Value("${replica.read-your-writes-max-entries:100000}")
+    private int maxEntries;
+
+    /**
+     * Subject -> sticky-until time in epoch milliseconds / 主体 -> 粘滞截止时间（纪元毫秒）
+     */
+    private final Map<String, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    /**
+     * Record a write by a subject
+     * 记录主体的写入
+     *
+     * @param subject User email / 用户邮箱
+     */
+    public void recordWrite(String subject) {
+        if (subject == null) {
+            return;
+        }
+        if (stickyUntil.size() >= maxEntries) {
+            purge();
+        }
+        stickyUntil.put(subject, System.currentTimeMillis() + window.toMillis());
+    }
+
+    /**
+     * Record a write by the currently authenticated user, if any
+     * 记录当前已认证用户（如有）的写入
+     */
+    public void recordWriteByCurrentUser() {
+        recordWrite(currentSubject());
+    }
+
+    /**
+     * Check whether a subject wrote within the stickiness window
+     * 检查主体是否在粘滞窗口内写入过
+     *
+     * @param subject User email / 用户邮箱
+     * @return true if its reads must go to the primary / 如果其读取必须路由到主库则返回 true
+     */
+    public boolean isRecent(String subject) {
+        if (subject == null) {
+            return false;
+        }
+        Long until = stickyUntil.get(subject);
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    /**
+     * Check whether the currently authenticated user wrote recently
+     * 检查当前已认证用户最近是否写入过
+     *
+     * @return true if its reads must go to the primary / 如果其读取必须路由到主库则返回 true
+     */
+    public boolean isCurrentUserRecent() {
+        return !stickyUntil.isEmpty() && isRecent(currentSubject());
+    }
+
+    /**
+     * Run a read, on the primary if the subject wrote recently
+     * 执行读取，如果主体最近写入过则在主库上执行
+     *
+     * @param <T> Result type / 结果类型
+     * @param subject User email / 用户邮箱
+     * @param read Read operation / 读取操作
+     * @return Read result / 读取结果
+     */
+    public <T> T readAfterWrite(String subject, Supplier<T> read) {
+        return isRecent(subject) ? ReplicaContext.onPrimary(read) : read.get();
+    }
+
+    private String currentSubject() {
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+        if (authentication == null || !authentication.isAuthenticated()
+                || authentication instanceof AnonymousAuthenticationToken) {
+            return null;
+        }
+        return authentication.getName();
+    }
+
+    /**
+     * Drop expired entries, then arbitrary ones if still over capacity
+     * 删除过期条目，如果仍然超出容量则删除任意条目
+     */
+    private void purge() {
+        long now = System.currentTimeMillis();
+        stickyUntil.values().removeIf(until -> until <= now);
+        Iterator<Map.Entry<String, Long>> it = stickyUntil.entrySet().iterator();
+        while (stickyUntil.size() >= maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
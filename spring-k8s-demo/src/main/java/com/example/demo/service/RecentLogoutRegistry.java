@@ -0,0 +1,82 @@
+package com.example.demo.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * RecentLogoutRegistry - Local Set of Recently Revoked Tokens
+ * 最近退出登录注册表 - 最近撤销令牌的本地集合
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Remembers tokens logged out through this pod until they expire. While the Redis
+ * circuit is open, token validation falls back to signature and expiry checks and
+ * consults this set so that a logout is still honoured locally. Entries from other
+ * pods are not visible here; revocations made elsewhere during an outage take effect
+ * once Redis is back.
+ *
+ * 记住通过本 Pod 退出登录的令牌，直到它们过期。当 Redis 熔断器打开时，
+ * 令牌验证降级为签名和过期检查，并查询此集合，使退出登录在本地仍然生效。
+ * 此处看不到其他 Pod 的条目；故障期间在其他地方进行的撤销会在 Redis 恢复后生效。
+ */
+@Component
+public class RecentLogoutRegistry {
+
+    /**
+     * Maximum number of remembered tokens / 记住的令牌最大数量
+     */
+    @Value("${auth.recent-logout.max-size:10000}")
+    private int maxSize;
+
+    /**
+     * Token -> expiry time in epoch milliseconds / 令牌 -> 过期时间（纪元毫秒）
+     */
+    private final Map<String, Long> revoked = new ConcurrentHashMap<>();
+
+    /**
+     * Remember a revoked token
+     * 记住已撤销的令牌
+     *
+     * @param token JWT token / JWT 令牌
+     * @param expiresAtMillis Token expiry (epoch ms) / 令牌过期时间（纪元毫秒）
+     */
+    public void add(String token, long expiresAtMillis) {
+        if (revoked.size() >= maxSize) {
+            purge();
+        }
+        revoked.put(token, expiresAtMillis);
+    }
+
+    /**
+     * Check whether a token was revoked on this pod
+     * 检查令牌是否在本 Pod 上被撤销
+     *
+     * @param token JWT token / JWT 令牌
+     * @return true if revoked and not yet expired / 如果已撤销且尚未过期则返回 true
+     */
+    public boolean contains(String token) {
+        Long expiresAt = revoked.get(token);
+        return expiresAt != null && expiresAt > System.currentTimeMillis();
+    }
+
+    /**
+     * Drop expired entries, then arbitrary ones if still over capacity
+     * 删除过期条目，如果仍然超出容量则删除任意条目
+     */
+    private void purge() {
+        long now = System.currentTimeMillis();
+        revoked.values().removeIf(expiresAt -> expiresAt <= now);
+        Iterator<Map.Entry<String, Long>> it = revoked.entrySet().iterator();
+        while (revoked.size() >= maxSize && it.hasNext()) {
+            it.next();
+            it.remove();
+        }
+    }
+}
@@ -0,0 +1,185 @@
+package com.example.demo.service;
+
+import com.example.demo.util.LogSampler;
+import io.github.resilience4j.circuitbreaker.CallNotPermittedException;
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Supplier;
+
+/**
+ * RedisGuard - Circuit Breaker for Redis Calls
+ * Redis 保护器 - Redis 调用的熔断器
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Wraps Redis operations in the "redis" Resilience4j circuit breaker. Failures and slow
+ * calls open the circuit; while it is open calls are not attempted at all and the
+ * caller's fallback is used immediately, so a Redis outage costs nothing per request
+ * instead of a full command timeout. Components can register recovery hooks that run
+ * once the circuit closes again (e.g. to replay writes skipped during the outage).
+ * The hooks run in order on the "redis-recovery" thread, not on the request thread
+ * whose call closed the circuit.
+ *
+ * Breaker state is exported by Resilience4j as resilience4j.circuitbreaker.* metrics and
+ * in the circuitBreakers actuator health component.
+ *
+ * 将 Redis 操作包装在 "redis" Resilience4j 熔断器中。失败和慢调用会打开熔断器；
+ * 熔断器打开时完全不尝试调用，而是立即使用调用方的降级逻辑，因此 Redis 故障时
+ * 每个请求不再需要等待完整的命令超时。组件可以注册恢复钩子，在熔断器再次关闭后运行
+ * （例如重放故障期间跳过的写入）。钩子在 "redis-recovery" 线程上按顺序运行，
+ * 而不是在使熔断器关闭的请求线程上运行。
+ *
+ * 熔断器状态由 Resilience4j 导出为 resilience4j.circuitbreaker.* 指标，
+ * 并显示在 circuitBreakers actuator 健康组件中。
+ */
+@Component
+public class RedisGuard {
+
+    private static final Logger log = LoggerFactory.getLogger(RedisGuard.class);
+
+    /**
+     * Circuit breaker instance name (configured under resilience4j.circuitbreaker.instances)
+     * 熔断器实例名称（在 resilience4j.circuitbreaker.instances 下配置）
+     */
+    public static final String BREAKER_NAME = "redis";
+
+    @Autowired
+    private CircuitBreakerRegistry circuitBreakerRegistry;
+
+    @Autowired
+    private LogSampler logSampler;
+
+    private CircuitBreaker circuitBreaker;
+
+    /**
+     * Hooks run when the circuit closes / 熔断器关闭时运行的钩子
+     */
+    private final List<Runnable> recoveryHooks = new CopyOnWriteArrayList<>();
+
+    private ExecutorService recoveryExecutor;
+
+    /**
+     * Resolve the breaker and listen for recovery
+     * 解析熔断器并监听恢复
+     */
+    @PostConstruct
+    public void init() {
+        circuitBreaker = circuitBreakerRegistry.circuitBreaker(BREAKER_NAME);
+        recoveryExecutor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "redis-recovery");
+            thread.setDaemon(true);
+            return thread;
+        });
+        circuitBreaker.getEventPublisher().onStateTransition(event -> {
+            log.warn("Redis circuit breaker: {}", event.getStateTransition());
+            if (event.getStateTransition().getToState() == CircuitBreaker.State.CLOSED) {
+                try {
+                    recoveryExecutor.execute(this::runRecoveryHooks);
+                } catch (RejectedExecutionException e) {
+                    // Shutting down / 正在关闭
+                }
+            }
+        });
+    }
+
+    /**
+     * Stop the recovery thread
+     * 停止恢复线程
+     */
+    @PreDestroy
+    public void shutdown() {
+        recoveryExecutor.shutdownNow();
+    }
+
+    /**
+     * Execute a Redis read with a fallback
+     * 执行带降级逻辑的 Redis 读取
+     *
+     * @param <T> Result type / 结果类型
+     * @param action Redis call / Redis 调用
+     * @param fallback Value used when the circuit is open or the call fails / 熔断器打开或调用失败时使用的值
+     * @return Redis result or fallback result / Redis 结果或降级结果
+     */
+    public <T> T call(Supplier<T> action, Supplier<T> fallback) {
+        try {
+            return circuitBreaker.executeSupplier(action);
+        } catch (CallNotPermittedException e) {
+            return fallback.get();
+        } catch (RuntimeException e) {
+            logFailure(e);
+            return fallback.get();
+        }
+    }
+
+    /**
+     * Execute a Redis write, skipping it when Redis is unavailable
+     * 执行 Redis 写入，Redis 不可用时跳过
+     *
+     * @param action Redis call / Redis 调用
+     * @return true if the write was executed successfully / 如果写入成功执行则返回 true
+     */
+    public boolean run(Runnable action) {
+        try {
+            circuitBreaker.executeRunnable(action);
+            return true;
+        } catch (CallNotPermittedException e) {
+            return false;
+        } catch (RuntimeException e) {
+            logFailure(e);
+            return false;
+        }
+    }
+
+    /**
+     * Check whether Redis calls are currently being short-circuited
+     * 检查 Redis 调用当前是否被短路
+     *
+     * @return true if the circuit is open / 如果熔断器打开则返回 true
+     */
+    public boolean isOpen() {
+        CircuitBreaker.State state = circuitBreaker.getState();
+        return state == CircuitBreaker.State.OPEN || state == CircuitBreaker.State.FORCED_OPEN;
+    }
+
+    /**
+     * Register a hook that runs each time the circuit closes
+     * 注册每次熔断器关闭时运行的钩子
+     *
+     * @param hook Recovery action / 恢复操作
+     */
+    public void onRecovery(Runnable hook) {
+        recoveryHooks.add(hook);
+    }
+
+    private void runRecoveryHooks() {
+        for (Runnable hook : recoveryHooks) {
+            try {
+                hook.run();
+            } catch (Exception e) {
+                log.warn("Redis recovery hook failed: {}", e.toString());
+            }
+        }
+    }
+
+    private void logFailure(RuntimeException e) {
+        long suppressed = logSampler.tryAcquire("redis.call");
+        if (suppressed >= 0) {
+            log.warn("Redis call failed: {} ({} similar messages suppressed)", e.toString(), suppressed);
+        }
+    }
+}
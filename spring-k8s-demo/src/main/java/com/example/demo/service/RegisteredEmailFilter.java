@@ -0,0 +1,358 @@
+package com.example.demo.service;
+
+import com.example.demo.event.UserChangeEvent;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.util.ScalableBloomFilter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * RegisteredEmailFilter - Bloom Filter of Registered Emails
+ * 已注册邮箱过滤器 - 已注册邮箱的布隆过滤器
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Keeps an in-memory ScalableBloomFilter of every registered email so that email
+ * existence checks (registration, user create/update, the email-available endpoint)
+ * only query the database when the filter answers "maybe present". A "definitely
+ * absent" answer is final for reads; for writes the unique index (or the email
+ * directory when sharded) remains the final arbiter.
+ *
+ * The filter is built in a streaming pass over the users table (forEachUser) shortly
+ * after startup; until then every check goes to the database. Builds run on their own
+ * thread ("email-filter-rebuild"); the scheduled check only starts them, so a long
+ * scan never holds up the other scheduled jobs. It is kept current by:
+ * - committed UserChangeEvents on this pod, which add the email locally and publish it
+ *   on the Redis channel email-filter:added;
+ * - messages on that channel from other pods.
+ * Deleted or replaced emails cannot be removed from a Bloom filter; they only cost a
+ * database check and are counted, and the filter is rebuilt once they exceed
+ * email-filter.max-stale-ratio of its size, every email-filter.rebuild-interval, and
+ * after a Redis outage (messages published meanwhile were lost).
+ *
+ * Emails are compared lower-cased, so the filter never misses an address that the
+ * case-insensitive unique index would treat as a duplicate.
+ *
+ * Metrics: app.email_filter.checks{result=absent|present|false_positive} and
+ * app.email_filter.elements.
+ *
+ * 在内存中保存所有已注册邮箱的 ScalableBloomFilter，使邮箱存在性检查（注册、用户创建/更新、
+ * 邮箱可用性端点）只在过滤器回答"可能存在"时才查询数据库。"一定不存在"的回答对读取是最终结果；
+ * 对于写入，唯一索引（分片时为邮箱目录）仍是最终裁决者。
+ *
+ * 过滤器在启动后不久通过对用户表的流式遍历（forEachUser）构建；在此之前所有检查都走数据库。
+ * 构建在独立线程（"email-filter-rebuild"）上运行；定时检查只负责启动它们，因此长时间扫描不会阻塞其他定时任务。
+ * 通过以下方式保持最新：
+ * - 本 Pod 上已提交的 UserChangeEvent，在本地添加邮箱并在 Redis 频道 email-filter:added 上发布；
+ * - 来自其他 Pod 的该频道消息。
+ * 已删除或被替换的邮箱无法从布隆过滤器中移除；它们只会多一次数据库检查并被计数，
+ * 当其超过过滤器大小的 email-filter.max-stale-ratio 时、每隔 email-filter.rebuild-interval、
+ * 以及 Redis 故障之后（期间发布的消息已丢失）重建过滤器。
+ *
+ * 邮箱以小写形式比较，因此过滤器不会漏掉大小写不敏感的唯一索引视为重复的地址。
+ *
+ * 指标：app.email_filter.checks{result=absent|present|false_positive} 和 app.email_filter.elements。
+ */
+@Service
+public class RegisteredEmailFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RegisteredEmailFilter.class);
+
+    /**
+     * Channel carrying newly registered emails / 传递新注册邮箱的频道
+     */
+    private static final String CHANNEL = "email-filter:added";
+
+    /**
+     * Enable or disable the filter (disabled: every check queries the database)
+     * 启用或禁用过滤器（禁用时每次检查都查询数据库）
+     */
+    @Value("${email-filter.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Minimum capacity of the first stage / 第一阶段的最小容量
+     */
+    @Value("${email-filter.initial-capacity:100000}")
+    private int initialCapacity;
+
+    /**
+     * Target false-positive rate / 目标误判率
+     */
+    @Value("${email-filter.false-positive-rate:0.01}")
+    private double falsePositiveRate;
+
+    /**
+     * Rows read per query while rebuilding / 重建时每次查询读取的行数
+     */
+    @Value("${email-filter.rebuild-page-size:1000}")
+    private int rebuildPageSize;
+
+    /**
+     * Maximum time between rebuilds / 两次重建之间的最长时间
+     */
+    @Value("${email-filter.rebuild-interval:6h}")
+    private Duration rebuildInterval;
+
+    /**
+     * Share of deleted/replaced emails that triggers a rebuild / 触发重建的已删除/被替换邮箱比例
+     */
+    @Value("${email-filter.max-stale-ratio:0.1}")
+    private double maxStaleRatio;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Filter in use, null until the first build completes / 使用中的过滤器，首次构建完成前为 null
+     */
+    private volatile ScalableBloomFilter filter;
+
+    /**
+     * Filter being rebuilt, receives concurrent additions / 正在重建的过滤器，接收并发添加
+     */
+    private volatile ScalableBloomFilter building;
+
+    /**
+     * Emails deleted or replaced since the last build / 上次构建以来删除或被替换的邮箱数
+     */
+    private final AtomicLong stale = new AtomicLong();
+
+    private volatile boolean dirty = true;
+
+    private volatile long lastBuiltAt;
+
+    private ExecutorService rebuilder;
+
+    /**
+     * Set while a rebuild is queued or running / 重建排队或运行期间设置
+     */
+    private final AtomicBoolean rebuilding = new AtomicBoolean();
+
+    private Counter absent;
+    private Counter present;
+    private Counter falsePositive;
+
+    /**
+     * Subscribe to other pods' additions and register metrics
+     * 订阅其他 Pod 的添加并注册指标
+     */
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(
+            (message, pattern) -> addLocal(new String(message.getBody(), StandardCharsets.UTF_8)),
+            new ChannelTopic(CHANNEL));
+        redisGuard.onRecovery(() -> dirty = true);
+        rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "email-filter-rebuild");
+            thread.setDaemon(true);
+            return thread;
+        });
+        absent = checks("absent");
+        present = checks("present");
+        falsePositive = checks("false_positive");
+        Gauge.builder("app.email_filter.elements", this, self -> {
+                ScalableBloomFilter current = self.filter;
+                return current != null ? current.count() : 0;
+            })
+            .description("Emails in the registered-email Bloom filter")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Stop the rebuild thread
+     * 停止重建线程
+     */
+    @PreDestroy
+    public void shutdown() {
+        rebuilder.shutdownNow();
+    }
+
+    /**
+     * Check whether an email may be registered, without touching the database
+     * 在不访问数据库的情况下检查邮箱是否可能已注册
+     *
+     * @param email Email address / 邮箱地址
+     * @return false if the email is definitely not registered / 如果邮箱一定未注册则返回 false
+     */
+    public boolean mightBeRegistered(String email) {
+        ScalableBloomFilter current = filter;
+        return !enabled || current == null || current.mightContain(normalize(email));
+    }
+
+    /**
+     * Check whether an email is registered
+     * 检查邮箱是否已注册
+     *
+     * @param email Email address / 邮箱地址
+     * @return true if a user has this email / 如果有用户使用此邮箱则返回 true
+     * @description
+     * Replaces a plain existsByEmail: the database is only queried when the filter
+     * cannot rule the email out.
+     * 替代直接调用 existsByEmail：只有在过滤器无法排除该邮箱时才查询数据库。
+     */
+    public boolean isRegistered(String email) {
+        if (!mightBeRegistered(email)) {
+            absent.increment();
+            return false;
+        }
+        boolean exists = userRepository.existsByEmail(email);
+        (exists ? present : falsePositive).increment();
+        return exists;
+    }
+
+    /**
+     * Apply a committed user change
+     * 应用已提交的用户变更
+     *
+     * @param event User change event / 用户变更事件
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onUserChange(UserChangeEvent event) {
+        if (event.getType() == UserChangeEvent.Type.UPDATED) {
+            return;
+        }
+        if (event.getType() != UserChangeEvent.Type.CREATED) {
+            stale.incrementAndGet();
+        }
+        if (event.getType() == UserChangeEvent.Type.DELETED || event.getEmail() == null) {
+            return;
+        }
+        String email = normalize(event.getEmail());
+        addLocal(email);
+        // Other pods that miss this message still query the database on writes;
+        // they catch up at the next rebuild
+        // 错过此消息的其他 Pod 在写入时仍会查询数据库；它们在下次重建时追上
+        redisGuard.run(() -> redisTemplate.convertAndSend(CHANNEL, email));
+    }
+
+    /**
+     * Start a rebuild on the rebuild thread when the filter is missing, dirty, too stale or due
+     * 在过滤器缺失、为脏、过旧或到期时，在重建线程上启动重建
+     */
+    @Scheduled(fixedDelayString = "${email-filter.rebuild-check-interval:PT30S}", initialDelay = 0)
+    public void rebuildIfDue() {
+        if (!enabled || rebuilding.get()) {
+            return;
+        }
+        ScalableBloomFilter current = filter;
+        boolean due = current == null || dirty
+            || System.currentTimeMillis() - lastBuiltAt >= rebuildInterval.toMillis()
+            || stale.get() > current.count() * maxStaleRatio;
+        if (due && rebuilding.compareAndSet(false, true)) {
+            try {
+                rebuilder.execute(() -> {
+                    try {
+                        rebuild();
+                    } finally {
+                        rebuilding.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                rebuilding.set(false);
+            }
+        }
+    }
+
+    /**
+     * Build a new filter from the users table and swap it in
+     * 从用户表构建新过滤器并替换
+     *
+     * @description
+     * Emails added while the scan runs go into both filters, so nothing committed
+     * after the scan passed its row is lost. The first stage is sized from the
+     * previous filter to keep the number of stages low.
+     *
+     * 扫描期间添加的邮箱同时进入两个过滤器，因此在扫描经过其行之后提交的数据不会丢失。
+     * 第一阶段的大小根据上一个过滤器确定，以减少阶段数量。
+     */
+    public void rebuild() {
+        ScalableBloomFilter current = filter;
+        long expected = current != null ? current.count() + current.count() / 4 : 0;
+        ScalableBloomFilter next = new ScalableBloomFilter(
+            (int) Math.min(Math.max(initialCapacity, expected), Integer.MAX_VALUE / 2), falsePositiveRate);
+        long start = System.nanoTime();
+        dirty = false;
+        long staleBefore = stale.get();
+        building = next;
+        try {
+            userRepository.forEachUser(rebuildPageSize, user -> next.add(normalize(user.getEmail())));
+            filter = next;
+            stale.addAndGet(-staleBefore);
+            lastBuiltAt = System.currentTimeMillis();
+            log.info("Registered-email filter built: {} emails, {} stages, {} KB in {} ms", next.count(),
+                next.stageCount(), next.sizeInBytes() / 1024, Duration.ofNanos(System.nanoTime() - start).toMillis());
+        } catch (RuntimeException e) {
+            dirty = true;
+            log.warn("Registered-email filter rebuild failed, will retry: {}", e.toString());
+        } finally {
+            building = null;
+        }
+    }
+
+    /**
+     * Add an email to the current filter and to the one being rebuilt
+     * 将邮箱添加到当前过滤器和正在重建的过滤器
+     */
+    private void addLocal(String email) {
+        // Read building before filter: the rebuild publishes filter before clearing building
+        // 先读取 building 再读取 filter：重建在清除 building 之前发布 filter
+        ScalableBloomFilter next = building;
+        if (next != null) {
+            next.add(email);
+        }
+        ScalableBloomFilter current = filter;
+        if (current != null && current != next) {
+            current.add(email);
+        }
+    }
+
+    private Counter checks(String result) {
+        return Counter.builder("app.email_filter.checks")
+            .description("Email existence checks by filter outcome")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    private static String normalize(String email) {
+        return email.trim().toLowerCase(Locale.ROOT);
+    }
+}
@@ -0,0 +1,384 @@
+package com.example.demo.service;
+
+import com.example.demo.event.UserChangeEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.unit.DataSize;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * ResponseCache - Encoded Responses of the User Read Endpoints
+ * 响应缓存 - 用户读取端点的已编码响应
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Holds the final bytes of GET /api/users and GET /api/users/{id} responses (see
+ * ResponseCacheFilter), with a gzipped copy of the larger ones, so that a repeated
+ * request is answered without the database, the Spring caches or Jackson.
+ *
+ * Entries are dropped by the same changes that evict the "users" and "user" caches:
+ * every UserChangeEvent drops the list entries and the changed user's entries, after
+ * commit, and on the other pods through the Redis channel responses:evicted. All
+ * entries are dropped when Redis recovers, since messages may have been lost, and each
+ * entry expires after response-cache.ttl. A response rendered while such a change
+ * happened is not stored.
+ *
+ * Responses are rendered from the primary before they are stored (see
+ * ResponseCacheFilter), so an entry never holds rows older than the change that last
+ * invalidated it, and every ETag is a digest of the body it tags.
+ *
+ * Metrics: app.response_cache.requests{result}, app.response_cache.size and
+ * app.response_cache.entries.
+ *
+ * 保存 GET /api/users 和 GET /api/users/{id} 响应的最终字节（参见 ResponseCacheFilter），
+ * 较大的响应另存一份 gzip 副本，因此重复的请求无需数据库、Spring 缓存或 Jackson 即可应答。
+ *
+ * 条目由驱逐 "users" 和 "user" 缓存的相同变更删除：每个 UserChangeEvent 在提交后删除列表条目
+ * 和被变更用户的条目，并通过 Redis 频道 responses:evicted 通知其他 Pod。Redis 恢复时删除全部条目，
+ * 因为期间可能丢失了消息，且每个条目在 response-cache.ttl 后过期。在此类变更期间生成的响应不会被存储。
+ *
+ * 响应在存储之前从主库生成（参见 ResponseCacheFilter），因此条目中的行绝不会早于最近一次使其失效的变更，
+ * 且每个 ETag 都是其所标记响应体的摘要。
+ *
+ * 指标：app.response_cache.requests{result}、app.response_cache.size 和 app.response_cache.entries。
+ */
+@Service
+public class ResponseCache {
+
+    /**
+     * Redis channel carrying ids of changed users / 传递已变更用户 ID 的 Redis 频道
+     */
+    private static final String CHANNEL = "responses:evicted";
+
+    /**
+     * Rough per-entry overhead of the maps, key and entry objects / 映射、键和条目对象的大致单条开销
+     */
+    private static final int ENTRY_OVERHEAD = 256;
+
+    /**
+     * A cached response
+     * 缓存的响应
+     *
+     * @param route Route template, for usage metering / 路由模板，用于用量计量
+     * @param etag Strong ETag of body / body 的强 ETag
+     * @param contentType Content-Type / 内容类型
+     * @param headers Other headers set by the handler / 处理器设置的其他响应头
+     * @param body Encoded body / 编码后的响应体
+     * @param gzipped Gzipped body, null if too small to compress / gzip 后的响应体，太小而不压缩时为 null
+     * @param expiresAt System.nanoTime() after which the entry is dropped / 条目被删除的 System.nanoTime()
+     */
+    public record Entry(String route, String etag, String contentType, Map<String, String> headers,
+                        byte[] body, byte[] gzipped, long expiresAt) {
+
+        /**
+         * ETag of the gzipped representation / gzip 表示的 ETag
+         *
+         * @return ETag / ETag
+         */
+        public String gzipEtag() {
+            return etag.substring(0, etag.length() - 1) + "-gz\"";
+        }
+    }
+
+    /**
+     * Whether responses are cached / 是否缓存响应
+     */
+    @Value("${response-cache.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Memory for entries, and the largest body stored / 条目可用的内存，以及可存储的最大响应体
+     */
+    @Value("${response-cache.max-size:32MB}")
+    private DataSize maxSize;
+
+    @Value("${response-cache.max-entry-size:2MB}")
+    private DataSize maxEntrySize;
+
+    /**
+     * Entry lifetime / 条目生存时间
+     */
+    @Value("${response-cache.ttl:10m}")
+    private Duration ttl;
+
+    /**
+     * Bodies at least this large are also stored gzipped / 至少达到此大小的响应体同时以 gzip 形式存储
+     */
+    @Value("${response-cache.gzip-min-size:1KB}")
+    private DataSize gzipMinSize;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisMessageListenerContainer listenerContainer;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Entries by key, least recently used first / 按键的条目，最近最少使用的在前
+     */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+
+    /**
+     * Keys of the list entries and of each user's entries / 列表条目和每个用户条目的键
+     */
+    private final Set<String> collectionKeys = new HashSet<>();
+    private final Map<Long, Set<String>> userKeys = new HashMap<>();
+    private final Map<String, Long> keyUsers = new HashMap<>();
+
+    private long bytes;
+
+    /**
+     * Incremented by every invalidation, local or remote / 每次失效（本地或远程）递增一次
+     */
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * Subscribe to other pods' changes and register metrics
+     * 订阅其他 Pod 的变更并注册指标
+     */
+    @PostConstruct
+    public void init() {
+        listenerContainer.addMessageListener(
+            (message, pattern) -> invalidate(Long.parseLong(new String(message.getBody(), StandardCharsets.UTF_8))),
+            new ChannelTopic(CHANNEL));
+        redisGuard.onRecovery(this::recover);
+        Gauge.builder("app.response_cache.size", this, ResponseCache::bytes)
+            .description("Bytes of cached responses")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+        Gauge.builder("app.response_cache.entries", this, ResponseCache::size)
+            .description("Cached responses")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Whether responses are cached
+     * 是否缓存响应
+     *
+     * @return true if response-cache.enabled / 如果 response-cache.enabled 则返回 true
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get a cached response
+     * 获取缓存的响应
+     *
+     * @param key Request key / 请求键
+     * @return Entry, or null / 条目，或 null
+     */
+    public synchronized Entry get(String key) {
+        Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt() - System.nanoTime() <= 0) {
+            remove(key);
+            return null;
+        }
+        return entry;
+    }
+
+    /**
+     * Take a stamp before rendering a response
+     * 在生成响应之前获取一个戳
+     *
+     * @return Stamp to pass to put / 传给 put 的戳
+     */
+    public long stamp() {
+        return invalidations.get();
+    }
+
+    /**
+     * Build an entry and store it unless a change happened since the stamp
+     * 构建条目，并在戳之后未发生变更时存储它
+     *
+     * @param key Request key / 请求键
+     * @param userId User the response shows, null for the list / 响应展示的用户，列表为 null
+     * @param route Route template / 路由模板
+     * @param etag Strong ETag / 强 ETag
+     * @param contentType Content-Type / 内容类型
+     * @param headers Other headers set by the handler / 处理器设置的其他响应头
+     * @param body Encoded body / 编码后的响应体
+     * @param stamp Stamp taken before rendering / 生成之前获取的戳
+     * @return The entry, stored or not / 条目，无论是否存储
+     */
+    public Entry put(String key, Long userId, String route, String etag, String contentType,
+                     Map<String, String> headers, byte[] body, long stamp) {
+        byte[] gzipped = body.length >= gzipMinSize.toBytes() ? gzip(body) : null;
+        Entry entry = new Entry(route, etag, contentType, Map.copyOf(headers), body, gzipped,
+            System.nanoTime() + ttl.toNanos());
+        if (body.length > maxEntrySize.toBytes()) {
+            return entry;
+        }
+        synchronized (this) {
+            if (invalidations.get() != stamp) {
+                return entry;
+            }
+            remove(key);
+            entries.put(key, entry);
+            bytes += weight(key, entry);
+            if (userId == null) {
+                collectionKeys.add(key);
+            } else {
+                userKeys.computeIfAbsent(userId, id -> new HashSet<>()).add(key);
+                keyUsers.put(key, userId);
+            }
+            for (Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+                 bytes > maxSize.toBytes() && it.hasNext(); ) {
+                Map.Entry<String, Entry> eldest = it.next();
+                if (!eldest.getKey().equals(key)) {
+                    it.remove();
+                    unindex(eldest.getKey(), eldest.getValue());
+                }
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Count a request by how it was answered
+     * 按应答方式统计请求
+     *
+     * @param result hit, not_modified or miss / hit、not_modified 或 miss
+     */
+    public void count(String result) {
+        meterRegistry.counter("app.response_cache.requests", "result", result).increment();
+    }
+
+    /**
+     * Drop the responses a committed change affects
+     * 删除已提交变更影响的响应
+     *
+     * @param event User change / 用户变更
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onUserChange(UserChangeEvent event) {
+        invalidate(event.getUserId());
+        String id = event.getUserId().toString();
+        redisGuard.run(() -> redisTemplate.convertAndSend(CHANNEL, id));
+    }
+
+    /**
+     * Hex digest used in ETags
+     * 用于 ETag 的十六进制摘要
+     *
+     * @param data Data / 数据
+     * @return First 8 bytes of the SHA-256 of data, as hex / 数据 SHA-256 的前 8 个字节，十六进制
+     */
+    public static String digest(byte[] data) {
+        try {
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(data), 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Drop the list entries and one user's entries
+     * 删除列表条目和某个用户的条目
+     */
+    private synchronized void invalidate(Long userId) {
+        invalidations.incrementAndGet();
+        for (String key : Set.copyOf(collectionKeys)) {
+            remove(key);
+        }
+        Set<String> keys = userKeys.get(userId);
+        if (keys != null) {
+            for (String key : Set.copyOf(keys)) {
+                remove(key);
+            }
+        }
+    }
+
+    /**
+     * Drop everything after an outage, since invalidation messages may have been lost
+     * 故障后删除所有条目，因为失效消息可能已经丢失
+     */
+    private synchronized void recover() {
+        invalidations.incrementAndGet();
+        entries.clear();
+        collectionKeys.clear();
+        userKeys.clear();
+        keyUsers.clear();
+        bytes = 0;
+    }
+
+    private void remove(String key) {
+        Entry entry = entries.remove(key);
+        if (entry != null) {
+            unindex(key, entry);
+        }
+    }
+
+    /**
+     * Remove a removed entry from the indexes and the byte count
+     * 从索引和字节计数中移除已删除的条目
+     */
+    private void unindex(String key, Entry entry) {
+        bytes -= weight(key, entry);
+        collectionKeys.remove(key);
+        Long userId = keyUsers.remove(key);
+        if (userId != null) {
+            Set<String> keys = userKeys.get(userId);
+            if (keys != null && keys.remove(key) && keys.isEmpty()) {
+                userKeys.remove(userId);
+            }
+        }
+    }
+
+    private synchronized long bytes() {
+        return bytes;
+    }
+
+    private synchronized int size() {
+        return entries.size();
+    }
+
+    private static long weight(String key, Entry entry) {
+        return ENTRY_OVERHEAD + key.length() * 2L + entry.body().length
+            + (entry.gzipped() != null ? entry.gzipped().length : 0);
+    }
+
+    private static byte[] gzip(byte[] body) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(body.length / 4 + 64);
+        try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+            gzip.write(body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,195 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.SessionInfo;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.stereotype.Component;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * SessionRegistry - Per-User Session Index in Redis
+ * 会话注册表 - Redis 中的按用户会话索引
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Every login creates a session identified by the token's jti claim:
+ * - jwt:session:{email}:{jti}  the session itself (value: email), expiring with the token
+ * - jwt:sessions:{email}       sorted set of the user's session ids scored by expiry (ms)
+ * Both keys share the {email} hash tag, so each operation below is one Lua script on
+ * one Redis Cluster slot. Creating a session prunes expired members and, beyond
+ * auth.max-sessions, evicts the sessions closest to expiry (the oldest logins);
+ * listing prunes as well. Expired members are therefore removed lazily, on the
+ * user's own keys, and nothing ever scans the keyspace. "Log out everywhere" deletes
+ * all sessions of a user in one round-trip, whatever their number.
+ *
+ * Callers handle Redis failures (see AuthService).
+ *
+ * 每次登录创建一个由令牌 jti 声明标识的会话：
+ * - jwt:session:{email}:{jti}  会话本身（值：邮箱），随令牌一起过期
+ * - jwt:sessions:{email}       用户会话 ID 的有序集合，分数为过期时间（毫秒）
+ * 两个键共享 {email} 哈希标签，因此以下每个操作都是在一个 Redis Cluster 槽上执行的一个 Lua 脚本。
+ * 创建会话时清理过期成员，超过 auth.max-sessions 时驱逐最接近过期的会话（最早的登录）；
+ * 列出会话时也会清理。因此过期成员在用户自己的键上被惰性删除，从不扫描键空间。
+ * "在所有设备上退出登录"在一次往返中删除用户的所有会话，无论数量多少。
+ *
+ * 调用方负责处理 Redis 故障（参见 AuthService）。
+ */
+@Component
+public class SessionRegistry {
+
+    private static final String SESSION_KEY_PREFIX = "jwt:session:";
+    private static final String INDEX_KEY_PREFIX = "jwt:sessions:";
+
+    /**
+     * Store a session, index it, prune expired ids and evict the oldest beyond the cap
+     * 存储会话并建立索引，清理过期 ID，并驱逐超出上限的最早会话
+     */
+    private static final RedisScript<Long> CREATE = new DefaultRedisScript<>(
+        "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[4]) "
+            + "redis.call('SET', KEYS[2], ARGV[2], 'PX', tonumber(ARGV[3]) - tonumber(ARGV[4])) "
+            + "redis.call('ZADD', KEYS[1], ARGV[3], ARGV[1]) "
+            + "local excess = redis.call('ZCARD', KEYS[1]) - tonumber(ARGV[5]) "
+            + "local evicted = {} "
+            + "if excess > 0 then "
+            + "  evicted = redis.call('ZRANGE', KEYS[1], 0, excess - 1) "
+            + "  for _, id in ipairs(evicted) do redis.call('DEL', ARGV[6] .. id) end "
+            + "  redis.call('ZREMRANGEBYRANK', KEYS[1], 0, excess - 1) "
+            + "end "
+            + "redis.call('PEXPIREAT', KEYS[1], redis.call('ZRANGE', KEYS[1], -1, -1, 'WITHSCORES')[2]) "
+            + "return #evicted",
+        Long.class);
+
+    /**
+     * Delete one session and its index entry
+     * 删除一个会话及其索引条目
+     */
+    private static final RedisScript<Long> REVOKE = new DefaultRedisScript<>(
+        "redis.call('ZREM', KEYS[1], ARGV[1]) "
+            + "return redis.call('DEL', KEYS[2])",
+        Long.class);
+
+    /**
+     * Delete every session of a user and the index
+     * 删除用户的所有会话及索引
+     */
+    private static final RedisScript<Long> REVOKE_ALL = new DefaultRedisScript<>(
+        "local ids = redis.call('ZRANGE', KEYS[1], 0, -1) "
+            + "for _, id in ipairs(ids) do redis.call('DEL', ARGV[1] .. id) end "
+            + "redis.call('DEL', KEYS[1]) "
+            + "return #ids",
+        Long.class);
+
+    /**
+     * Prune expired ids and return the rest with their expiry
+     * 清理过期 ID 并返回其余 ID 及其过期时间
+     */
+    @SuppressWarnings("rawtypes")
+    private static final RedisScript<List> LIST = new DefaultRedisScript<>(
+        "redis.call('ZREMRANGEBYSCORE', KEYS[1], '-inf', ARGV[1]) "
+            + "return redis.call('ZRANGE', KEYS[1], 0, -1, 'WITHSCORES')",
+        List.class);
+
+    /**
+     * Maximum concurrent sessions per user / 每个用户的最大并发会话数
+     */
+    @Value("${auth.max-sessions:10}")
+    private int maxSessions;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    /**
+     * Redis key of a session
+     * 会话的 Redis 键
+     *
+     * @param email User email (token subject) / 用户邮箱（令牌主题）
+     * @param sessionId Session id (token jti) / 会话 ID（令牌 jti）
+     * @return Session key / 会话键
+     */
+    public String sessionKey(String email, String sessionId) {
+        return sessionKeyPrefix(email) + sessionId;
+    }
+
+    /**
+     * Store a new session
+     * 存储新会话
+     *
+     * @param email User email / 用户邮箱
+     * @param sessionId Session id (token jti) / 会话 ID（令牌 jti）
+     * @param expiresAtMillis Token expiry (epoch ms) / 令牌过期时间（纪元毫秒）
+     * @return Number of older sessions evicted by the cap / 因上限被驱逐的旧会话数
+     */
+    public long create(String email, String sessionId, long expiresAtMillis) {
+        Long evicted = redisTemplate.execute(CREATE, List.of(indexKey(email), sessionKey(email, sessionId)),
+            sessionId, email, Long.toString(expiresAtMillis), Long.toString(System.currentTimeMillis()),
+            Integer.toString(maxSessions), sessionKeyPrefix(email));
+        return evicted != null ? evicted : 0;
+    }
+
+    /**
+     * Revoke one session
+     * 撤销一个会话
+     *
+     * @param email User email / 用户邮箱
+     * @param sessionId Session id / 会话 ID
+     */
+    public void revoke(String email, String sessionId) {
+        redisTemplate.execute(REVOKE, List.of(indexKey(email), sessionKey(email, sessionId)), sessionId);
+    }
+
+    /**
+     * Revoke every session of a user
+     * 撤销用户的所有会话
+     *
+     * @param email User email / 用户邮箱
+     * @return Number of sessions revoked / 撤销的会话数
+     */
+    public long revokeAll(String email) {
+        Long revoked = redisTemplate.execute(REVOKE_ALL, List.of(indexKey(email)), sessionKeyPrefix(email));
+        return revoked != null ? revoked : 0;
+    }
+
+    /**
+     * List the active sessions of a user, soonest-expiring first
+     * 列出用户的活动会话，最先过期的在前
+     *
+     * @param email User email / 用户邮箱
+     * @param currentSessionId Session id of the caller, flagged in the result / 调用方的会话 ID，在结果中标记
+     * @return Active sessions / 活动会话
+     */
+    @SuppressWarnings("unchecked")
+    public List<SessionInfo> list(String email, String currentSessionId) {
+        List<Object> flat = redisTemplate.execute(LIST, List.of(indexKey(email)),
+            Long.toString(System.currentTimeMillis()));
+        List<SessionInfo> sessions = new ArrayList<>();
+        if (flat == null) {
+            return sessions;
+        }
+        for (int i = 0; i + 1 < flat.size(); i += 2) {
+            String id = flat.get(i).toString();
+            LocalDateTime expiresAt = LocalDateTime.ofInstant(
+                Instant.ofEpochMilli((long) Double.parseDouble(flat.get(i + 1).toString())), ZoneId.systemDefault());
+            sessions.add(new SessionInfo(id, expiresAt, id.equals(currentSessionId)));
+        }
+        return sessions;
+    }
+
+    private static String indexKey(String email) {
+        return INDEX_KEY_PREFIX + "{" + email + "}";
+    }
+
+    private static String sessionKeyPrefix(String email) {
+        return SESSION_KEY_PREFIX + "{" + email + "}:";
+    }
+}
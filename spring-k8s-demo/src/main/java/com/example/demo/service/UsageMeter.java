@@ -0,0 +1,366 @@
+package com.example.demo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.connection.ReturnType;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * UsageMeter - Per-User API Usage Metering
+ * 用量计量器 - 按用户的 API 用量计量
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Counts authenticated requests per user and route ("GET /api/users/{id}") for quotas
+ * and billing, in Redis hashes bucketed by time:
+ * - usage:{email}:hour:yyyy-MM-ddTHH  field = route, kept for usage.hourly-retention
+ * - usage:{email}:day:yyyy-MM-dd      field = route, kept for usage.daily-retention
+ * The {email} hash tag keeps one user's keys on one Redis Cluster slot.
+ *
+ * Requests only increment an in-process LongAdder per (hour, user, route); LongAdder
+ * stripes its cells so concurrent requests of the same user do not contend. Every
+ * usage.flush-interval each adder is drained with sumThenReset (increments racing with
+ * the drain are kept for the next flush, never lost) and the non-zero counts of each
+ * user become one batch, numbered from a per-pod sequence. All batches are sent in one
+ * pipeline, one Lua script per user, so Redis sees one command per user per interval
+ * instead of one per request.
+ *
+ * Each script adds its batch only if usage:{email}:flushed does not already record
+ * that sequence for this pod, and records it in the same script. A batch whose outcome
+ * is unknown (pipeline error, Redis unavailable) is resent unchanged, so a batch that
+ * was applied before the error is not counted twice. A user's next batch is only cut
+ * once the previous one is confirmed, which keeps the sequence increasing per user.
+ *
+ * A counter is only removed once it is empty and its hour ended more than
+ * usage.idle-grace ago, so a request that looked the counter up just before the
+ * removal cannot increment a counter that is no longer flushed. At most
+ * usage.max-tracked counters are kept in memory; requests beyond that are dropped and
+ * counted in app.usage.dropped.
+ *
+ * 按用户和路由（"GET /api/users/{id}"）统计已认证请求，用于配额和计费，保存在按时间分桶的 Redis 哈希中：
+ * - usage:{email}:hour:yyyy-MM-ddTHH  字段 = 路由，保留 usage.hourly-retention
+ * - usage:{email}:day:yyyy-MM-dd      字段 = 路由，保留 usage.daily-retention
+ * {email} 哈希标签使一个用户的键位于同一个 Redis Cluster 槽上。
+ *
+ * 请求只递增进程内每个（小时、用户、路由）的 LongAdder；LongAdder 将计数分散到多个单元，
+ * 因此同一用户的并发请求不会争用。每隔 usage.flush-interval，用 sumThenReset 取出每个计数器
+ * （与取出并发的递增保留到下一次刷新，不会丢失），每个用户的非零计数组成一个批次，
+ * 按每个 Pod 的序号编号。所有批次在一个管道中发送，每个用户一个 Lua 脚本，
+ * 因此 Redis 每个间隔对每个用户只收到一条命令，而不是每个请求一条。
+ *
+ * 每个脚本只在 usage:{email}:flushed 尚未记录本 Pod 的该序号时累加其批次，并在同一脚本中记录序号。
+ * 结果未知的批次（管道错误、Redis 不可用）会原样重发，因此在错误之前已应用的批次不会被重复计数。
+ * 用户的下一个批次只在上一个批次确认之后才生成，从而保证每个用户的序号递增。
+ *
+ * 计数器只有在为空且其小时结束超过 usage.idle-grace 之后才会被移除，因此在移除前刚查到该计数器的请求
+ * 不会递增一个已不再刷新的计数器。内存中最多保留 usage.max-tracked 个计数器；
+ * 超出的请求被丢弃并计入 app.usage.dropped。
+ */
+@Service
+public class UsageMeter {
+
+    private static final String KEY_PREFIX = "usage:";
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter HOUR = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH");
+
+    /**
+     * Add one user's batch unless this pod's sequence number was already applied
+     * 累加一个用户的批次，除非本 Pod 的该序号已被应用
+     *
+     * KEYS: flushed hash, then an hour key and a day key per entry
+     * ARGV: pod id, sequence, hour TTL, day TTL, then a route and a count per entry
+     */
+    private static final RedisScript<Long> ADD_BATCH = new DefaultRedisScript<>(
+        "local seq = tonumber(ARGV[2]) "
+            + "if seq <= tonumber(redis.call('HGET', KEYS[1], ARGV[1]) or '0') then return 0 end "
+            + "for i = 2, #KEYS, 2 do "
+            + "redis.call('HINCRBY', KEYS[i], ARGV[3 + i], ARGV[4 + i]) "
+            + "redis.call('HINCRBY', KEYS[i + 1], ARGV[3 + i], ARGV[4 + i]) "
+            + "redis.call('PEXPIRE', KEYS[i], ARGV[3]) "
+            + "redis.call('PEXPIRE', KEYS[i + 1], ARGV[4]) "
+            + "end "
+            + "redis.call('HSET', KEYS[1], ARGV[1], ARGV[2]) "
+            + "redis.call('PEXPIRE', KEYS[1], ARGV[4]) "
+            + "return 1",
+        Long.class);
+
+    /**
+     * Hourly buckets kept / 保留的小时桶
+     */
+    @Value("${usage.hourly-retention:48h}")
+    private Duration hourlyRetention;
+
+    /**
+     * Daily buckets kept / 保留的天桶
+     */
+    @Value("${usage.daily-retention:35d}")
+    private Duration dailyRetention;
+
+    /**
+     * Maximum (hour, user, route) counters in memory / 内存中（小时、用户、路由）计数器的最大数量
+     */
+    @Value("${usage.max-tracked:100000}")
+    private int maxTracked;
+
+    /**
+     * How long an empty counter is kept after its hour ended / 空计数器在其小时结束后保留的时间
+     */
+    @Value("${usage.idle-grace:PT1M}")
+    private Duration idleGrace;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Map<UsageKey, LongAdder> counters = new ConcurrentHashMap<>();
+
+    /**
+     * Batches not confirmed yet, by user (flush only) / 尚未确认的批次，按用户（仅刷新使用）
+     */
+    private final Map<String, Batch> unconfirmed = new LinkedHashMap<>();
+
+    /**
+     * Identifies this pod's batches in the flushed hashes / 在 flushed 哈希中标识本 Pod 的批次
+     */
+    private final String podId = UUID.randomUUID().toString();
+
+    /**
+     * Last batch sequence number (flush only) / 最后的批次序号（仅刷新使用）
+     */
+    private long sequence;
+
+    private Counter dropped;
+
+    /**
+     * Register metrics
+     * 注册指标
+     */
+    @PostConstruct
+    public void init() {
+        dropped = Counter.builder("app.usage.dropped")
+            .description("Metered requests dropped because too many counters were tracked")
+            .register(meterRegistry);
+        Gauge.builder("app.usage.tracked", counters, Map::size)
+            .description("Per-user usage counters held in memory")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Count one request
+     * 计数一次请求
+     *
+     * @param subject Authenticated subject (user email) / 已认证主体（用户邮箱）
+     * @param route Method and route template, e.g. "GET /api/users/{id}" / 方法和路由模板
+     */
+    public void record(String subject, String route) {
+        UsageKey key = new UsageKey(HOUR.format(LocalDateTime.now()), subject, route);
+        LongAdder counter = counters.get(key);
+        if (counter == null) {
+            if (counters.size() >= maxTracked) {
+                dropped.increment();
+                return;
+            }
+            counter = counters.computeIfAbsent(key, k -> new LongAdder());
+        }
+        counter.increment();
+    }
+
+    /**
+     * Add the counts since the last flush to Redis
+     * 将上次刷新以来的计数累加到 Redis
+     */
+    @Scheduled(fixedDelayString = "${usage.flush-interval:PT5S}")
+    public synchronized void flush() {
+        String graceHour = HOUR.format(LocalDateTime.now().minus(idleGrace));
+        Map<String, Map<UsageKey, Long>> drained = new LinkedHashMap<>();
+        counters.forEach((key, counter) -> {
+            if (unconfirmed.containsKey(key.subject)) {
+                // Kept for the user's next batch / 保留给该用户的下一个批次
+                return;
+            }
+            long count = counter.sumThenReset();
+            if (count > 0) {
+                drained.computeIfAbsent(key.subject, subject -> new LinkedHashMap<>()).put(key, count);
+            } else if (key.hour.compareTo(graceHour) < 0) {
+                // Empty, and its hour ended more than the grace period ago
+                // 已为空，且其小时结束已超过宽限期
+                counters.remove(key, counter);
+            }
+        });
+        drained.forEach((subject, counts) -> unconfirmed.put(subject, new Batch(++sequence, counts)));
+        if (!unconfirmed.isEmpty() && write(unconfirmed)) {
+            unconfirmed.clear();
+        }
+    }
+
+    /**
+     * Flush on shutdown so the last interval is not lost
+     * 关闭时刷新，避免丢失最后一个间隔
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+    }
+
+    /**
+     * Get a user's usage per route
+     * 获取用户按路由的用量
+     *
+     * @param subject User email / 用户邮箱
+     * @param days Number of most recent days / 最近天数
+     * @param hours Number of most recent hours / 最近小时数
+     * @return Requests per route for each day and hour, or null if Redis is unavailable
+     *         每天和每小时按路由的请求数，Redis 不可用时返回 null
+     * @description
+     * All HGETALL calls are sent in one pipeline. Requests still counted in memory
+     * (at most one flush interval) are not included yet.
+     * 所有 HGETALL 调用在一个管道中发送。仍在内存中计数的请求（最多一个刷新间隔）尚未计入。
+     */
+    public Map<String, Object> getUsage(String subject, int days, int hours) {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> dayLabels = new ArrayList<>(days);
+        for (int i = days - 1; i >= 0; i--) {
+            dayLabels.add(DAY.format(now.minusDays(i)));
+        }
+        List<String> hourLabels = new ArrayList<>(hours);
+        for (int i = hours - 1; i >= 0; i--) {
+            hourLabels.add(HOUR.format(now.minusHours(i)));
+        }
+        return redisGuard.call(() -> {
+            List<Object> hashes = redisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                public Object execute(RedisOperations operations) {
+                    for (String day : dayLabels) {
+                        operations.opsForHash().entries(dayKey(subject, day));
+                    }
+                    for (String hour : hourLabels) {
+                        operations.opsForHash().entries(hourKey(subject, hour));
+                    }
+                    return null;
+                }
+            });
+            Map<String, Map<String, Long>> perDay = new LinkedHashMap<>();
+            for (int i = 0; i < dayLabels.size(); i++) {
+                perDay.put(dayLabels.get(i), counts(hashes.get(i)));
+            }
+            Map<String, Map<String, Long>> perHour = new LinkedHashMap<>();
+            for (int i = 0; i < hourLabels.size(); i++) {
+                perHour.put(hourLabels.get(i), counts(hashes.get(dayLabels.size() + i)));
+            }
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("user", subject);
+            result.put("today", perDay.get(dayLabels.get(dayLabels.size() - 1)).values().stream()
+                .mapToLong(Long::longValue).sum());
+            result.put("usagePerDay", perDay);
+            result.put("usagePerHour", perHour);
+            return result;
+        }, () -> null);
+    }
+
+    /**
+     * Send every batch, one script per user, in one pipeline
+     * 在一个管道中发送所有批次，每个用户一个脚本
+     *
+     * @return Whether every batch is now applied / 是否所有批次都已应用
+     * @description
+     * The script is loaded before the pipeline is opened: a NOSCRIPT error from EVALSHA
+     * would only surface when the pipeline is closed, too late to fall back to EVAL.
+     * SCRIPT LOAD is idempotent and also covers a Redis restart since the last flush.
+     *
+     * 在打开管道之前加载脚本：EVALSHA 的 NOSCRIPT 错误只会在关闭管道时出现，已来不及回退到 EVAL。
+     * SCRIPT LOAD 是幂等的，也覆盖了自上次刷新以来 Redis 重启的情况。
+     */
+    private boolean write(Map<String, Batch> batches) {
+        byte[] hourTtl = bytes(Long.toString(hourlyRetention.toMillis()));
+        byte[] dayTtl = bytes(Long.toString(dailyRetention.toMillis()));
+        byte[] pod = bytes(podId);
+        return redisGuard.run(() -> {
+            redisTemplate.execute((RedisCallback<String>) connection ->
+                connection.scriptingCommands().scriptLoad(bytes(ADD_BATCH.getScriptAsString())));
+            redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+                batches.forEach((subject, batch) -> {
+                    List<byte[]> keys = new ArrayList<>();
+                    List<byte[]> args = new ArrayList<>(List.of(pod, bytes(Long.toString(batch.sequence)), hourTtl, dayTtl));
+                    keys.add(bytes(KEY_PREFIX + "{" + subject + "}:flushed"));
+                    batch.counts.forEach((key, count) -> {
+                        keys.add(bytes(hourKey(subject, key.hour)));
+                        keys.add(bytes(dayKey(subject, key.hour.substring(0, 10))));
+                        args.add(bytes(key.route));
+                        args.add(bytes(count.toString()));
+                    });
+                    keys.addAll(args);
+                    connection.scriptingCommands().evalSha(ADD_BATCH.getSha1(), ReturnType.INTEGER,
+                        keys.size() - args.size(), keys.toArray(byte[][]::new));
+                });
+                return null;
+            });
+        });
+    }
+
+    private static byte[] bytes(String value) {
+        return value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static Map<String, Long> counts(Object hash) {
+        Map<String, Long> counts = new TreeMap<>();
+        if (hash instanceof Map<?, ?> entries) {
+            entries.forEach((route, count) -> counts.put(route.toString(), Long.parseLong(count.toString())));
+        }
+        return counts;
+    }
+
+    private static String hourKey(String subject, String hour) {
+        return KEY_PREFIX + "{" + subject + "}:hour:" + hour;
+    }
+
+    private static String dayKey(String subject, String day) {
+        return KEY_PREFIX + "{" + subject + "}:day:" + day;
+    }
+
+    /**
+     * Counter identity: hour bucket, user and route / 计数器标识：小时桶、用户和路由
+     */
+    private record UsageKey(String hour, String subject, String route) {
+    }
+
+    /**
+     * One user's counts sent under one sequence number / 以一个序号发送的一个用户的计数
+     */
+    private record Batch(long sequence, Map<UsageKey, Long> counts) {
+    }
+}
@@ -0,0 +1,176 @@
+package com.example.demo.service;
+
+import com.example.demo.repository.ShardRouter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * UserActivityTracker - Write-Coalesced Last-Login and Last-Seen Timestamps
+ * 用户活动跟踪器 - 写合并的最后登录和最后访问时间
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Maintains users.last_login_at (AuthService.login) and users.last_seen_at (every
+ * authenticated request, see JwtAuthenticationFilter) without a database write per
+ * request. Activity is kept in a concurrent map keyed by user id, where a newer value
+ * replaces the older one, so a user active a thousand times between flushes costs one
+ * row update. Every user-activity.flush-interval the map is written with one UPDATE
+ * statement per shard, executed as a JDBC batch (a single round-trip with
+ * rewriteBatchedStatements). The UPDATE never moves a timestamp backwards, so pods
+ * flushing in any order agree, and it leaves updated_at alone: activity is not a change
+ * of the user.
+ *
+ * Entries are only removed once written, and only if no newer value arrived meanwhile;
+ * a failed flush is retried by the next one. The map is flushed once more on shutdown,
+ * after the web server has stopped taking requests.
+ *
+ * 维护 users.last_login_at（AuthService.login）和 users.last_seen_at（每个已认证请求，
+ * 参见 JwtAuthenticationFilter），而无需每个请求写一次数据库。活动保存在以用户 ID 为键的
+ * 并发映射中，新值替换旧值，因此两次刷新之间活跃一千次的用户只需一次行更新。每隔
+ * user-activity.flush-interval，映射以每个分片一条 UPDATE 语句写入，作为 JDBC 批处理执行
+ * （启用 rewriteBatchedStatements 时为一次往返）。UPDATE 从不使时间戳倒退，因此各 Pod
+ * 以任意顺序刷新结果都一致，并且不改变 updated_at：活动不是用户的变更。
+ *
+ * 条目只有在写入后、且期间没有更新的值到达时才会移除；失败的刷新由下一次刷新重试。
+ * 关闭时（Web 服务器停止接收请求之后）会再刷新一次映射。
+ */
+@Service
+public class UserActivityTracker {
+
+    private static final Logger log = LoggerFactory.getLogger(UserActivityTracker.class);
+
+    /**
+     * Keep the later of the stored and the flushed timestamps
+     * 保留已存储和待刷新时间戳中较晚的一个
+     */
+    private static final String UPDATE_ACTIVITY = "UPDATE users SET"
+        + " last_login_at = CASE WHEN last_login_at IS NULL OR last_login_at < ? THEN ? ELSE last_login_at END,"
+        + " last_seen_at = CASE WHEN last_seen_at IS NULL OR last_seen_at < ? THEN ? ELSE last_seen_at END"
+        + " WHERE id = ?";
+
+    /**
+     * Rows per JDBC batch / 每个 JDBC 批处理的行数
+     */
+    @Value("${user-activity.batch-size:1000}")
+    private int batchSize;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Latest activity per user id since the last flush / 上次刷新以来每个用户 ID 的最新活动
+     */
+    private final Map<Long, Activity> pending = new ConcurrentHashMap<>();
+
+    /**
+     * Register metrics
+     * 注册指标
+     */
+    @PostConstruct
+    public void init() {
+        Gauge.builder("app.user_activity.pending", pending, Map::size)
+            .description("Users with activity not yet written to the database")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Record a successful login
+     * 记录一次成功登录
+     *
+     * @param userId User ID / 用户 ID
+     */
+    public void recordLogin(Long userId) {
+        LocalDateTime now = LocalDateTime.now();
+        pending.merge(userId, new Activity(now, now), Activity::merge);
+    }
+
+    /**
+     * Record an authenticated request
+     * 记录一次已认证的请求
+     *
+     * @param userId User ID / 用户 ID
+     */
+    public void recordSeen(Long userId) {
+        pending.merge(userId, new Activity(null, LocalDateTime.now()), Activity::merge);
+    }
+
+    /**
+     * Write pending activity to the database
+     * 将待处理的活动写入数据库
+     */
+    @Scheduled(fixedDelayString = "${user-activity.flush-interval:PT30S}")
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        // Sorted by id so that concurrent flushes from several pods lock rows in the same order
+        // 按 ID 排序，使多个 Pod 的并发刷新以相同顺序锁定行
+        Map<Integer, TreeMap<Long, Activity>> byShard = new TreeMap<>();
+        pending.forEach((userId, activity) ->
+            byShard.computeIfAbsent(shardRouter.shardFor(userId), shard -> new TreeMap<>()).put(userId, activity));
+        byShard.forEach((shard, activities) -> {
+            try {
+                write(shard, activities);
+            } catch (RuntimeException e) {
+                log.warn("Flushing activity of {} users to shard {} failed, will retry: {}",
+                    activities.size(), shard, e.toString());
+                return;
+            }
+            activities.forEach(pending::remove);
+        });
+    }
+
+    /**
+     * Flush what is left on shutdown
+     * 关闭时刷新剩余内容
+     */
+    @PreDestroy
+    public void shutdown() {
+        flush();
+        if (!pending.isEmpty()) {
+            log.warn("Activity of {} users could not be written before shutdown", pending.size());
+        }
+    }
+
+    private void write(int shard, Map<Long, Activity> activities) {
+        List<Object[]> rows = new ArrayList<>(activities.size());
+        activities.forEach((userId, activity) -> rows.add(new Object[] {
+            activity.lastLoginAt, activity.lastLoginAt, activity.lastSeenAt, activity.lastSeenAt, userId}));
+        for (int from = 0; from < rows.size(); from += batchSize) {
+            shardRouter.jdbc(shard).batchUpdate(UPDATE_ACTIVITY,
+                rows.subList(from, Math.min(from + batchSize, rows.size())));
+        }
+    }
+
+    /**
+     * Latest login (null if none since the last flush) and latest request of a user
+     * 用户的最新登录（上次刷新以来没有则为 null）和最新请求
+     */
+    private record Activity(LocalDateTime lastLoginAt, LocalDateTime lastSeenAt) {
+
+        Activity merge(Activity newer) {
+            return new Activity(newer.lastLoginAt != null ? newer.lastLoginAt : lastLoginAt, newer.lastSeenAt);
+        }
+    }
+}
@@ -0,0 +1,582 @@
+package com.example.demo.service;
+
+import com.example.demo.event.UserChangeEvent;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+/**
+ * UserChangeFeed - Server-Sent Events Feed of User Changes
+ * 用户变更推送 - 用户变更的服务器发送事件推送
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Lets clients follow user changes instead of polling GET /api/users. Every committed
+ * UserChangeEvent is appended to the Redis stream users:changes (capped at about
+ * user-stream.retention entries); every pod reads the stream every
+ * user-stream.poll-interval on its own poll thread (one non-blocking XREAD, since blocking
+ * reads would not fit the Redis command timeout) and pushes the new entries to its own subscribers:
+ *   event: created | updated | deleted
+ *   id:    stream entry id
+ *   data:  {"type":"updated","id":42}
+ * Clients fetch the changed users themselves (e.g. GET /api/users?ids=...).
+ *
+ * Resumption: a client reconnecting with Last-Event-ID first receives the entries it
+ * missed. If they are no longer in the stream, are more than user-stream.buffer-size,
+ * or may have been lost during a Redis outage, it receives a "reset" event instead and
+ * should reload the full list.
+ *
+ * Each subscriber is an async SseEmitter, so idle subscribers hold no request thread.
+ * Events are serialized once and queued per subscriber in a bounded buffer drained by
+ * a small pool of sender threads; a subscriber whose buffer is full is disconnected
+ * (its EventSource reconnects and resumes), so one slow client never delays the others.
+ * A send blocked for more than user-stream.send-timeout (the client's TCP window is
+ * full) also drops the subscriber, and the pool gets a replacement thread (at most
+ * user-stream.max-stalled-senders) until that send fails on the servlet write timeout
+ * (server.tomcat.connection-timeout), so stalled clients cannot starve healthy ones.
+ * A comment line every user-stream.heartbeat-interval keeps proxies from closing idle
+ * connections and detects clients that went away.
+ *
+ * Metrics: app.user_stream.subscribers and app.user_stream.dropped.
+ *
+ * 让客户端跟踪用户变更，而不是轮询 GET /api/users。每个已提交的 UserChangeEvent 都追加到
+ * Redis 流 users:changes（上限约为 user-stream.retention 个条目）；每个 Pod 每隔
+ * user-stream.poll-interval 在自己的轮询线程上读取一次该流（一次非阻塞 XREAD，因为阻塞读取不符合 Redis 命令超时），
+ * 并将新条目推送给自己的订阅者：
+ *   event: created | updated | deleted
+ *   id:    流条目 ID
+ *   data:  {"type":"updated","id":42}
+ * 客户端自行获取变更的用户（例如 GET /api/users?ids=...）。
+ *
+ * 断点续传：带 Last-Event-ID 重新连接的客户端首先收到错过的条目。如果这些条目已不在流中、
+ * 超过 user-stream.buffer-size 个，或可能在 Redis 故障期间丢失，则改为收到 "reset" 事件，
+ * 客户端应重新加载完整列表。
+ *
+ * 每个订阅者都是异步 SseEmitter，因此空闲订阅者不占用请求线程。事件只序列化一次，
+ * 并在每个订阅者的有界缓冲区中排队，由少量发送线程发送；缓冲区已满的订阅者会被断开
+ * （其 EventSource 会重新连接并续传），因此一个慢客户端不会拖慢其他客户端。
+ * 阻塞超过 user-stream.send-timeout 的发送（客户端的 TCP 窗口已满）也会使该订阅者被断开，
+ * 并为线程池补充一个替代线程（最多 user-stream.max-stalled-senders 个），直到该发送因 Servlet 写超时
+ * （server.tomcat.connection-timeout）失败，因此停滞的客户端不会饿死健康的客户端。
+ * 每隔 user-stream.heartbeat-interval 发送一行注释，防止代理关闭空闲连接并发现已离开的客户端。
+ *
+ * 指标：app.user_stream.subscribers 和 app.user_stream.dropped。
+ */
+@Service
+public class UserChangeFeed {
+
+    private static final String STREAM_KEY = "users:changes";
+
+    /**
+     * Entries read per XREAD / 每次 XREAD 读取的条目数
+     */
+    private static final int READ_BATCH = 500;
+
+    private static final Pattern STREAM_ID = Pattern.compile("\\d+-\\d+");
+
+    /**
+     * Append an entry and trim the stream (approximate MAXLEN)
+     * 追加条目并修剪流（近似 MAXLEN）
+     */
+    private static final RedisScript<String> APPEND = new DefaultRedisScript<>(
+        "return redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[1], '*', 'type', ARGV[2], 'id', ARGV[3])",
+        String.class);
+
+    private static final Set<ResponseBodyEmitter.DataWithMediaType> HEARTBEAT =
+        SseEmitter.event().comment("heartbeat").build();
+
+    /**
+     * Stream entries kept for resumption / 为断点续传保留的流条目数
+     */
+    @Value("${user-stream.retention:10000}")
+    private long retention;
+
+    /**
+     * Events queued per subscriber before it is disconnected / 订阅者被断开前可排队的事件数
+     */
+    @Value("${user-stream.buffer-size:256}")
+    private int bufferSize;
+
+    /**
+     * Subscribers per pod / 每个 Pod 的订阅者数
+     */
+    @Value("${user-stream.max-subscribers:10000}")
+    private int maxSubscribers;
+
+    /**
+     * Connection lifetime; clients reconnect with Last-Event-ID / 连接生命周期；客户端带 Last-Event-ID 重新连接
+     */
+    @Value("${user-stream.timeout:30m}")
+    private Duration timeout;
+
+    /**
+     * Longest a single send may block before the subscriber is dropped / 单次发送在订阅者被断开前可阻塞的最长时间
+     */
+    @Value("${user-stream.send-timeout:2s}")
+    private Duration sendTimeout;
+
+    /**
+     * Replacement threads for senders blocked on dropped subscribers / 为阻塞在已断开订阅者上的发送线程补充的替代线程数
+     */
+    @Value("${user-stream.max-stalled-senders:64}")
+    private int maxStalledSenders;
+
+    /**
+     * Threads writing events to subscribers / 向订阅者写入事件的线程数
+     */
+    @Value("${user-stream.sender-threads:4}")
+    private int senderThreads;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private final Set<Subscriber> subscribers = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Subscribers waiting for their replay, taken over by the next poll
+     * 等待重放的订阅者，由下一次轮询接管
+     */
+    private final Queue<Subscriber> joining = new ConcurrentLinkedQueue<>();
+
+    private ThreadPoolExecutor senders;
+
+    /**
+     * Senders blocked on a dropped subscriber / 阻塞在已断开订阅者上的发送线程数
+     */
+    private int stalledSenders;
+
+    /**
+     * Single thread running the poll and the replays, off the shared scheduler
+     * 运行轮询和重放的单个线程，不占用共享调度器
+     */
+    private ExecutorService poller;
+
+    /**
+     * A poll is queued or running / 轮询已排队或正在运行
+     */
+    private final AtomicBoolean polling = new AtomicBoolean();
+
+    private Counter dropped;
+
+    /**
+     * Id of the last stream entry dispatched (poll thread only), null until known
+     * 最后分发的流条目 ID（仅轮询线程使用），未知时为 null
+     */
+    private String lastId;
+
+    /**
+     * Events may have been lost, subscribers must reload / 事件可能已丢失，订阅者必须重新加载
+     */
+    private volatile boolean resetPending;
+
+    /**
+     * Start the sender threads and register metrics
+     * 启动发送线程并注册指标
+     */
+    @PostConstruct
+    public void init() {
+        senders = new ThreadPoolExecutor(senderThreads, senderThreads, 0, TimeUnit.MILLISECONDS,
+            new LinkedBlockingQueue<>(), runnable -> {
+                Thread thread = new Thread(runnable, "user-stream-sender");
+                thread.setDaemon(true);
+                return thread;
+            });
+        poller = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "user-stream-poller");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Entries appended by any pod during an outage may be missing
+        // 故障期间任何 Pod 追加的条目都可能缺失
+        redisGuard.onRecovery(() -> resetPending = true);
+        dropped = Counter.builder("app.user_stream.dropped")
+            .description("Change feed subscribers disconnected for being too slow")
+            .register(meterRegistry);
+        Gauge.builder("app.user_stream.subscribers", this, self -> self.subscribers.size() + self.joining.size())
+            .description("Change feed subscribers on this pod")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Close all subscriptions
+     * 关闭所有订阅
+     */
+    @PreDestroy
+    public void shutdown() {
+        subscribers.forEach(subscriber -> subscriber.emitter.complete());
+        poller.shutdownNow();
+        senders.shutdownNow();
+    }
+
+    /**
+     * Subscribe to the feed
+     * 订阅推送
+     *
+     * @param lastEventId Last event received before reconnecting, or null / 重新连接前收到的最后一个事件，或 null
+     * @return Emitter to return from the controller, or null if this pod is full / 由控制器返回的发送器，本 Pod 已满时为 null
+     */
+    public SseEmitter subscribe(String lastEventId) {
+        if (subscribers.size() + joining.size() >= maxSubscribers) {
+            return null;
+        }
+        SseEmitter emitter = new SseEmitter(timeout.toMillis());
+        Subscriber subscriber = new Subscriber(emitter, lastEventId, bufferSize);
+        emitter.onCompletion(() -> remove(subscriber));
+        emitter.onTimeout(emitter::complete);
+        emitter.onError(error -> remove(subscriber));
+        joining.add(subscriber);
+        return emitter;
+    }
+
+    /**
+     * Append a committed user change to the stream
+     * 将已提交的用户变更追加到流
+     *
+     * @param event User change event / 用户变更事件
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onUserChange(UserChangeEvent event) {
+        boolean appended = redisGuard.run(() -> redisTemplate.execute(APPEND, List.of(STREAM_KEY),
+            Long.toString(retention), feedType(event.getType()), event.getUserId().toString()));
+        if (!appended) {
+            resetPending = true;
+        }
+    }
+
+    /**
+     * Start a poll on the poll thread unless one is already queued or running
+     * 除非已有轮询在排队或运行，否则在轮询线程上启动一次轮询
+     *
+     * @description
+     * The XREAD and the per-subscriber XRANGE replays are Redis round trips that can
+     * stall while Redis is slow, so they do not run on the shared scheduler threads.
+     * XREAD 和每个订阅者的 XRANGE 重放都是 Redis 往返，在 Redis 变慢时可能阻塞，因此不在共享调度线程上运行。
+     */
+    @Scheduled(fixedDelayString = "${user-stream.poll-interval:PT0.5S}")
+    public void schedulePoll() {
+        if (polling.compareAndSet(false, true)) {
+            try {
+                poller.execute(() -> {
+                    try {
+                        poll();
+                    } finally {
+                        polling.set(false);
+                    }
+                });
+            } catch (RejectedExecutionException e) {
+                polling.set(false);
+            }
+        }
+    }
+
+    /**
+     * Dispatch new stream entries, then admit joining subscribers
+     * 分发新的流条目，然后接纳加入中的订阅者
+     *
+     * @description
+     * Runs only on the poll thread, so a joining subscriber is replayed exactly up to the
+     * last dispatched entry and receives everything after it live.
+     * 只在轮询线程上运行，因此加入的订阅者恰好重放到最后分发的条目，之后的一切都实时接收。
+     */
+    private void poll() {
+        dropStalled();
+        if (lastId == null) {
+            lastId = redisGuard.call(this::latestId, () -> null);
+            if (lastId == null) {
+                return;
+            }
+        }
+        List<MapRecord<String, Object, Object>> records;
+        do {
+            String from = lastId;
+            records = redisGuard.call(() -> readAfter(from), () -> null);
+            if (records == null) {
+                return;
+            }
+            if (resetPending) {
+                resetPending = false;
+                broadcast(reset(lastId));
+            }
+            for (MapRecord<String, Object, Object> record : records) {
+                lastId = record.getId().getValue();
+                broadcast(change(record));
+            }
+        } while (records.size() == READ_BATCH);
+
+        Subscriber subscriber;
+        while ((subscriber = joining.poll()) != null) {
+            join(subscriber);
+        }
+    }
+
+    /**
+     * Read the next batch of entries after the given id
+     * 读取给定 ID 之后的下一批条目
+     */
+    // StreamOperations has no single-offset overload; the varargs array holds one
+    // StreamOffset<String> and is only read by the template
+    // StreamOperations 没有单偏移量重载；可变参数数组只包含一个 StreamOffset<String>，且只被模板读取
+    @SuppressWarnings("unchecked")
+    private List<MapRecord<String, Object, Object>> readAfter(String from) {
+        return redisTemplate.opsForStream().read(StreamReadOptions.empty().count(READ_BATCH),
+            StreamOffset.create(STREAM_KEY, ReadOffset.from(from)));
+    }
+
+    /**
+     * Keep idle connections open and detect dead ones
+     * 保持空闲连接打开并发现已断开的连接
+     */
+    @Scheduled(fixedDelayString = "${user-stream.heartbeat-interval:PT30S}")
+    public void heartbeat() {
+        broadcast(HEARTBEAT);
+    }
+
+    /**
+     * Replay what the subscriber missed (or tell it to reload) and make it live
+     * 重放订阅者错过的内容（或通知其重新加载）并使其开始实时接收
+     */
+    private void join(Subscriber subscriber) {
+        String from = subscriber.resumeFrom;
+        if (from != null) {
+            String to = lastId;
+            List<MapRecord<String, Object, Object>> missed = STREAM_ID.matcher(from).matches()
+                ? redisGuard.call(() -> redisTemplate.opsForStream().range(STREAM_KEY, Range.closed(from, to),
+                    Limit.limit().count(bufferSize)), () -> null)
+                : null;
+            // Complete only if the range starts at the client's last event and reaches ours
+            // 只有当范围从客户端的最后一个事件开始并到达我们的位置时才完整
+            boolean complete = missed != null && !missed.isEmpty()
+                && missed.get(0).getId().getValue().equals(from)
+                && missed.get(missed.size() - 1).getId().getValue().equals(to);
+            if (complete) {
+                for (MapRecord<String, Object, Object> record : missed.subList(1, missed.size())) {
+                    subscriber.offer(change(record));
+                }
+            } else {
+                subscriber.offer(reset(lastId));
+            }
+        }
+        subscribers.add(subscriber);
+        schedule(subscriber);
+    }
+
+    /**
+     * Queue an event for every subscriber, disconnecting those that are full
+     * 为每个订阅者排队事件，断开缓冲区已满的订阅者
+     */
+    private void broadcast(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+        for (Subscriber subscriber : subscribers) {
+            if (!subscriber.offer(event)) {
+                drop(subscriber);
+            }
+            schedule(subscriber);
+        }
+    }
+
+    /**
+     * Drop subscribers whose current send has been blocked for too long
+     * 断开当前发送已阻塞过久的订阅者
+     *
+     * @description
+     * The emitter cannot be completed here: complete() waits for the blocked send.
+     * The sender completes it once the send returns, or removes it when the send fails.
+     * 这里不能完成发送器：complete() 会等待被阻塞的发送。发送返回后由发送线程完成它，发送失败时将其移除。
+     */
+    private void dropStalled() {
+        long limit = System.currentTimeMillis() - sendTimeout.toMillis();
+        for (Subscriber subscriber : subscribers) {
+            long started = subscriber.sendStartedAt.get();
+            // -1 marks the send as stalled; fails if the send returned meanwhile
+            // -1 将该发送标记为停滞；如果发送在此期间已返回则失败
+            if (started > 0 && started < limit && subscriber.sendStartedAt.compareAndSet(started, -1)) {
+                drop(subscriber);
+                resizeSenders(1);
+            }
+        }
+    }
+
+    /**
+     * Add or remove a replacement for a stalled sender
+     * 为停滞的发送线程添加或移除替代线程
+     */
+    private synchronized void resizeSenders(int delta) {
+        stalledSenders += delta;
+        int size = senderThreads + Math.min(stalledSenders, maxStalledSenders);
+        if (size > senders.getMaximumPoolSize()) {
+            senders.setMaximumPoolSize(size);
+            senders.setCorePoolSize(size);
+        } else if (size < senders.getCorePoolSize()) {
+            senders.setCorePoolSize(size);
+            senders.setMaximumPoolSize(size);
+        }
+    }
+
+    /**
+     * Disconnect a subscriber that cannot keep up
+     * 断开跟不上的订阅者
+     */
+    private void drop(Subscriber subscriber) {
+        if (subscribers.remove(subscriber)) {
+            subscriber.overflowed = true;
+            subscriber.queue.clear();
+            dropped.increment();
+        }
+    }
+
+    /**
+     * Make sure one sender is draining the subscriber's queue
+     * 确保有一个发送线程在清空订阅者的队列
+     */
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.draining.compareAndSet(false, true)) {
+            senders.execute(() -> drain(subscriber));
+        }
+    }
+
+    private void drain(Subscriber subscriber) {
+        do {
+            try {
+                Set<ResponseBodyEmitter.DataWithMediaType> event;
+                while (subscriber.isOpen() && (event = subscriber.queue.poll()) != null) {
+                    subscriber.sendStartedAt.set(System.currentTimeMillis());
+                    try {
+                        subscriber.emitter.send(event);
+                    } finally {
+                        if (subscriber.sendStartedAt.getAndSet(0) == -1) {
+                            resizeSenders(-1);
+                        }
+                    }
+                }
+                if (subscriber.overflowed && !subscriber.closed) {
+                    subscriber.closed = true;
+                    subscriber.emitter.complete();
+                }
+            } catch (Exception e) {
+                // Client went away; the container also reports it to onError
+                // 客户端已离开；容器也会将其报告给 onError
+                remove(subscriber);
+            }
+            subscriber.draining.set(false);
+        } while (subscriber.isOpen() && !subscriber.queue.isEmpty() && subscriber.draining.compareAndSet(false, true));
+    }
+
+    private void remove(Subscriber subscriber) {
+        subscriber.closed = true;
+        subscribers.remove(subscriber);
+        joining.remove(subscriber);
+    }
+
+    private String latestId() {
+        List<MapRecord<String, Object, Object>> latest = redisTemplate.opsForStream()
+            .reverseRange(STREAM_KEY, Range.unbounded(), Limit.limit().count(1));
+        return latest == null || latest.isEmpty() ? "0-0" : latest.get(0).getId().getValue();
+    }
+
+    private static Set<ResponseBodyEmitter.DataWithMediaType> change(MapRecord<String, Object, Object> record) {
+        String type = String.valueOf(record.getValue().get("type"));
+        return SseEmitter.event()
+            .id(record.getId().getValue())
+            .name(type)
+            .data("{\"type\":\"" + type + "\",\"id\":" + record.getValue().get("id") + "}")
+            .build();
+    }
+
+    private static Set<ResponseBodyEmitter.DataWithMediaType> reset(String id) {
+        return SseEmitter.event().id(id).name("reset").data("{\"type\":\"reset\"}").build();
+    }
+
+    private static String feedType(UserChangeEvent.Type type) {
+        return switch (type) {
+            case CREATED -> "created";
+            case DELETED -> "deleted";
+            case EMAIL_CHANGED, UPDATED -> "updated";
+        };
+    }
+
+    /**
+     * One connected client / 一个已连接的客户端
+     */
+    private static final class Subscriber {
+
+        private final SseEmitter emitter;
+        private final String resumeFrom;
+        private final BlockingQueue<Set<ResponseBodyEmitter.DataWithMediaType>> queue;
+        private final AtomicBoolean draining = new AtomicBoolean();
+
+        /**
+         * Completed or failed; nothing more is sent / 已完成或失败；不再发送任何内容
+         */
+        private volatile boolean closed;
+
+        /**
+         * Too slow, to be completed by its sender / 过慢，由其发送线程完成
+         */
+        private volatile boolean overflowed;
+
+        /**
+         * Start of the send in progress (epoch ms), 0 if none, -1 once found stalled
+         * 进行中发送的开始时间（纪元毫秒），没有时为 0，被发现停滞后为 -1
+         */
+        private final AtomicLong sendStartedAt = new AtomicLong();
+
+        Subscriber(SseEmitter emitter, String resumeFrom, int bufferSize) {
+            this.emitter = emitter;
+            this.resumeFrom = resumeFrom;
+            this.queue = new ArrayBlockingQueue<>(bufferSize);
+        }
+
+        boolean isOpen() {
+            return !closed && !overflowed;
+        }
+
+        boolean offer(Set<ResponseBodyEmitter.DataWithMediaType> event) {
+            return !isOpen() || queue.offer(event);
+        }
+    }
+}
@@ -0,0 +1,257 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.UserOutboxEntry;
+import com.example.demo.event.UserChangeEvent;
+import com.example.demo.repository.ShardContext;
+import com.example.demo.repository.ShardRouter;
+import com.example.demo.repository.UserOutboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * UserOutboxPublisher - Transactional Outbox for User Change Events
+ * 用户发件箱发布器 - 用户变更事件的事务发件箱
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Publishes every user change to the Redis stream users:events for downstream systems
+ * (search, analytics, other services' caches), without adding a Redis call to the
+ * request and without losing changes when Redis is down:
+ * - each UserChangeEvent is saved to user_outbox just before its transaction commits,
+ *   so the entry exists if and only if the change does;
+ * - every user-outbox.poll-interval, each pod claims batches of entries per shard with
+ *   SELECT ... FOR UPDATE SKIP LOCKED, appends them with one Lua script (one
+ *   round-trip, all or nothing) and deletes them in the same transaction. Pods never
+ *   wait on each other's batches; if Redis fails the transaction rolls back and the
+ *   batch is retried later.
+ *
+ * Entries: eventId (shard-id), type, userId, email, role, occurredAt. Delivery is at
+ * least once (a pod dying between the append and the commit republishes its batch) and
+ * ordered per shard only while a single pod publishes, so consumers should dedupe on
+ * eventId and treat entries as "this user changed".
+ *
+ * Metrics: app.user_outbox.lag (age of the oldest entry claimed by the last run),
+ * app.user_outbox.batch_size, app.user_outbox.published and app.user_outbox.failed.
+ *
+ * 将每个用户变更发布到 Redis 流 users:events，供下游系统（搜索、分析、其他服务的缓存）使用，
+ * 既不在请求中增加 Redis 调用，也不会在 Redis 故障时丢失变更：
+ * - 每个 UserChangeEvent 在其事务提交前保存到 user_outbox，因此条目当且仅当变更存在时才存在；
+ * - 每隔 user-outbox.poll-interval，每个 Pod 按分片用 SELECT ... FOR UPDATE SKIP LOCKED
+ *   认领一批条目，用一个 Lua 脚本追加（一次往返，要么全部要么没有），并在同一事务中删除它们。
+ *   Pod 之间从不互相等待批次；如果 Redis 失败，事务回滚，该批次稍后重试。
+ *
+ * 条目：eventId（分片-ID）、type、userId、email、role、occurredAt。投递至少一次（Pod 在追加与提交之间
+ * 崩溃会重新发布其批次），且仅在单个 Pod 发布时按分片有序，因此消费者应按 eventId 去重，
+ * 并将条目视为"该用户已变更"。
+ *
+ * 指标：app.user_outbox.lag（上次运行认领的最早条目的存在时长）、app.user_outbox.batch_size、
+ * app.user_outbox.published 和 app.user_outbox.failed。
+ */
+@Service
+public class UserOutboxPublisher {
+
+    private static final Logger log = LoggerFactory.getLogger(UserOutboxPublisher.class);
+
+    public static final String STREAM_KEY = "users:events";
+
+    /**
+     * Append a batch of entries (six fields each) and trim the stream (approximate MAXLEN)
+     * 追加一批条目（每个六个字段）并修剪流（近似 MAXLEN）
+     */
+    private static final RedisScript<Long> APPEND = new DefaultRedisScript<>(
+        "for i = 2, #ARGV, 6 do "
+            + "  redis.call('XADD', KEYS[1], 'MAXLEN', '~', ARGV[1], '*', 'eventId', ARGV[i], 'type', ARGV[i + 1], "
+            + "    'userId', ARGV[i + 2], 'email', ARGV[i + 3], 'role', ARGV[i + 4], 'occurredAt', ARGV[i + 5]) "
+            + "end "
+            + "return (#ARGV - 1) / 6",
+        Long.class);
+
+    /**
+     * Entries claimed per transaction / 每个事务认领的条目数
+     */
+    @Value("${user-outbox.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Batches per shard and run, so one run never holds the scheduler thread for long
+     * 每个分片每次运行的批次数，使一次运行不会长时间占用调度线程
+     */
+    @Value("${user-outbox.max-batches-per-run:10}")
+    private int maxBatchesPerRun;
+
+    /**
+     * Stream entries kept for consumers / 为消费者保留的流条目数
+     */
+    @Value("${user-outbox.stream-max-length:100000}")
+    private long streamMaxLength;
+
+    @Autowired
+    private UserOutboxRepository outboxRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    private TransactionTemplate transactionTemplate;
+
+    private DistributionSummary batchSizes;
+
+    private Counter published;
+
+    private Counter failed;
+
+    /**
+     * Lag measured by the last run / 上次运行测得的延迟
+     */
+    private volatile Duration lag = Duration.ZERO;
+
+    /**
+     * Register metrics
+     * 注册指标
+     */
+    @PostConstruct
+    public void init() {
+        transactionTemplate = new TransactionTemplate(transactionManager);
+        batchSizes = DistributionSummary.builder("app.user_outbox.batch_size")
+            .description("User change events per published outbox batch")
+            .register(meterRegistry);
+        published = Counter.builder("app.user_outbox.published")
+            .description("User change events published from the outbox")
+            .register(meterRegistry);
+        failed = Counter.builder("app.user_outbox.failed")
+            .description("Outbox batches rolled back and left for retry")
+            .register(meterRegistry);
+        Gauge.builder("app.user_outbox.lag", this, self -> self.lag.toMillis() / 1000.0)
+            .description("Age in seconds of the oldest outbox entry claimed by the last run")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Record a user change in the outbox, in the transaction that makes it
+     * 在执行变更的事务中将用户变更记录到发件箱
+     *
+     * @param event User change event / 用户变更事件
+     */
+    @TransactionalEventListener(phase = TransactionPhase.BEFORE_COMMIT)
+    public void record(UserChangeEvent event) {
+        outboxRepository.save(new UserOutboxEntry(event.getType().name(), event.getUserId(), event.getEmail(),
+            event.getRole(), LocalDateTime.now()));
+    }
+
+    /**
+     * Publish pending entries of every shard
+     * 发布每个分片的待处理条目
+     */
+    @Scheduled(fixedDelayString = "${user-outbox.poll-interval:PT1S}")
+    public void publish() {
+        Duration oldest = Duration.ZERO;
+        for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+            for (int i = 0; i < maxBatchesPerRun; i++) {
+                BatchResult result;
+                try {
+                    result = publishBatch(shard);
+                } catch (RuntimeException e) {
+                    failed.increment();
+                    log.warn("User outbox publish failed on shard {}, will retry: {}", shard, e.toString());
+                    break;
+                }
+                if (i == 0 && result.age.compareTo(oldest) > 0) {
+                    oldest = result.age;
+                }
+                if (!result.complete) {
+                    failed.increment();
+                    break;
+                }
+                if (result.count > 0) {
+                    batchSizes.record(result.count);
+                    published.increment(result.count);
+                }
+                if (result.count < batchSize) {
+                    break;
+                }
+            }
+        }
+        lag = oldest;
+    }
+
+    /**
+     * Claim, append and delete one batch of a shard
+     * 认领、追加并删除某个分片的一批条目
+     */
+    private BatchResult publishBatch(int shard) {
+        return Objects.requireNonNull(transactionTemplate.execute(status -> {
+            if (shardRouter.isSharded()) {
+                ShardContext.bind(shard);
+            }
+            List<UserOutboxEntry> batch = outboxRepository.claimBatch(batchSize);
+            if (batch.isEmpty()) {
+                return new BatchResult(0, Duration.ZERO, true);
+            }
+            Duration age = Duration.between(batch.get(0).getCreatedAt(), LocalDateTime.now());
+            if (!redisGuard.run(() -> redisTemplate.execute(APPEND, List.of(STREAM_KEY), appendArgs(shard, batch)))) {
+                status.setRollbackOnly();
+                return new BatchResult(0, age, false);
+            }
+            outboxRepository.deleteByIds(batch.stream().map(UserOutboxEntry::getId).toList());
+            return new BatchResult(batch.size(), age, true);
+        }));
+    }
+
+    private Object[] appendArgs(int shard, List<UserOutboxEntry> batch) {
+        List<String> args = new ArrayList<>(1 + batch.size() * 6);
+        args.add(Long.toString(streamMaxLength));
+        for (UserOutboxEntry entry : batch) {
+            args.add(shard + "-" + entry.getId());
+            args.add(entry.getEventType());
+            args.add(entry.getUserId().toString());
+            args.add(entry.getEmail() != null ? entry.getEmail() : "");
+            args.add(entry.getRole() != null ? entry.getRole().name() : "");
+            args.add(entry.getCreatedAt().toString());
+        }
+        return args.toArray();
+    }
+
+    /**
+     * Outcome of one batch: entries published, age of its oldest entry, whether Redis accepted it
+     * 一个批次的结果：发布的条目数、最早条目的存在时长、Redis 是否接受
+     */
+    private record BatchResult(int count, Duration age, boolean complete) {
+    }
+}
@@ -1,14 +1,33 @@
 package com.example.demo.service;
 
+import com.example.demo.config.RedisConfig;
+import com.example.demo.dto.UserLookup;
+import com.example.demo.dto.UserResponse;
 import com.example.demo.entity.User;
+import com.example.demo.event.UserChangeEvent;
+import com.example.demo.repository.ReplicaContext;
+import com.example.demo.repository.UserField;
 import com.example.demo.repository.UserRepository;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.redis.connection.RedisStringCommands;
+import org.springframework.data.redis.core.RedisCallback;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.types.Expiration;
+import org.springframework.data.redis.serializer.Jackson2JsonRedisSerializer;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 /**
  * UserService - User Business Logic Service
@@ -21,9 +40,19 @@ import java.util.Optional;
  * @description
  * This service class provides business logic for user management operations.
  * It handles user CRUD operations with caching support and transaction management.
+ * Query methods run in read-only transactions, which are served by a read replica
+ * when replica routing is enabled. Reads are column projections (UserResponse), so
+ * no entity is loaded and the password hash is never read. Caches hold the default
+ * projection ("user" by id, "users" for the full list) and are evicted by the write
+ * methods here; sparse projections (fields=...) are not cached. Batched lookups by id
+ * share the "user" entries.
  * 
  * 该服务类提供用户管理操作的业务逻辑。
  * 它处理用户 CRUD 操作，支持缓存和事务管理。
+ * 查询方法在只读事务中运行，启用副本路由时由读副本提供服务。
+ * 读取为列投影（UserResponse），因此不加载实体，也从不读取密码哈希。
+ * 缓存保存默认投影（"user" 按 ID，"users" 为完整列表），并由此处的写方法清除；
+ * 稀疏投影（fields=...）不缓存。按 ID 的批量查找共享 "user" 条目。
  */
 @Service
 @Transactional
@@ -36,6 +65,62 @@ public class UserService {
     @Autowired
     private UserRepository userRepository;
     
+    /**
+     * ApplicationEventPublisher - Publishes user change events
+     * 应用事件发布器 - 发布用户变更事件
+     */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    /**
+     * RegisteredEmailFilter - Skips email existence queries for unknown emails
+     * 已注册邮箱过滤器 - 对未知邮箱跳过存在性查询
+     */
+    @Autowired
+    private RegisteredEmailFilter registeredEmails;
+    
+    /**
+     * RedisTemplate - Direct access to the "user" cache for batched lookups
+     * Redis 模板 - 批量查找时直接访问 "user" 缓存
+     */
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+    
+    /**
+     * Serializer of "user" cache entries (shared with the cache manager)
+     * "user" 缓存条目的序列化器（与缓存管理器共享）
+     */
+    @Autowired
+    private Jackson2JsonRedisSerializer<UserResponse> userCacheSerializer;
+    
+    /**
+     * RedisGuard - Circuit breaker for the direct cache access
+     * Redis 熔断器 - 用于直接缓存访问
+     */
+    @Autowired
+    private RedisGuard redisGuard;
+    
+    /**
+     * Negative cache for user ids that do not exist
+     * 不存在的用户 ID 的负缓存
+     */
+    @Autowired
+    private MissingUserCache missingUsers;
+    
+    /**
+     * Hot-key tracker and local tier of the "user" cache
+     * "user" 缓存的热点键跟踪器和本地层
+     */
+    @Autowired
+    private HotUserCache hotUsers;
+    
+    /**
+     * Peer-to-peer "user" cache, used instead of Redis when enabled
+     * 对等 "user" 缓存，启用时代替 Redis
+     */
+    @Autowired
+    private PeerCacheService peerCache;
+    
     /**
      * Get all users
      * 获取所有用户
@@ -43,14 +128,30 @@ public class UserService {
      * @return List of all users / 所有用户的列表
      * @description
      * Retrieves all users from the database. Results are cached in Redis
-     * with key "users::all" to improve performance.
+     * with key "users::all" to improve performance. The list is read from the primary:
+     * the entry is shared by every pod for CACHE_TTL, and a lagging replica read right
+     * after a write would re-cache the rows that the write's eviction just removed.
      * 
      * 从数据库检索所有用户。结果缓存在 Redis 中，
-     * 键为 "users::all" 以提高性能。
+     * 键为 "users::all" 以提高性能。列表从主库读取：该条目在 CACHE_TTL 内由所有 Pod 共享，
+     * 写入后立即在延迟的副本上读取会把写入刚刚驱逐的旧行重新缓存。
      */
     @Cacheable(value = "users", key = "'all'")
-    public List<User> getAllUsers() {
-        return userRepository.findAll();
+    @Transactional(readOnly = true)
+    public List<UserResponse> getAllUsers() {
+        return ReplicaContext.onPrimary(() -> userRepository.findAllProjected(UserField.ALL));
+    }
+    
+    /**
+     * Get all users with only the requested fields
+     * 获取只包含请求字段的所有用户
+     * 
+     * @param fields Requested fields / 请求的字段
+     * @return Projected users / 投影用户
+     */
+    @Transactional(readOnly = true)
+    public List<UserResponse> getAllUsers(Set<UserField> fields) {
+        return userRepository.findAllProjected(fields);
     }
     
     /**
@@ -59,9 +160,96 @@ public class UserService {
      * 
      * @param id User ID / 用户 ID
      * @return Optional containing user if found / 如果找到则包含用户的 Optional
+     * @description
+     * Found users are cached in Redis with key "user::{id}"; misses are remembered by
+     * MissingUserCache, so ids that do not exist are not queried again. Like
+     * getAllUsers, the cached copy is loaded from the primary, not a replica.
+     * 找到的用户以键 "user::{id}" 缓存在 Redis 中；未命中由 MissingUserCache 记住，
+     * 因此不存在的 ID 不会被再次查询。与 getAllUsers 一样，缓存副本从主库而非副本加载。
+     */
+    @Cacheable(value = "user", key = "#id", unless = "#result == null")
+    @Transactional(readOnly = true)
+    public Optional<UserResponse> getUserById(Long id) {
+        return ReplicaContext.onPrimary(() -> findProjectedById(id, UserField.ALL));
+    }
+    
+    /**
+     * Get user by ID with only the requested fields
+     * 根据 ID 获取只包含请求字段的用户
+     * 
+     * @param id User ID / 用户 ID
+     * @param fields Requested fields / 请求的字段
+     * @return Optional containing the projected user if found / 如果找到则包含投影用户的 Optional
+     */
+    @Transactional(readOnly = true)
+    public Optional<UserResponse> getUserById(Long id, Set<UserField> fields) {
+        return findProjectedById(id, fields);
+    }
+    
+    /**
+     * Get several users by ID
+     * 根据 ID 获取多个用户
+     * 
+     * @param ids User IDs, duplicates allowed / 用户 ID，允许重复
+     * @return One entry per requested id, in request order / 每个请求的 ID 一个条目，按请求顺序
+     * @description
+     * Reads the same "user::{id}" entries as getUserById, in one MGET; the misses are
+     * loaded with a single IN query and written back to the cache in one pipeline.
+     * Hot users are served from HotUserCache without a round-trip, and ids known not to
+     * exist are left out of the query. While Redis is unavailable every other id is read
+     * from the database and nothing is written back. With the peer cache enabled the
+     * entries are read and written with one request per owning pod instead. Misses that
+     * are written back are loaded from the primary, as in getUserById.
+     * 
+     * 读取与 getUserById 相同的 "user::{id}" 条目，只需一次 MGET；未命中的用户通过一次 IN 查询加载，
+     * 并在一个流水线中写回缓存。热点用户由 HotUserCache 直接提供，无需往返；已知不存在的 ID 不参与查询。
+     * Redis 不可用时其他所有 ID 都从数据库读取，且不写回。启用对等缓存时，改为每个所有者 Pod 一次请求读写条目。
+     * 需要写回的未命中用户与 getUserById 一样从主库加载。
      */
-    public Optional<User> getUserById(Long id) {
-        return userRepository.findById(id);
+    @Transactional(readOnly = true)
+    public List<UserLookup> getUsersByIds(List<Long> ids) {
+        Map<Long, UserResponse> users = new HashMap<>();
+        List<Long> remote = new ArrayList<>();
+        for (Long id : ids.stream().distinct().toList()) {
+            hotUsers.record(id);
+            UserResponse user = hotUsers.getLocal(id);
+            if (user != null) {
+                users.put(id, user);
+            } else {
+                remote.add(id);
+            }
+        }
+        
+        long hotStamp = hotUsers.stamp();
+        List<byte[]> cached = remote.isEmpty() ? List.of() : readCachedUsers(remote);
+        
+        List<Long> misses = new ArrayList<>();
+        for (int i = 0; i < remote.size(); i++) {
+            byte[] value = cached != null ? cached.get(i) : null;
+            if (value != null) {
+                UserResponse user = userCacheSerializer.deserialize(value);
+                users.put(remote.get(i), user);
+                hotUsers.offer(user, hotStamp);
+            } else if (!missingUsers.isKnownMissing(remote.get(i))) {
+                misses.add(remote.get(i));
+            }
+        }
+        if (!misses.isEmpty()) {
+            long stamp = missingUsers.stamp();
+            List<UserResponse> loaded = cached != null
+                ? ReplicaContext.onPrimary(() -> userRepository.findProjectedByIds(misses, UserField.ALL))
+                : userRepository.findProjectedByIds(misses, UserField.ALL);
+            loaded.forEach(user -> users.put(user.id(), user));
+            if (cached != null && !loaded.isEmpty()) {
+                cacheUsers(loaded);
+            }
+            for (Long id : misses) {
+                if (!users.containsKey(id)) {
+                    missingUsers.recordMissing(id, stamp);
+                }
+            }
+        }
+        return ids.stream().map(id -> UserLookup.of(id, users.get(id))).toList();
     }
     
     /**
@@ -71,6 +259,7 @@ public class UserService {
      * @param email User email address / 用户邮箱地址
      * @return Optional containing user if found / 如果找到则包含用户的 Optional
      */
+    @Transactional(readOnly = true)
     public Optional<User> getUserByEmail(String email) {
         return userRepository.findByEmail(email);
     }
@@ -84,13 +273,22 @@ public class UserService {
      * @throws RuntimeException if email already exists / 如果邮箱已存在则抛出运行时异常
      * @description
      * Creates a new user after validating that the email is unique.
-     * 在验证邮箱唯一后创建新用户。
+     * Clears the users list cache.
+     * 在验证邮箱唯一后创建新用户。清除用户列表缓存。
      */
+    @CacheEvict(value = "users", key = "'all'")
     public User createUser(User user) {
-        if (userRepository.existsByEmail(user.getEmail())) {
+        if (registeredEmails.isRegistered(user.getEmail())) {
             throw new RuntimeException("User with email " + user.getEmail() + " already exists");
         }
-        return userRepository.save(user);
+        // Ids are always allocated server-side / ID 始终由服务端分配
+        user.setId(null);
+        user.setCreatedAt(null);
+        user.setVersion(null);
+        User created = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangeEvent(UserChangeEvent.Type.CREATED,
+            created.getId(), created.getEmail(), created.getRole(), created.getCreatedAt()));
+        return created;
     }
     
     /**
@@ -101,18 +299,24 @@ public class UserService {
      * @param userDetails Updated user data / 更新的用户数据
      * @return Updated user object / 更新的用户对象
      * @throws RuntimeException if user not found or email already exists / 如果用户未找到或邮箱已存在则抛出运行时异常
+     * @throws org.springframework.dao.OptimisticLockingFailureException if the user changed concurrently / 如果用户被并发修改
      * @description
      * Updates user information. Validates that the new email (if changed) is unique.
-     * 更新用户信息。验证新邮箱（如果更改）是否唯一。
+     * Clears the cached user and the users list.
+     * 更新用户信息。验证新邮箱（如果更改）是否唯一。清除缓存的用户和用户列表。
      */
+    @Caching(evict = {
+        @CacheEvict(value = "user", key = "#id"),
+        @CacheEvict(value = "users", key = "'all'")
+    })
     public User updateUser(Long id, User userDetails) {
         User user = userRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
         
         // Check if email is being changed and if new email already exists
         // 检查邮箱是否正在更改以及新邮箱是否已存在
-        if (!user.getEmail().equals(userDetails.getEmail()) && 
-            userRepository.existsByEmail(userDetails.getEmail())) {
+        boolean emailChanged = !user.getEmail().equals(userDetails.getEmail());
+        if (emailChanged && registeredEmails.isRegistered(userDetails.getEmail())) {
             throw new RuntimeException("User with email " + userDetails.getEmail() + " already exists");
         }
         
@@ -121,7 +325,50 @@ public class UserService {
         user.setEmail(userDetails.getEmail());
         user.setPhone(userDetails.getPhone());
         
-        return userRepository.save(user);
+        User updated = userRepository.save(user);
+        eventPublisher.publishEvent(new UserChangeEvent(
+            emailChanged ? UserChangeEvent.Type.EMAIL_CHANGED : UserChangeEvent.Type.UPDATED,
+            updated.getId(), updated.getEmail(), updated.getRole(), updated.getCreatedAt()));
+        return updated;
+    }
+    
+    /**
+     * Partially update a user at an expected version
+     * 按预期版本部分更新用户
+     * 
+     * @param id User ID to update / 要更新的用户 ID
+     * @param version Version the client read / 客户端读取到的版本
+     * @param changes New values of name, email and/or phone / name、email 和/或 phone 的新值
+     * @return Updated user object, with its new version / 更新后的用户对象，带有新版本
+     * @throws VersionConflictException if the user is at another version / 如果用户处于其他版本
+     * @throws org.springframework.dao.DataIntegrityViolationException if the email belongs to another user / 如果邮箱属于其他用户
+     * @throws RuntimeException if user not found / 如果用户未找到则抛出运行时异常
+     * @description
+     * One conditional UPDATE (see UserRepositoryCustom.updateIfVersion) instead of
+     * findById, an email check and a merge, so concurrent writers cannot overwrite each
+     * other; the user is read back only to return it. A patch carrying an email is
+     * published as EMAIL_CHANGED. Clears the cached user and the users list.
+     * 
+     * 用一条条件 UPDATE（参见 UserRepositoryCustom.updateIfVersion）代替 findById、邮箱检查和合并，
+     * 因此并发写入者无法互相覆盖；之后仅为返回而读回用户。携带邮箱的补丁以 EMAIL_CHANGED 发布。
+     * 清除缓存的用户和用户列表。
+     */
+    @Caching(evict = {
+        @CacheEvict(value = "user", key = "#id"),
+        @CacheEvict(value = "users", key = "'all'")
+    })
+    public User patchUser(Long id, long version, Map<UserField, Object> changes) {
+        if (userRepository.updateIfVersion(id, version, changes) == 0) {
+            User current = userRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
+            throw new VersionConflictException(id, version, current.getVersion());
+        }
+        User updated = userRepository.findById(id)
+            .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
+        eventPublisher.publishEvent(new UserChangeEvent(
+            changes.containsKey(UserField.EMAIL) ? UserChangeEvent.Type.EMAIL_CHANGED : UserChangeEvent.Type.UPDATED,
+            updated.getId(), updated.getEmail(), updated.getRole(), updated.getCreatedAt()));
+        return updated;
     }
     
     /**
@@ -131,13 +378,102 @@ public class UserService {
      * @param id User ID to delete / 要删除的用户 ID
      * @throws RuntimeException if user not found / 如果用户未找到则抛出运行时异常
      * @description
-     * Deletes a user from the database.
-     * 从数据库中删除用户。
+     * Deletes a user from the database. Clears the cached user and the users list.
+     * 从数据库中删除用户。清除缓存的用户和用户列表。
      */
+    @Caching(evict = {
+        @CacheEvict(value = "user", key = "#id"),
+        @CacheEvict(value = "users", key = "'all'")
+    })
     public void deleteUser(Long id) {
         User user = userRepository.findById(id)
             .orElseThrow(() -> new RuntimeException("User not found with id: " + id));
         userRepository.delete(user);
+        eventPublisher.publishEvent(new UserChangeEvent(UserChangeEvent.Type.DELETED,
+            user.getId(), user.getEmail(), user.getRole(), user.getCreatedAt()));
+    }
+    
+    /**
+     * Read "user" cache entries in one MGET, or one request per peer
+     * 通过一次 MGET 或每个对等节点一次请求读取 "user" 缓存条目
+     * 
+     * @return Serialized entries in id order, null while Redis is unavailable / 按 ID 顺序的序列化条目，Redis 不可用时为 null
+     */
+    private List<byte[]> readCachedUsers(List<Long> ids) {
+        if (peerCache.isEnabled()) {
+            return peerCache.getAll("user", ids.stream().map(String::valueOf).toList());
+        }
+        byte[][] keys = ids.stream().map(UserService::userCacheKey).toArray(byte[][]::new);
+        return redisGuard.call(
+            () -> redisTemplate.execute((RedisCallback<List<byte[]>>) connection ->
+                connection.stringCommands().mGet(keys)),
+            () -> null);
+    }
+    
+    /**
+     * Write users to the "user" cache in one pipeline, or one request per peer
+     * 在一个流水线中，或每个对等节点一次请求，将用户写入 "user" 缓存
+     */
+    private void cacheUsers(List<UserResponse> users) {
+        if (peerCache.isEnabled()) {
+            Map<String, byte[]> entries = new HashMap<>();
+            users.forEach(user -> entries.put(String.valueOf(user.id()), userCacheSerializer.serialize(user)));
+            peerCache.putAll("user", entries);
+            return;
+        }
+        Expiration ttl = Expiration.from(RedisConfig.CACHE_TTL);
+        redisGuard.run(() -> redisTemplate.executePipelined((RedisCallback<Object>) connection -> {
+            for (UserResponse user : users) {
+                connection.stringCommands().set(userCacheKey(user.id()), userCacheSerializer.serialize(user),
+                    ttl, RedisStringCommands.SetOption.upsert());
+            }
+            return null;
+        }));
+    }
+    
+    /**
+     * Load a user unless it is known not to exist, and remember a miss
+     * 加载用户（除非已知其不存在），并记住未命中
+     */
+    private Optional<UserResponse> findProjectedById(Long id, Set<UserField> fields) {
+        if (missingUsers.isKnownMissing(id)) {
+            return Optional.empty();
+        }
+        long stamp = missingUsers.stamp();
+        Optional<UserResponse> user = userRepository.findProjectedById(id, fields);
+        if (user.isEmpty()) {
+            missingUsers.recordMissing(id, stamp);
+        }
+        return user;
+    }
+    
+    private static byte[] userCacheKey(Long id) {
+        return (RedisConfig.USER_CACHE_PREFIX + id).getBytes(StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Thrown when a conditional update finds the user at another version
+     * 条件更新发现用户处于其他版本时抛出
+     */
+    public static class VersionConflictException extends RuntimeException {
+        
+        private final long currentVersion;
+        
+        /**
+         * Constructor for VersionConflictException
+         * VersionConflictException 构造函数
+         * 
+         * @param id User ID / 用户 ID
+         * @param expected Version the client read / 客户端读取到的版本
+         * @param current Current version / 当前版本
+         */
+        public VersionConflictException(Long id, long expected, long current) {
+            super("User " + id + " was modified: expected version " + expected + ", current version " + current);
+            this.currentVersion = current;
+        }
+        
+        public long getCurrentVersion() {
+            return currentVersion;
+        }
     }
 }
-
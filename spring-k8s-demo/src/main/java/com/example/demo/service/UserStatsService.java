@@ -0,0 +1,357 @@
+package com.example.demo.service;
+
+import com.example.demo.entity.Role;
+import com.example.demo.event.UserChangeEvent;
+import com.example.demo.repository.ShardRouter;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.event.TransactionPhase;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * UserStatsService - Incrementally Maintained User Statistics
+ * 用户统计服务 - 增量维护的用户统计
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Keeps user counts in three Redis hashes so that reading statistics costs the same
+ * whatever the table size:
+ * - stats:{users}         total and role:&lt;ROLE&gt; counters
+ * - stats:{users}:daily   users per signup day (yyyy-MM-dd of created_at)
+ * - stats:{users}:hourly  users per signup hour (yyyy-MM-ddTHH), last stats.hourly-retention
+ *
+ * Counters are updated by one Lua script per committed UserChangeEvent, so all hashes
+ * move together. Increments skipped while Redis is unavailable mark the statistics
+ * dirty; a scheduled job rebuilds them from the database when dirty and every
+ * stats.reconcile-interval (one pod at a time, guarded by a Redis lock). Changes that
+ * commit while a rebuild is in flight can be missed until the next reconciliation.
+ *
+ * 将用户计数保存在三个 Redis 哈希中，使读取统计的成本与表大小无关：
+ * - stats:{users}         总数和 role:&lt;ROLE&gt; 计数器
+ * - stats:{users}:daily   按注册日期（created_at 的 yyyy-MM-dd）统计的用户数
+ * - stats:{users}:hourly  按注册小时（yyyy-MM-ddTHH）统计的用户数，保留 stats.hourly-retention
+ *
+ * 每个已提交的 UserChangeEvent 通过一个 Lua 脚本更新计数器，使所有哈希同步变化。
+ * Redis 不可用期间跳过的增量会将统计标记为脏；定时任务在统计为脏时以及每隔
+ * stats.reconcile-interval 从数据库重建统计（每次只有一个 Pod，由 Redis 锁保护）。
+ * 重建进行期间提交的变更可能要到下一次对账时才会体现。
+ */
+@Service
+public class UserStatsService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserStatsService.class);
+
+    private static final String TOTALS_KEY = "stats:{users}";
+    private static final String DAILY_KEY = "stats:{users}:daily";
+    private static final String HOURLY_KEY = "stats:{users}:hourly";
+    private static final String LOCK_KEY = "stats:{users}:reconcile-lock";
+
+    private static final DateTimeFormatter DAY = DateTimeFormatter.ofPattern("yyyy-MM-dd");
+    private static final DateTimeFormatter HOUR = DateTimeFormatter.ofPattern("yyyy-MM-dd'T'HH");
+
+    /**
+     * Atomically apply one user change to all counters
+     * 原子地将一次用户变更应用到所有计数器
+     */
+    private static final RedisScript<Long> APPLY_CHANGE = new DefaultRedisScript<>(
+        "redis.call('HINCRBY', KEYS[1], 'total', ARGV[1]) "
+            + "redis.call('HINCRBY', KEYS[1], 'role:' .. ARGV[2], ARGV[1]) "
+            + "redis.call('HINCRBY', KEYS[2], ARGV[3], ARGV[1]) "
+            + "redis.call('HINCRBY', KEYS[3], ARGV[4], ARGV[1]) "
+            + "return 1",
+        Long.class);
+
+    /**
+     * Full rebuild interval / 完整重建间隔
+     */
+    @Value("${stats.reconcile-interval:15m}")
+    private Duration reconcileInterval;
+
+    /**
+     * Hourly buckets kept / 保留的小时桶
+     */
+    @Value("${stats.hourly-retention:48h}")
+    private Duration hourlyRetention;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private RedisGuard redisGuard;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    private final String instanceId = UUID.randomUUID().toString();
+
+    /**
+     * Counters may be behind the database / 计数器可能落后于数据库
+     */
+    private volatile boolean dirty = true;
+
+    private volatile long lastReconciledAt;
+
+    /**
+     * Rebuild after a Redis outage
+     * Redis 故障后重建
+     */
+    @PostConstruct
+    public void init() {
+        redisGuard.onRecovery(() -> dirty = true);
+    }
+
+    /**
+     * Apply a committed user change to the counters
+     * 将已提交的用户变更应用到计数器
+     *
+     * @param event User change event / 用户变更事件
+     */
+    @TransactionalEventListener(phase = TransactionPhase.AFTER_COMMIT)
+    public void onUserChange(UserChangeEvent event) {
+        if (event.getType() != UserChangeEvent.Type.CREATED && event.getType() != UserChangeEvent.Type.DELETED) {
+            return;
+        }
+        String delta = event.getType() == UserChangeEvent.Type.CREATED ? "1" : "-1";
+        LocalDateTime createdAt = event.getCreatedAt() != null ? event.getCreatedAt() : LocalDateTime.now();
+        boolean applied = redisGuard.run(() -> redisTemplate.execute(APPLY_CHANGE,
+            List.of(TOTALS_KEY, DAILY_KEY, HOURLY_KEY),
+            delta, event.getRole().name(), DAY.format(createdAt), HOUR.format(createdAt)));
+        if (!applied) {
+            dirty = true;
+        }
+    }
+
+    /**
+     * Get user statistics
+     * 获取用户统计
+     *
+     * @param days Number of most recent days to return / 返回的最近天数
+     * @param hours Number of most recent hours to return / 返回的最近小时数
+     * @return Statistics map / 统计数据
+     * @description
+     * Reads only the requested buckets (HGETALL of the small totals hash plus HMGET of
+     * days + hours fields). Falls back to counting in the database while Redis is down.
+     * If the counters were never built, they are rebuilt outside the Redis guard (the
+     * database scan must not count as a slow Redis call) and the database counts are
+     * returned, also when another pod holds the rebuild lock.
+     *
+     * 只读取请求的桶（小型总数哈希的 HGETALL 加上 days + hours 个字段的 HMGET）。
+     * Redis 宕机时回退到在数据库中计数。如果计数器从未构建，则在 Redis 保护之外重建
+     * （数据库扫描不能算作慢 Redis 调用），并返回数据库计数，其他 Pod 持有重建锁时也是如此。
+     */
+    public Map<String, Object> getStats(int days, int hours) {
+        LocalDateTime now = LocalDateTime.now();
+        List<String> dayFields = new ArrayList<>(days);
+        for (int i = days - 1; i >= 0; i--) {
+            dayFields.add(DAY.format(now.minusDays(i)));
+        }
+        List<String> hourFields = new ArrayList<>(hours);
+        for (int i = hours - 1; i >= 0; i--) {
+            hourFields.add(HOUR.format(now.minusHours(i)));
+        }
+        Map<String, Object> stats = redisGuard.call(() -> readFromRedis(dayFields, hourFields), () -> null);
+        if (stats != null && !stats.isEmpty()) {
+            return stats;
+        }
+        Snapshot snapshot = stats != null ? rebuild() : null;
+        if (snapshot == null) {
+            snapshot = computeFromDatabase(now);
+        }
+        stats = format(snapshot.totals, pick(snapshot.daily, dayFields), pick(snapshot.hourly, hourFields));
+        stats.put("source", "database");
+        return stats;
+    }
+
+    /**
+     * Rebuild the counters when dirty or when the reconcile interval has elapsed
+     * 在统计为脏或对账间隔已过时重建计数器
+     */
+    @Scheduled(fixedDelayString = "${stats.reconcile-check-interval:PT10S}",
+               initialDelayString = "${stats.reconcile-check-interval:PT10S}")
+    public void reconcileIfDue() {
+        boolean due = System.currentTimeMillis() - lastReconciledAt >= reconcileInterval.toMillis();
+        if ((dirty || due) && !redisGuard.isOpen()) {
+            reconcile();
+        }
+    }
+
+    /**
+     * Rebuild all counters from the database
+     * 从数据库重建所有计数器
+     */
+    public void reconcile() {
+        rebuild();
+    }
+
+    /**
+     * Rebuild all counters from the database unless another pod rebuilt them recently
+     * 从数据库重建所有计数器，除非其他 Pod 最近已重建
+     *
+     * @return Counts read from the database, null if another pod holds the lock or the scan failed
+     *         从数据库读取的计数，其他 Pod 持有锁或扫描失败时为 null
+     */
+    private Snapshot rebuild() {
+        Boolean locked = redisGuard.call(() -> redisTemplate.opsForValue().setIfAbsent(
+            LOCK_KEY, instanceId, reconcileInterval.toMillis() / 2, TimeUnit.MILLISECONDS), () -> false);
+        if (!Boolean.TRUE.equals(locked)
+                && !instanceId.equals(redisGuard.call(() -> redisTemplate.opsForValue().get(LOCK_KEY), () -> null))) {
+            // Another pod rebuilt recently / 其他 Pod 最近已重建
+            dirty = false;
+            lastReconciledAt = System.currentTimeMillis();
+            return null;
+        }
+        try {
+            Snapshot snapshot = computeFromDatabase(LocalDateTime.now());
+            boolean written = redisGuard.run(() -> redisTemplate.execute(new SessionCallback<List<Object>>() {
+                @Override
+                @SuppressWarnings({"unchecked", "rawtypes"})
+                public List<Object> execute(RedisOperations operations) {
+                    operations.multi();
+                    operations.delete(List.of(TOTALS_KEY, DAILY_KEY, HOURLY_KEY));
+                    operations.opsForHash().putAll(TOTALS_KEY, snapshot.totals);
+                    if (!snapshot.daily.isEmpty()) {
+                        operations.opsForHash().putAll(DAILY_KEY, snapshot.daily);
+                    }
+                    if (!snapshot.hourly.isEmpty()) {
+                        operations.opsForHash().putAll(HOURLY_KEY, snapshot.hourly);
+                    }
+                    return operations.exec();
+                }
+            }));
+            if (written) {
+                dirty = false;
+                lastReconciledAt = System.currentTimeMillis();
+                log.info("User statistics reconciled: {} users", snapshot.totals.get("total"));
+            }
+            return snapshot;
+        } catch (DataAccessException e) {
+            log.warn("User statistics reconciliation failed: {}", e.toString());
+            return null;
+        }
+    }
+
+    /**
+     * Read the requested buckets
+     * 读取请求的桶
+     *
+     * @return Statistics, or an empty map if the counters were never built / 统计数据，计数器从未构建时为空映射
+     */
+    private Map<String, Object> readFromRedis(List<String> dayFields, List<String> hourFields) {
+        Map<Object, Object> totals = redisTemplate.opsForHash().entries(TOTALS_KEY);
+        if (totals.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, String> totalMap = new HashMap<>();
+        totals.forEach((field, value) -> totalMap.put(String.valueOf(field), String.valueOf(value)));
+        List<Object> daily = redisTemplate.opsForHash().multiGet(DAILY_KEY, new ArrayList<>(dayFields));
+        List<Object> hourly = redisTemplate.opsForHash().multiGet(HOURLY_KEY, new ArrayList<>(hourFields));
+        Map<String, Object> stats = format(totalMap, zip(dayFields, daily), zip(hourFields, hourly));
+        stats.put("source", "redis");
+        return stats;
+    }
+
+    private Map<String, Object> format(Map<String, String> totals, Map<String, Long> daily, Map<String, Long> hourly) {
+        Map<String, Long> byRole = new LinkedHashMap<>();
+        for (Role role : Role.values()) {
+            byRole.put(role.name(), parse(totals.get("role:" + role.name())));
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("total", parse(totals.get("total")));
+        stats.put("byRole", byRole);
+        stats.put("signupsPerDay", daily);
+        stats.put("signupsPerHour", hourly);
+        return stats;
+    }
+
+    private Map<String, Long> zip(List<String> fields, List<Object> values) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            Object value = values != null && i < values.size() ? values.get(i) : null;
+            result.put(fields.get(i), parse(value == null ? null : value.toString()));
+        }
+        return result;
+    }
+
+    private Map<String, Long> pick(Map<String, String> buckets, List<String> fields) {
+        Map<String, Long> result = new LinkedHashMap<>();
+        for (String field : fields) {
+            result.put(field, parse(buckets.get(field)));
+        }
+        return result;
+    }
+
+    private static long parse(String value) {
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    /**
+     * Count users by role, signup day and recent signup hour over all shards
+     * 在所有分片上按角色、注册日期和最近注册小时统计用户
+     */
+    private Snapshot computeFromDatabase(LocalDateTime now) {
+        Snapshot snapshot = new Snapshot();
+        long total = 0;
+        for (Object[] row : shardRouter.scatter(jdbc -> jdbc.query(
+                "SELECT role, COUNT(*) FROM users GROUP BY role",
+                (rs, i) -> new Object[] {rs.getString(1), rs.getLong(2)}))) {
+            snapshot.add(snapshot.totals, "role:" + row[0], (Long) row[1]);
+            total += (Long) row[1];
+        }
+        snapshot.totals.put("total", Long.toString(total));
+        for (Object[] row : shardRouter.scatter(jdbc -> jdbc.query(
+                "SELECT CAST(created_at AS DATE), COUNT(*) FROM users GROUP BY CAST(created_at AS DATE)",
+                (rs, i) -> new Object[] {rs.getObject(1, LocalDate.class), rs.getLong(2)}))) {
+            snapshot.add(snapshot.daily, DAY.format((LocalDate) row[0]), (Long) row[1]);
+        }
+        Timestamp since = Timestamp.valueOf(now.minus(hourlyRetention).truncatedTo(ChronoUnit.HOURS));
+        for (LocalDateTime createdAt : shardRouter.scatter(jdbc -> jdbc.query(
+                "SELECT created_at FROM users WHERE created_at >= ?",
+                (rs, i) -> rs.getObject(1, LocalDateTime.class), since))) {
+            snapshot.add(snapshot.hourly, HOUR.format(createdAt), 1);
+        }
+        return snapshot;
+    }
+
+    /**
+     * Counter values as written to Redis (string-encoded)
+     * 写入 Redis 的计数器值（字符串编码）
+     */
+    private static final class Snapshot {
+
+        final Map<String, String> totals = new HashMap<>();
+        final Map<String, String> daily = new HashMap<>();
+        final Map<String, String> hourly = new HashMap<>();
+
+        void add(Map<String, String> target, String field, long count) {
+            target.merge(field, Long.toString(count), (a, b) -> Long.toString(Long.parseLong(a) + Long.parseLong(b)));
+        }
+    }
+}
@@ -0,0 +1,211 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.UserChanges;
+import com.example.demo.dto.UserResponse;
+import com.example.demo.entity.UserTombstone;
+import com.example.demo.repository.ReplicaContext;
+import com.example.demo.repository.UserRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+
+/**
+ * UserSyncService - Incremental User Directory Sync
+ * 用户同步服务 - 用户目录增量同步
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Serves GET /api/users/changes so that clients keeping a local copy of the users only
+ * download what changed. A watermark holds two keyset positions: (updated_at, id) in
+ * users and (deleted_at, user_id) in user_tombstones, both backed by an index, so every
+ * page is a range scan whatever the table size. Without a watermark the first pages
+ * are the full directory, paged the same way.
+ *
+ * Timestamps are taken by the application before the commit, on the clock of whichever
+ * pod wrote the row, so a row may become visible after rows with later timestamps.
+ * Pages therefore stop at now minus user-sync.commit-lag minus user-sync.clock-skew,
+ * and are read from the primary, since a replica may not show a row committed before
+ * that point yet. Bound: a row is never skipped if its transaction commits within
+ * commit-lag of its timestamp and the writer's clock is less than clock-skew ahead of
+ * the serving pod's.
+ *
+ * Tombstones are kept for user-sync.tombstone-retention; a watermark older than that
+ * is rejected (410) and the client resyncs without one.
+ *
+ * 提供 GET /api/users/changes，使保存用户本地副本的客户端只下载变更的内容。水位包含两个
+ * 键集位置：users 中的 (updated_at, id) 和 user_tombstones 中的 (deleted_at, user_id)，
+ * 两者都有索引支持，因此无论表多大，每一页都是一次范围扫描。没有水位时，前几页就是
+ * 以相同方式分页的完整目录。
+ *
+ * 时间戳由应用在提交前按写入该行的 Pod 的时钟获取，因此某行可能在时间戳更晚的行之后才可见。
+ * 所以每页截止于当前时间减去 user-sync.commit-lag 再减去 user-sync.clock-skew，并从主库读取，
+ * 因为副本可能尚未显示在该时间点之前提交的行。界限：如果事务在其时间戳之后 commit-lag 内提交，
+ * 且写入方时钟领先提供服务的 Pod 不超过 clock-skew，则该行永远不会被跳过。
+ *
+ * 墓碑保留 user-sync.tombstone-retention；早于该时间的水位会被拒绝（410），客户端需不带水位重新同步。
+ */
+@Service
+public class UserSyncService {
+
+    private static final Logger log = LoggerFactory.getLogger(UserSyncService.class);
+
+    /**
+     * Origin of watermark timestamps / 水位时间戳的原点
+     */
+    private static final LocalDateTime ORIGIN = LocalDateTime.of(1970, 1, 1, 0, 0);
+
+    /**
+     * Longest expected transaction, changes younger than this are not served yet
+     * 预期最长的事务时间，比此更新的变更暂不提供
+     */
+    @Value("${user-sync.commit-lag:5s}")
+    private Duration commitLag;
+
+    /**
+     * Largest difference between the clocks of two pods / 两个 Pod 时钟之间的最大差异
+     */
+    @Value("${user-sync.clock-skew:1s}")
+    private Duration clockSkew;
+
+    /**
+     * How long tombstones are kept / 墓碑保留时长
+     */
+    @Value("${user-sync.tombstone-retention:30d}")
+    private Duration tombstoneRetention;
+
+    /**
+     * Maximum users (and tombstones) per page / 每页最多的用户（和墓碑）数
+     */
+    @Value("${user-sync.max-page-size:1000}")
+    private int maxPageSize;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    /**
+     * Get the changes after a watermark
+     * 获取水位之后的变更
+     *
+     * @param since Watermark of the previous page, or null for a full sync / 上一页的水位，完整同步时为 null
+     * @param limit Requested page size / 请求的页大小
+     * @return Changes and the next watermark / 变更及下一个水位
+     * @throws IllegalArgumentException if the watermark is malformed / 如果水位格式错误
+     * @throws WatermarkExpiredException if deletions after the watermark were purged / 如果水位之后的删除记录已被清除
+     */
+    @Transactional(readOnly = true)
+    public UserChanges getChanges(String since, int limit) {
+        return ReplicaContext.onPrimary(() -> changesAfter(since, limit));
+    }
+
+    private UserChanges changesAfter(String since, int limit) {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime until = now.minus(commitLag).minus(clockSkew).truncatedTo(ChronoUnit.MICROS);
+        int pageSize = Math.min(Math.max(limit, 1), maxPageSize);
+        // A full sync has nothing to delete: tombstones start from now
+        // 完整同步没有需要删除的内容：墓碑从当前开始
+        Watermark from = since != null ? Watermark.parse(since) : new Watermark(ORIGIN, 0, until, Long.MAX_VALUE);
+        if (from.deletedAt.isBefore(now.minus(tombstoneRetention))) {
+            throw new WatermarkExpiredException();
+        }
+
+        List<UserResponse> users = userRepository.findChangedSince(from.updatedAt, from.updatedId, until, pageSize);
+        List<UserTombstone> tombstones = userRepository.findDeletedSince(from.deletedAt, from.deletedId, until,
+            pageSize);
+        boolean moreUsers = users.size() == pageSize;
+        boolean moreTombstones = tombstones.size() == pageSize;
+
+        // A partial page means everything up to until has been seen, so the position moves there
+        // 不满的页表示截至 until 的一切都已可见，因此位置移动到 until
+        LocalDateTime updatedAt = from.updatedAt;
+        long updatedId = from.updatedId;
+        if (moreUsers) {
+            UserResponse last = users.get(users.size() - 1);
+            updatedAt = last.updatedAt();
+            updatedId = last.id();
+        } else if (until.isAfter(updatedAt)) {
+            updatedAt = until;
+            updatedId = Long.MAX_VALUE;
+        }
+        LocalDateTime deletedAt = from.deletedAt;
+        long deletedId = from.deletedId;
+        if (moreTombstones) {
+            UserTombstone last = tombstones.get(tombstones.size() - 1);
+            deletedAt = last.getDeletedAt();
+            deletedId = last.getUserId();
+        } else if (until.isAfter(deletedAt)) {
+            deletedAt = until;
+            deletedId = Long.MAX_VALUE;
+        }
+
+        return new UserChanges(users, tombstones.stream().map(UserTombstone::getUserId).toList(),
+            new Watermark(updatedAt, updatedId, deletedAt, deletedId).encode(), moreUsers || moreTombstones);
+    }
+
+    /**
+     * Delete tombstones past their retention
+     * 删除超过保留期的墓碑
+     */
+    @Scheduled(fixedDelayString = "${user-sync.purge-interval:PT1H}")
+    public void purgeTombstones() {
+        try {
+            long purged = userRepository.purgeTombstones(LocalDateTime.now().minus(tombstoneRetention));
+            if (purged > 0) {
+                log.info("Purged {} user tombstones older than {}", purged, tombstoneRetention);
+            }
+        } catch (RuntimeException e) {
+            log.warn("User tombstone purge failed, will retry: {}", e.toString());
+        }
+    }
+
+    /**
+     * Keyset positions in users and user_tombstones, encoded as four numbers
+     * users 和 user_tombstones 中的键集位置，编码为四个数字
+     */
+    private record Watermark(LocalDateTime updatedAt, long updatedId, LocalDateTime deletedAt, long deletedId) {
+
+        static Watermark parse(String value) {
+            String[] parts = value.split("\\.");
+            try {
+                if (parts.length == 4) {
+                    return new Watermark(ORIGIN.plus(Long.parseLong(parts[0]), ChronoUnit.MICROS), Long.parseLong(parts[1]),
+                        ORIGIN.plus(Long.parseLong(parts[2]), ChronoUnit.MICROS), Long.parseLong(parts[3]));
+                }
+            } catch (NumberFormatException e) {
+                // Reported below / 在下方报告
+            }
+            throw new IllegalArgumentException("Invalid watermark: " + value);
+        }
+
+        String encode() {
+            return ChronoUnit.MICROS.between(ORIGIN, updatedAt) + "." + updatedId + "."
+                + ChronoUnit.MICROS.between(ORIGIN, deletedAt) + "." + deletedId;
+        }
+    }
+
+    /**
+     * Thrown when a watermark is older than the tombstone retention
+     * 水位早于墓碑保留期时抛出
+     */
+    public static class WatermarkExpiredException extends RuntimeException {
+
+        /**
+         * Constructor for WatermarkExpiredException
+         * WatermarkExpiredException 构造函数
+         */
+        public WatermarkExpiredException() {
+            super("Watermark expired, sync again without since");
+        }
+    }
+}
@@ -0,0 +1,323 @@
+package com.example.demo.service;
+
+import com.example.demo.dto.ApiResponse;
+import com.example.demo.dto.UserBatchRequest;
+import com.example.demo.dto.UserLookup;
+import com.example.demo.dto.UserResponse;
+import com.example.demo.entity.Role;
+import com.example.demo.entity.User;
+import com.example.demo.repository.ShardRouter;
+import com.example.demo.repository.UserRepository;
+import com.example.demo.util.JwtUtil;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.ApplicationArguments;
+import org.springframework.boot.ApplicationRunner;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * WarmupService - JIT and Connection Pool Warm-up
+ * 预热服务 - JIT 和连接池预热
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Runs a synthetic workload after the application context has started but before
+ * the readiness state switches to ACCEPTING_TRAFFIC. Spring Boot calls ApplicationRunner
+ * beans before publishing readiness, so /actuator/health/readiness keeps returning
+ * OUT_OF_SERVICE until the warm-up finishes. The workload exercises the hot request
+ * paths (JWT sign/verify, Jackson serialization of user responses, rate-limit checks)
+ * and fills the Hikari and Lettuce connections with real round-trips. The last phase
+ * loads the users that were hot across the cluster (see HotUserCache) into Redis and
+ * the local hot tier, so the first requests after a rollout do not all miss.
+ *
+ * 在应用上下文启动后、就绪状态切换为 ACCEPTING_TRAFFIC 之前运行合成负载。
+ * Spring Boot 在发布就绪状态之前调用 ApplicationRunner Bean，因此在预热完成之前
+ * /actuator/health/readiness 一直返回 OUT_OF_SERVICE。该负载覆盖热点请求路径
+ * （JWT 签名/验证、用户响应的 Jackson 序列化、速率限制检查），并通过真实往返填充
+ * Hikari 和 Lettuce 连接。最后一个阶段将整个集群的热点用户（参见 HotUserCache）加载到 Redis
+ * 和本地热点层，使发布后的首批请求不会全部未命中。
+ */
+@Service
+public class WarmupService implements ApplicationRunner {
+
+    private static final Logger log = LoggerFactory.getLogger(WarmupService.class);
+
+    /**
+     * Subject used for synthetic tokens and lookups (never a real account)
+     * 用于合成令牌和查询的主题（不是真实账户）
+     */
+    private static final String WARMUP_SUBJECT = "warmup@spring-k8s-demo.local";
+
+    /**
+     * Redis key used for synthetic round-trips
+     * 用于合成往返的 Redis 键
+     */
+    private static final String WARMUP_REDIS_KEY = "warmup:probe";
+
+    /**
+     * Enable or disable warm-up / 启用或禁用预热
+     */
+    @Value("${warmup.enabled:true}")
+    private boolean enabled;
+
+    /**
+     * Iterations per CPU-bound phase / 每个 CPU 密集阶段的迭代次数
+     */
+    @Value("${warmup.iterations:2000}")
+    private int iterations;
+
+    /**
+     * Round-trips per I/O phase (database, Redis) / 每个 I/O 阶段的往返次数（数据库、Redis）
+     */
+    @Value("${warmup.round-trips:50}")
+    private int roundTrips;
+
+    /**
+     * Connections opened concurrently to fill the Hikari pool
+     * 为填充 Hikari 连接池而并发打开的连接数
+     */
+    @Value("${warmup.db-connections:${spring.datasource.hikari.maximum-pool-size:10}}")
+    private int dbConnections;
+
+    /**
+     * Overall time budget - Phases stop early once exhausted
+     * 总时间预算 - 耗尽后各阶段提前结束
+     */
+    @Value("${warmup.max-duration:20s}")
+    private Duration maxDuration;
+
+    @Autowired
+    private JwtUtil jwtUtil;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private RedisTemplate<String, String> redisTemplate;
+
+    @Autowired
+    private UserService userService;
+
+    @Autowired
+    private HotUserCache hotUsers;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Run all warm-up phases
+     * 运行所有预热阶段
+     *
+     * @param args Application arguments / 应用程序参数
+     * @description
+     * Each phase is isolated: a failing dependency (e.g. Redis not reachable yet) is logged
+     * and skipped so that warm-up can never prevent the pod from becoming ready.
+     * Durations are recorded in the app.warmup.duration timer, tagged by phase.
+     *
+     * 每个阶段相互隔离：失败的依赖（例如 Redis 尚不可达）会被记录并跳过，
+     * 因此预热永远不会阻止 Pod 就绪。耗时记录在 app.warmup.duration 计时器中，按阶段打标签。
+     */
+    @Override
+    public void run(ApplicationArguments args) {
+        if (!enabled) {
+            return;
+        }
+        long deadline = System.nanoTime() + maxDuration.toNanos();
+        long start = System.nanoTime();
+
+        runPhase("jwt", deadline, this::warmJwt);
+        runPhase("json", deadline, this::warmJson);
+        runPhase("rate-limit", deadline, this::warmRateLimit);
+        runPhase("database", deadline, this::warmDatabase);
+        runPhase("redis", deadline, this::warmRedis);
+        runPhase("hot-users", deadline, this::warmHotUsers);
+
+        long elapsed = System.nanoTime() - start;
+        timer("total").record(Duration.ofNanos(elapsed));
+        log.info("Warm-up finished in {} ms", Duration.ofNanos(elapsed).toMillis());
+    }
+
+    /**
+     * Execute one phase with timing, iteration counting and error isolation
+     * 执行单个阶段，包含计时、迭代计数和错误隔离
+     */
+    private void runPhase(String phase, long deadline, WarmupPhase body) {
+        if (System.nanoTime() >= deadline) {
+            log.warn("Warm-up budget exhausted, skipping phase {}", phase);
+            return;
+        }
+        long start = System.nanoTime();
+        try {
+            int done = body.run(deadline);
+            Counter.builder("app.warmup.iterations")
+                .tag("phase", phase)
+                .register(meterRegistry)
+                .increment(done);
+        } catch (Exception e) {
+            log.warn("Warm-up phase {} failed: {}", phase, e.toString());
+        } finally {
+            timer(phase).record(Duration.ofNanos(System.nanoTime() - start));
+        }
+    }
+
+    private Timer timer(String phase) {
+        return Timer.builder("app.warmup.duration")
+            .description("Time spent warming up before readiness")
+            .tag("phase", phase)
+            .register(meterRegistry);
+    }
+
+    /**
+     * JWT sign and verify round-trips / JWT 签名和验证往返
+     */
+    private int warmJwt(long deadline) {
+        int i = 0;
+        for (; i < iterations && System.nanoTime() < deadline; i++) {
+            String token = jwtUtil.generateToken(WARMUP_SUBJECT, Role.USER.name());
+            jwtUtil.validateToken(token, WARMUP_SUBJECT);
+        }
+        return i;
+    }
+
+    /**
+     * Jackson serialization of the user API responses for a synthetic User
+     * 合成 User 的用户 API 响应的 Jackson 序列化
+     */
+    private int warmJson(long deadline) throws Exception {
+        User user = new User();
+        user.setId(0L);
+        user.setName("Warm Up");
+        user.setEmail(WARMUP_SUBJECT);
+        user.setPhone("+0000000000");
+        user.setRole(Role.USER);
+        user.setCreatedAt(LocalDateTime.now());
+        user.setUpdatedAt(LocalDateTime.now());
+        ApiResponse<UserResponse> single = ApiResponse.ok(UserResponse.from(user));
+        ApiResponse<List<UserResponse>> page = ApiResponse.list(List.of(UserResponse.from(user),
+            UserResponse.from(user), UserResponse.from(user)));
+        int i = 0;
+        for (; i < iterations && System.nanoTime() < deadline; i++) {
+            objectMapper.writeValueAsBytes(single);
+            objectMapper.writeValueAsBytes(page);
+        }
+        return i;
+    }
+
+    /**
+     * Rate-limit checks against a private bucket shaped like the API bucket
+     * (the real buckets are left untouched)
+     * 针对与 API 桶形状相同的私有桶执行速率限制检查（不触碰真实桶）
+     */
+    private int warmRateLimit(long deadline) {
+        Bucket bucket = Bucket.builder()
+            .addLimit(Bandwidth.builder().capacity(20).refillIntervally(10, Duration.ofSeconds(1)).build())
+            .build();
+        int i = 0;
+        for (; i < iterations && System.nanoTime() < deadline; i++) {
+            bucket.tryConsume(1);
+        }
+        return i;
+    }
+
+    /**
+     * Open pool connections concurrently, then run JPA queries
+     * 并发打开连接池连接，然后执行 JPA 查询
+     *
+     * @description
+     * Holding dbConnections connections per shard at once forces Hikari to create them; after they
+     * are returned they stay idle in the pool until idle-timeout.
+     *
+     * 每个分片同时持有 dbConnections 个连接会迫使 Hikari 创建它们；归还后它们会在连接池中
+     * 空闲保留直到 idle-timeout。
+     */
+    private int warmDatabase(long deadline) throws SQLException {
+        List<Connection> held = new ArrayList<>(dbConnections * shardRouter.shardCount());
+        try {
+            for (int shard = 0; shard < shardRouter.shardCount(); shard++) {
+                DataSource dataSource = shardRouter.shardDataSource(shard);
+                for (int c = 0; c < dbConnections && System.nanoTime() < deadline; c++) {
+                    Connection connection = dataSource.getConnection();
+                    held.add(connection);
+                    try (PreparedStatement ping = connection.prepareStatement("SELECT 1")) {
+                        ping.execute();
+                    }
+                }
+            }
+        } finally {
+            for (Connection connection : held) {
+                connection.close();
+            }
+        }
+        int i = 0;
+        for (; i < roundTrips && System.nanoTime() < deadline; i++) {
+            userRepository.existsByEmail(WARMUP_SUBJECT);
+            userRepository.findByEmail(WARMUP_SUBJECT);
+        }
+        return held.size() + i;
+    }
+
+    /**
+     * Redis round-trips to establish and warm the Lettuce connection
+     * Redis 往返以建立并预热 Lettuce 连接
+     */
+    private int warmRedis(long deadline) {
+        int i = 0;
+        for (; i < roundTrips && System.nanoTime() < deadline; i++) {
+            redisTemplate.opsForValue().set(WARMUP_REDIS_KEY, WARMUP_SUBJECT, Duration.ofMinutes(1));
+            redisTemplate.opsForValue().get(WARMUP_REDIS_KEY);
+        }
+        redisTemplate.delete(WARMUP_REDIS_KEY);
+        return i;
+    }
+
+    /**
+     * Load the cluster's hot users through the batch lookup, in chunks of the API limit
+     * 通过批量查找加载集群的热点用户，按 API 上限分块
+     */
+    private int warmHotUsers(long deadline) {
+        List<Long> ids = hotUsers.snapshot();
+        hotUsers.promote(ids);
+        int found = 0;
+        for (int from = 0; from < ids.size() && System.nanoTime() < deadline; from += UserBatchRequest.MAX_IDS) {
+            List<Long> chunk = ids.subList(from, Math.min(from + UserBatchRequest.MAX_IDS, ids.size()));
+            found += (int) userService.getUsersByIds(chunk).stream().filter(UserLookup::found).count();
+        }
+        return found;
+    }
+
+    /**
+     * A single warm-up phase returning the number of iterations completed
+     * 单个预热阶段，返回完成的迭代次数
+     */
+    @FunctionalInterface
+    private interface WarmupPhase {
+        int run(long deadline) throws Exception;
+    }
+}
@@ -0,0 +1,94 @@
+package com.example.demo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * ConsistentHashRing - Maps Keys to Members with Minimal Movement on Change
+ * 一致性哈希环 - 将键映射到成员，成员变化时移动最少
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Each member is placed on a 64-bit ring at virtualNodes points; a key belongs to the
+ * first point at or after its own hash. Adding or removing one of N members only moves
+ * about 1/N of the keys, and the virtual nodes spread each member's share evenly.
+ * Instances are immutable; build a new ring when the members change.
+ *
+ * 每个成员在 64 位环上放置 virtualNodes 个点；键属于其哈希值处或之后的第一个点。
+ * 在 N 个成员中增加或移除一个只会移动约 1/N 的键，虚拟节点使每个成员的份额分布均匀。
+ * 实例不可变；成员变化时构建新的环。
+ */
+public class ConsistentHashRing {
+
+    private final TreeMap<Long, String> points = new TreeMap<>();
+    private final Set<String> members;
+
+    /**
+     * Constructor for ConsistentHashRing
+     * ConsistentHashRing 构造函数
+     *
+     * @param members Member names, e.g. peer base URLs / 成员名称，例如对等节点的基础 URL
+     * @param virtualNodes Points per member / 每个成员的点数
+     */
+    public ConsistentHashRing(Collection<String> members, int virtualNodes) {
+        if (virtualNodes < 1) {
+            throw new IllegalArgumentException("Invalid virtual node count: " + virtualNodes);
+        }
+        this.members = Set.copyOf(new TreeSet<>(members));
+        for (String member : this.members) {
+            for (int i = 0; i < virtualNodes; i++) {
+                points.put(hash(member + "#" + i), member);
+            }
+        }
+    }
+
+    /**
+     * Find the member owning a key
+     * 查找拥有某个键的成员
+     *
+     * @param key Key / 键
+     * @return Owning member, null if the ring is empty / 拥有该键的成员，环为空时返回 null
+     */
+    public String ownerOf(String key) {
+        if (points.isEmpty()) {
+            return null;
+        }
+        Map.Entry<Long, String> point = points.ceilingEntry(hash(key));
+        return point != null ? point.getValue() : points.firstEntry().getValue();
+    }
+
+    /**
+     * Members on the ring
+     * 环上的成员
+     *
+     * @return Members / 成员
+     */
+    public Set<String> members() {
+        return members;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes, spread with the MurmurHash3 finalizer
+     * 基于 UTF-8 字节的 64 位 FNV-1a，并用 MurmurHash3 终结函数扩散
+     */
+    private static long hash(String value) {
+        long h = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            h ^= b & 0xff;
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
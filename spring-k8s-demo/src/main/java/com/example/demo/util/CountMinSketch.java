@@ -0,0 +1,123 @@
+package com.example.demo.util;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * CountMinSketch - Approximate Frequency Counter for Long Keys
+ * Count-Min 草图 - 长整型键的近似频率计数器
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Counts how often each key was seen in fixed memory (depth x width counters, whatever
+ * the number of distinct keys). An estimate is never below the true count; it exceeds
+ * it by at most 2/width of all increments with probability 1 - (1/2)^depth. halve()
+ * divides every counter by two, so that counts age and the sketch follows what is
+ * popular now rather than what was popular since startup.
+ *
+ * Counters are kept in an AtomicLongArray, so add and estimate are lock-free and can be
+ * called from any thread. halve() may run concurrently with add; an increment racing
+ * with it is either halved or not, which only shifts an estimate by one.
+ *
+ * 在固定内存中（depth x width 个计数器，与不同键的数量无关）统计每个键出现的次数。
+ * 估计值从不低于真实次数；以 1 - (1/2)^depth 的概率，超出部分不超过所有递增次数的 2/width。
+ * halve() 将每个计数器除以二，使计数随时间衰减，草图反映当前流行的内容，而不是启动以来流行的内容。
+ *
+ * 计数器保存在 AtomicLongArray 中，因此 add 和 estimate 无锁，可从任意线程调用。
+ * halve() 可与 add 并发执行；与之竞争的递增要么被减半要么没有，只会使估计值相差一。
+ */
+public class CountMinSketch {
+
+    private final int depth;
+    private final int mask;
+    private final AtomicLongArray counters;
+
+    /**
+     * Constructor for CountMinSketch
+     * CountMinSketch 构造函数
+     *
+     * @param depth Rows, one hash function each / 行数，每行一个哈希函数
+     * @param width Counters per row, rounded up to a power of two / 每行的计数器数量，向上取整为 2 的幂
+     */
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 1 || width > 1 << 24) {
+            throw new IllegalArgumentException("Invalid count-min sketch parameters: depth=" + depth
+                + ", width=" + width);
+        }
+        int columns = Integer.highestOneBit(width) == width ? width : Integer.highestOneBit(width) << 1;
+        this.depth = depth;
+        this.mask = columns - 1;
+        this.counters = new AtomicLongArray(depth * columns);
+    }
+
+    /**
+     * Count one occurrence of a key
+     * 统计键的一次出现
+     *
+     * @param key Key / 键
+     * @return Estimated count including this occurrence / 包括本次出现在内的估计次数
+     */
+    public long add(long key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.incrementAndGet(index(row, key)));
+        }
+        return min;
+    }
+
+    /**
+     * Estimate how often a key was seen
+     * 估计键出现的次数
+     *
+     * @param key Key / 键
+     * @return Estimated count, never below the true count / 估计次数，从不低于真实次数
+     */
+    public long estimate(long key) {
+        long min = Long.MAX_VALUE;
+        for (int row = 0; row < depth; row++) {
+            min = Math.min(min, counters.get(index(row, key)));
+        }
+        return min;
+    }
+
+    /**
+     * Divide every counter by two
+     * 将每个计数器除以二
+     */
+    public void halve() {
+        for (int i = 0; i < counters.length(); i++) {
+            if (counters.get(i) != 0) {
+                counters.updateAndGet(i, count -> count >>> 1);
+            }
+        }
+    }
+
+    /**
+     * Memory used by the counters
+     * 计数器占用的内存
+     *
+     * @return Size in bytes / 字节数
+     */
+    public long sizeInBytes() {
+        return counters.length() * 8L;
+    }
+
+    private int index(int row, long key) {
+        return row * (mask + 1) + (int) (mix(key + row * 0x9e3779b97f4a7c15L) & mask);
+    }
+
+    /**
+     * MurmurHash3 finalizer; a different seed per row gives independent columns
+     * MurmurHash3 终结函数；每行使用不同的种子得到相互独立的列
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
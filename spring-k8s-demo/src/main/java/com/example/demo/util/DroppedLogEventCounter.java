@@ -0,0 +1,59 @@
+package com.example.demo.util;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.core.Appender;
+import net.logstash.logback.appender.listener.AppenderListener;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * DroppedLogEventCounter - Async Appender Drop Counter
+ * 丢弃日志事件计数器 - 异步追加器丢弃计数器
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Logback appender listener attached to the ring-buffer appenders in logback-spring.xml.
+ * When the ring buffer is full the appender drops the event instead of blocking the
+ * request thread; this listener counts those drops per appender. Logback creates the
+ * listener before the Spring context exists, so counts are kept in a static registry
+ * and bound to Micrometer later by LoggingMetricsConfig.
+ *
+ * 附加到 logback-spring.xml 中环形缓冲区追加器的 Logback 监听器。
+ * 当环形缓冲区已满时，追加器会丢弃事件而不是阻塞请求线程；该监听器按追加器统计丢弃数量。
+ * Logback 在 Spring 上下文存在之前创建监听器，因此计数保存在静态注册表中，
+ * 随后由 LoggingMetricsConfig 绑定到 Micrometer。
+ */
+public class DroppedLogEventCounter implements AppenderListener<ILoggingEvent> {
+
+    /**
+     * Dropped event counts keyed by appender name
+     * 按追加器名称统计的丢弃事件数
+     */
+    private static final Map<String, LongAdder> DROPPED = new ConcurrentHashMap<>();
+
+    @Override
+    public void appenderStarted(Appender<ILoggingEvent> appender) {
+        DROPPED.computeIfAbsent(appender.getName(), name -> new LongAdder());
+    }
+
+    @Override
+    public void eventAppendFailed(Appender<ILoggingEvent> appender, ILoggingEvent event, Throwable reason) {
+        DROPPED.computeIfAbsent(appender.getName(), name -> new LongAdder()).increment();
+    }
+
+    /**
+     * Get the live counters for all started appenders
+     * 获取所有已启动追加器的实时计数器
+     *
+     * @return Unmodifiable view of dropped counts by appender / 按追加器划分的丢弃计数只读视图
+     */
+    public static Map<String, LongAdder> counters() {
+        return Collections.unmodifiableMap(DROPPED);
+    }
+}
@@ -1,6 +1,7 @@
 package com.example.demo.util;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.SignatureAlgorithm;
 import io.jsonwebtoken.security.Keys;
@@ -11,6 +12,7 @@ import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.UUID;
 import java.util.function.Function;
 
 /**
@@ -31,6 +33,11 @@ import java.util.function.Function;
 @Component
 public class JwtUtil {
     
+    /**
+     * Claim holding the user id / 保存用户 ID 的声明
+     */
+    public static final String USER_ID_CLAIM = "uid";
+    
     /**
      * JWT Secret Key - From application properties or Kubernetes Secret
      * JWT 密钥 - 来自应用程序属性或 Kubernetes Secret
@@ -45,6 +52,12 @@ public class JwtUtil {
     @Value("${jwt.expiration}")
     private Long expiration;
     
+    /**
+     * Cached signing key and parser (derived from secret) / 缓存的签名密钥和解析器（由密钥派生）
+     */
+    private volatile SecretKey signingKey;
+    private volatile JwtParser parser;
+    
     /**
      * Get signing key from secret string
      * 从密钥字符串获取签名密钥
@@ -55,7 +68,32 @@ public class JwtUtil {
      * 使用 HMAC SHA-256 将密钥字符串转换为 SecretKey。
      */
     private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(secret.getBytes());
+        SecretKey key = signingKey;
+        if (key == null) {
+            key = Keys.hmacShaKeyFor(secret.getBytes());
+            signingKey = key;
+        }
+        return key;
+    }
+    
+    /**
+     * Get the shared JWT parser
+     * 获取共享的 JWT 解析器
+     * 
+     * @return Immutable, thread-safe parser bound to the signing key / 绑定签名密钥的不可变、线程安全解析器
+     * @description
+     * Building a parser per call allocates a new key and builder on every request;
+     * the parser is immutable, so one instance is reused.
+     * 
+     * 每次调用都构建解析器会在每个请求上分配新的密钥和构建器；解析器是不可变的，因此复用同一实例。
+     */
+    private JwtParser getParser() {
+        JwtParser jwtParser = parser;
+        if (jwtParser == null) {
+            jwtParser = Jwts.parser().verifyWith(getSigningKey()).build();
+            parser = jwtParser;
+        }
+        return jwtParser;
     }
     
     /**
@@ -94,6 +132,24 @@ public class JwtUtil {
         return claimsResolver.apply(claims);
     }
     
+    /**
+     * Parse and verify a JWT token in a single pass
+     * 单次解析并验证 JWT 令牌
+     * 
+     * @param token JWT token / JWT 令牌
+     * @return Verified claims / 已验证的声明
+     * @throws io.jsonwebtoken.JwtException if the signature is invalid or the token is expired
+     *         如果签名无效或令牌已过期
+     * @description
+     * Use this instead of several extractX calls when more than one claim is needed,
+     * each extractX call parses and verifies the token again.
+     * 
+     * 当需要多个声明时使用此方法代替多次 extractX 调用，每次 extractX 调用都会重新解析并验证令牌。
+     */
+    public Claims parseClaims(String token) {
+        return extractAllClaims(token);
+    }
+    
     /**
      * Extract all claims from JWT token
      * 从 JWT 令牌提取所有声明
@@ -105,9 +161,7 @@ public class JwtUtil {
      * 解析并验证 JWT 令牌签名，然后提取所有声明。
      */
     private Claims extractAllClaims(String token) {
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
+        return getParser()
                 .parseSignedClaims(token)
                 .getPayload();
     }
@@ -140,6 +194,26 @@ public class JwtUtil {
         return createToken(claims, username);
     }
     
+    /**
+     * Generate JWT token for a stored user
+     * 为已存储的用户生成 JWT 令牌
+     * 
+     * @param username User email (used as subject) / 用户邮箱（用作主题）
+     * @param role User role / 用户角色
+     * @param userId User ID / 用户 ID
+     * @return JWT token string / JWT 令牌字符串
+     * @description
+     * Also carries the user id (uid claim), so per-user bookkeeping on authenticated
+     * requests needs no lookup by email.
+     * 还携带用户 ID（uid 声明），使已认证请求上的按用户记录无需按邮箱查找。
+     */
+    public String generateToken(String username, String role, Long userId) {
+        Map<String, Object> claims = new HashMap<>();
+        claims.put("role", role);
+        claims.put(USER_ID_CLAIM, userId);
+        return createToken(claims, username);
+    }
+    
     /**
      * Create JWT token with claims and subject
      * 使用声明和主题创建 JWT 令牌
@@ -148,13 +222,15 @@ public class JwtUtil {
      * @param subject Token subject (usually username/email) / 令牌主题（通常是用户名/邮箱）
      * @return JWT token string / JWT 令牌字符串
      * @description
-     * Builds a JWT token with specified claims, subject, issue time, and expiration.
-     * 构建一个包含指定声明、主题、签发时间和过期时间的 JWT 令牌。
+     * Builds a JWT token with specified claims, subject, issue time, expiration and
+     * a random jti that identifies the login session.
+     * 构建一个包含指定声明、主题、签发时间、过期时间以及标识登录会话的随机 jti 的 JWT 令牌。
      */
     private String createToken(Map<String, Object> claims, String subject) {
         return Jwts.builder()
                 .claims(claims)
                 .subject(subject)
+                .id(UUID.randomUUID().toString())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + expiration))
                 .signWith(getSigningKey(), SignatureAlgorithm.HS256)
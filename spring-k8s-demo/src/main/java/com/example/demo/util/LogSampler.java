@@ -0,0 +1,105 @@
+package com.example.demo.util;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * LogSampler - Per-Key Log Rate Limiter
+ * 日志采样器 - 按键的日志速率限制器
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Limits repetitive log lines to a fixed number per time window and message key.
+ * Callers ask for a permit before logging; once the window's quota is used up the
+ * remaining lines are suppressed and counted, and the next permitted line reports how
+ * many similar lines were skipped. Keys must come from a small, fixed set (one per
+ * call site), never from request data.
+ *
+ * 将重复日志行限制为每个时间窗口、每个消息键固定数量。
+ * 调用方在记录日志前请求许可；窗口配额用完后其余日志行被抑制并计数，
+ * 下一条被允许的日志行会报告跳过了多少相似日志。键必须来自一个固定的小集合
+ * （每个调用点一个），绝不能来自请求数据。
+ */
+@Component
+public class LogSampler {
+
+    /**
+     * Lines allowed per key and window / 每个键和窗口允许的日志行数
+     */
+    @Value("${logging.sampling.max-per-window:5}")
+    private int maxPerWindow;
+
+    /**
+     * Sampling window length / 采样窗口长度
+     */
+    @Value("${logging.sampling.window:10s}")
+    private Duration window;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    /**
+     * Window state per message key / 每个消息键的窗口状态
+     */
+    private final Map<String, Window> windows = new ConcurrentHashMap<>();
+
+    /**
+     * Request permission to log one line for the given key
+     * 为给定键请求记录一行日志的许可
+     *
+     * @param key Static message key, e.g. "jwt.extract" / 静态消息键，例如 "jwt.extract"
+     * @return -1 if the line must be suppressed, otherwise the number of lines suppressed
+     *         since the last permitted one / 如果必须抑制该行则返回 -1，否则返回自上次允许以来被抑制的行数
+     */
+    public long tryAcquire(String key) {
+        Window state = windows.computeIfAbsent(key, k -> new Window(
+            Counter.builder("app.logging.suppressed")
+                .description("Log lines suppressed by sampling")
+                .tag("key", k)
+                .register(meterRegistry)));
+        return state.tryAcquire(System.nanoTime(), window.toNanos(), maxPerWindow);
+    }
+
+    /**
+     * Fixed window counter for one key
+     * 单个键的固定窗口计数器
+     */
+    private static final class Window {
+
+        private final Counter suppressedCounter;
+        private long windowStart;
+        private int permitted;
+        private long suppressed;
+
+        Window(Counter suppressedCounter) {
+            this.suppressedCounter = suppressedCounter;
+            this.windowStart = System.nanoTime();
+        }
+
+        synchronized long tryAcquire(long now, long windowNanos, int maxPerWindow) {
+            if (now - windowStart >= windowNanos) {
+                windowStart = now;
+                permitted = 0;
+            }
+            if (permitted >= maxPerWindow) {
+                suppressed++;
+                suppressedCounter.increment();
+                return -1;
+            }
+            permitted++;
+            long skipped = suppressed;
+            suppressed = 0;
+            return skipped;
+        }
+    }
+}
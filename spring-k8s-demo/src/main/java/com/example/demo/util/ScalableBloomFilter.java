@@ -0,0 +1,214 @@
+package com.example.demo.util;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * ScalableBloomFilter - Growable Probabilistic Set of Strings
+ * 可扩展布隆过滤器 - 可增长的字符串概率集合
+ *
+ * @author Spring K8s Demo Team
+ * @version 1.0.0
+ * @since 2025-11-20
+ *
+ * @description
+ * Bloom filter that never needs its final size up front: when the current stage holds
+ * its capacity, a new stage with twice the capacity and half the false-positive rate
+ * is added, so the overall false-positive rate stays below twice the initial rate
+ * however many elements are added. A lookup answers "definitely absent" or "maybe
+ * present"; there are no false negatives and elements cannot be removed.
+ *
+ * Bits are kept in AtomicLongArrays, so add and mightContain are lock-free and can be
+ * called from any thread; only adding a stage is synchronized.
+ *
+ * 无需预先确定最终大小的布隆过滤器：当前阶段达到容量时，添加一个容量翻倍、
+ * 误判率减半的新阶段，因此无论添加多少元素，总体误判率都保持在初始误判率的两倍以下。
+ * 查询结果为"一定不存在"或"可能存在"；不会漏判，且元素无法删除。
+ *
+ * 位保存在 AtomicLongArray 中，因此 add 和 mightContain 无锁，可从任意线程调用；
+ * 只有添加阶段是同步的。
+ */
+public class ScalableBloomFilter {
+
+    private static final double LN2 = Math.log(2);
+
+    private final double falsePositiveRate;
+
+    private final List<Stage> stages = new CopyOnWriteArrayList<>();
+
+    private final AtomicLong count = new AtomicLong();
+
+    /**
+     * Constructor for ScalableBloomFilter
+     * ScalableBloomFilter 构造函数
+     *
+     * @param initialCapacity Elements held by the first stage / 第一阶段容纳的元素数
+     * @param falsePositiveRate False-positive rate of the first stage / 第一阶段的误判率
+     */
+    public ScalableBloomFilter(int initialCapacity, double falsePositiveRate) {
+        if (initialCapacity < 1 || falsePositiveRate <= 0 || falsePositiveRate >= 1) {
+            throw new IllegalArgumentException("Invalid Bloom filter parameters: capacity=" + initialCapacity
+                + ", falsePositiveRate=" + falsePositiveRate);
+        }
+        this.falsePositiveRate = falsePositiveRate;
+        stages.add(new Stage(initialCapacity, falsePositiveRate));
+    }
+
+    /**
+     * Add an element
+     * 添加元素
+     *
+     * @param value Element / 元素
+     */
+    public void add(String value) {
+        long hash = hash(value);
+        if (mightContain(hash)) {
+            return;
+        }
+        Stage stage = stages.get(stages.size() - 1);
+        if (stage.count.get() >= stage.capacity) {
+            stage = grow(stage);
+        }
+        stage.add(hash);
+        stage.count.incrementAndGet();
+        count.incrementAndGet();
+    }
+
+    /**
+     * Check whether an element may have been added
+     * 检查元素是否可能已被添加
+     *
+     * @param value Element / 元素
+     * @return false if the element was definitely never added / 如果元素一定从未被添加则返回 false
+     */
+    public boolean mightContain(String value) {
+        return mightContain(hash(value));
+    }
+
+    /**
+     * Number of distinct elements added (elements taken for duplicates are not counted)
+     * 添加的不同元素数量（被误判为重复的元素不计入）
+     *
+     * @return Element count / 元素数量
+     */
+    public long count() {
+        return count.get();
+    }
+
+    /**
+     * Number of stages
+     * 阶段数量
+     *
+     * @return Stage count / 阶段数量
+     */
+    public int stageCount() {
+        return stages.size();
+    }
+
+    /**
+     * Memory used by the bit arrays
+     * 位数组占用的内存
+     *
+     * @return Size in bytes / 字节数
+     */
+    public long sizeInBytes() {
+        return stages.stream().mapToLong(stage -> stage.words.length() * 8L).sum();
+    }
+
+    private boolean mightContain(long hash) {
+        for (Stage stage : stages) {
+            if (stage.mightContain(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private synchronized Stage grow(Stage full) {
+        Stage last = stages.get(stages.size() - 1);
+        if (last != full) {
+            return last;
+        }
+        int capacity = (int) Math.min((long) full.capacity * 2, Integer.MAX_VALUE / 2);
+        Stage next = new Stage(capacity, falsePositiveRate / Math.pow(2, stages.size()));
+        stages.add(next);
+        return next;
+    }
+
+    /**
+     * 64-bit FNV-1a over the UTF-8 bytes
+     * 基于 UTF-8 字节的 64 位 FNV-1a
+     */
+    private static long hash(String value) {
+        long hash = 0xcbf29ce484222325L;
+        for (byte b : value.getBytes(StandardCharsets.UTF_8)) {
+            hash ^= b & 0xff;
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    /**
+     * MurmurHash3 finalizer, spreads the FNV hash over all bits
+     * MurmurHash3 终结函数，将 FNV 哈希扩散到所有位
+     */
+    private static long mix(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    /**
+     * One fixed-size Bloom filter; probes use double hashing h1 + i * h2
+     * 一个固定大小的布隆过滤器；探测使用双重哈希 h1 + i * h2
+     */
+    private static final class Stage {
+
+        private final int capacity;
+        private final long bits;
+        private final int hashes;
+        private final AtomicLongArray words;
+        private final AtomicLong count = new AtomicLong();
+
+        Stage(int capacity, double falsePositiveRate) {
+            long optimalBits = (long) Math.ceil(-capacity * Math.log(falsePositiveRate) / (LN2 * LN2));
+            int wordCount = (int) Math.max(1, (optimalBits + 63) / 64);
+            this.capacity = capacity;
+            this.bits = wordCount * 64L;
+            this.hashes = Math.max(1, (int) Math.round((double) bits / capacity * LN2));
+            this.words = new AtomicLongArray(wordCount);
+        }
+
+        void add(long hash) {
+            long h1 = mix(hash);
+            long h2 = mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                int word = (int) (bit >>> 6);
+                long mask = 1L << bit;
+                long current = words.get(word);
+                while ((current & mask) == 0 && !words.compareAndSet(word, current, current | mask)) {
+                    current = words.get(word);
+                }
+            }
+        }
+
+        boolean mightContain(long hash) {
+            long h1 = mix(hash);
+            long h2 = mix(hash ^ 0x9e3779b97f4a7c15L) | 1;
+            for (int i = 0; i < hashes; i++) {
+                long bit = Math.floorMod(h1 + i * h2, bits);
+                if ((words.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
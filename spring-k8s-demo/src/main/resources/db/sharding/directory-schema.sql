@@ -0,0 +1,22 @@
+-- ============================================================================
+-- Global directory schema - applied to shard 0 only
+-- 全局目录架构 - 仅应用于分片 0
+--
+-- user_email_directory maps every email to the id (and therefore the shard) of its user;
+-- the primary key enforces email uniqueness across all shards.
+-- user_id_sequence hands out id blocks to every pod (see UserIdAllocator).
+-- user_email_directory 将每个邮箱映射到其用户的 ID（从而映射到分片）；主键保证邮箱在所有分片中唯一。
+-- user_id_sequence 向每个 Pod 分配 ID 块（参见 UserIdAllocator）。
+-- ============================================================================
+CREATE TABLE IF NOT EXISTS user_email_directory (
+    email VARCHAR(100) NOT NULL,
+    user_id BIGINT NOT NULL,
+    PRIMARY KEY (email),
+    KEY idx_directory_user_id (user_id)
+);
+
+CREATE TABLE IF NOT EXISTS user_id_sequence (
+    name VARCHAR(64) NOT NULL,
+    next_val BIGINT NOT NULL,
+    PRIMARY KEY (name)
+);
@@ -0,0 +1,53 @@
+-- ============================================================================
+-- Shard schema - applied to every shard at startup when sharding.enabled=true
+-- 分片架构 - sharding.enabled=true 时在启动时应用于每个分片
+--
+-- Ids are allocated by the application (hi/lo blocks from user_id_sequence on shard 0),
+-- so the id column has no AUTO_INCREMENT. Keep this table in sync with the User entity.
+-- ID 由应用分配（来自分片 0 上 user_id_sequence 的 hi/lo 块），因此 id 列没有 AUTO_INCREMENT。
+-- 请保持此表与 User 实体同步。
+-- ============================================================================
+CREATE TABLE IF NOT EXISTS users (
+    id BIGINT NOT NULL,
+    name VARCHAR(50) NOT NULL,
+    email VARCHAR(100) NOT NULL,
+    phone VARCHAR(20),
+    password VARCHAR(255) NOT NULL,
+    role VARCHAR(20) NOT NULL,
+    created_at DATETIME(6) NOT NULL,
+    updated_at DATETIME(6),
+    last_login_at DATETIME(6),
+    last_seen_at DATETIME(6),
+    version BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (id),
+    UNIQUE KEY uk_users_email (email),
+    KEY idx_created_at (created_at),
+    KEY idx_updated_at_id (updated_at, id)
+);
+-- Shards created before idx_updated_at_id / 在 idx_updated_at_id 之前创建的分片:
+-- ALTER TABLE users ADD KEY idx_updated_at_id (updated_at, id);
+-- Shards created before the activity columns / 在活动列之前创建的分片:
+-- ALTER TABLE users ADD COLUMN last_login_at DATETIME(6), ADD COLUMN last_seen_at DATETIME(6);
+-- Shards created before the optimistic lock version / 在乐观锁版本之前创建的分片:
+-- ALTER TABLE users ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
+
+-- Deleted users, for delta sync; same shard as the user was
+-- 已删除的用户，用于增量同步；与用户所在分片相同
+CREATE TABLE IF NOT EXISTS user_tombstones (
+    user_id BIGINT NOT NULL,
+    deleted_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (user_id),
+    KEY idx_deleted_at_user_id (deleted_at, user_id)
+);
+
+-- User changes not yet published to Redis; same shard and transaction as the change
+-- 尚未发布到 Redis 的用户变更；与变更位于同一分片和同一事务
+CREATE TABLE IF NOT EXISTS user_outbox (
+    id BIGINT NOT NULL AUTO_INCREMENT,
+    event_type VARCHAR(20) NOT NULL,
+    user_id BIGINT NOT NULL,
+    email VARCHAR(100),
+    role VARCHAR(20),
+    created_at DATETIME(6) NOT NULL,
+    PRIMARY KEY (id)
+);